@@ -0,0 +1,16 @@
+#!/bin/sh
+# Compiles the application into build/brewery.jar and records an application class-data
+# sharing (AppCDS) archive, build/brewery.jsa, from a training run of typical commands.
+# Requires JDK 13 or newer. Start the application from the archive with:
+#   java -XX:SharedArchiveFile=build/brewery.jsa -jar build/brewery.jar
+set -e
+cd "$(dirname "$0")/.."
+
+rm -rf build/classes
+mkdir -p build/classes
+javac -d build/classes $(find src -name '*.java')
+jar --create --file build/brewery.jar --main-class main.BreweryApp -C build/classes .
+
+java -XX:ArchiveClassesAtExit=build/brewery.jsa -jar build/brewery.jar \
+    < scripts/training-commands.txt > /dev/null
+echo "Wrote build/brewery.jsa"
@@ -0,0 +1,36 @@
+#!/bin/sh
+# Measures time to first command: the wall-clock time from launching a run until the output
+# of its first command (viewing the inventory) appears, averaged over several runs, without
+# and with the AppCDS archive. Shutting the JVM down afterwards is not counted.
+# Run scripts/build-cds-archive.sh first. Usage: scripts/startup-benchmark.sh [runs]
+set -e
+cd "$(dirname "$0")/.."
+RUNS=${1:-10}
+STAMP=$(mktemp)
+trap 'rm -f "$STAMP"' EXIT
+
+measure() {
+    label=$1
+    shift
+    total=0
+    i=0
+    while [ "$i" -lt "$RUNS" ]; do
+        start=$(date +%s%N)
+        printf '4\n8\n' | java "$@" | while IFS= read -r line; do
+            case $line in
+            *Inventory:)  # The first line the command prints, after the menu and prompt
+                date +%s%N > "$STAMP"
+                cat > /dev/null
+                break
+                ;;
+            esac
+        done
+        end=$(cat "$STAMP")
+        total=$((total + (end - start) / 1000000))
+        i=$((i + 1))
+    done
+    echo "$label: $((total / RUNS)) ms average over $RUNS runs"
+}
+
+measure "default JVM   " -Xshare:auto -jar build/brewery.jar
+measure "AppCDS archive" -XX:SharedArchiveFile=build/brewery.jsa -jar build/brewery.jar
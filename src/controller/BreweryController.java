@@ -1,11 +1,24 @@
 package controller;
 
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import model.BeverageBatch;
 import model.Container;
+import model.ContainerStats;
+import model.ContainerTelemetry;
+import model.DemandForecaster;
 import model.Ingredient;
 import model.Inventory;
+import model.QueryEngine;
 import model.Recipe;
-import model.RecipeLibrary;
+import model.RecipeCatalog;
+import model.RecipeFeasibility;
+import model.StockOutForecast;
+import model.SubstitutionRule;
+import model.Unit;
 import view.BreweryView;
 
 /**
@@ -16,8 +29,10 @@ import view.BreweryView;
 public class BreweryController {
 	private BreweryView view;
 	private Inventory inventory;
-	private RecipeLibrary recipeLibrary;
+	private RecipeCatalog recipeLibrary;
 	private ProductionSystem productionSystem;
+	private DemandForecaster demandForecaster;
+	private QueryEngine queryEngine;
 
 	/**
 	 * Constructs a BreweryController object, linking the view, inventory, and
@@ -28,11 +43,22 @@ public class BreweryController {
 	 *                      finished batches.
 	 * @param recipeLibrary The library of available recipes.
 	 */
-	public BreweryController(BreweryView view, Inventory inventory, RecipeLibrary recipeLibrary) {
+	public BreweryController(BreweryView view, Inventory inventory, RecipeCatalog recipeLibrary) {
 		this.view = view;
 		this.inventory = inventory;
 		this.recipeLibrary = recipeLibrary;
 		this.productionSystem = new ProductionSystem(inventory, recipeLibrary, view);
+		this.queryEngine = new QueryEngine(inventory, recipeLibrary);
+	}
+
+	/**
+	 * Sets the forecaster used to predict ingredient stock-outs.
+	 *
+	 * @param demandForecaster The forecaster fed by the inventory's event bus.
+	 */
+	public void setDemandForecaster(DemandForecaster demandForecaster) {
+		this.demandForecaster = demandForecaster;
+		this.queryEngine.setDemandForecaster(demandForecaster);
 	}
 
 	/**
@@ -69,6 +95,21 @@ public class BreweryController {
 				exit = true;
 				view.displayMessage("END!");
 				break;
+			case 9:
+				viewRecipeFeasibility();
+				break;
+			case 10:
+				viewStockOutForecast();
+				break;
+			case 11:
+				runQuery();
+				break;
+			case 12:
+				addSubstitutionRule();
+				break;
+			case 13:
+				viewContainerUtilization();
+				break;
 			default:
 				view.displayMessage("Invalid choice. Please try again.");
 			}
@@ -97,8 +138,29 @@ public class BreweryController {
 			}
 		}
 
-		inventory.addIngredient(name, quantity);
-		view.displayMessage("Ingredient added successfully.");
+		Unit unit = promptForUnit();
+		try {
+			inventory.addIngredient(name, quantity, unit);
+			view.displayMessage("Ingredient added successfully.");
+		} catch (IllegalArgumentException e) {
+			view.displayMessage("Could not add ingredient: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Prompts the user for a unit of measure until a known unit is entered. A blank
+	 * answer counts the ingredient in plain units.
+	 *
+	 * @return The unit entered by the user.
+	 */
+	private Unit promptForUnit() {
+		while (true) {
+			Unit unit = Unit.fromSymbol(view.getInput("Enter unit (g, kg, ml, l, or blank for units): "));
+			if (unit != null) {
+				return unit;
+			}
+			view.displayMessage("Unknown unit. Please enter g, kg, ml, l or leave blank.");
+		}
 	}
 
 	/**
@@ -108,6 +170,12 @@ public class BreweryController {
 	 */
 	private void createRecipe() {
 		String name = view.getInput("Enter recipe name: ");
+		try {
+			inventory.checkName(name);  // Batches of the recipe are recorded under its name
+		} catch (IllegalArgumentException e) {
+			view.displayMessage("Could not create recipe: " + e.getMessage());
+			return;
+		}
 
 		int bottles = 0;
 		boolean validInput = false;
@@ -154,11 +222,11 @@ public class BreweryController {
 				}
 			}
 
-			recipe.addIngredient(ingredientName, quantity);
+			recipe.addIngredient(ingredientName, quantity, promptForUnit());
 		}
 
-		recipeLibrary.addRecipe(recipe);
-		view.displayMessage("Recipe created successfully.");
+		Recipe stored = recipeLibrary.addRecipe(recipe);
+		view.displayMessage("Recipe created successfully (version " + stored.getVersion() + ").");
 	}
 
 	/**
@@ -197,7 +265,7 @@ public class BreweryController {
 
 		// Display ingredients (assuming there is a method to retrieve ingredients)
 		for (Ingredient ingredient : inventory.getIngredients()) {
-			view.displayMessage(ingredient.getName() + ": " + ingredient.getQuantity());
+			view.displayMessage(ingredient.getName() + ": " + ingredient.getQuantity() + " " + ingredient.getUnit());
 		}
 
 		// Display finished batches
@@ -207,7 +275,7 @@ public class BreweryController {
 			view.displayMessage("No finished batches available.");
 		} else {
 			for (BeverageBatch batch : batches) {
-				view.displayMessage(batch.getName() + ": " + batch.getSize() + " bottles");
+				view.displayMessage(batch.getName() + " v" + batch.getRecipeVersion() + ": " + batch.getSize() + " bottles");
 			}
 		}
 	}
@@ -224,11 +292,49 @@ public class BreweryController {
 			view.displayMessage("No clean containers available.");
 		} else {
 			for (Container container : cleanContainers) {
-				view.displayMessage("Container " + container.getId() + " is clean.");
+				view.displayMessage("Container " + container.getId() + " (" + container.getCapacity() + " bottles) is clean.");
 			}
 		}
 	}
 
+	/**
+	 * Displays the rolling utilization, turnaround and idle time of every container
+	 * over its recent state changes, and names the most utilized container as the
+	 * likely bottleneck.
+	 */
+	private void viewContainerUtilization() {
+		view.displayMessage("Container Utilization:");
+		Container[] containers = inventory.getContainers();
+		ContainerStats stats = new ContainerStats();
+		long now = System.nanoTime();
+		Container bottleneck = null;
+		double highestUtilization = 0.0;
+
+		for (Container container : containers) {
+			ContainerTelemetry telemetry = container.getTelemetry();
+			telemetry.computeStats(now, stats);
+			String lastChange = telemetry.getRecordedCount() == 0 ? "never used"
+					: (stats.isDirty() ? "dirty" : "clean") + " since "
+							+ LocalTime.ofInstant(Instant.ofEpochMilli(telemetry.getChangeMillis(0)), ZoneId.systemDefault())
+									.truncatedTo(ChronoUnit.SECONDS);
+			view.displayMessage(String.format(
+					"Container %s (%d bottles): %.1f%% utilized, %d cycles, turnaround %.1f s avg / %.1f s max,"
+							+ " idle %.1f s avg, %s",
+					container.getId(), container.getCapacity(), stats.getUtilization() * 100, stats.getCycles(),
+					stats.getAverageTurnaroundNanos() / 1e9, stats.getMaxTurnaroundNanos() / 1e9,
+					stats.getAverageIdleNanos() / 1e9, lastChange));
+			if (stats.getUtilization() > highestUtilization) {
+				highestUtilization = stats.getUtilization();
+				bottleneck = container;
+			}
+		}
+
+		if (bottleneck != null) {
+			view.displayMessage(String.format("Most utilized: container %s (%.1f%%).", bottleneck.getId(),
+					highestUtilization * 100));
+		}
+	}
+
 	/**
 	 * Displays the list of all recipes in the recipe library.
 	 */
@@ -236,4 +342,96 @@ public class BreweryController {
 		Recipe[] recipes = recipeLibrary.getAllRecipes();
 		view.displayRecipes(recipes);
 	}
+
+	/**
+	 * Displays every recipe in the library ranked by the largest batch size that
+	 * can be produced from the current inventory.
+	 */
+	private void viewRecipeFeasibility() {
+		RecipeFeasibility[] results = productionSystem.evaluateRecipeFeasibility();
+		if (results.length == 0) {
+			view.displayMessage("No recipes available.");
+			return;
+		}
+
+		view.displayMessage("Recipe Feasibility:");
+		for (RecipeFeasibility result : results) {
+			view.displayMessage(result.toString());
+		}
+	}
+
+	/**
+	 * Displays the predicted stock-out of every ingredient, soonest first, based on
+	 * recent usage.
+	 */
+	private void viewStockOutForecast() {
+		if (demandForecaster == null) {
+			view.displayMessage("Forecasting is not enabled.");
+			return;
+		}
+
+		demandForecaster.drain();
+		StockOutForecast[] forecasts = demandForecaster.getForecasts(System.currentTimeMillis());
+		if (forecasts.length == 0) {
+			view.displayMessage("No ingredients to forecast.");
+			return;
+		}
+
+		view.displayMessage("Stock-Out Forecast:");
+		for (StockOutForecast forecast : forecasts) {
+			view.displayMessage(forecast.toString());
+		}
+	}
+
+	/**
+	 * Prompts for an analytics query over the ingredients, batches, recipes or
+	 * containers tables and displays its result.
+	 */
+	private void runQuery() {
+		view.displayMessage("Tables: ingredients (name, quantity, unit, days_left), batches (recipe, version, size,"
+				+ " completed_ms, month), recipes (name, version, ingredients), containers (id, capacity, state, utilization, cycles,"
+				+ " turnaround_s, max_turnaround_s, idle_s, changes)");
+		view.displayMessage("Example: SELECT recipe, SUM(size) FROM batches GROUP BY recipe ORDER BY SUM(size) DESC LIMIT 5");
+		view.displayMessage("Example: SELECT recipe, SUM(size) FROM batches WHERE month = '" + YearMonth.now()
+				+ "' GROUP BY recipe ORDER BY SUM(size) DESC");
+		String text = view.getInput("Enter query: ");
+		try {
+			view.displayMessage(queryEngine.execute(text).toString());
+		} catch (IllegalArgumentException e) {
+			view.displayMessage("Invalid query: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Adds an ingredient substitution rule by prompting the user for the original
+	 * ingredient, its substitute, the conversion ratio and optionally the recipe
+	 * the rule is limited to.
+	 */
+	private void addSubstitutionRule() {
+		String original = view.getInput("Enter ingredient to replace: ");
+		String substitute = view.getInput("Enter substitute ingredient: ");
+
+		double ratio = 0;
+		boolean validInput = false;
+
+		// Prompt for the conversion ratio and handle invalid input
+		while (!validInput) {
+			try {
+				ratio = Double.parseDouble(
+						view.getInput("Enter substitute quantity per unit of the original (in base units): "));
+				validInput = true; // Exit loop if input is valid
+			} catch (NumberFormatException e) {
+				view.displayMessage("Invalid input. Please enter a valid ratio.");
+			}
+		}
+
+		String recipeName = view.getInput("Enter recipe to limit the rule to (blank for all recipes): ");
+		try {
+			SubstitutionRule rule = new SubstitutionRule(original, substitute, ratio, recipeName);
+			productionSystem.getSubstitutionRules().addRule(rule);
+			view.displayMessage("Substitution rule added: " + rule);
+		} catch (IllegalArgumentException e) {
+			view.displayMessage("Could not add rule: " + e.getMessage());
+		}
+	}
 }
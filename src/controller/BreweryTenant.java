@@ -0,0 +1,76 @@
+package controller;
+
+import java.util.concurrent.locks.ReentrantLock;
+import model.InMemoryInventoryStore;
+import model.Inventory;
+import model.NameDictionary;
+import model.RecipeLibrary;
+import view.BreweryView;
+
+/**
+ * One isolated brewery context hosted by a TenantRegistry: its own inventory, containers,
+ * recipes and production system, and a lock that serializes work on them.
+ * Names are shared with the other tenants through the registry's NameDictionary.
+ */
+public class BreweryTenant {
+    private static final int COMPILED_CACHE_SIZE = 8;  // Tenants have few recipes, keep the cache small
+
+    private String id;
+    private Inventory inventory;
+    private RecipeLibrary recipeLibrary;
+    private ProductionSystem productionSystem;
+    private ReentrantLock lock;
+
+    /**
+     * Constructs a BreweryTenant with an empty inventory and recipe library.
+     *
+     * @param id    The unique id of the tenant.
+     * @param names The dictionary shared by all tenants of the registry.
+     * @param view  The view production messages are shown on.
+     */
+    BreweryTenant(String id, NameDictionary names, BreweryView view) {
+        this.id = id;
+        this.inventory = new Inventory(new InMemoryInventoryStore(names));
+        this.recipeLibrary = new RecipeLibrary(COMPILED_CACHE_SIZE, names);
+        this.productionSystem = new ProductionSystem(inventory, recipeLibrary, view);
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * @return The unique id of the tenant.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The tenant's inventory.
+     */
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * @return The tenant's recipe library.
+     */
+    public RecipeLibrary getRecipeLibrary() {
+        return recipeLibrary;
+    }
+
+    /**
+     * @return The tenant's production system.
+     */
+    public ProductionSystem getProductionSystem() {
+        return productionSystem;
+    }
+
+    /**
+     * Returns the lock that serializes work on the tenant. TenantRegistry.submit holds it
+     * while a task runs; callers using the tenant directly must hold it too.
+     *
+     * @return The lock of the tenant.
+     */
+    public ReentrantLock getLock() {
+        return lock;
+    }
+}
@@ -0,0 +1,132 @@
+package controller;
+
+import model.Container;
+import model.ContainerAssignment;
+import model.ContainerPlan;
+import model.ProductionOrder;
+import model.StringFuncs;
+
+/**
+ * The ContainerPlanner class lays production orders out across containers of different capacities.
+ * Orders for the same recipe are combined so small orders share a container, and large orders are
+ * split across several containers. Each recipe fills the largest free containers first and finishes
+ * in the smallest free container that holds the rest, which keeps the fill rate high and the number
+ * of containers to clean low.
+ */
+public class ContainerPlanner {
+
+    /**
+     * Plans the given orders across the given containers. A recipe is either placed in full or
+     * listed as unplanned, so no recipe is left half brewed.
+     *
+     * @param orders     The orders to place.
+     * @param containers The containers available, normally the clean ones.
+     * @return The plan of container assignments.
+     */
+    public ContainerPlan plan(ProductionOrder[] orders, Container[] containers) {
+        // Combine orders for the same recipe
+        String[] recipeNames = new String[orders.length];
+        long[] totals = new long[orders.length];
+        int groupCount = 0;
+        for (ProductionOrder order : orders) {
+            int group = -1;
+            for (int g = 0; g < groupCount; g++) {
+                if (StringFuncs.customStringEquals(recipeNames[g], order.getRecipeName())) {
+                    group = g;
+                }
+            }
+            if (group < 0) {
+                group = groupCount++;
+                recipeNames[group] = order.getRecipeName();
+            }
+            totals[group] += order.getBatchSize();
+        }
+
+        // Place the largest recipes first so they get first pick of the large containers
+        int[] groupOrder = new int[groupCount];
+        for (int g = 0; g < groupCount; g++) {
+            groupOrder[g] = g;
+        }
+        for (int i = 1; i < groupCount; i++) {
+            int current = groupOrder[i];
+            int j = i - 1;
+            while (j >= 0 && totals[groupOrder[j]] < totals[current]) {
+                groupOrder[j + 1] = groupOrder[j];
+                j--;
+            }
+            groupOrder[j + 1] = current;
+        }
+
+        boolean[] used = new boolean[containers.length];
+        ContainerAssignment[] assignments = new ContainerAssignment[containers.length];
+        int assignmentCount = 0;
+        String[] unplanned = new String[groupCount];
+        int unplannedCount = 0;
+
+        for (int g : groupOrder) {
+            long remaining = totals[g];
+            int firstAssignment = assignmentCount;
+            while (remaining > 0) {
+                int chosen = pickContainer(containers, used, remaining);
+                if (chosen < 0) {
+                    break;  // No free containers left
+                }
+                used[chosen] = true;
+                int bottles = (int) Math.min(containers[chosen].getCapacity(), remaining);
+                assignments[assignmentCount++] = new ContainerAssignment(containers[chosen], recipeNames[g], bottles);
+                remaining -= bottles;
+            }
+
+            if (remaining > 0) {
+                // Give the containers back so the recipe is not brewed in part
+                for (int a = firstAssignment; a < assignmentCount; a++) {
+                    for (int c = 0; c < containers.length; c++) {
+                        if (containers[c] == assignments[a].getContainer()) {
+                            used[c] = false;
+                        }
+                    }
+                    assignments[a] = null;
+                }
+                assignmentCount = firstAssignment;
+                unplanned[unplannedCount++] = recipeNames[g];
+            }
+        }
+
+        ContainerAssignment[] planned = new ContainerAssignment[assignmentCount];
+        for (int i = 0; i < assignmentCount; i++) {
+            planned[i] = assignments[i];
+        }
+        String[] unplannedRecipes = new String[unplannedCount];
+        for (int i = 0; i < unplannedCount; i++) {
+            unplannedRecipes[i] = unplanned[i];
+        }
+        return new ContainerPlan(planned, unplannedRecipes);
+    }
+
+    /**
+     * Picks the next container for a recipe: the smallest free container that holds all the
+     * remaining bottles, or the largest free container if none does.
+     *
+     * @param containers The containers available.
+     * @param used       Which containers are already assigned.
+     * @param remaining  The number of bottles still to place.
+     * @return The index of the chosen container, or -1 if all containers are used.
+     */
+    private int pickContainer(Container[] containers, boolean[] used, long remaining) {
+        int smallestFit = -1;
+        int largest = -1;
+        for (int c = 0; c < containers.length; c++) {
+            if (used[c]) {
+                continue;
+            }
+            int capacity = containers[c].getCapacity();
+            if (capacity >= remaining && (smallestFit < 0 || capacity < containers[smallestFit].getCapacity())) {
+                smallestFit = c;
+            }
+            if (largest < 0 || capacity > containers[largest].getCapacity()) {
+                largest = c;
+            }
+        }
+        return smallestFit >= 0 ? smallestFit : largest;
+    }
+}
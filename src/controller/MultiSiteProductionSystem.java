@@ -0,0 +1,437 @@
+package controller;
+
+import model.BeverageBatch;
+import model.BrewerySite;
+import model.Container;
+import model.ContainerAssignment;
+import model.ContainerPlan;
+import model.FixedPoint;
+import model.Inventory;
+import model.ProductionOrder;
+import model.Recipe;
+import model.RecipeLibrary;
+import model.StringFuncs;
+import model.Unit;
+import view.BreweryView;
+
+/**
+ * The MultiSiteProductionSystem class produces beverage batches across several brewery sites.
+ * Each site holds its own shard of stock and containers. Recipes are replicated to every site.
+ * A batch is brewed at the requesting site from local stock when possible; when the site is
+ * short, the missing stock is reserved from the other sites in a two-phase step (reserve on
+ * every donor, then commit the transfer, or release everything if the shortfall cannot be covered).
+ * Only the requesting site and the donor sites that stock a missing ingredient are locked for
+ * the reservation, always in the order the sites were added, so unrelated sites keep brewing.
+ * Like ProductionSystem, a batch larger than one container is split across the site's clean
+ * containers by a ContainerPlanner, and one finished batch is recorded per container.
+ */
+public class MultiSiteProductionSystem {
+    private BreweryView view;
+    private BrewerySite[] sites;
+    private int siteCount;
+    private RecipeLibrary networkRecipes;  // Freezes and numbers each added version once for all sites
+    private Recipe[] recipes;  // Stored versions replicated to every site, including sites added later
+    private int recipeCount;
+    private ContainerPlanner containerPlanner;
+
+    /**
+     * Constructs a MultiSiteProductionSystem with no sites.
+     *
+     * @param view The BreweryView for displaying messages to the user.
+     */
+    public MultiSiteProductionSystem(BreweryView view) {
+        this.view = view;
+        this.sites = new BrewerySite[4];
+        this.siteCount = 0;
+        this.networkRecipes = new RecipeLibrary();
+        this.recipes = new Recipe[10];
+        this.recipeCount = 0;
+        this.containerPlanner = new ContainerPlanner();
+    }
+
+    /**
+     * Adds a new site to the network. All recipes already in the network are replicated to it.
+     *
+     * @param name The unique name of the site.
+     * @return The new BrewerySite.
+     * @throws IllegalArgumentException if a site with the same name already exists.
+     */
+    public BrewerySite addSite(String name) {
+        return addSite(name, Inventory.DEFAULT_CONTAINER_COUNT, Container.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Adds a new site with the given containers to the network. All recipes already in the
+     * network are replicated to it.
+     *
+     * @param name              The unique name of the site.
+     * @param containerCount    The number of containers at the site.
+     * @param containerCapacity The number of bottles each container holds.
+     * @return The new BrewerySite.
+     * @throws IllegalArgumentException if a site with the same name already exists, or the
+     *         container count or capacity is not positive.
+     */
+    public BrewerySite addSite(String name, int containerCount, int containerCapacity) {
+        return addSite(new BrewerySite(name, containerCount, containerCapacity));
+    }
+
+    /**
+     * Adds an existing site to the network, such as one whose inventory is kept in a
+     * MappedFileInventoryStore. All recipes already in the network are replicated to it.
+     *
+     * @param site The site to add.
+     * @return The site.
+     * @throws IllegalArgumentException if a site with the same name already exists.
+     */
+    public synchronized BrewerySite addSite(BrewerySite site) {
+        if (getSite(site.getName()) != null) {
+            throw new IllegalArgumentException("Site " + site.getName() + " already exists");
+        }
+        for (int i = 0; i < recipeCount; i++) {
+            site.getRecipeLibrary().addRecipe(recipes[i]);
+        }
+
+        if (siteCount == sites.length) {
+            BrewerySite[] newSites = new BrewerySite[sites.length * 2];
+            for (int i = 0; i < siteCount; i++) {
+                newSites[i] = sites[i];
+            }
+            sites = newSites;
+        }
+        sites[siteCount++] = site;
+        return site;
+    }
+
+    /**
+     * Retrieves a site by its name.
+     *
+     * @param name The name of the site.
+     * @return The BrewerySite with the given name, or null if not found.
+     */
+    public synchronized BrewerySite getSite(String name) {
+        for (int i = 0; i < siteCount; i++) {
+            if (StringFuncs.customStringEquals(sites[i].getName(), name)) {
+                return sites[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a recipe to the network and replicates it to the library of every site. The recipe
+     * is frozen into an immutable version once, and every site, including sites added later,
+     * stores that same instance, so later changes to the given recipe affect no site.
+     *
+     * @param recipe The Recipe to add.
+     * @return The stored, immutable version replicated to the sites.
+     */
+    public synchronized Recipe addRecipe(Recipe recipe) {
+        Recipe stored = networkRecipes.addRecipe(recipe);
+        if (recipeCount == recipes.length) {
+            Recipe[] newRecipes = new Recipe[recipes.length * 2];
+            for (int i = 0; i < recipeCount; i++) {
+                newRecipes[i] = recipes[i];
+            }
+            recipes = newRecipes;
+        }
+        recipes[recipeCount++] = stored;
+        for (int i = 0; i < siteCount; i++) {
+            sites[i].getRecipeLibrary().addRecipe(stored);
+        }
+        return stored;
+    }
+
+    /**
+     * Produces a batch of a recipe at the given site. Local stock is used first; if the site
+     * is short of any ingredient, the shortfall is reserved from the other sites and moved to
+     * this site before brewing. Nothing changes at any site if the network as a whole is short,
+     * and moved stock is returned to the sites it came from if the batch still cannot be brewed.
+     *
+     * @param siteName   The name of the site that brews the batch.
+     * @param recipeName The name of the recipe to produce.
+     * @param batchSize  The number of bottles to produce in the batch.
+     * @return true if the batch was produced, false otherwise.
+     */
+    public boolean produceBatch(String siteName, String recipeName, int batchSize) {
+        BrewerySite[] snapshot;
+        synchronized (this) {
+            snapshot = new BrewerySite[siteCount];
+            for (int i = 0; i < siteCount; i++) {
+                snapshot[i] = sites[i];
+            }
+        }
+
+        int siteIndex = -1;
+        for (int i = 0; i < snapshot.length; i++) {
+            if (StringFuncs.customStringEquals(snapshot[i].getName(), siteName)) {
+                siteIndex = i;
+            }
+        }
+        if (siteIndex < 0) {
+            view.displayMessage("Site '" + siteName + "' not found.");
+            return false;
+        }
+
+        BrewerySite site = snapshot[siteIndex];
+        Recipe recipe = site.getRecipeLibrary().getRecipe(recipeName);
+        if (recipe == null) {
+            view.displayMessage("Recipe '" + recipeName + "' not found at site " + site.getName() + ".");
+            return false;
+        }
+        if (batchSize <= 0) {
+            view.displayMessage("Batch size must be positive.");
+            return false;
+        }
+
+        // Try the local shard first, holding only the local lock
+        boolean[] shortLines;
+        site.getLock().lock();
+        try {
+            ContainerPlan plan = planContainers(site, recipe, batchSize);
+            if (plan == null) {
+                return false;
+            }
+            if (site.getInventory().useIngredients(recipe, batchSize)) {
+                recordBatch(site, plan.getAssignments(), recipe);
+                return true;
+            }
+            shortLines = findShortLines(site.getInventory(), recipe, batchSize);
+        } finally {
+            site.getLock().unlock();
+        }
+
+        // Fall back to a two-phase reservation, locking the local site and its donors in site order
+        boolean[] locked = findDonors(snapshot, siteIndex, recipe, shortLines);
+        locked[siteIndex] = true;
+        for (int i = 0; i < snapshot.length; i++) {
+            if (locked[i]) {
+                snapshot[i].getLock().lock();
+            }
+        }
+        try {
+            ContainerPlan plan = planContainers(site, recipe, batchSize);
+            if (plan == null) {
+                return false;
+            }
+            long[][] moved = reserveShortfall(snapshot, locked, siteIndex, recipe, batchSize);
+            if (moved == null) {
+                view.displayMessage("Failed to produce batch: the network is short of ingredients.");
+                return false;
+            }
+            boolean used = false;
+            try {
+                used = site.getInventory().useIngredients(recipe, batchSize);
+            } finally {
+                if (!used) {
+                    returnShortfall(snapshot, siteIndex, recipe, moved);  // Donors are still locked
+                }
+            }
+            if (!used) {
+                view.displayMessage("Failed to produce batch due to insufficient ingredients.");
+                return false;
+            }
+            recordBatch(site, plan.getAssignments(), recipe);
+            return true;
+        } finally {
+            for (int i = snapshot.length - 1; i >= 0; i--) {
+                if (locked[i]) {
+                    snapshot[i].getLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lays a batch out across the clean containers of a site, splitting it if it is larger than
+     * one container. Callers must hold the site's lock.
+     *
+     * @param site      The site that brews the batch.
+     * @param recipe    The recipe to produce.
+     * @param batchSize The number of bottles to produce.
+     * @return The complete plan, or null if the site's clean containers cannot hold the batch.
+     */
+    private ContainerPlan planContainers(BrewerySite site, Recipe recipe, int batchSize) {
+        Container[] cleanContainers = site.getInventory().getCleanContainers();
+        if (cleanContainers.length == 0) {
+            view.displayMessage("No clean containers available at site " + site.getName() + ".");
+            return null;
+        }
+        ContainerPlan plan = containerPlanner.plan(
+                new ProductionOrder[] { new ProductionOrder(recipe.getName(), batchSize) }, cleanContainers);
+        if (!plan.isComplete()) {
+            view.displayMessage("Not enough clean container capacity for " + batchSize + " bottles at site "
+                    + site.getName() + ".");
+            return null;
+        }
+        return plan;
+    }
+
+    /**
+     * Finds the ingredient lines a site is short of for a batch. Callers must hold the site's lock.
+     *
+     * @param local     The inventory of the requesting site.
+     * @param recipe    The recipe to produce.
+     * @param batchSize The number of bottles to produce.
+     * @return Whether each ingredient line needs more than the site stocks.
+     */
+    private boolean[] findShortLines(Inventory local, Recipe recipe, int batchSize) {
+        String[] ingredientNames = recipe.getIngredientNames();
+        long[] ingredientQuantities = recipe.getFixedIngredientQuantities();
+        boolean[] shortLines = new boolean[ingredientNames.length];
+        for (int i = 0; i < ingredientNames.length; i++) {
+            long needed = FixedPoint.multiplySaturated(ingredientQuantities[i], batchSize);
+            shortLines[i] = needed > local.getIngredientFixedQuantity(ingredientNames[i]);
+        }
+        return shortLines;
+    }
+
+    /**
+     * Finds the sites that stock an ingredient the requesting site is short of, taking each
+     * site's lock only while it is checked, so no two locks are held at once.
+     *
+     * @param sites      The sites of the network.
+     * @param siteIndex  The index of the requesting site.
+     * @param recipe     The recipe to produce.
+     * @param shortLines Whether each ingredient line is short at the requesting site.
+     * @return Whether each site is a donor; the requesting site is not marked.
+     */
+    private boolean[] findDonors(BrewerySite[] sites, int siteIndex, Recipe recipe, boolean[] shortLines) {
+        String[] ingredientNames = recipe.getIngredientNames();
+        Unit[] ingredientUnits = recipe.getIngredientUnits();
+        boolean[] donors = new boolean[sites.length];
+        for (int s = 0; s < sites.length; s++) {
+            if (s == siteIndex) {
+                continue;
+            }
+            sites[s].getLock().lock();
+            try {
+                Inventory donor = sites[s].getInventory();
+                for (int i = 0; i < ingredientNames.length && !donors[s]; i++) {
+                    donors[s] = shortLines[i]
+                            && ingredientUnits[i].isCompatibleWith(donor.getIngredientUnit(ingredientNames[i]))
+                            && donor.getIngredientFixedQuantity(ingredientNames[i]) > 0;
+                }
+            } finally {
+                sites[s].getLock().unlock();
+            }
+        }
+        return donors;
+    }
+
+    /**
+     * Reserves the stock the requesting site is short of from the other sites and, once every
+     * shortfall is covered, commits the transfer into the requesting site. If any shortfall
+     * cannot be covered, every reservation is released. Only the locked sites are used as donors;
+     * callers must hold the locks of the requesting site and of every locked site.
+     *
+     * @param sites     The sites of the network.
+     * @param locked    Whether each site is locked and may donate.
+     * @param siteIndex The index of the requesting site.
+     * @param recipe    The recipe to produce.
+     * @param batchSize The number of bottles to produce.
+     * @return The quantity moved from each site for each ingredient line, indexed [line][site], or
+     *         null if the shortfalls could not be covered and nothing was moved.
+     */
+    private long[][] reserveShortfall(BrewerySite[] sites, boolean[] locked, int siteIndex, Recipe recipe,
+            int batchSize) {
+        Inventory local = sites[siteIndex].getInventory();
+        String[] ingredientNames = recipe.getIngredientNames();
+        long[] ingredientQuantities = recipe.getFixedIngredientQuantities();
+        Unit[] ingredientUnits = recipe.getIngredientUnits();
+
+        // Reservations made in phase one: reserved[i][s] is taken from site s for ingredient i
+        long[][] reserved = new long[ingredientNames.length][sites.length];
+        boolean covered = true;
+
+        // Phase one: reserve each shortfall from the other sites
+        for (int i = 0; i < ingredientNames.length && covered; i++) {
+            long needed = FixedPoint.multiplySaturated(ingredientQuantities[i], batchSize);
+            Unit localUnit = local.getIngredientUnit(ingredientNames[i]);
+            if (needed <= 0) {
+                continue;
+            }
+            if (localUnit != null && !localUnit.isCompatibleWith(ingredientUnits[i])) {
+                covered = false;  // Local stock is measured in another dimension
+                break;
+            }
+
+            long shortfall = needed - local.getIngredientFixedQuantity(ingredientNames[i]);
+            for (int s = 0; s < sites.length && shortfall > 0; s++) {
+                if (s == siteIndex || !locked[s]) {
+                    continue;
+                }
+                Inventory donor = sites[s].getInventory();
+                long take = Math.min(shortfall, donor.getIngredientFixedQuantity(ingredientNames[i]));
+                if (take > 0 && donor.removeIngredientFixedQuantity(ingredientNames[i], take, ingredientUnits[i])) {
+                    reserved[i][s] = take;
+                    shortfall -= take;
+                }
+            }
+            if (shortfall > 0) {
+                covered = false;
+            }
+        }
+
+        // Phase two: commit the transfer, or release every reservation
+        for (int i = 0; i < ingredientNames.length; i++) {
+            for (int s = 0; s < sites.length; s++) {
+                if (reserved[i][s] == 0) {
+                    continue;
+                }
+                Inventory target = covered ? local : sites[s].getInventory();
+                target.addIngredientFixedQuantity(ingredientNames[i], reserved[i][s], ingredientUnits[i]);
+                if (covered) {
+                    view.displayMessage("Moved " + FixedPoint.toDouble(reserved[i][s]) + " " + ingredientUnits[i]
+                            + " of " + ingredientNames[i] + " from site " + sites[s].getName() + ".");
+                }
+            }
+        }
+        return covered ? reserved : null;
+    }
+
+    /**
+     * Moves stock that reserveShortfall moved into the requesting site back to the sites it came
+     * from, when the batch could not be brewed after all. Callers must hold the locks of the requesting
+     * site and of the donor sites.
+     *
+     * @param sites     The sites of the network.
+     * @param siteIndex The index of the requesting site.
+     * @param recipe    The recipe that was to be produced.
+     * @param moved     The quantities reserveShortfall moved, indexed [line][site].
+     */
+    private void returnShortfall(BrewerySite[] sites, int siteIndex, Recipe recipe, long[][] moved) {
+        Inventory local = sites[siteIndex].getInventory();
+        String[] ingredientNames = recipe.getIngredientNames();
+        Unit[] ingredientUnits = recipe.getIngredientUnits();
+        for (int i = 0; i < ingredientNames.length; i++) {
+            for (int s = 0; s < sites.length; s++) {
+                if (moved[i][s] > 0
+                        && local.removeIngredientFixedQuantity(ingredientNames[i], moved[i][s], ingredientUnits[i])) {
+                    sites[s].getInventory().addIngredientFixedQuantity(ingredientNames[i], moved[i][s],
+                            ingredientUnits[i]);
+                    view.displayMessage("Returned " + FixedPoint.toDouble(moved[i][s]) + " " + ingredientUnits[i]
+                            + " of " + ingredientNames[i] + " to site " + sites[s].getName() + ".");
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a produced batch at a site, one finished batch per container it was brewed in,
+     * and marks those containers as dirty.
+     *
+     * @param site        The site that brewed the batch.
+     * @param assignments The containers the batch was brewed in.
+     * @param recipe      The recipe that was produced.
+     */
+    private void recordBatch(BrewerySite site, ContainerAssignment[] assignments, Recipe recipe) {
+        for (ContainerAssignment assignment : assignments) {
+            site.getInventory().markContainerAsDirty(assignment.getContainer().getId());
+            site.getInventory().addFinishedBatch(
+                    new BeverageBatch(recipe.getName(), assignment.getBottles(), recipe.getVersion()));
+            view.displayMessage("Batch of " + recipe.getName() + " produced at site " + site.getName()
+                    + ". Container " + assignment.getContainer().getId() + " holds " + assignment.getBottles()
+                    + " of " + assignment.getContainer().getCapacity() + " bottles and is now dirty.");
+        }
+    }
+}
@@ -0,0 +1,832 @@
+package controller;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import model.BeverageBatch;
+import model.ContainerAssignment;
+import model.ContainerPlan;
+import model.FixedPoint;
+import model.HotIngredientCache;
+import model.Inventory;
+import model.ProductionOrder;
+import model.Recipe;
+import model.RecipeCatalog;
+import model.Unit;
+
+/**
+ * The ProductionPipeline class produces batches as a staged, backpressured pipeline built on
+ * java.util.concurrent.Flow: validate, reserve ingredients, acquire containers, brew, record.
+ * Each stage has its own worker threads and accepts only a bounded number of jobs at a time,
+ * so a slow stage (such as waiting for a clean container) holds back only the jobs behind it
+ * instead of blocking the caller. Submitting blocks only when the first stage is full.
+ * If a stage fails as a whole, every job still in the pipeline completes exceptionally, unless its
+ * batches were already recorded, and the ingredients reserved by the others are returned.
+ * The pipeline must be the only user of the inventory while it is running.
+ * <p>
+ * The stages do not share a lock. Reserving and recording rely on the inventory's own monitor,
+ * which each holds only for one deduction or one recorded batch; acquiring containers takes the
+ * container lock, since planning and claiming must see the same clean containers; reconciling
+ * the hot ingredient cache takes its own lock. A job's monitor orders its reservation against
+ * the pipeline failing, so its ingredients are returned exactly once.
+ */
+public class ProductionPipeline {
+    /** The number of jobs admitted through the hot ingredient cache between reconciliations. */
+    public static final int RECONCILE_INTERVAL = 256;
+    /** The names of the stages, in pipeline order, which is also the order of per-stage worker counts. */
+    public static final String[] STAGE_NAMES = { "validate", "reserve", "acquire container", "brew", "record" };
+
+    private Inventory inventory;
+    private RecipeCatalog recipeLibrary;
+    private ContainerPlanner containerPlanner;
+    private long containerWaitMillis;
+
+    private ReentrantLock containerLock;  // Guards planning and claiming containers
+    private Condition containersCleaned;
+    private ReentrantLock reconcileLock;  // Guards reconciling the hot ingredient cache
+    private volatile HotIngredientCache hotIngredients;  // Optional lock-free admission of hot ingredients
+    private AtomicInteger unreconciled;  // Jobs admitted through the cache since the last reconciliation
+    private int reserveParallelism;  // Workers of the reserve stage, the hot ingredient cache's consumers
+
+    private SubmissionPublisher<Job> source;
+    private Stage[] stages;
+    private ExecutorService deliveryExecutor;
+    private Set<Job> pending;  // Jobs submitted whose future is not complete yet
+    private volatile Throwable failure;  // Why the pipeline stopped, if a stage failed
+
+    /**
+     * Constructs and starts a ProductionPipeline with the same number of workers in every stage.
+     *
+     * @param inventory           The inventory to produce from.
+     * @param recipeLibrary       The library to look recipes up in.
+     * @param parallelism         The number of worker threads per stage.
+     * @param bufferSize          The number of jobs each stage accepts at a time.
+     * @param containerWaitMillis How long a job waits for clean containers before failing.
+     */
+    public ProductionPipeline(Inventory inventory, RecipeCatalog recipeLibrary, int parallelism, int bufferSize,
+            long containerWaitMillis) {
+        this(inventory, recipeLibrary, uniformParallelism(parallelism), bufferSize, containerWaitMillis);
+    }
+
+    /**
+     * Constructs and starts a ProductionPipeline with its own number of workers per stage, so a
+     * slow stage, such as acquiring containers, can be given more workers than a fast one.
+     *
+     * @param inventory           The inventory to produce from.
+     * @param recipeLibrary       The library to look recipes up in.
+     * @param stageParallelism    The number of worker threads of each stage, in the order of STAGE_NAMES.
+     * @param bufferSize          The number of jobs each stage accepts at a time.
+     * @param containerWaitMillis How long a job waits for clean containers before failing.
+     * @throws IllegalArgumentException if there is not one positive worker count per stage.
+     */
+    public ProductionPipeline(Inventory inventory, RecipeCatalog recipeLibrary, int[] stageParallelism,
+            int bufferSize, long containerWaitMillis) {
+        if (stageParallelism.length != STAGE_NAMES.length) {
+            throw new IllegalArgumentException("Expected " + STAGE_NAMES.length + " worker counts, one per stage");
+        }
+        for (int workers : stageParallelism) {
+            if (workers <= 0) {
+                throw new IllegalArgumentException("Worker counts must be positive");
+            }
+        }
+        this.inventory = inventory;
+        this.recipeLibrary = recipeLibrary;
+        this.containerPlanner = new ContainerPlanner();
+        this.containerWaitMillis = containerWaitMillis;
+        this.reserveParallelism = stageParallelism[1];
+        this.containerLock = new ReentrantLock();
+        this.containersCleaned = containerLock.newCondition();
+        this.reconcileLock = new ReentrantLock();
+        this.pending = ConcurrentHashMap.newKeySet();
+        this.unreconciled = new AtomicInteger();
+
+        this.deliveryExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "production-pipeline-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.source = new SubmissionPublisher<>(deliveryExecutor, bufferSize);
+        this.stages = new Stage[] {
+            new Stage(STAGE_NAMES[0], stageParallelism[0], bufferSize, this::validate),
+            new Stage(STAGE_NAMES[1], stageParallelism[1], bufferSize, this::reserve),
+            new Stage(STAGE_NAMES[2], stageParallelism[2], bufferSize, this::acquireContainers),
+            new Stage(STAGE_NAMES[3], stageParallelism[3], bufferSize, this::brew),
+            new Stage(STAGE_NAMES[4], stageParallelism[4], bufferSize, this::record)
+        };
+
+        source.subscribe(stages[0]);
+        for (int i = 0; i + 1 < stages.length; i++) {
+            stages[i].subscribe(stages[i + 1]);
+        }
+        stages[stages.length - 1].subscribe(new CompletionSubscriber());
+    }
+
+    /**
+     * Submits an order to the pipeline, blocking only while the first stage is full.
+     *
+     * @param order The order to produce.
+     * @return A future completed with the job once it leaves the pipeline, successful or not,
+     *         or completed exceptionally if the pipeline fails or is closed before then.
+     */
+    public CompletableFuture<Job> submit(ProductionOrder order) {
+        Job job = new Job(order);
+        pending.add(job);
+        Throwable failed = failure;  // Read after adding, so failPending either sees the job or we see the failure
+        if (failed != null) {
+            abandon(job, failed);
+            return job.completion;
+        }
+        try {
+            source.submit(job);
+        } catch (IllegalStateException e) {
+            abandon(job, e);  // The pipeline was closed
+        }
+        return job.completion;
+    }
+
+    /**
+     * @param parallelism The number of worker threads of every stage.
+     * @return That worker count once per stage.
+     */
+    private static int[] uniformParallelism(int parallelism) {
+        int[] stageParallelism = new int[STAGE_NAMES.length];
+        Arrays.fill(stageParallelism, parallelism);
+        return stageParallelism;
+    }
+
+    /**
+     * Completes the future of every job still in the pipeline exceptionally, and of every job
+     * submitted afterwards, because a stage can no longer pass jobs on. Ingredients the jobs
+     * reserved are returned first, and the stages skip abandoned jobs from then on. A job whose
+     * batches were already recorded, but which could not leave the pipeline, completes normally,
+     * since its batches exist and its ingredients are used.
+     *
+     * @param cause Why the pipeline stopped.
+     */
+    private void failPending(Throwable cause) {
+        failure = cause;
+        for (Job job : pending) {
+            synchronized (job) {  // Pairs with reserve and record, which check it under the same monitor
+                job.abandoned = true;
+                if (job.reserved) {
+                    returnReserved(job);
+                }
+            }
+        }
+        reconcileLock.lock();
+        try {
+            reconcileHotIngredients();
+        } finally {
+            reconcileLock.unlock();
+        }
+        for (Job job : pending) {
+            if (job.recorded) {
+                pending.remove(job);
+                job.completion.complete(job);
+            } else {
+                abandon(job, cause);
+            }
+        }
+    }
+
+    /**
+     * Completes the future of a job that will not leave the pipeline exceptionally.
+     *
+     * @param job   The job.
+     * @param cause Why the job was abandoned.
+     */
+    private void abandon(Job job, Throwable cause) {
+        pending.remove(job);
+        job.completion.completeExceptionally(cause);
+    }
+
+    /**
+     * Marks all containers as clean and wakes jobs waiting for containers.
+     */
+    public void cleanContainers() {
+        containerLock.lock();
+        try {
+            inventory.markContainerAsClean();
+            containersCleaned.signalAll();
+        } finally {
+            containerLock.unlock();
+        }
+    }
+
+    /**
+     * Tracks the given hot ingredients in a HotIngredientCache, so the reserve stage admits their
+     * deductions without the inventory's monitor. An order whose ingredient lines are all hot is
+     * admitted without taking the inventory's monitor at all. The stock stays in the inventory: the
+     * counted deductions are reconciled into it in batches, once every RECONCILE_INTERVAL admitted
+     * jobs and whenever the pipeline drains, so between batches other readers of the inventory
+     * miss the deductions of at most that many jobs. Call only while no jobs are in the pipeline.
+     * <p>
+     * The cache's safety margin is sized from the largest deduction and the reserve stage's
+     * parallelism (see HotIngredientCache.marginFor), so every deduction up to that size takes
+     * the lock-free path while the ingredient's stock is above twice the margin. Larger
+     * deductions, and all deductions once the stock is below that, take the ingredient's lock.
+     *
+     * @param names            The names of the hot ingredients.
+     * @param largestDeduction The fixed-point size, in base units, of the largest single-line
+     *                         deduction expected across the hot ingredients, such as the largest
+     *                         batch size times the largest per-bottle quantity.
+     */
+    public void enableHotIngredientCache(String[] names, long largestDeduction) {
+        long margin = HotIngredientCache.marginFor(largestDeduction, reserveParallelism);
+        reconcileLock.lock();
+        try {
+            disableHotIngredientCache();
+            hotIngredients = HotIngredientCache.track(inventory, names, margin, reserveParallelism);
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * Reconciles the remaining counted deductions into the inventory and stops using the cache.
+     * Call only while no jobs are in the pipeline.
+     */
+    public void disableHotIngredientCache() {
+        reconcileLock.lock();
+        try {
+            reconcileHotIngredients();
+            hotIngredients = null;
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many hot ingredient deductions took the ingredient's lock instead of the
+     * lock-free path, since the cache was enabled.
+     *
+     * @return The number of locked deductions, or 0 if the cache is not in use.
+     */
+    public long getLockedHotDeductions() {
+        HotIngredientCache hot = hotIngredients;
+        return hot == null ? 0 : hot.getLockedDeductions();
+    }
+
+    /**
+     * Stops accepting orders. Jobs already submitted still run to completion.
+     */
+    public void close() {
+        source.close();
+    }
+
+    /**
+     * Returns the statistics of every stage, in pipeline order.
+     *
+     * @return The stage statistics.
+     */
+    public StageStats[] getStageStats() {
+        StageStats[] stats = new StageStats[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            stats[i] = new StageStats(stages[i].name, stages[i].processed.sum(), stages[i].busyNanos.sum(),
+                    stages[i].parallelism);
+        }
+        return stats;
+    }
+
+    /**
+     * Looks the recipe up and checks that the inventory can record batches under its name,
+     * before any stage deducts ingredients for it.
+     *
+     * @param job The job to validate.
+     */
+    private void validate(Job job) {
+        job.recipe = recipeLibrary.getRecipe(job.order.getRecipeName());
+        if (job.recipe == null) {
+            job.fail("Recipe '" + job.order.getRecipeName() + "' not found.");
+        } else {
+            inventory.checkName(job.recipe.getName());
+        }
+    }
+
+    /**
+     * Deducts the ingredients of the batch from the inventory. Hot ingredient lines are deducted
+     * from the cache first; if no other line needs stock, the job is admitted without the
+     * inventory's monitor. The other lines are deducted in one call under the inventory's monitor,
+     * so reserve workers contend only for that deduction. A hot line that looks short is checked
+     * again after reconciling, which picks up stock added to the inventory directly.
+     *
+     * @param job The job to reserve ingredients for.
+     */
+    private void reserve(Job job) {
+        HotIngredientCache hot = hotIngredients;
+        if (hot != null && reserveHotIngredients(job, hot)) {
+            if (job.hotOnly) {
+                boolean abandoned;
+                synchronized (job) {  // Pairs with failPending, which returns what reserved jobs hold
+                    abandoned = job.abandoned;
+                    job.reserved = !abandoned;
+                }
+                if (abandoned) {
+                    returnAbandonedHotIngredients(job);
+                } else if (unreconciled.incrementAndGet() >= RECONCILE_INTERVAL) {
+                    reconcileDue();
+                }
+                return;
+            }
+        } else if (hot != null) {
+            reconcileLock.lock();
+            try {
+                reconcileHotIngredients();
+                if (!reserveHotIngredients(job, hot)) {
+                    job.fail("Insufficient ingredients for " + job.recipe.getName() + ".");
+                    return;
+                }
+            } finally {
+                reconcileLock.unlock();
+            }
+        }
+
+        boolean abandoned;
+        synchronized (job) {  // Pairs with failPending, which returns what reserved jobs hold
+            abandoned = job.abandoned;
+            if (!abandoned && inventory.useIngredients(job.recipe, job.order.getBatchSize(), job.hotLines)) {
+                job.reserved = true;
+            } else if (!abandoned) {
+                returnHotIngredients(job);
+                job.fail("Insufficient ingredients for " + job.recipe.getName() + ".");
+                return;
+            }
+        }
+        if (abandoned) {
+            returnAbandonedHotIngredients(job);  // The pipeline failed while the hot lines were deducted
+        } else if (hot != null) {
+            unreconciled.incrementAndGet();
+            reconcileDue();
+        }
+    }
+
+    /**
+     * Reconciles the hot ingredient cache under the reconcile lock if RECONCILE_INTERVAL jobs
+     * were admitted through it since the last reconciliation.
+     */
+    private void reconcileDue() {
+        reconcileLock.lock();
+        try {
+            reconcileIfDue(false);
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * Reconciles the hot ingredient cache into the inventory if RECONCILE_INTERVAL jobs were
+     * admitted through it since the last reconciliation, or if the pipeline has drained and any were.
+     * Callers must hold the reconcile lock.
+     *
+     * @param drained Whether no other job is left in the pipeline.
+     */
+    private void reconcileIfDue(boolean drained) {
+        if (unreconciled.get() >= RECONCILE_INTERVAL || (drained && unreconciled.get() > 0)) {
+            reconcileHotIngredients();
+        }
+    }
+
+    /**
+     * Applies the deductions counted by the hot ingredient cache to the inventory, if the cache
+     * is in use. Callers must hold the reconcile lock.
+     *
+     * @throws IllegalStateException if the cache admitted more than the inventory holds.
+     */
+    private void reconcileHotIngredients() {
+        HotIngredientCache hot = hotIngredients;
+        if (hot != null) {
+            unreconciled.set(0);
+            hot.reconcile(inventory);
+        }
+    }
+
+    /**
+     * Deducts the hot ingredient lines of a job from the cache without locking the inventory.
+     * If any hot line is short, the lines already deducted are given back.
+     *
+     * @param job The job to reserve hot ingredients for.
+     * @param hot The hot ingredient cache.
+     * @return true if every hot line was deducted, false otherwise.
+     */
+    private boolean reserveHotIngredients(Job job, HotIngredientCache hot) {
+        String[] ingredientNames = job.recipe.getIngredientNames();
+        long[] ingredientQuantities = job.recipe.getFixedIngredientQuantities();
+        Unit[] ingredientUnits = job.recipe.getIngredientUnits();
+        job.hotCache = hot;
+        job.hotLines = new boolean[ingredientNames.length];
+        job.hotIndexes = new int[ingredientNames.length];
+        job.hotOnly = true;
+
+        for (int i = 0; i < ingredientNames.length; i++) {
+            long needed = FixedPoint.multiplySaturated(ingredientQuantities[i], job.order.getBatchSize());
+            int index = hot.indexOf(ingredientNames[i]);
+            if (needed <= 0) {
+                continue;  // Nothing to deduct
+            }
+            if (index < 0 || !hot.getUnit(index).isCompatibleWith(ingredientUnits[i])) {
+                job.hotOnly = false;
+                continue;  // Not a hot line, left to the inventory
+            }
+            if (!hot.tryConsume(index, needed)) {
+                returnHotIngredients(job);
+                return false;
+            }
+            job.hotLines[i] = true;
+            job.hotIndexes[i] = index;
+        }
+        return true;
+    }
+
+    /**
+     * Gives the hot ingredient lines a job deducted back to the cache.
+     *
+     * @param job The job whose hot lines to give back.
+     */
+    private void returnHotIngredients(Job job) {
+        if (job.hotLines == null) {
+            return;
+        }
+        long[] ingredientQuantities = job.recipe.getFixedIngredientQuantities();
+        for (int i = 0; i < job.hotLines.length; i++) {
+            if (job.hotLines[i]) {
+                job.hotCache.release(job.hotIndexes[i],
+                        FixedPoint.multiplySaturated(ingredientQuantities[i], job.order.getBatchSize()));
+                job.hotLines[i] = false;
+            }
+        }
+    }
+
+    /**
+     * Gives the hot lines of a job the pipeline abandoned while they were deducted back to the
+     * cache, and reconciles them into the inventory, since the reconciliation in failPending may
+     * already have applied the deduction.
+     *
+     * @param job The abandoned job.
+     */
+    private void returnAbandonedHotIngredients(Job job) {
+        if (job.hotLines == null) {
+            return;
+        }
+        returnHotIngredients(job);
+        reconcileLock.lock();
+        try {
+            reconcileHotIngredients();
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    /**
+     * Gives all reserved ingredients of a job back, hot lines through the cache and the rest
+     * directly to the inventory. The hot lines reach the inventory at the next reconciliation.
+     * Callers must hold the job's monitor and have checked that the job is reserved.
+     *
+     * @param job The job whose ingredients to give back.
+     */
+    private void returnReserved(Job job) {
+        inventory.returnIngredients(job.recipe, job.order.getBatchSize(), job.hotLines);
+        returnHotIngredients(job);
+        job.reserved = false;
+    }
+
+    /**
+     * Gives the ingredients of a job back if it still holds them, unless the pipeline failing
+     * returned them already.
+     *
+     * @param job The job whose ingredients to give back.
+     */
+    private void releaseReserved(Job job) {
+        synchronized (job) {
+            if (job.reserved) {
+                returnReserved(job);
+            }
+        }
+    }
+
+    /**
+     * Claims clean containers for the batch, waiting for containers to be cleaned if needed.
+     * If none become available in time, the reserved ingredients are returned. Planning and
+     * claiming run under the container lock, so this is the one stage whose workers take turns
+     * for their whole step; only the wait for cleaning releases the lock.
+     *
+     * @param job The job to acquire containers for.
+     */
+    private void acquireContainers(Job job) {
+        ProductionOrder[] orders = new ProductionOrder[] { job.order };
+        containerLock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(containerWaitMillis);
+            while (true) {
+                if (job.abandoned) {
+                    return;  // Its ingredients were returned when the pipeline failed
+                }
+                ContainerPlan plan = containerPlanner.plan(orders, inventory.getCleanContainers());
+                if (plan.isComplete()) {
+                    job.assignments = plan.getAssignments();
+                    for (ContainerAssignment assignment : job.assignments) {
+                        inventory.markContainerAsDirty(assignment.getContainer().getId());  // Claim it
+                    }
+                    return;
+                }
+                if (remaining <= 0) {
+                    releaseReserved(job);
+                    job.fail("No clean container capacity for " + job.order.getBatchSize() + " bottles.");
+                    return;
+                }
+                remaining = containersCleaned.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseReserved(job);
+            job.fail("Interrupted while waiting for a container.");
+        } finally {
+            containerLock.unlock();
+        }
+    }
+
+    /**
+     * Brews the batch, producing one finished batch per container.
+     *
+     * @param job The job to brew.
+     */
+    private void brew(Job job) {
+        job.batches = new BeverageBatch[job.assignments.length];
+        for (int i = 0; i < job.assignments.length; i++) {
+            job.batches[i] = new BeverageBatch(job.recipe.getName(), job.assignments[i].getBottles(),
+                    job.recipe.getVersion());
+        }
+    }
+
+    /**
+     * Records the finished batches in the inventory. From then on the job's ingredients are
+     * used up rather than reserved. Record workers contend only for the inventory's monitor,
+     * once per batch.
+     *
+     * @param job The job to record.
+     */
+    private void record(Job job) {
+        synchronized (job) {  // Pairs with failPending, so a recorded job's ingredients are not returned
+            if (job.abandoned) {
+                return;  // Its ingredients were returned when the pipeline failed
+            }
+            for (BeverageBatch batch : job.batches) {
+                inventory.addFinishedBatch(batch);
+            }
+            job.reserved = false;
+            job.recorded = true;
+        }
+    }
+
+    /**
+     * One production order moving through the pipeline.
+     */
+    public static class Job {
+        private ProductionOrder order;
+        private Recipe recipe;
+        private boolean reserved;  // Holds ingredients that are not recorded as a batch yet
+        private volatile boolean abandoned;  // The pipeline failed; set under the job's monitor
+        private volatile boolean recorded;  // The batches are in the inventory; set under the job's monitor
+        private boolean[] hotLines;  // Ingredient lines deducted from the hot ingredient cache
+        private int[] hotIndexes;  // Cache index of each hot line
+        private boolean hotOnly;  // Every line with a quantity is a hot line
+        private HotIngredientCache hotCache;
+        private ContainerAssignment[] assignments;
+        private BeverageBatch[] batches;
+        private String failureMessage;
+        private CompletableFuture<Job> completion;
+
+        private Job(ProductionOrder order) {
+            this.order = order;
+            this.completion = new CompletableFuture<>();
+        }
+
+        private void fail(String message) {
+            this.failureMessage = message;
+        }
+
+        /**
+         * @return The order this job produces.
+         */
+        public ProductionOrder getOrder() {
+            return order;
+        }
+
+        /**
+         * @return true if the batch was produced and recorded.
+         */
+        public boolean isSuccessful() {
+            return failureMessage == null;
+        }
+
+        /**
+         * @return The reason the job failed, or null if it succeeded.
+         */
+        public String getFailureMessage() {
+            return failureMessage;
+        }
+
+        /**
+         * @return The finished batches, one per container, or null if the job failed before brewing.
+         */
+        public BeverageBatch[] getBatches() {
+            return batches;
+        }
+    }
+
+    /**
+     * The throughput statistics of one stage.
+     */
+    public static class StageStats {
+        private String name;
+        private long processed;
+        private long busyNanos;
+        private int parallelism;
+
+        private StageStats(String name, long processed, long busyNanos, int parallelism) {
+            this.name = name;
+            this.processed = processed;
+            this.busyNanos = busyNanos;
+            this.parallelism = parallelism;
+        }
+
+        /**
+         * @return The name of the stage.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The number of worker threads of the stage.
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        /**
+         * @return The number of jobs the stage has processed.
+         */
+        public long getProcessed() {
+            return processed;
+        }
+
+        /**
+         * @return The average time the stage spent on a job, in microseconds.
+         */
+        public double getAverageMicros() {
+            return processed == 0 ? 0.0 : busyNanos / 1000.0 / processed;
+        }
+
+        /**
+         * @return The jobs per second the stage can sustain with all its workers busy.
+         */
+        public double getCapacityPerSecond() {
+            return busyNanos == 0 ? 0.0 : processed * parallelism * 1e9 / busyNanos;
+        }
+
+        /**
+         * Returns a string representation of the statistics.
+         *
+         * @return A string representation of the statistics.
+         */
+        @Override
+        public String toString() {
+            return String.format("%s: %d workers, %d jobs, %.1f us/job, capacity %.0f jobs/s", name, parallelism,
+                    processed, getAverageMicros(), getCapacityPerSecond());
+        }
+    }
+
+    /**
+     * One pipeline stage: a Flow processor that runs its step on its own worker threads and
+     * requests a new job from upstream only when it has finished one, keeping at most
+     * bufferSize jobs in flight. Failed jobs pass through without running the step.
+     */
+    private class Stage implements Flow.Processor<Job, Job> {
+        private String name;
+        private int parallelism;
+        private int bufferSize;
+        private Consumer<Job> step;
+        private ExecutorService workers;
+        private SubmissionPublisher<Job> output;
+        private Flow.Subscription upstream;
+        private LongAdder processed = new LongAdder();
+        private LongAdder busyNanos = new LongAdder();
+
+        Stage(String name, int parallelism, int bufferSize, Consumer<Job> step) {
+            this.name = name;
+            this.parallelism = parallelism;
+            this.bufferSize = bufferSize;
+            this.step = step;
+            this.workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "production-pipeline-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.output = new SubmissionPublisher<>(deliveryExecutor, bufferSize);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.upstream = subscription;
+            subscription.request(bufferSize);
+        }
+
+        @Override
+        public void onNext(Job job) {
+            workers.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    if (job.isSuccessful() && !job.abandoned) {
+                        step.accept(job);
+                    }
+                } catch (RuntimeException e) {
+                    releaseReserved(job);
+                    job.fail(name + " failed: " + e.getMessage());
+                } catch (Error e) {
+                    output.closeExceptionally(e);  // The stage cannot go on; downstream fails every pending job
+                    throw e;
+                }
+                busyNanos.add(System.nanoTime() - start);
+                processed.increment();
+                try {
+                    output.submit(job);  // Blocks while the next stage is full
+                } catch (IllegalStateException e) {
+                    return;  // The stage failed and was closed; the job's future is failed downstream
+                }
+                upstream.request(1);
+            });
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            workers.shutdown();
+            output.closeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            workers.shutdown();
+            try {
+                workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            output.close();
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Job> subscriber) {
+            output.subscribe(subscriber);
+        }
+    }
+
+    /**
+     * Completes each job's future as it leaves the last stage. If the stages fail, the futures
+     * of all jobs still in the pipeline are completed exceptionally instead.
+     */
+    private class CompletionSubscriber implements Flow.Subscriber<Job> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Job job) {
+            pending.remove(job);
+            if (pending.isEmpty()) {
+                reconcileLock.lock();  // Drained: bring the inventory up to date before the caller sees the job
+                try {
+                    reconcileIfDue(true);
+                } catch (IllegalStateException e) {
+                    job.completion.completeExceptionally(e);
+                    return;
+                } finally {
+                    reconcileLock.unlock();
+                }
+            }
+            job.completion.complete(job);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failPending(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            failPending(new IllegalStateException("Production pipeline closed before the job left it"));
+        }
+    }
+}
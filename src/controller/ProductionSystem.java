@@ -1,10 +1,22 @@
 package controller;
 
+import java.util.Arrays;
+import java.util.stream.IntStream;
 import model.BeverageBatch;
+import model.CompiledRecipe;
 import model.Container;
+import model.ContainerAssignment;
+import model.ContainerPlan;
+import model.FixedPoint;
+import model.IdempotencyCache;
 import model.Inventory;
+import model.ProductionOrder;
 import model.Recipe;
-import model.RecipeLibrary;
+import model.RecipeCatalog;
+import model.RecipeFeasibility;
+import model.StringFuncs;
+import model.SubstitutionRules;
+import model.Unit;
 import view.BreweryView;
 
 /**
@@ -14,48 +26,246 @@ import view.BreweryView;
 public class ProductionSystem {
     private BreweryView view;
     private Inventory inventory;
-    private RecipeLibrary recipeLibrary;
+    private RecipeCatalog recipeLibrary;
+    private ContainerPlanner containerPlanner;
+    private SubstitutionRules substitutionRules;
+    private IdempotencyCache<BeverageBatch[]> productionRequests;  // Results of keyed production requests
 
     /**
      * Constructs a ProductionSystem with the given inventory, recipe library, and view.
      * 
      * @param inventory The Inventory that manages ingredients and containers.
-     * @param recipeLibrary The RecipeLibrary that holds all recipes.
+     * @param recipeLibrary The RecipeCatalog that holds all recipes.
      * @param view The BreweryView for displaying messages to the user.
      */
-    public ProductionSystem(Inventory inventory, RecipeLibrary recipeLibrary, BreweryView view) {
+    public ProductionSystem(Inventory inventory, RecipeCatalog recipeLibrary, BreweryView view) {
         this.inventory = inventory;
         this.recipeLibrary = recipeLibrary;
         this.view = view;
+        this.containerPlanner = new ContainerPlanner();
+        this.substitutionRules = new SubstitutionRules();
+        this.productionRequests = new IdempotencyCache<>();
     }
 
     /**
-     * Produces a batch of a given recipe if sufficient ingredients are available and a clean container is present.
+     * Returns the ingredient substitution rules applied when a batch is short of an ingredient.
+     * Rules added to the returned object take effect for the next batch.
+     *
+     * @return The substitution rules.
+     */
+    public SubstitutionRules getSubstitutionRules() {
+        return substitutionRules;
+    }
+
+    /**
+     * Produces a batch of a given recipe if sufficient ingredients are available and enough clean
+     * container capacity is present. A batch larger than one container is split across several
+     * clean containers, and a finished batch is recorded for each container used.
      * 
      * @param recipeName The name of the recipe to produce.
      * @param batchSize The number of bottles to produce in the batch.
+     * @return true if the batch was produced, false if it was rejected.
+     */
+    public boolean produceBatch(String recipeName, int batchSize) {
+        return produce(recipeName, batchSize).length > 0;
+    }
+
+    /**
+     * Produces a batch like produceBatch(recipeName, batchSize), once per idempotency key.
+     * A retried request with the same key does not use ingredients or record batches again;
+     * it returns the batches the original request recorded. A request that produced nothing,
+     * for example for lack of stock, is not remembered, so a retry after restocking runs again.
+     *
+     * @param requestKey The idempotency key of the request.
+     * @param recipeName The name of the recipe to produce.
+     * @param batchSize The number of bottles to produce in the batch.
+     * @return The finished batches the original request recorded, empty if it failed.
+     * @throws IllegalArgumentException if the key was already used for a different request.
      */
-    public void produceBatch(String recipeName, int batchSize) {
+    public BeverageBatch[] produceBatchOnce(String requestKey, String recipeName, int batchSize) {
+        boolean[] ran = new boolean[1];
+        String fingerprint = IdempotencyCache.fingerprint("produceBatch", StringFuncs.customToLowerCase(recipeName),
+                batchSize);
+        BeverageBatch[] batches = productionRequests.execute(requestKey, fingerprint, () -> {
+            ran[0] = true;
+            return produce(recipeName, batchSize);
+        }, produced -> produced.length > 0);
+        if (!ran[0]) {
+            view.displayMessage("Request " + requestKey + " was already processed; returning its original result.");
+        }
+        return batches.clone();
+    }
+
+    /**
+     * Produces a batch, as described for produceBatch(recipeName, batchSize).
+     *
+     * @param recipeName The name of the recipe to produce.
+     * @param batchSize The number of bottles to produce in the batch.
+     * @return The finished batches recorded, one per container, or an empty array if none were.
+     */
+    private BeverageBatch[] produce(String recipeName, int batchSize) {
         Recipe recipe = recipeLibrary.getRecipe(recipeName);
-        Container cleanContainer = inventory.getCleanContainer();
-        if (cleanContainer == null) {
+        if (recipe == null) {
+            view.displayMessage("Recipe '" + recipeName + "' not found.");
+            return new BeverageBatch[0];
+        }
+        if (batchSize <= 0) {
+            view.displayMessage("Batch size must be positive.");
+            return new BeverageBatch[0];
+        }
+        if (!canRecordBatches(recipe)) {
+            return new BeverageBatch[0];
+        }
+        Container[] cleanContainers = inventory.getCleanContainers();
+        if (cleanContainers.length == 0) {
             view.displayMessage("No clean containers available. Please clean containers before producing the batch.");
-            return;
+            return new BeverageBatch[0];
         }
 
+        ContainerPlan plan = containerPlanner.plan(
+                new ProductionOrder[] { new ProductionOrder(recipe.getName(), batchSize) }, cleanContainers);
+        if (!plan.isComplete()) {
+            view.displayMessage("Not enough clean container capacity for " + batchSize
+                    + " bottles. Please clean containers before producing the batch.");
+            return new BeverageBatch[0];
+        }
+
+        recipe = applySubstitutions(recipe, batchSize);
         if (canProduceBatch(recipe, batchSize)) {
             view.displayMessage("Producing batch of " + recipe.getName() + "...");
 
             if (inventory.useIngredients(recipe, batchSize)) {
-                BeverageBatch newBatch = new BeverageBatch(recipe.getName(), batchSize);
-
-                inventory.markContainerAsDirty(cleanContainer.getId());
-                inventory.addFinishedBatch(newBatch);
-                view.displayMessage("Batch produced successfully. Container " + cleanContainer.getId() + " is now dirty.");
+                return recordAssignments(recipe, plan.getAssignments());
             }
         } else {
             view.displayMessage("Failed to produce batch due to insufficient ingredients.");
         }
+        return new BeverageBatch[0];
+    }
+
+    /**
+     * Plans a set of orders across the clean containers without producing anything.
+     * Orders for the same recipe are combined and large orders are split across containers.
+     *
+     * @param orders The orders to plan.
+     * @return The plan of container assignments.
+     */
+    public ContainerPlan planOrders(ProductionOrder[] orders) {
+        return containerPlanner.plan(orders, inventory.getCleanContainers());
+    }
+
+    /**
+     * Produces a set of orders, combining orders for the same recipe into shared containers and
+     * splitting large orders across containers. Each recipe is produced only if it fits in the
+     * clean containers and its ingredients are available.
+     *
+     * @param orders The orders to produce.
+     * @return The plan that was carried out; recipes that could not be placed are listed as unplanned.
+     */
+    public ContainerPlan produceOrders(ProductionOrder[] orders) {
+        ContainerPlan plan = planOrders(orders);
+        ContainerAssignment[] assignments = plan.getAssignments();
+        for (String unplanned : plan.getUnplannedRecipes()) {
+            view.displayMessage("Not enough clean container capacity for " + unplanned + ".");
+        }
+
+        // Assignments of one recipe are contiguous in the plan
+        int start = 0;
+        while (start < assignments.length) {
+            int end = start;
+            int total = 0;
+            while (end < assignments.length && StringFuncs.customStringEquals(
+                    assignments[end].getRecipeName(), assignments[start].getRecipeName())) {
+                total += assignments[end].getBottles();
+                end++;
+            }
+
+            Recipe recipe = recipeLibrary.getRecipe(assignments[start].getRecipeName());
+            if (recipe != null) {
+                recipe = applySubstitutions(recipe, total);
+            }
+            if (recipe == null) {
+                view.displayMessage("Recipe '" + assignments[start].getRecipeName() + "' not found.");
+            } else if (!canRecordBatches(recipe)) {
+                // The reason was reported; nothing was used
+            } else if (canProduceBatch(recipe, total) && inventory.useIngredients(recipe, total)) {
+                ContainerAssignment[] group = new ContainerAssignment[end - start];
+                for (int i = start; i < end; i++) {
+                    group[i - start] = assignments[i];
+                }
+                recordAssignments(recipe, group);
+            } else {
+                view.displayMessage("Failed to produce " + recipe.getName() + " due to insufficient ingredients.");
+            }
+            start = end;
+        }
+        return plan;
+    }
+
+    /**
+     * Replaces the ingredients a batch is short of with substitutes from the substitution rules,
+     * reporting each substitution made. If the stock covers the recipe as written, or no
+     * substitution can cover it, the recipe is returned unchanged.
+     *
+     * @param recipe    The recipe to produce.
+     * @param batchSize The number of bottles to produce.
+     * @return The recipe to brew: the given recipe, or an immutable copy with substitute lines.
+     */
+    private Recipe applySubstitutions(Recipe recipe, int batchSize) {
+        if (substitutionRules.isEmpty()) {
+            return recipe;
+        }
+        Recipe resolved = substitutionRules.resolve(recipe, batchSize, inventory);
+        if (resolved == null || resolved == recipe) {
+            return recipe;
+        }
+
+        String[] originalNames = recipe.getIngredientNames();
+        String[] resolvedNames = resolved.getIngredientNames();
+        for (int i = 0; i < originalNames.length; i++) {
+            if (!originalNames[i].equals(resolvedNames[i])) {
+                view.displayMessage("Substituting " + resolvedNames[i] + " for " + originalNames[i] + ".");
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Checks that the inventory can record finished batches of a recipe, reporting why not, so
+     * a batch is rejected before its ingredients are used.
+     *
+     * @param recipe The recipe to produce.
+     * @return true if batches of the recipe can be recorded.
+     */
+    private boolean canRecordBatches(Recipe recipe) {
+        try {
+            inventory.checkName(recipe.getName());
+            return true;
+        } catch (IllegalArgumentException e) {
+            view.displayMessage("Cannot produce " + recipe.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Marks the containers of a produced batch as dirty and records a finished batch for each.
+     *
+     * @param recipe      The recipe that was produced.
+     * @param assignments The containers the batch was brewed in.
+     * @return The finished batches recorded, one per container.
+     */
+    private BeverageBatch[] recordAssignments(Recipe recipe, ContainerAssignment[] assignments) {
+        BeverageBatch[] batches = new BeverageBatch[assignments.length];
+        for (int i = 0; i < assignments.length; i++) {
+            ContainerAssignment assignment = assignments[i];
+            batches[i] = new BeverageBatch(recipe.getName(), assignment.getBottles(), recipe.getVersion());
+            inventory.markContainerAsDirty(assignment.getContainer().getId());
+            inventory.addFinishedBatch(batches[i]);
+            view.displayMessage("Batch produced successfully. Container " + assignment.getContainer().getId()
+                    + " holds " + assignment.getBottles() + " of " + assignment.getContainer().getCapacity()
+                    + " bottles and is now dirty.");
+        }
+        return batches;
     }
 
     /**
@@ -75,19 +285,97 @@ public class ProductionSystem {
      */
     public boolean canProduceBatch(Recipe recipe, int batchSize) {
         String[] ingredientNames = recipe.getIngredientNames();
-        double[] ingredientQuantities = recipe.getIngredientQuantities();
+        long[] ingredientQuantities = recipe.getFixedIngredientQuantities();
+        Unit[] ingredientUnits = recipe.getIngredientUnits();
 
         for (int i = 0; i < ingredientNames.length; i++) {
             String ingredient = ingredientNames[i];
-            double requiredQuantity = ingredientQuantities[i] * batchSize;
-            double availableQuantity = inventory.getIngredientQuantity(ingredient);
+            long requiredQuantity = FixedPoint.multiplySaturated(ingredientQuantities[i], batchSize);
+            long availableQuantity = inventory.getIngredientFixedQuantity(ingredient);
+            Unit stockUnit = inventory.getIngredientUnit(ingredient);
 
+            if (requiredQuantity > 0 && stockUnit != null && !ingredientUnits[i].isCompatibleWith(stockUnit)) {
+                view.displayMessage("Incompatible unit for ingredient: " + ingredient);
+                view.displayMessage("Recipe uses " + ingredientUnits[i] + ", stock is held in " + stockUnit);
+                return false;
+            }
             if (availableQuantity < requiredQuantity) {
                 view.displayMessage("Insufficient ingredient: " + ingredient);
-                view.displayMessage("Required: " + requiredQuantity + ", Available: " + availableQuantity);
+                view.displayMessage("Required: " + FixedPoint.toDouble(requiredQuantity) + " " + ingredientUnits[i]
+                        + ", Available: " + FixedPoint.toDouble(availableQuantity) + " " + ingredientUnits[i]);
                 return false;
             }
         }
         return true;
     }
+
+    /**
+     * Checks every recipe in the library against one snapshot of the inventory and
+     * returns the largest batch size each recipe can be produced at, ranked from the
+     * largest batch size to the smallest. Recipes that use no ingredients are not limited by the
+     * stock and are listed last. Nothing is printed and the inventory is not changed.
+     *
+     * @return The feasibility results for all recipes, ranked by largest batch size.
+     */
+    public RecipeFeasibility[] evaluateRecipeFeasibility() {
+        // Snapshot the stock once into a primitive array, and resolve where each recipe line sits
+        // in it on this thread; the positions are cached per compiled recipe, so this only looks
+        // names up for recipes that are new or when the inventory has gained ingredients. Both
+        // happen under the inventory's monitor, so no ingredient added in between can yield a
+        // position past the end of the snapshot
+        CompiledRecipe[] recipes = recipeLibrary.getCompiledRecipes(recipeLibrary.getAllRecipes());
+        long[] available;
+        int[][] stockIndices = new int[recipes.length][];
+        synchronized (inventory) {
+            available = inventory.getIngredientFixedQuantities();
+            for (int r = 0; r < recipes.length; r++) {
+                stockIndices[r] = recipes[r].getStockIndices(inventory);
+            }
+        }
+
+        RecipeFeasibility[] results = new RecipeFeasibility[recipes.length];
+        IntStream.range(0, recipes.length).parallel()
+                .forEach(r -> results[r] = evaluateFeasibility(recipes[r], stockIndices[r], available));
+
+        Arrays.sort(results, (a, b) -> a.isLimitedByIngredients() != b.isLimitedByIngredients()
+                ? Boolean.compare(b.isLimitedByIngredients(), a.isLimitedByIngredients())
+                : Integer.compare(b.getMaxBatchSize(), a.getMaxBatchSize()));
+        return results;
+    }
+
+    /**
+     * Computes the largest batch size of one recipe that the given stock snapshot can cover.
+     *
+     * @param recipe       The compiled recipe to evaluate.
+     * @param stockIndices The position of each ingredient line in the available array, or -1 if
+     *                     the ingredient is not stocked in a compatible unit. A position past the
+     *                     end of the array counts as not stocked.
+     * @param available    The available fixed-point quantity of each ingredient in the snapshot.
+     * @return The feasibility result for the recipe.
+     */
+    private RecipeFeasibility evaluateFeasibility(CompiledRecipe recipe, int[] stockIndices, long[] available) {
+        String[] ingredientNames = recipe.getIngredientNames();
+        long[] ingredientQuantities = recipe.getFixedQuantities();
+
+        int maxBatchSize = Integer.MAX_VALUE;
+        String limitingIngredient = null;
+        for (int i = 0; i < ingredientNames.length; i++) {
+            long perBottle = ingredientQuantities[i];
+            if (perBottle <= 0) {
+                continue;  // Ingredient does not limit the batch size
+            }
+
+            int index = stockIndices[i];
+            long availableQuantity = index >= 0 && index < available.length ? available[index] : 0L;
+            int batchSize = (int) Math.min(availableQuantity / perBottle, Integer.MAX_VALUE);
+            if (limitingIngredient == null || batchSize < maxBatchSize) {
+                maxBatchSize = batchSize;
+                limitingIngredient = ingredientNames[i];
+            }
+        }
+        if (limitingIngredient == null) {
+            return new RecipeFeasibility(recipe.getRecipe().getName());  // No ingredient limits it
+        }
+        return new RecipeFeasibility(recipe.getRecipe().getName(), maxBatchSize, limitingIngredient);
+    }
 }
@@ -0,0 +1,127 @@
+package controller;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import model.NameDictionary;
+import model.StringFuncs;
+import view.BreweryView;
+
+/**
+ * Hosts many isolated brewery contexts (tenants) in one process, such as one per
+ * contract-brewing client. Each tenant has its own inventory, containers and recipes;
+ * all tenants share one worker pool and one dictionary of recipe and ingredient names,
+ * so an idle tenant costs only its own small arrays and no threads.
+ */
+public class TenantRegistry {
+    private BreweryView view;
+    private NameDictionary names;
+    private ConcurrentHashMap<String, BreweryTenant> tenants;  // Keyed by lowercase id
+    private ExecutorService executor;
+
+    /**
+     * Constructs an empty TenantRegistry with one worker thread per processor.
+     *
+     * @param view The view production messages of every tenant are shown on.
+     */
+    public TenantRegistry(BreweryView view) {
+        this(view, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an empty TenantRegistry.
+     *
+     * @param view    The view production messages of every tenant are shown on.
+     * @param threads The number of worker threads shared by all tenants.
+     */
+    public TenantRegistry(BreweryView view, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        this.view = view;
+        this.names = new NameDictionary();
+        this.tenants = new ConcurrentHashMap<>();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tenant-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns a tenant, creating it with an empty inventory and recipe library if it is new.
+     *
+     * @param id The id of the tenant, matched ignoring case.
+     * @return The tenant.
+     */
+    public BreweryTenant getOrCreateTenant(String id) {
+        if (id == null || id.isBlank()) {
+            throw new IllegalArgumentException("Tenant id cannot be blank.");
+        }
+        return tenants.computeIfAbsent(StringFuncs.customToLowerCase(id), key -> new BreweryTenant(id, names, view));
+    }
+
+    /**
+     * Retrieves a tenant by id.
+     *
+     * @param id The id of the tenant, matched ignoring case.
+     * @return The tenant, or null if there is none.
+     */
+    public BreweryTenant getTenant(String id) {
+        return id == null ? null : tenants.get(StringFuncs.customToLowerCase(id));
+    }
+
+    /**
+     * Removes a tenant and all of its data. Names it used stay in the shared dictionary.
+     *
+     * @param id The id of the tenant, matched ignoring case.
+     * @return The removed tenant, or null if there was none.
+     */
+    public BreweryTenant removeTenant(String id) {
+        return id == null ? null : tenants.remove(StringFuncs.customToLowerCase(id));
+    }
+
+    /**
+     * @return The number of tenants hosted.
+     */
+    public int getTenantCount() {
+        return tenants.size();
+    }
+
+    /**
+     * @return The dictionary of names shared by all tenants.
+     */
+    public NameDictionary getNameDictionary() {
+        return names;
+    }
+
+    /**
+     * Runs a task against one tenant on the shared worker pool. Tasks of the same tenant
+     * run one at a time under the tenant's lock; tasks of different tenants run in parallel.
+     *
+     * @param id   The id of the tenant, created if it is new.
+     * @param task The task to run.
+     * @param <T>  The type of the task's result.
+     * @return A future completed with the task's result, or exceptionally if the task throws.
+     */
+    public <T> CompletableFuture<T> submit(String id, Function<BreweryTenant, T> task) {
+        BreweryTenant tenant = getOrCreateTenant(id);
+        return CompletableFuture.supplyAsync(() -> {
+            tenant.getLock().lock();
+            try {
+                return task.apply(tenant);
+            } finally {
+                tenant.getLock().unlock();
+            }
+        }, executor);
+    }
+
+    /**
+     * Stops the shared worker pool after the tasks already submitted have run.
+     */
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -1,20 +1,89 @@
 package main;
 
 import controller.BreweryController;
+import java.io.IOException;
+import model.DemandForecaster;
+import model.InMemoryInventoryStore;
 import model.Inventory;
+import model.InventoryEventBus;
+import model.InventoryEventFileSink;
+import model.InventoryStore;
+import model.MappedFileInventoryStore;
+import model.RecipeCatalog;
 import model.RecipeLibrary;
+import model.TieredRecipeLibrary;
 import view.BreweryView;
+import view.TraceRecordingView;
 
 /**
  * The entry point of the Brewery Application.
  * Initializes the inventory, recipe library, view, and controller, then starts the application.
+ * Inventory changes are published on an event bus that feeds demand forecasting.
+ * Options:
+ * {@code --events <file>} appends every inventory change to the given file;
+ * {@code --store <path>} keeps stock and finished batches in memory-mapped files at the given path;
+ * {@code --recipes <path>} keeps the recipe library in files at the given path, with only recently
+ * used recipes held in memory;
+ * {@code --record <file>} writes every menu choice and prompt answer to a trace file that
+ * {@code main.LoadGenerator --replay <file>} can replay.
  */
 public class BreweryApp {
-    public static void main(String[] args) {
-        Inventory inventory = new Inventory();
-        RecipeLibrary recipeLibrary = new RecipeLibrary();
-        BreweryView view = new BreweryView();
+    public static void main(String[] args) throws IOException {
+        String eventFile = optionValue(args, "--events");
+        String storePath = optionValue(args, "--store");
+        String recordPath = optionValue(args, "--record");
+        String recipePath = optionValue(args, "--recipes");
+
+        InventoryStore store = storePath == null ? new InMemoryInventoryStore() : new MappedFileInventoryStore(storePath);
+        Inventory inventory = new Inventory(store);
+        TieredRecipeLibrary tieredLibrary = recipePath == null ? null
+                : new TieredRecipeLibrary(recipePath, TieredRecipeLibrary.DEFAULT_MAX_RESIDENT_BYTES);
+        RecipeCatalog recipeLibrary = tieredLibrary == null ? new RecipeLibrary() : tieredLibrary;
+        TraceRecordingView recordingView = recordPath == null ? null : new TraceRecordingView(recordPath);
+        BreweryView view = recordingView == null ? new BreweryView() : recordingView;
+
+        InventoryEventBus eventBus = new InventoryEventBus(1024);
+        inventory.setEventBus(eventBus);
+        DemandForecaster demandForecaster = new DemandForecaster(inventory, eventBus, 7.0);
+        demandForecaster.start();
+
+        InventoryEventFileSink eventSink = null;
+        if (eventFile != null) {
+            eventSink = new InventoryEventFileSink(eventBus, eventFile);
+            eventSink.start();
+        }
+
         BreweryController controller = new BreweryController(view, inventory, recipeLibrary);
+        controller.setDemandForecaster(demandForecaster);
         controller.start();
+
+        demandForecaster.stop();
+
+        if (eventSink != null) {
+            eventSink.close();
+        }
+        store.close();
+        if (tieredLibrary != null) {
+            tieredLibrary.close();
+        }
+        if (recordingView != null) {
+            recordingView.close();
+        }
+    }
+
+    /**
+     * Returns the value following an option in the command-line arguments.
+     *
+     * @param args   The command-line arguments.
+     * @param option The option to look for, such as "--events".
+     * @return The value of the option, or null if the option is not given.
+     */
+    private static String optionValue(String[] args, String option) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,199 @@
+package main;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import model.BreweryCodec;
+import model.FixedPoint;
+import model.Ingredient;
+import model.Recipe;
+import model.Unit;
+
+/**
+ * Compares the size and speed of BreweryCodec with Java serialization on the same recipes.
+ * Java serialization writes each recipe as an Object[] of its name, version, bottle count and,
+ * per line, the ingredient name, unit symbol and fixed-point quantity, which are the fields the
+ * codec writes. Each format encodes and decodes the whole set many times after a warm-up, and
+ * the average time per round and the message size are printed.
+ * Usage: {@code java main.CodecBenchmark [--recipes n] [--lines n] [--rounds n] [--seed n]}.
+ */
+public class CodecBenchmark {
+    private static final Unit[] UNITS = { Unit.GRAM, Unit.KILOGRAM, Unit.MILLILITRE, Unit.LITRE, Unit.UNIT };
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        int recipes = Integer.parseInt(optionValue(args, "--recipes", "1000"));
+        int lines = Integer.parseInt(optionValue(args, "--lines", "8"));
+        int rounds = Integer.parseInt(optionValue(args, "--rounds", "200"));
+        long seed = Long.parseLong(optionValue(args, "--seed", "42"));
+
+        Recipe[] library = buildRecipes(new Random(seed), recipes, lines);
+        byte[] codecMessage = encodeCodec(library);
+        byte[] serialMessage = encodeSerial(library);
+
+        long checksum = 0;
+        for (int i = 0; i < rounds; i++) {  // Warm-up, so both formats are measured compiled
+            checksum += decodeCodec(encodeCodec(library)) + decodeSerial(encodeSerial(library));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            checksum += encodeCodec(library).length;
+        }
+        long codecEncode = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            checksum += decodeCodec(codecMessage);
+        }
+        long codecDecode = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            checksum += encodeSerial(library).length;
+        }
+        long serialEncode = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            checksum += decodeSerial(serialMessage);
+        }
+        long serialDecode = System.nanoTime() - start;
+
+        System.out.println(recipes + " recipes of " + lines + " lines, " + rounds + " rounds (checksum "
+                + checksum + ")");
+        System.out.printf("%-20s %10s %12s %12s%n", "format", "bytes", "encode ms", "decode ms");
+        System.out.printf("%-20s %10d %12.3f %12.3f%n", "BreweryCodec", codecMessage.length,
+                codecEncode / 1e6 / rounds, codecDecode / 1e6 / rounds);
+        System.out.printf("%-20s %10d %12.3f %12.3f%n", "Java serialization", serialMessage.length,
+                serialEncode / 1e6 / rounds, serialDecode / 1e6 / rounds);
+    }
+
+    /**
+     * Builds random recipes whose lines draw on a shared pool of ingredient names.
+     *
+     * @param random  The random source.
+     * @param recipes The number of recipes.
+     * @param lines   The number of ingredient lines per recipe.
+     * @return The recipes.
+     */
+    private static Recipe[] buildRecipes(Random random, int recipes, int lines) {
+        Recipe[] library = new Recipe[recipes];
+        for (int r = 0; r < recipes; r++) {
+            Recipe recipe = new Recipe("Recipe " + r, 1 + random.nextInt(500));
+            for (int l = 0; l < lines; l++) {
+                Unit unit = UNITS[random.nextInt(UNITS.length)];
+                recipe.addIngredient("Ingredient " + random.nextInt(200), 1 + random.nextInt(10000) / 10.0, unit);
+            }
+            library[r] = recipe;
+        }
+        return library;
+    }
+
+    /**
+     * Encodes recipes with BreweryCodec.
+     *
+     * @param library The recipes.
+     * @return The message.
+     */
+    private static byte[] encodeCodec(Recipe[] library) {
+        BreweryCodec.Writer writer = new BreweryCodec.Writer();
+        for (Recipe recipe : library) {
+            writer.writeRecipe(recipe);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a BreweryCodec message of recipes.
+     *
+     * @param message The message.
+     * @return The number of ingredient lines decoded, so the work cannot be optimized away.
+     */
+    private static long decodeCodec(byte[] message) {
+        BreweryCodec.Reader reader = new BreweryCodec.Reader(ByteBuffer.wrap(message));
+        long lines = 0;
+        while (reader.hasNext()) {
+            lines += reader.readRecipe().getIngredients().length;
+        }
+        return lines;
+    }
+
+    /**
+     * Encodes the same fields as the codec with Java serialization.
+     *
+     * @param library The recipes.
+     * @return The serialized bytes.
+     * @throws IOException if serialization fails.
+     */
+    private static byte[] encodeSerial(Recipe[] library) throws IOException {
+        ArrayList<Object[]> records = new ArrayList<>(library.length);
+        for (Recipe recipe : library) {
+            Ingredient[] lines = recipe.getIngredients();
+            long[] quantities = recipe.getFixedIngredientQuantities();
+            Object[] record = new Object[3 + lines.length * 3];
+            record[0] = recipe.getName();
+            record[1] = recipe.getVersion();
+            record[2] = recipe.getNumberOfBottles();
+            for (int i = 0; i < lines.length; i++) {
+                record[3 + i * 3] = lines[i].getName();
+                record[4 + i * 3] = lines[i].getUnit().getSymbol();
+                record[5 + i * 3] = quantities[i];
+            }
+            records.add(record);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(records);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes Java-serialized recipes back into Recipe objects.
+     *
+     * @param message The serialized bytes.
+     * @return The number of ingredient lines decoded, so the work cannot be optimized away.
+     * @throws IOException            if deserialization fails.
+     * @throws ClassNotFoundException if a serialized class is missing.
+     */
+    private static long decodeSerial(byte[] message) throws IOException, ClassNotFoundException {
+        Object decoded;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(message))) {
+            decoded = in.readObject();
+        }
+        Map<String, Unit> units = new HashMap<>();  // Looked up once per symbol, as the codec does
+        long lines = 0;
+        for (Object item : (ArrayList<?>) decoded) {
+            Object[] record = (Object[]) item;
+            Recipe recipe = new Recipe((String) record[0], (Integer) record[2]);
+            for (int i = 3; i < record.length; i += 3) {
+                Unit unit = units.computeIfAbsent((String) record[i + 1], Unit::fromSymbol);
+                recipe.addIngredient((String) record[i], FixedPoint.toDouble((Long) record[i + 2])
+                        / unit.getFactorToBase(), unit);
+            }
+            lines += recipe.getIngredients().length;
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the value following an option in the command-line arguments.
+     *
+     * @param args         The command-line arguments.
+     * @param option       The option to look for, such as "--recipes".
+     * @param defaultValue The value to return if the option is not given.
+     * @return The value of the option, or the default.
+     */
+    private static String optionValue(String[] args, String option, String defaultValue) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
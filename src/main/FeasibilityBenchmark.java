@@ -0,0 +1,141 @@
+package main;
+
+import controller.ProductionSystem;
+import java.util.Random;
+import model.CompiledRecipe;
+import model.Inventory;
+import model.Recipe;
+import model.RecipeFeasibility;
+import model.RecipeLibrary;
+import model.Unit;
+import view.QuietBreweryView;
+
+/**
+ * Measures ProductionSystem.evaluateRecipeFeasibility on a large recipe catalog, with several
+ * inventories scanned in turn against the same catalog. The compiled cache has the default
+ * size of RecipeLibrary unless --cache-size is given, so by default it holds only a small part
+ * of the catalog and the scans rely on the cache's separate scan set. The report
+ * shows the first scan of every inventory, which compiles every recipe and resolves its stock
+ * positions, the average of the following scans, and a scan right after one inventory gains a
+ * new ingredient, which resolves that inventory's positions again. Each line gives the compiled
+ * cache hit rate and the stock position resolutions it measured, so a warm scan that is not
+ * actually served from the caches shows up as such. The last line checks that the scans left
+ * a recipe that production looked up in the compiled cache.
+ * Usage: {@code java main.FeasibilityBenchmark [--recipes n] [--ingredients n] [--lines n] [--scans n]
+ * [--inventories n] [--cache-size n] [--seed n]}.
+ */
+public class FeasibilityBenchmark {
+
+    public static void main(String[] args) {
+        int recipes = Integer.parseInt(optionValue(args, "--recipes", "100000"));
+        int ingredients = Integer.parseInt(optionValue(args, "--ingredients", "2000"));
+        int lines = Integer.parseInt(optionValue(args, "--lines", "8"));
+        int scans = Integer.parseInt(optionValue(args, "--scans", "20"));
+        int inventoryCount = Integer.parseInt(optionValue(args, "--inventories", "2"));
+        int cacheSize = Integer.parseInt(optionValue(args, "--cache-size", String.valueOf(RecipeLibrary.DEFAULT_CACHE_SIZE)));
+        Random random = new Random(Long.parseLong(optionValue(args, "--seed", "42")));
+
+        RecipeLibrary recipeLibrary = new RecipeLibrary(cacheSize, null);
+        for (int r = 0; r < recipes; r++) {
+            Recipe recipe = new Recipe("Recipe " + r, 1 + random.nextInt(100));
+            for (int l = 0; l < lines; l++) {
+                recipe.addIngredient("Ingredient " + random.nextInt(ingredients), 1 + random.nextInt(500), Unit.GRAM);
+            }
+            recipeLibrary.addRecipe(recipe);
+        }
+        Inventory[] inventories = new Inventory[inventoryCount];
+        ProductionSystem[] productionSystems = new ProductionSystem[inventoryCount];
+        for (int n = 0; n < inventoryCount; n++) {
+            inventories[n] = new Inventory();
+            for (int i = 0; i < ingredients; i++) {
+                inventories[n].addIngredient("Ingredient " + i, 1000 + random.nextInt(100000), Unit.GRAM);
+            }
+            productionSystems[n] = new ProductionSystem(inventories[n], recipeLibrary, new QuietBreweryView());
+        }
+
+        System.out.println(recipes + " recipes of " + lines + " lines over " + ingredients + " ingredients, "
+                + inventoryCount + " inventories scanned in turn, compiled cache of " + cacheSize + ", "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+
+        Recipe produced = recipeLibrary.getRecipe("Recipe 0");
+        CompiledRecipe producedCompiled = recipeLibrary.getCompiledRecipe(produced);  // As production would
+
+        Counters counters = new Counters(recipeLibrary);
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (ProductionSystem productionSystem : productionSystems) {
+            checksum += productionSystem.evaluateRecipeFeasibility().length;
+        }
+        long first = (System.nanoTime() - start) / inventoryCount;
+        counters.report("first scan", first, "average of " + inventoryCount + " inventories", recipes);
+
+        counters = new Counters(recipeLibrary);
+        start = System.nanoTime();
+        for (int i = 0; i < scans; i++) {
+            checksum += productionSystems[i % inventoryCount].evaluateRecipeFeasibility()[0].getMaxBatchSize();
+        }
+        long warm = (System.nanoTime() - start) / scans;
+        counters.report("warm scan", warm, "average of " + scans, recipes);
+
+        inventories[0].addIngredient("Ingredient " + ingredients, 1, Unit.GRAM);
+        counters = new Counters(recipeLibrary);
+        start = System.nanoTime();
+        checksum += productionSystems[0].evaluateRecipeFeasibility().length;
+        long refreshed = System.nanoTime() - start;
+        counters.report("after new stock", refreshed, "one inventory", recipes);
+        System.out.println("  production recipe still cached: "
+                + (recipeLibrary.getCompiledRecipe(produced) == producedCompiled) + " (checksum " + checksum + ")");
+    }
+
+    /**
+     * The cache counters at the start of a measurement.
+     */
+    private static class Counters {
+        private final RecipeLibrary recipeLibrary;
+        private final long hits;
+        private final long misses;
+        private final long resolutions;
+
+        Counters(RecipeLibrary recipeLibrary) {
+            this.recipeLibrary = recipeLibrary;
+            this.hits = recipeLibrary.getCompiledCacheHits();
+            this.misses = recipeLibrary.getCompiledCacheMisses();
+            this.resolutions = CompiledRecipe.getStockIndexResolutions();
+        }
+
+        /**
+         * Prints the time of one scan with the cache activity since these counters were taken.
+         *
+         * @param label   The name of the measurement.
+         * @param nanos   The time of one scan in nanoseconds.
+         * @param note    What the time is an average of.
+         * @param recipes The recipes per scan.
+         */
+        void report(String label, long nanos, String note, int recipes) {
+            long newHits = recipeLibrary.getCompiledCacheHits() - hits;
+            long newMisses = recipeLibrary.getCompiledCacheMisses() - misses;
+            long lookups = newHits + newMisses;
+            System.out.printf("  %-16s %8.1f ms (%s), %.0f recipes/s, compiled cache hit rate %.1f%%, "
+                    + "%d stock position resolutions%n", label, nanos / 1e6, note, recipes / (nanos / 1e9),
+                    lookups == 0 ? 0.0 : 100.0 * newHits / lookups,
+                    CompiledRecipe.getStockIndexResolutions() - resolutions);
+        }
+    }
+
+    /**
+     * Returns the value following an option in the command-line arguments.
+     *
+     * @param args         The command-line arguments.
+     * @param option       The option to look for, such as "--recipes".
+     * @param defaultValue The value to return if the option is not given.
+     * @return The value of the option, or the default.
+     */
+    private static String optionValue(String[] args, String option, String defaultValue) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,164 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Random;
+import model.FixedPoint;
+
+/**
+ * Compares the fixed-point stock arithmetic of Inventory with the same work done in doubles,
+ * which is how stock was kept before. Each batch checks that every ingredient line is covered
+ * and then deducts it, as useIngredients does: fixed-point lines use
+ * FixedPoint.multiplySaturated and long subtraction, double lines a multiplication and double
+ * subtraction. Recipe quantities have one decimal place, like most entered quantities. The
+ * report shows the time per batch of each variant and how far the double stock drifted from
+ * the exact fixed-point stock by the end.
+ * Usage: {@code java main.FixedPointBenchmark [--ingredients n] [--recipes n] [--lines n] [--batches n] [--seed n]}.
+ */
+public class FixedPointBenchmark {
+    private static final int ROUNDS = 6;  // Measured rounds of each variant
+    private static final double INITIAL_STOCK = 1e9;  // Base units of every ingredient, enough for every batch
+
+    public static void main(String[] args) {
+        int ingredients = Integer.parseInt(optionValue(args, "--ingredients", "1000"));
+        int recipes = Integer.parseInt(optionValue(args, "--recipes", "1000"));
+        int lines = Integer.parseInt(optionValue(args, "--lines", "8"));
+        int batches = Integer.parseInt(optionValue(args, "--batches", "5000000"));
+        Random random = new Random(Long.parseLong(optionValue(args, "--seed", "42")));
+
+        int[][] lineIngredients = new int[recipes][lines];
+        double[][] perBottle = new double[recipes][lines];
+        long[][] fixedPerBottle = new long[recipes][lines];
+        for (int r = 0; r < recipes; r++) {
+            for (int l = 0; l < lines; l++) {
+                lineIngredients[r][l] = random.nextInt(ingredients);
+                perBottle[r][l] = (1 + random.nextInt(500)) / 10.0;  // 0.1 to 50.0
+                fixedPerBottle[r][l] = FixedPoint.toFixed(perBottle[r][l]);
+            }
+        }
+        int[] orderRecipes = new int[batches];
+        int[] orderSizes = new int[batches];
+        for (int n = 0; n < batches; n++) {
+            orderRecipes[n] = random.nextInt(recipes);
+            orderSizes[n] = 1 + random.nextInt(100);
+        }
+
+        long[] fixedStock = new long[ingredients];
+        double[] doubleStock = new double[ingredients];
+        long fixedNanos = 0;
+        long doubleNanos = 0;
+        int produced = -1;
+        for (int round = 0; round <= ROUNDS; round++) {  // Round 0 is unmeasured, so the JIT has compiled both
+            Arrays.fill(fixedStock, FixedPoint.toFixed(INITIAL_STOCK));
+            Arrays.fill(doubleStock, INITIAL_STOCK);
+            for (int variant = 0; variant < 2; variant++) {
+                boolean fixed = (round + variant) % 2 == 0;  // Alternate which variant runs first
+                long start = System.nanoTime();
+                int count = fixed ? runFixed(fixedStock, lineIngredients, fixedPerBottle, orderRecipes, orderSizes)
+                        : runDouble(doubleStock, lineIngredients, perBottle, orderRecipes, orderSizes);
+                long elapsed = System.nanoTime() - start;
+                if (produced >= 0 && count != produced) {
+                    throw new IllegalStateException("The variants produced " + produced + " and " + count + " batches");
+                }
+                produced = count;
+                if (round > 0 && fixed) {
+                    fixedNanos += elapsed;
+                } else if (round > 0) {
+                    doubleNanos += elapsed;
+                }
+            }
+        }
+
+        int drifted = 0;
+        double maxError = 0.0;
+        for (int i = 0; i < ingredients; i++) {
+            double error = Math.abs(doubleStock[i] - FixedPoint.toDouble(fixedStock[i]));
+            if (error > 0) {
+                drifted++;
+                maxError = Math.max(maxError, error);
+            }
+        }
+
+        System.out.println(batches + " batches of " + lines + " lines over " + ingredients + " ingredients");
+        System.out.printf("  fixed point  %8.1f ns/batch%n", (double) fixedNanos / ROUNDS / batches);
+        System.out.printf("  double       %8.1f ns/batch%n", (double) doubleNanos / ROUNDS / batches);
+        System.out.printf("  double stock off by up to %.6f base units in %d of %d ingredients%n", maxError, drifted,
+                ingredients);
+    }
+
+    /**
+     * Checks and deducts every batch in fixed point.
+     *
+     * @param stock           The fixed-point stock of each ingredient.
+     * @param lineIngredients The ingredient of each line of each recipe.
+     * @param perBottle       The fixed-point quantity per bottle of each line of each recipe.
+     * @param orderRecipes    The recipe of each batch.
+     * @param orderSizes      The number of bottles of each batch.
+     * @return The number of batches produced.
+     */
+    private static int runFixed(long[] stock, int[][] lineIngredients, long[][] perBottle, int[] orderRecipes,
+            int[] orderSizes) {
+        int produced = 0;
+        for (int n = 0; n < orderRecipes.length; n++) {
+            int[] ingredients = lineIngredients[orderRecipes[n]];
+            long[] quantities = perBottle[orderRecipes[n]];
+            boolean covered = true;
+            for (int l = 0; l < ingredients.length && covered; l++) {
+                covered = stock[ingredients[l]] >= FixedPoint.multiplySaturated(quantities[l], orderSizes[n]);
+            }
+            if (covered) {
+                for (int l = 0; l < ingredients.length; l++) {
+                    stock[ingredients[l]] -= FixedPoint.multiplySaturated(quantities[l], orderSizes[n]);
+                }
+                produced++;
+            }
+        }
+        return produced;
+    }
+
+    /**
+     * Checks and deducts every batch in doubles.
+     *
+     * @param stock           The stock of each ingredient in base units.
+     * @param lineIngredients The ingredient of each line of each recipe.
+     * @param perBottle       The quantity per bottle of each line of each recipe, in base units.
+     * @param orderRecipes    The recipe of each batch.
+     * @param orderSizes      The number of bottles of each batch.
+     * @return The number of batches produced.
+     */
+    private static int runDouble(double[] stock, int[][] lineIngredients, double[][] perBottle, int[] orderRecipes,
+            int[] orderSizes) {
+        int produced = 0;
+        for (int n = 0; n < orderRecipes.length; n++) {
+            int[] ingredients = lineIngredients[orderRecipes[n]];
+            double[] quantities = perBottle[orderRecipes[n]];
+            boolean covered = true;
+            for (int l = 0; l < ingredients.length && covered; l++) {
+                covered = stock[ingredients[l]] >= quantities[l] * orderSizes[n];
+            }
+            if (covered) {
+                for (int l = 0; l < ingredients.length; l++) {
+                    stock[ingredients[l]] -= quantities[l] * orderSizes[n];
+                }
+                produced++;
+            }
+        }
+        return produced;
+    }
+
+    /**
+     * Returns the value following an option in the command-line arguments.
+     *
+     * @param args         The command-line arguments.
+     * @param option       The option to look for, such as "--batches".
+     * @param defaultValue The value to return if the option is not given.
+     * @return The value of the option, or the default.
+     */
+    private static String optionValue(String[] args, String option, String defaultValue) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,129 @@
+package main;
+
+import controller.ProductionPipeline;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import model.FixedPoint;
+import model.Inventory;
+import model.ProductionOrder;
+import model.Recipe;
+import model.RecipeLibrary;
+import model.Unit;
+
+/**
+ * Measures how the reserve stage of ProductionPipeline scales with its number of workers, with
+ * and without the hot ingredient cache. Every recipe uses only the hot ingredients, so with the
+ * cache the reserve stage admits each order without the inventory's monitor. For each worker count
+ * the report shows the pipeline's throughput and the reserve stage's time per job, which
+ * includes any time spent waiting for the inventory's monitor, and the share of hot deductions
+ * that took the lock-free path. The cache's margin is sized from the largest deduction an order
+ * can make, so the only deductions expected to take the ingredient's lock are those made while
+ * the stock is within twice the margin.
+ * Usage: {@code java main.HotIngredientBenchmark [--orders n] [--max-threads n] [--seed n]}.
+ */
+public class HotIngredientBenchmark {
+    private static final String[] HOT_INGREDIENTS = { "Pale Malt", "Water", "Yeast" };
+    private static final Unit[] HOT_UNITS = { Unit.KILOGRAM, Unit.LITRE, Unit.GRAM };
+    private static final int RECIPES = 16;
+    private static final int MAX_BATCH_SIZE = 10;
+    private static final int MAX_QUANTITY = 20;  // Largest per-bottle quantity of a line
+
+    public static void main(String[] args) {
+        int orders = Integer.parseInt(optionValue(args, "--orders", "100000"));
+        int maxThreads = Integer.parseInt(optionValue(args, "--max-threads", "32"));
+        long seed = Long.parseLong(optionValue(args, "--seed", "42"));
+
+        System.out.println(orders + " orders of " + RECIPES + " hot-only recipes, "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+        System.out.println("  threads   locked jobs/s  reserve us/job   cached jobs/s  reserve us/job  lock-free");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            run(seed, orders / 10, threads, false);  // Unmeasured, so the JIT has compiled both paths
+            run(seed, orders / 10, threads, true);
+            double[] locked = run(seed, orders, threads, false);
+            double[] cached = run(seed, orders, threads, true);
+            System.out.printf("  %7d  %14.0f  %14.2f  %14.0f  %14.2f  %8.1f%%%n", threads, locked[0], locked[1],
+                    cached[0], cached[1], cached[2]);
+        }
+    }
+
+    /**
+     * Runs a stream of orders through a fresh pipeline.
+     *
+     * @param seed    The random seed of the order stream.
+     * @param orders  The number of orders.
+     * @param threads The number of workers per stage.
+     * @param cached  Whether the reserve stage uses the hot ingredient cache.
+     * @return The jobs per second of the whole pipeline, the reserve stage's microseconds per job and
+     *         the percentage of hot deductions that took the lock-free path.
+     */
+    private static double[] run(long seed, int orders, int threads, boolean cached) {
+        Random random = new Random(seed);
+        Inventory inventory = new Inventory();
+        long stock = (long) orders * MAX_BATCH_SIZE * MAX_QUANTITY;  // Enough for every order
+        for (int i = 0; i < HOT_INGREDIENTS.length; i++) {
+            inventory.addIngredient(HOT_INGREDIENTS[i], stock, HOT_UNITS[i]);
+        }
+        RecipeLibrary recipeLibrary = new RecipeLibrary();
+        for (int r = 0; r < RECIPES; r++) {
+            Recipe recipe = new Recipe("Recipe " + r, MAX_BATCH_SIZE);
+            for (int i = 0; i < HOT_INGREDIENTS.length; i++) {
+                recipe.addIngredient(HOT_INGREDIENTS[i], 1 + random.nextInt(MAX_QUANTITY), HOT_UNITS[i]);
+            }
+            recipeLibrary.addRecipe(recipe);
+        }
+
+        ProductionPipeline pipeline = new ProductionPipeline(inventory, recipeLibrary, threads, 64, 10_000);
+        if (cached) {
+            double largest = 0;  // In base units, where a kilogram line deducts 1000 times a gram line
+            for (Unit unit : HOT_UNITS) {
+                largest = Math.max(largest, unit.toBase((double) MAX_BATCH_SIZE * MAX_QUANTITY));
+            }
+            pipeline.enableHotIngredientCache(HOT_INGREDIENTS, FixedPoint.toFixed(largest));
+        }
+
+        CompletableFuture<?>[] completions = new CompletableFuture<?>[orders];
+        LongAdder failed = new LongAdder();
+        long start = System.nanoTime();
+        for (int n = 0; n < orders; n++) {
+            ProductionOrder order = new ProductionOrder("Recipe " + random.nextInt(RECIPES),
+                    1 + random.nextInt(MAX_BATCH_SIZE));
+            completions[n] = pipeline.submit(order).thenAccept(job -> {
+                pipeline.cleanContainers();
+                if (!job.isSuccessful()) {
+                    failed.increment();
+                }
+            });
+        }
+        CompletableFuture.allOf(completions).join();
+        long elapsed = System.nanoTime() - start;
+        if (failed.sum() > 0) {  // The run would have measured the fail-fast path instead
+            throw new IllegalStateException(failed.sum() + " of " + orders + " orders failed");
+        }
+        pipeline.close();
+        long lockedDeductions = pipeline.getLockedHotDeductions();
+        pipeline.disableHotIngredientCache();
+
+        long deductions = (long) orders * HOT_INGREDIENTS.length;
+        ProductionPipeline.StageStats reserve = pipeline.getStageStats()[1];
+        return new double[] { orders / (elapsed / 1e9), reserve.getAverageMicros(),
+                cached ? 100.0 * (deductions - lockedDeductions) / deductions : 0.0 };
+    }
+
+    /**
+     * Returns the value following an option in the command-line arguments.
+     *
+     * @param args         The command-line arguments.
+     * @param option       The option to look for, such as "--orders".
+     * @param defaultValue The value to return if the option is not given.
+     * @return The value of the option, or the default.
+     */
+    private static String optionValue(String[] args, String option, String defaultValue) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,113 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicLong;
+import model.IdempotencyCache;
+
+/**
+ * Measures what idempotency keys add to a request: building the request fingerprint, running
+ * a request under a new key (which remembers it and evicts the oldest entry once the cache is
+ * full), and answering a retried request from the cache, on one thread and on several.
+ * The request itself is an increment, so the times are the cache's own cost.
+ * Usage: {@code java main.IdempotencyBenchmark [--requests n] [--capacity n] [--threads n]}.
+ */
+public class IdempotencyBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int requests = Integer.parseInt(optionValue(args, "--requests", "1000000"));
+        int capacity = Integer.parseInt(optionValue(args, "--capacity", String.valueOf(IdempotencyCache.DEFAULT_CAPACITY)));
+        int threads = Integer.parseInt(optionValue(args, "--threads", "4"));
+
+        String[] keys = new String[requests];
+        for (int n = 0; n < requests; n++) {
+            keys[n] = "request-" + n;
+        }
+        System.out.println(requests + " requests, capacity " + capacity + ", " + threads + " threads for the shared run");
+        for (int round = 0; round < 2; round++) {  // The first round is unmeasured, so the JIT has compiled the cache
+            run(keys, capacity, threads, round == 1);
+        }
+    }
+
+    /**
+     * Runs every measurement once and prints the times if asked.
+     *
+     * @param keys     The idempotency keys, one per request.
+     * @param capacity The capacity of the cache.
+     * @param threads  The number of threads retrying requests at once.
+     * @param report   Whether to print the times.
+     * @throws InterruptedException if interrupted while waiting for the threads.
+     */
+    private static void run(String[] keys, int capacity, int threads, boolean report) throws InterruptedException {
+        AtomicLong counter = new AtomicLong();
+        String fingerprint = IdempotencyCache.fingerprint("produceBatch", "pale ale", 24);
+
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int n = 0; n < keys.length; n++) {
+            checksum += IdempotencyCache.fingerprint("produceBatch", "pale ale", n & 1023).length();
+        }
+        long fingerprints = System.nanoTime() - start;
+
+        IdempotencyCache<Long> cache = new IdempotencyCache<>(capacity, IdempotencyCache.DEFAULT_TTL_MILLIS);
+        start = System.nanoTime();
+        for (String key : keys) {
+            checksum += cache.execute(key, fingerprint, counter::incrementAndGet);
+        }
+        long newKeys = System.nanoTime() - start;
+
+        // Retries of the requests still remembered, the last capacity keys
+        int first = Math.max(0, keys.length - capacity);
+        int retries = 0;
+        start = System.nanoTime();
+        while (retries < keys.length) {
+            for (int n = first; n < keys.length && retries < keys.length; n++, retries++) {
+                checksum += cache.execute(keys[n], fingerprint, counter::incrementAndGet);
+            }
+        }
+        long hits = System.nanoTime() - start;
+
+        Thread[] workers = new Thread[threads];
+        long[] sums = new long[threads];
+        start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> {
+                long sum = 0;
+                for (int n = worker; n < keys.length; n += threads) {
+                    sum += cache.execute(keys[first + n % (keys.length - first)], fingerprint, counter::incrementAndGet);
+                }
+                sums[worker] = sum;
+            });
+            workers[t].start();
+        }
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            checksum += sums[t];
+        }
+        long shared = System.nanoTime() - start;
+
+        if (report) {
+            System.out.printf("  fingerprint       %8.0f ns%n", (double) fingerprints / keys.length);
+            System.out.printf("  new key           %8.0f ns (remembered %d)%n", (double) newKeys / keys.length, cache.size());
+            System.out.printf("  retried key       %8.0f ns%n", (double) hits / retries);
+            System.out.printf("  retried, shared   %8.0f ns per request, %.1f million requests/s (checksum %d, %d runs)%n",
+                    (double) shared / keys.length, keys.length / (shared / 1e3), checksum, counter.get());
+        }
+    }
+
+    /**
+     * Returns the value following an option in the command-line arguments.
+     *
+     * @param args         The command-line arguments.
+     * @param option       The option to look for, such as "--requests".
+     * @param defaultValue The value to return if the option is not given.
+     * @return The value of the option, or the default.
+     */
+    private static String optionValue(String[] args, String option, String defaultValue) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,476 @@
+package main;
+
+import controller.BreweryController;
+import controller.MultiSiteProductionSystem;
+import controller.ProductionPipeline;
+import controller.ProductionSystem;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import model.InMemoryInventoryStore;
+import model.Ingredient;
+import model.Inventory;
+import model.InventoryStore;
+import model.LoadReport;
+import model.MappedFileInventoryStore;
+import model.ProductionOrder;
+import model.Recipe;
+import model.RecipeLibrary;
+import model.Unit;
+import view.CommandTrace;
+import view.QuietBreweryView;
+import view.TraceReplayView;
+
+/**
+ * Drives the production system with reproducible load and reports throughput, latency
+ * percentiles and allocation per operation.
+ * Synthetic mode builds a random inventory, recipe library and order stream from a seed;
+ * recipe popularity and ingredient use follow Zipf distributions, so a few recipes get
+ * most orders. Replay mode feeds a trace recorded with {@code BreweryApp --record <file>}
+ * through the controller at a scaled rate. With {@code --store <path>} the synthetic inventory is
+ * kept in a MappedFileInventoryStore at the given path instead of in memory, so both stores can be
+ * compared on the same workload. With {@code --pipeline <n>} the orders go through a
+ * ProductionPipeline with n workers per stage instead of a ProductionSystem, and the throughput
+ * of each stage is printed as well; {@code --pipeline <a,b,c,d,e>} gives each stage its own
+ * number of workers, in the order of ProductionPipeline.STAGE_NAMES. With {@code --sites <n>} the orders go through a
+ * MultiSiteProductionSystem of n sites, one brewing thread per site, with each ingredient stocked
+ * at a single site, so most batches move stock between sites.
+ * Usage:
+ * {@code java main.LoadGenerator [--seed n] [--orders n] [--warmup n] [--recipes n] [--ingredients n] [--zipf s] [--store path] [--pipeline n|a,b,c,d,e] [--sites n]}
+ * or {@code java main.LoadGenerator --replay <trace> [--speed x]}.
+ */
+public class LoadGenerator {
+    private static final Unit[] UNITS = { Unit.GRAM, Unit.MILLILITRE, Unit.UNIT };
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_LINE_QUANTITY = 500;  // Largest per-bottle quantity of a recipe line
+    private static final int PIPELINE_BUFFER_SIZE = 256;
+    private static final long PIPELINE_CONTAINER_WAIT_MILLIS = 1000;
+
+    public static void main(String[] args) throws IOException {
+        String tracePath = optionValue(args, "--replay", null);
+        if (tracePath != null) {
+            replay(tracePath, Double.parseDouble(optionValue(args, "--speed", "0")));
+            return;
+        }
+
+        long seed = Long.parseLong(optionValue(args, "--seed", "42"));
+        int orders = Integer.parseInt(optionValue(args, "--orders", "100000"));
+        int warmup = Integer.parseInt(optionValue(args, "--warmup", "10000"));
+        int recipes = Integer.parseInt(optionValue(args, "--recipes", "50"));
+        int ingredients = Integer.parseInt(optionValue(args, "--ingredients", "200"));
+        double skew = Double.parseDouble(optionValue(args, "--zipf", "1.1"));
+        String storePath = optionValue(args, "--store", null);
+        int[] pipelineParallelism = stageWorkers(optionValue(args, "--pipeline", "0"));
+        int siteCount = Integer.parseInt(optionValue(args, "--sites", "0"));
+        if (siteCount > 0) {
+            System.out.println(runSites(seed, orders, warmup, recipes, ingredients, skew, siteCount));
+            return;
+        }
+        try (InventoryStore store = storePath == null ? new InMemoryInventoryStore()
+                : new MappedFileInventoryStore(storePath)) {
+            System.out.println(pipelineParallelism != null
+                    ? runPipeline(seed, orders, warmup, recipes, ingredients, skew, store, pipelineParallelism)
+                    : runSynthetic(seed, orders, warmup, recipes, ingredients, skew, store));
+        }
+    }
+
+    /**
+     * Builds a synthetic workload from a seed and runs its orders through a ProductionSystem.
+     * The same arguments always produce the same inventory, recipes and orders.
+     *
+     * @param seed        The random seed.
+     * @param orders      The number of measured orders.
+     * @param warmup      The number of unmeasured orders run first so the JIT has compiled the hot paths.
+     * @param recipes     The number of recipes.
+     * @param ingredients The number of ingredients.
+     * @param skew        The Zipf exponent of recipe and ingredient popularity.
+     * @return The report of the measured orders.
+     */
+    public static LoadReport runSynthetic(long seed, int orders, int warmup, int recipes, int ingredients,
+            double skew) {
+        return runSynthetic(seed, orders, warmup, recipes, ingredients, skew, new InMemoryInventoryStore());
+    }
+
+    /**
+     * Builds a synthetic workload from a seed, like runSynthetic(seed, orders, warmup, recipes,
+     * ingredients, skew), with the inventory kept in the given store.
+     *
+     * @param seed        The random seed.
+     * @param orders      The number of measured orders.
+     * @param warmup      The number of unmeasured orders run first so the JIT has compiled the hot paths.
+     * @param recipes     The number of recipes.
+     * @param ingredients The number of ingredients.
+     * @param skew        The Zipf exponent of recipe and ingredient popularity.
+     * @param store       The store that holds the inventory's stock and finished batches.
+     * @return The report of the measured orders.
+     */
+    public static LoadReport runSynthetic(long seed, int orders, int warmup, int recipes, int ingredients,
+            double skew, InventoryStore store) {
+        Workload workload = new Workload(seed, recipes, ingredients, skew, store, warmup + orders);
+        Inventory inventory = workload.inventory;
+        QuietBreweryView view = new QuietBreweryView();
+        ProductionSystem productionSystem = new ProductionSystem(inventory, workload.recipeLibrary, view);
+        LoadReport report = new LoadReport(workload.describe("synthetic"));
+
+        for (int n = 0; n < warmup + orders; n++) {
+            ProductionOrder order = workload.nextOrder();
+            inventory.markContainerAsClean();  // Container turnover is not part of the measured operation
+
+            if (n == warmup) {
+                report.start();
+            }
+            long allocatedBefore = LoadReport.threadAllocatedBytes();
+            long start = System.nanoTime();
+            boolean produced = productionSystem.produceBatch(order.getRecipeName(), order.getBatchSize());
+            long latency = System.nanoTime() - start;
+            long allocatedAfter = LoadReport.threadAllocatedBytes();
+            if (n >= warmup) {
+                report.record(latency, allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore, produced);
+            }
+        }
+        report.stop();
+        return report;
+    }
+
+    /**
+     * Runs the synthetic workload of runSynthetic through a ProductionPipeline instead of a
+     * ProductionSystem, submitting orders as fast as the first stage accepts them. Latency is
+     * the time from submitting an order until its job leaves the pipeline; allocation is not
+     * measured, because the work runs on the stages' threads. The per-stage statistics are
+     * printed after the run.
+     *
+     * @param seed        The random seed.
+     * @param orders      The number of measured orders.
+     * @param warmup      The number of unmeasured orders run first so the JIT has compiled the hot paths.
+     * @param recipes     The number of recipes.
+     * @param ingredients The number of ingredients.
+     * @param skew        The Zipf exponent of recipe and ingredient popularity.
+     * @param store       The store that holds the inventory's stock and finished batches.
+     * @param parallelism The number of worker threads of each stage, in pipeline order.
+     * @return The report of the measured orders.
+     */
+    public static LoadReport runPipeline(long seed, int orders, int warmup, int recipes, int ingredients,
+            double skew, InventoryStore store, int[] parallelism) {
+        Workload workload = new Workload(seed, recipes, ingredients, skew, store, warmup + orders);
+        ProductionPipeline pipeline = new ProductionPipeline(workload.inventory, workload.recipeLibrary,
+                parallelism, PIPELINE_BUFFER_SIZE, PIPELINE_CONTAINER_WAIT_MILLIS);
+        LoadReport report = new LoadReport(workload.describe("pipeline x" + Arrays.toString(parallelism)));
+
+        CompletableFuture<?> warmedUp = submitAll(pipeline, workload, warmup, null);
+        warmedUp.join();
+        report.start();
+        CompletableFuture<?> measured = submitAll(pipeline, workload, orders, report);
+        measured.join();
+        report.stop();
+        pipeline.close();
+        for (ProductionPipeline.StageStats stage : pipeline.getStageStats()) {
+            System.out.println("  stage " + stage);
+        }
+        return report;
+    }
+
+    /**
+     * Submits orders of a workload to a pipeline, cleaning the containers as each job leaves
+     * it, since container turnover is not part of the measured operation.
+     *
+     * @param pipeline The pipeline to submit to.
+     * @param workload The workload to draw orders from.
+     * @param orders   The number of orders to submit.
+     * @param report   The report to record each order's latency in, or null to not record.
+     * @return A future completed once every submitted job has left the pipeline.
+     */
+    private static CompletableFuture<?> submitAll(ProductionPipeline pipeline, Workload workload, int orders,
+            LoadReport report) {
+        CompletableFuture<?>[] completions = new CompletableFuture<?>[orders];
+        for (int n = 0; n < orders; n++) {
+            long start = System.nanoTime();
+            completions[n] = pipeline.submit(workload.nextOrder()).handle((job, failure) -> {
+                long latency = System.nanoTime() - start;
+                pipeline.cleanContainers();
+                if (report != null) {
+                    synchronized (report) {
+                        report.record(latency, -1, failure == null && job.isSuccessful());
+                    }
+                }
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(completions);
+    }
+
+    /**
+     * Runs the synthetic workload of runSynthetic through a MultiSiteProductionSystem. Each
+     * ingredient is stocked at one site only, chosen round-robin, so a batch usually needs stock
+     * moved in from other sites. Orders are dealt round-robin to the sites, and every site brews
+     * its orders on its own thread, so reservations between sites contend as they would between
+     * nodes. Allocation is not measured, because the work runs on several threads.
+     *
+     * @param seed        The random seed.
+     * @param orders      The number of measured orders.
+     * @param warmup      The number of unmeasured orders run first so the JIT has compiled the hot paths.
+     * @param recipes     The number of recipes.
+     * @param ingredients The number of ingredients.
+     * @param skew        The Zipf exponent of recipe and ingredient popularity.
+     * @param siteCount   The number of sites.
+     * @return The report of the measured orders.
+     */
+    public static LoadReport runSites(long seed, int orders, int warmup, int recipes, int ingredients,
+            double skew, int siteCount) {
+        Workload workload = new Workload(seed, recipes, ingredients, skew, new InMemoryInventoryStore(),
+                warmup + orders);
+        MultiSiteProductionSystem system = new MultiSiteProductionSystem(new QuietBreweryView());
+        String[] siteNames = new String[siteCount];
+        for (int s = 0; s < siteCount; s++) {
+            siteNames[s] = "Site-" + (s + 1);
+            system.addSite(siteNames[s]);
+        }
+        Ingredient[] stocked = workload.inventory.getIngredients();
+        long[] amounts = workload.inventory.getIngredientFixedQuantities();
+        for (int i = 0; i < stocked.length; i++) {
+            system.getSite(siteNames[i % siteCount]).getInventory()
+                    .addIngredientFixedQuantity(stocked[i].getName(), amounts[i], stocked[i].getUnit());
+        }
+        for (Recipe recipe : workload.recipeLibrary.getAllRecipes()) {
+            system.addRecipe(recipe);
+        }
+        LoadReport report = new LoadReport(workload.describe(siteCount + " sites"));
+
+        runOnSites(system, siteNames, workload, warmup, null);
+        report.start();
+        runOnSites(system, siteNames, workload, orders, report);
+        report.stop();
+        return report;
+    }
+
+    /**
+     * Draws orders from a workload, deals them round-robin to the sites, and brews every site's
+     * orders on its own thread, cleaning the site's containers before each order, since
+     * container turnover is not part of the measured operation.
+     *
+     * @param system    The multi-site production system.
+     * @param siteNames The names of the sites.
+     * @param workload  The workload to draw orders from.
+     * @param orders    The number of orders to run.
+     * @param report    The report to record each order's latency in, or null to not record.
+     */
+    private static void runOnSites(MultiSiteProductionSystem system, String[] siteNames, Workload workload,
+            int orders, LoadReport report) {
+        ProductionOrder[] drawn = new ProductionOrder[orders];
+        for (int n = 0; n < orders; n++) {
+            drawn[n] = workload.nextOrder();
+        }
+        Thread[] threads = new Thread[siteNames.length];
+        for (int s = 0; s < siteNames.length; s++) {
+            String siteName = siteNames[s];
+            int first = s;
+            threads[s] = new Thread(() -> {
+                Inventory inventory = system.getSite(siteName).getInventory();
+                for (int n = first; n < drawn.length; n += siteNames.length) {
+                    inventory.markContainerAsClean();
+                    long start = System.nanoTime();
+                    boolean produced = system.produceBatch(siteName, drawn[n].getRecipeName(), drawn[n].getBatchSize());
+                    long latency = System.nanoTime() - start;
+                    if (report != null) {
+                        synchronized (report) {
+                            report.record(latency, -1, produced);
+                        }
+                    }
+                }
+            }, siteName);
+            threads[s].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replays a recorded trace through a fresh controller and prints the report.
+     *
+     * @param tracePath The path of the trace file.
+     * @param speed     The replay rate relative to the recording, or 0 for no pauses.
+     * @throws IOException if the trace cannot be read.
+     */
+    private static void replay(String tracePath, double speed) throws IOException {
+        CommandTrace trace = CommandTrace.load(tracePath);
+        LoadReport report = new LoadReport("replay of " + tracePath + (speed == 0 ? " (unpaced)" : " at " + speed + "x"));
+        TraceReplayView view = new TraceReplayView(trace, speed, report);
+        BreweryController controller = new BreweryController(view, new Inventory(), new RecipeLibrary());
+        controller.start();
+        System.out.println(report);
+    }
+
+    /**
+     * Computes the cumulative distribution of a Zipf distribution over ranks 1 to n, where
+     * rank k has a weight of 1 / k^skew.
+     *
+     * @param n    The number of ranks.
+     * @param skew The Zipf exponent.
+     * @return The cumulative probability of each rank, ending at 1.
+     */
+    private static double[] zipfCumulative(int n, double skew) {
+        double[] cumulative = new double[n];
+        double total = 0.0;
+        for (int k = 0; k < n; k++) {
+            total += 1.0 / Math.pow(k + 1, skew);
+            cumulative[k] = total;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Draws an index from a cumulative distribution by binary search.
+     *
+     * @param cumulative The cumulative probability of each index.
+     * @param random     The random source.
+     * @return The drawn index.
+     */
+    private static int sample(double[] cumulative, Random random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < u) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Parses the --pipeline option: one worker count for every stage, or one per stage
+     * separated by commas.
+     *
+     * @param value The option value.
+     * @return The worker count of each stage, or null if the pipeline is not used (a count of 0).
+     * @throws IllegalArgumentException if a list does not give one count per stage.
+     */
+    private static int[] stageWorkers(String value) {
+        String[] parts = value.split(",");
+        int[] workers = new int[ProductionPipeline.STAGE_NAMES.length];
+        if (parts.length == 1) {
+            int count = Integer.parseInt(parts[0].trim());
+            if (count <= 0) {
+                return null;
+            }
+            Arrays.fill(workers, count);
+            return workers;
+        }
+        if (parts.length != workers.length) {
+            throw new IllegalArgumentException("--pipeline takes one worker count or " + workers.length
+                    + ", one per stage: " + String.join(", ", ProductionPipeline.STAGE_NAMES));
+        }
+        for (int i = 0; i < parts.length; i++) {
+            workers[i] = Integer.parseInt(parts[i].trim());
+        }
+        return workers;
+    }
+
+    /**
+     * Returns the value following an option in the command-line arguments.
+     *
+     * @param args         The command-line arguments.
+     * @param option       The option to look for, such as "--seed".
+     * @param defaultValue The value to use if the option is not given.
+     * @return The value of the option, or the default.
+     */
+    private static String optionValue(String[] args, String option, String defaultValue) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * A synthetic inventory, recipe library and order stream built from a seed. The same
+     * arguments always produce the same inventory, recipes and orders.
+     */
+    private static class Workload {
+        private Random random;
+        private double skew;
+        private Inventory inventory;
+        private RecipeLibrary recipeLibrary;
+        private String[] recipeNames;
+        private double[] recipePopularity;
+        private String description;
+
+        /**
+         * Builds the inventory and recipe library of a workload.
+         *
+         * @param seed        The random seed.
+         * @param recipes     The number of recipes.
+         * @param ingredients The number of ingredients.
+         * @param skew        The Zipf exponent of recipe and ingredient popularity.
+         * @param store       The store that holds the inventory's stock and finished batches.
+         * @param orders      The number of orders the workload will draw, which the stock is sized for.
+         */
+        Workload(long seed, int recipes, int ingredients, double skew, InventoryStore store, int orders) {
+            this.random = new Random(seed);
+            this.skew = skew;
+            this.inventory = new Inventory(store);
+            String[] ingredientNames = new String[ingredients];
+            Unit[] ingredientUnits = new Unit[ingredients];
+            // Enough of every ingredient for every order to use it at the largest batch size and
+            // quantity, so no order fails for lack of stock and the run never measures the rejection path
+            double stock = (double) orders * MAX_BATCH_SIZE * MAX_LINE_QUANTITY;
+            for (int i = 0; i < ingredients; i++) {
+                ingredientNames[i] = String.format("Ingredient-%04d", i);
+                ingredientUnits[i] = UNITS[random.nextInt(UNITS.length)];
+                inventory.addIngredient(ingredientNames[i], stock, ingredientUnits[i]);
+            }
+
+            double[] ingredientPopularity = zipfCumulative(ingredients, skew);
+            this.recipeLibrary = new RecipeLibrary();
+            this.recipeNames = new String[recipes];
+            for (int r = 0; r < recipes; r++) {
+                recipeNames[r] = String.format("Recipe-%04d", r);
+                Recipe recipe = new Recipe(recipeNames[r], 1 + random.nextInt(MAX_BATCH_SIZE));
+                boolean[] used = new boolean[ingredients];
+                int lines = Math.min(ingredients, 2 + random.nextInt(7));
+                for (int line = 0; line < lines; line++) {
+                    int i = sample(ingredientPopularity, random);
+                    while (used[i]) {
+                        i = (i + 1) % ingredients;
+                    }
+                    used[i] = true;
+                    recipe.addIngredient(ingredientNames[i], 1 + random.nextInt(MAX_LINE_QUANTITY), ingredientUnits[i]);
+                }
+                recipeLibrary.addRecipe(recipe);
+            }
+            this.recipePopularity = zipfCumulative(recipes, skew);
+            this.description = "seed " + seed + ", " + recipes + " recipes, " + ingredients + " ingredients";
+        }
+
+        /**
+         * Draws the next order of the stream.
+         *
+         * @return The order.
+         */
+        ProductionOrder nextOrder() {
+            String recipeName = recipeNames[sample(recipePopularity, random)];
+            return new ProductionOrder(recipeName, 1 + random.nextInt(MAX_BATCH_SIZE));
+        }
+
+        /**
+         * @param mode The way the orders are run.
+         * @return The name of a report on this workload.
+         */
+        String describe(String mode) {
+            return mode + " (" + description + ", zipf " + skew + ")";
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import model.BeverageBatch;
+import model.InMemoryInventoryStore;
+import model.InventoryStore;
+import model.MappedFileInventoryStore;
+import model.Unit;
+
+/**
+ * Compares the two InventoryStore implementations on the operations Inventory performs:
+ * adding ingredients, looking them up by name, changing amounts and appending batches, plus
+ * reopening the memory-mapped store, which rebuilds its name index from the file.
+ * Usage: {@code java main.StoreBenchmark [--ingredients n] [--updates n] [--batches n] [--seed n]}.
+ */
+public class StoreBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int ingredients = Integer.parseInt(optionValue(args, "--ingredients", "10000"));
+        int updates = Integer.parseInt(optionValue(args, "--updates", "5000000"));
+        int batches = Integer.parseInt(optionValue(args, "--batches", "100000"));
+        long seed = Long.parseLong(optionValue(args, "--seed", "42"));
+        Path directory = Files.createTempDirectory("store-benchmark");
+
+        System.out.println(ingredients + " ingredients, " + updates + " lookups and updates, " + batches + " batches");
+        for (int round = 0; round < 2; round++) {  // The first round is unmeasured, so the JIT has compiled both stores
+            boolean report = round == 1;
+            try (InventoryStore store = new InMemoryInventoryStore()) {
+                run("in memory", store, ingredients, updates, batches, seed, report);
+            }
+            String baseName = directory.resolve("round-" + round).toString();
+            try (InventoryStore store = new MappedFileInventoryStore(baseName)) {
+                run("mapped file", store, ingredients, updates, batches, seed, report);
+            }
+            long start = System.nanoTime();
+            try (InventoryStore store = new MappedFileInventoryStore(baseName)) {
+                if (report) {
+                    System.out.printf("  %-12s reopen %8.1f ms (%d ingredients, %d batches)%n", "mapped file",
+                            (System.nanoTime() - start) / 1e6, store.size(), store.getBatchCount());
+                }
+            }
+            Files.delete(directory.resolve("round-" + round + ".ingredients"));
+            Files.delete(directory.resolve("round-" + round + ".batches"));
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Runs the operations against one store and prints their times.
+     *
+     * @param label       The name of the store, for the report.
+     * @param store       A new, empty store.
+     * @param ingredients The number of ingredients to add.
+     * @param updates     The number of name lookups, each followed by an amount change.
+     * @param batches     The number of batches to append.
+     * @param seed        The random seed of the lookups.
+     * @param report      Whether to print the times.
+     */
+    private static void run(String label, InventoryStore store, int ingredients, int updates, int batches, long seed,
+            boolean report) {
+        String[] names = new String[ingredients];
+        for (int i = 0; i < ingredients; i++) {
+            names[i] = String.format("Ingredient-%05d", i);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ingredients; i++) {
+            store.add(names[i], 1_000_000L, Unit.GRAM);
+        }
+        long added = System.nanoTime() - start;
+
+        Random random = new Random(seed);
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int n = 0; n < updates; n++) {
+            int index = store.indexOf(names[random.nextInt(ingredients)]);
+            store.addAmount(index, (n & 1) == 0 ? -7 : 7);
+            checksum += store.getAmount(index);
+        }
+        long updated = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int n = 0; n < batches; n++) {
+            store.addBatch(new BeverageBatch(names[n % ingredients], 1 + n % 100, 1));
+        }
+        long appended = System.nanoTime() - start;
+
+        if (report) {
+            System.out.printf("  %-12s add %8.0f ns, lookup+update %8.0f ns, batch %8.0f ns (checksum %d)%n", label,
+                    (double) added / ingredients, (double) updated / updates, (double) appended / batches, checksum);
+        }
+    }
+
+    /**
+     * Returns the value following an option in the command-line arguments.
+     *
+     * @param args         The command-line arguments.
+     * @param option       The option to look for, such as "--updates".
+     * @param defaultValue The value to return if the option is not given.
+     * @return The value of the option, or the default.
+     */
+    private static String optionValue(String[] args, String option, String defaultValue) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,100 @@
+package main;
+
+import controller.BreweryTenant;
+import controller.TenantRegistry;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import model.Recipe;
+import model.Unit;
+import view.QuietBreweryView;
+
+/**
+ * Measures the heap each tenant of a TenantRegistry retains, first empty and then with a small
+ * catalog of stock, recipes and one produced batch, all tenants using the same names.
+ * Retained heap is the used heap after a full collection, before and after the tenants exist,
+ * divided by the number of tenants; run with a fixed heap (for example -Xms512m -Xmx512m) for
+ * steadier figures.
+ * Usage: {@code java main.TenantBenchmark [--tenants n] [--ingredients n] [--recipes n] [--lines n]}.
+ */
+public class TenantBenchmark {
+
+    public static void main(String[] args) {
+        int tenants = Integer.parseInt(optionValue(args, "--tenants", "5000"));
+        int ingredients = Integer.parseInt(optionValue(args, "--ingredients", "10"));
+        int recipes = Integer.parseInt(optionValue(args, "--recipes", "3"));
+        int lines = Math.min(ingredients, Integer.parseInt(optionValue(args, "--lines", "4")));
+
+        String[] ingredientNames = new String[ingredients];
+        for (int i = 0; i < ingredients; i++) {
+            ingredientNames[i] = "Ingredient-" + i;
+        }
+        TenantRegistry registry = new TenantRegistry(new QuietBreweryView(), 1);
+        long baseline = usedHeapAfterGc();
+
+        BreweryTenant[] hosted = new BreweryTenant[tenants];
+        for (int t = 0; t < tenants; t++) {
+            hosted[t] = registry.getOrCreateTenant("tenant-" + t);
+        }
+        long empty = usedHeapAfterGc();
+
+        for (BreweryTenant tenant : hosted) {
+            for (int i = 0; i < ingredients; i++) {
+                // A fresh String per tenant, as names arrive from each client's own input
+                tenant.getInventory().addIngredient(new String(ingredientNames[i]), 1_000_000, Unit.GRAM);
+            }
+            for (int r = 0; r < recipes; r++) {
+                Recipe recipe = new Recipe("Recipe-" + r, 1);
+                for (int line = 0; line < lines; line++) {
+                    recipe.addIngredient(new String(ingredientNames[(r + line) % ingredients]), 10, Unit.GRAM);
+                }
+                tenant.getRecipeLibrary().addRecipe(recipe);
+            }
+            tenant.getProductionSystem().produceBatch("Recipe-0", 10);
+        }
+        long populated = usedHeapAfterGc();
+
+        System.out.println(tenants + " tenants, each with " + ingredients + " ingredients, " + recipes + " recipes of "
+                + lines + " lines and one batch");
+        System.out.printf("  empty tenant      %8.0f bytes retained%n", (double) (empty - baseline) / tenants);
+        System.out.printf("  populated tenant  %8.0f bytes retained%n", (double) (populated - baseline) / tenants);
+        System.out.println("  shared names      " + registry.getNameDictionary().size() + " in the dictionary, "
+                + registry.getTenantCount() + " tenants hosted");
+        registry.close();
+    }
+
+    /**
+     * Collects garbage until the used heap stops shrinking and returns it.
+     *
+     * @return The used heap in bytes.
+     */
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < 10; attempt++) {
+            System.gc();
+            long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     * Returns the value following an option in the command-line arguments.
+     *
+     * @param args         The command-line arguments.
+     * @param option       The option to look for, such as "--tenants".
+     * @param defaultValue The value to return if the option is not given.
+     * @return The value of the option, or the default.
+     */
+    private static String optionValue(String[] args, String option, String defaultValue) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -1,11 +1,14 @@
 package model;
 
 /**
- * Represents a batch of a beverage with a name and size.
+ * Represents a batch of a beverage with a name and size, the version of the
+ * recipe it was brewed from, and the time it was recorded as finished.
  */
 public class BeverageBatch {
     private String name;
     private int size;
+    private int recipeVersion;
+    private long completedAtMillis;  // Epoch milliseconds, set when the inventory records the batch
 
     /**
      * Constructs a BeverageBatch with a specified name and size.
@@ -14,8 +17,33 @@ public class BeverageBatch {
      * @param size The size of the beverage batch.
      */
     public BeverageBatch(String name, int size) {
+        this(name, size, 0);
+    }
+
+    /**
+     * Constructs a BeverageBatch brewed from a specific recipe version.
+     *
+     * @param name The name of the beverage batch.
+     * @param size The size of the beverage batch.
+     * @param recipeVersion The version of the recipe the batch was brewed from, or 0 if unknown.
+     */
+    public BeverageBatch(String name, int size, int recipeVersion) {
+        this(name, size, recipeVersion, 0);
+    }
+
+    /**
+     * Constructs a BeverageBatch with a known completion time, such as one read back from a store.
+     *
+     * @param name The name of the beverage batch.
+     * @param size The size of the beverage batch.
+     * @param recipeVersion The version of the recipe the batch was brewed from, or 0 if unknown.
+     * @param completedAtMillis The time the batch was recorded, in epoch milliseconds, or 0 if not yet recorded.
+     */
+    public BeverageBatch(String name, int size, int recipeVersion, long completedAtMillis) {
         this.name = name;
         this.size = size;
+        this.recipeVersion = recipeVersion;
+        this.completedAtMillis = completedAtMillis;
     }
 
     public String getName() {
@@ -28,4 +56,29 @@ public class BeverageBatch {
     public int getSize() {
         return size;
     }
+
+    /**
+     * @return The version of the recipe the batch was brewed from, or 0 if unknown.
+     */
+    public int getRecipeVersion() {
+        return recipeVersion;
+    }
+
+    /**
+     * @return The time the batch was recorded as finished, in epoch milliseconds, or 0 if not yet recorded.
+     */
+    public long getCompletedAtMillis() {
+        return completedAtMillis;
+    }
+
+    /**
+     * Sets the time the batch was recorded as finished, if it has none yet.
+     *
+     * @param millis The time in epoch milliseconds.
+     */
+    void markCompleted(long millis) {
+        if (completedAtMillis == 0) {
+            completedAtMillis = millis;
+        }
+    }
 }
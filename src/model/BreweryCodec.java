@@ -0,0 +1,498 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact binary format for recipes, ingredients, beverage batches and containers.
+ * <p>
+ * A message is a header, a dictionary of every name used, and a sequence of records.
+ * Records refer to names by their dictionary index, and all integers are written as
+ * variable-length integers (signed values zigzag encoded), so typical records take a
+ * handful of bytes. Quantities are written as the exact fixed-point values the inventory
+ * arithmetic uses (thousandths of the base unit), so decoding never loses precision, and units
+ * are written by symbol through the dictionary, so reordering the Unit enum cannot corrupt a message.
+ * <p>
+ * Layout: magic (4 bytes), format version (1 byte), varint name count, each name as
+ * varint length and UTF-8 bytes, then records, each starting with a one-byte record type.
+ * <p>
+ * The Reader checks every length, index and record type against the message before using it,
+ * so truncated or corrupt input always fails with an IllegalArgumentException, never with a
+ * buffer or array exception.
+ */
+public class BreweryCodec {
+    private static final int MAGIC = 0x42524557;  // "BREW"
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * The kind of a record in a message.
+     */
+    public enum RecordType {
+        RECIPE, INGREDIENT, BATCH, CONTAINER
+    }
+
+    /**
+     * Encodes records into a message. Names are collected into the dictionary as records
+     * are written, and the message is assembled by writeTo.
+     */
+    public static class Writer {
+        private Map<String, Integer> dictionary = new HashMap<>();
+        private String[] names = new String[16];
+        private int nameCount;
+        private byte[] body = new byte[256];
+        private int bodySize;
+
+        /**
+         * Writes a recipe with its version, bottle count and ingredient lines. Each line is
+         * written as its fixed-point base quantity and the unit it was entered in.
+         *
+         * @param recipe The recipe to write.
+         */
+        public void writeRecipe(Recipe recipe) {
+            Ingredient[] lines = recipe.getIngredients();
+            long[] fixedQuantities = recipe.getFixedIngredientQuantities();
+            writeByte(RecordType.RECIPE.ordinal());
+            writeVarint(nameRef(recipe.getName()));
+            writeVarint(recipe.getVersion());
+            writeVarint(zigzag(recipe.getNumberOfBottles()));
+            writeVarint(lines.length);
+            for (int i = 0; i < lines.length; i++) {
+                writeVarint(nameRef(lines[i].getName()));
+                writeVarint(nameRef(lines[i].getUnit().getSymbol()));
+                writeVarint(zigzag(fixedQuantities[i]));
+            }
+        }
+
+        /**
+         * Writes an ingredient with its quantity and unit.
+         *
+         * @param ingredient The ingredient to write.
+         */
+        public void writeIngredient(Ingredient ingredient) {
+            writeByte(RecordType.INGREDIENT.ordinal());
+            writeVarint(nameRef(ingredient.getName()));
+            writeVarint(nameRef(ingredient.getUnit().getSymbol()));
+            writeVarint(zigzag(FixedPoint.toFixed(ingredient.getUnit().toBase(ingredient.getQuantity()))));
+        }
+
+        /**
+         * Writes a finished beverage batch.
+         *
+         * @param batch The batch to write.
+         */
+        public void writeBatch(BeverageBatch batch) {
+            writeByte(RecordType.BATCH.ordinal());
+            writeVarint(nameRef(batch.getName()));
+            writeVarint(zigzag(batch.getSize()));
+            writeVarint(batch.getRecipeVersion());
+            writeVarint(batch.getCompletedAtMillis());
+        }
+
+        /**
+         * Writes a container with its capacity and whether it is dirty.
+         *
+         * @param container The container to write.
+         */
+        public void writeContainer(Container container) {
+            writeByte(RecordType.CONTAINER.ordinal());
+            writeVarint(nameRef(container.getId()));
+            writeVarint(container.getCapacity());
+            writeByte(container.isDirty() ? 1 : 0);
+        }
+
+        /**
+         * Writes the whole state of an inventory: stock, containers and finished batches.
+         *
+         * @param inventory The inventory to write.
+         */
+        public void writeInventory(Inventory inventory) {
+            for (Ingredient ingredient : inventory.getIngredients()) {
+                writeIngredient(ingredient);
+            }
+            for (Container container : inventory.getContainers()) {
+                writeContainer(container);
+            }
+            for (BeverageBatch batch : inventory.getFinishedBatches()) {
+                writeBatch(batch);
+            }
+        }
+
+        /**
+         * Returns the size of the complete message in bytes.
+         *
+         * @return The encoded size.
+         */
+        public int encodedSize() {
+            int size = 5 + varintSize(nameCount);
+            for (int i = 0; i < nameCount; i++) {
+                int length = names[i].getBytes(StandardCharsets.UTF_8).length;
+                size += varintSize(length) + length;
+            }
+            return size + bodySize;
+        }
+
+        /**
+         * Writes the complete message into the buffer at its current position.
+         *
+         * @param out The buffer to write to, with at least encodedSize bytes remaining.
+         */
+        public void writeTo(ByteBuffer out) {
+            out.putInt(MAGIC);
+            out.put((byte) FORMAT_VERSION);
+            putVarint(out, nameCount);
+            for (int i = 0; i < nameCount; i++) {
+                byte[] bytes = names[i].getBytes(StandardCharsets.UTF_8);
+                putVarint(out, bytes.length);
+                out.put(bytes);
+            }
+            out.put(body, 0, bodySize);
+        }
+
+        /**
+         * Returns the complete message as a byte array.
+         *
+         * @return The encoded message.
+         */
+        public byte[] toByteArray() {
+            byte[] message = new byte[encodedSize()];
+            writeTo(ByteBuffer.wrap(message));
+            return message;
+        }
+
+        /**
+         * Returns the dictionary index of a name, adding it to the dictionary if it is new.
+         */
+        private int nameRef(String name) {
+            Integer ref = dictionary.get(name);
+            if (ref != null) {
+                return ref;
+            }
+            if (nameCount == names.length) {
+                String[] newNames = new String[names.length * 2];
+                for (int i = 0; i < nameCount; i++) {
+                    newNames[i] = names[i];
+                }
+                names = newNames;
+            }
+            names[nameCount] = name;
+            dictionary.put(name, nameCount);
+            return nameCount++;
+        }
+
+        /**
+         * Appends one byte to the record body, growing the body if needed.
+         */
+        private void writeByte(int value) {
+            if (bodySize == body.length) {
+                byte[] newBody = new byte[body.length * 2];
+                System.arraycopy(body, 0, newBody, 0, bodySize);
+                body = newBody;
+            }
+            body[bodySize++] = (byte) value;
+        }
+
+        /**
+         * Appends a variable-length integer to the record body, seven bits per byte.
+         */
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+    }
+
+    /**
+     * Decodes a message directly from a ByteBuffer without copying it. Record fields are read
+     * in place, and each dictionary name is turned into a String only the first time a record
+     * refers to it. Every method throws IllegalArgumentException if the message is malformed.
+     */
+    public static class Reader {
+        private ByteBuffer in;
+        private int[] nameOffsets;
+        private int[] nameLengths;
+        private String[] names;  // Names decoded so far
+        private Unit[] units;  // Units looked up so far, by the dictionary index of their symbol
+
+        /**
+         * Opens a message for reading. The buffer's position and limit are not changed.
+         *
+         * @param message The buffer holding the message from its position to its limit.
+         * @throws IllegalArgumentException if the buffer does not hold a message of this format,
+         *                                  or its dictionary is malformed.
+         */
+        public Reader(ByteBuffer message) {
+            this.in = message.duplicate();
+            if (in.remaining() < 5 || in.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a brewery message");
+            }
+            int formatVersion = in.get();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported brewery message version " + formatVersion);
+            }
+            int count = readSize();
+            if (count > in.remaining()) {
+                throw malformed("dictionary of " + count + " names does not fit the message");
+            }
+            this.nameOffsets = new int[count];
+            this.nameLengths = new int[count];
+            this.names = new String[count];
+            this.units = new Unit[count];
+            for (int i = 0; i < count; i++) {
+                nameLengths[i] = readSize();
+                if (nameLengths[i] > in.remaining()) {
+                    throw malformed("name of " + nameLengths[i] + " bytes does not fit the message");
+                }
+                nameOffsets[i] = in.position();
+                in.position(in.position() + nameLengths[i]);  // Skip the bytes until needed
+            }
+        }
+
+        /**
+         * @return true if there is another record to read.
+         */
+        public boolean hasNext() {
+            return in.hasRemaining();
+        }
+
+        /**
+         * Returns the type of the next record without consuming it.
+         *
+         * @return The type of the next record.
+         * @throws IllegalArgumentException if there is no next record or its type is unknown.
+         */
+        public RecordType nextType() {
+            if (!in.hasRemaining()) {
+                throw malformed("no record left");
+            }
+            return recordType(in.get(in.position()));
+        }
+
+        /**
+         * Reads a recipe record. A recipe with a version is returned as an immutable stored version.
+         * The decoded lines have exactly the fixed-point quantities of the recipe that was written.
+         *
+         * @return The decoded recipe.
+         * @throws IllegalArgumentException if the next record is not of this type or is malformed.
+         */
+        public Recipe readRecipe() {
+            expect(RecordType.RECIPE);
+            String name = name(readSize());
+            int version = readSize();
+            Recipe recipe = new Recipe(name, readInt());
+            int lineCount = readSize();
+            for (int i = 0; i < lineCount; i++) {
+                String ingredientName = name(readSize());
+                Unit unit = unit(readSize());
+                recipe.addIngredientFixed(ingredientName, unzigzag(readVarint()), unit);
+            }
+            return version == 0 ? recipe : recipe.freeze(version, null);
+        }
+
+        /**
+         * Reads an ingredient record.
+         *
+         * @return The decoded ingredient.
+         * @throws IllegalArgumentException if the next record is not of this type or is malformed.
+         */
+        public Ingredient readIngredient() {
+            expect(RecordType.INGREDIENT);
+            String name = name(readSize());
+            Unit unit = unit(readSize());
+            return new Ingredient(name, FixedPoint.toDouble(unzigzag(readVarint())) / unit.getFactorToBase(), unit);
+        }
+
+        /**
+         * Reads a beverage batch record.
+         *
+         * @return The decoded batch.
+         * @throws IllegalArgumentException if the next record is not of this type or is malformed.
+         */
+        public BeverageBatch readBatch() {
+            expect(RecordType.BATCH);
+            String name = name(readSize());
+            int size = readInt();
+            int recipeVersion = readSize();
+            long completedAtMillis = readVarint();
+            if (completedAtMillis < 0) {
+                throw malformed("completion time " + completedAtMillis + " is negative");
+            }
+            return new BeverageBatch(name, size, recipeVersion, completedAtMillis);
+        }
+
+        /**
+         * Reads a container record.
+         *
+         * @return The decoded container, marked dirty if it was dirty when written.
+         * @throws IllegalArgumentException if the next record is not of this type or is malformed.
+         */
+        public Container readContainer() {
+            expect(RecordType.CONTAINER);
+            Container container = new Container(name(readSize()), readSize());
+            if (readByte() != 0) {
+                container.markAsDirty();
+            }
+            return container;
+        }
+
+        /**
+         * Consumes the record type byte and checks that it matches the record being read.
+         */
+        private void expect(RecordType type) {
+            RecordType actual = recordType(readByte());
+            if (actual != type) {
+                throw malformed("expected a " + type + " record but found " + actual);
+            }
+        }
+
+        /**
+         * Returns the record type with the given code.
+         */
+        private RecordType recordType(int code) {
+            RecordType[] types = RecordType.values();
+            if (code < 0 || code >= types.length) {
+                throw malformed("unknown record type " + code);
+            }
+            return types[code];
+        }
+
+        /**
+         * Returns the unit whose symbol is at a dictionary index.
+         */
+        private Unit unit(int ref) {
+            String symbol = name(ref);
+            Unit unit = units[ref];
+            if (unit == null) {
+                unit = Unit.fromSymbol(symbol);
+                if (unit == null) {
+                    throw malformed("unknown unit " + symbol);
+                }
+                units[ref] = unit;
+            }
+            return unit;
+        }
+
+        /**
+         * Returns the name at a dictionary index, decoding it from the buffer on first use.
+         */
+        private String name(int ref) {
+            if (ref >= names.length) {
+                throw malformed("name index " + ref + " is outside the dictionary");
+            }
+            String name = names[ref];
+            if (name == null) {
+                if (in.hasArray()) {
+                    name = new String(in.array(), in.arrayOffset() + nameOffsets[ref], nameLengths[ref],
+                            StandardCharsets.UTF_8);
+                } else {
+                    byte[] bytes = new byte[nameLengths[ref]];
+                    for (int i = 0; i < bytes.length; i++) {
+                        bytes[i] = in.get(nameOffsets[ref] + i);
+                    }
+                    name = new String(bytes, StandardCharsets.UTF_8);
+                }
+                names[ref] = name;
+            }
+            return name;
+        }
+
+        /**
+         * Reads one byte, failing if the message ends first.
+         */
+        private int readByte() {
+            if (!in.hasRemaining()) {
+                throw malformed("message ends inside a record");
+            }
+            return in.get();
+        }
+
+        /**
+         * Reads a varint holding a length, count, name index or version, which must fit a
+         * non-negative int.
+         */
+        private int readSize() {
+            long value = readVarint();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw malformed("count " + value + " is out of range");
+            }
+            return (int) value;
+        }
+
+        /**
+         * Reads a zigzag-encoded varint that must fit an int.
+         */
+        private int readInt() {
+            long value = unzigzag(readVarint());
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw malformed("value " + value + " is out of range");
+            }
+            return (int) value;
+        }
+
+        /**
+         * Reads a variable-length integer in place from the buffer.
+         */
+        private long readVarint() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                byte b = (byte) readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+                if (shift >= 64) {
+                    throw malformed("varint is longer than 64 bits");
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the exception thrown for every kind of malformed message.
+     */
+    private static IllegalArgumentException malformed(String detail) {
+        return new IllegalArgumentException("Malformed brewery message: " + detail);
+    }
+
+    /**
+     * Maps a signed value to an unsigned one so small negative values stay short as varints.
+     */
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reverses zigzag.
+     */
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Returns the number of bytes a value takes as a varint.
+     */
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a variable-length integer to a buffer.
+     */
+    private static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+}
@@ -0,0 +1,82 @@
+package model;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Represents one brewery site in a multi-site network.
+ * Each site holds its own shard of ingredient stock and containers, a replica of the
+ * shared recipe library, and a lock that guards changes to its inventory.
+ */
+public class BrewerySite {
+    private String name;
+    private Inventory inventory;
+    private RecipeLibrary recipeLibrary;
+    private ReentrantLock lock;
+
+    /**
+     * Constructs a BrewerySite with an empty inventory and recipe library replica, and the
+     * default containers.
+     *
+     * @param name The unique name of the site.
+     */
+    public BrewerySite(String name) {
+        this(name, Inventory.DEFAULT_CONTAINER_COUNT, Container.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a BrewerySite with an empty inventory and recipe library replica.
+     *
+     * @param name              The unique name of the site.
+     * @param containerCount    The number of containers at the site.
+     * @param containerCapacity The number of bottles each container holds.
+     * @throws IllegalArgumentException if the container count or capacity is not positive.
+     */
+    public BrewerySite(String name, int containerCount, int containerCapacity) {
+        this(name, new Inventory(new InMemoryInventoryStore(), containerCount, containerCapacity));
+    }
+
+    /**
+     * Constructs a BrewerySite on an existing inventory, such as one kept in a
+     * MappedFileInventoryStore, with an empty recipe library replica.
+     *
+     * @param name      The unique name of the site.
+     * @param inventory The inventory shard of the site.
+     */
+    public BrewerySite(String name, Inventory inventory) {
+        this.name = name;
+        this.inventory = inventory;
+        this.recipeLibrary = new RecipeLibrary();
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * @return The name of the site.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The inventory shard of the site.
+     */
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * @return The site's replica of the recipe library.
+     */
+    public RecipeLibrary getRecipeLibrary() {
+        return recipeLibrary;
+    }
+
+    /**
+     * Returns the lock guarding the site's inventory. Callers that lock several sites
+     * must lock them in a consistent order to avoid deadlock.
+     *
+     * @return The lock of the site.
+     */
+    public ReentrantLock getLock() {
+        return lock;
+    }
+}
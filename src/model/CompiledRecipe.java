@@ -0,0 +1,171 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds data precomputed from one immutable recipe version so production code can
+ * read it without copying: the ingredient names, base units and fixed-point quantity
+ * vector per bottle, and a hash of the ingredient set that ignores order and case.
+ * RecipeLibrary keeps compiled data for recently used versions (see getCompiledRecipe).
+ * It also caches where each ingredient sits in the stock of the few inventories it was most
+ * recently checked against, since that only changes when an inventory gains an ingredient.
+ * The arrays are shared and must not be modified by callers.
+ */
+public class CompiledRecipe {
+    public static final int MAX_STOCK_INVENTORIES = 4;  // Inventories whose stock positions are kept at once
+    private static final StockIndices[] NO_STOCK_INDICES = new StockIndices[0];
+    private static final LongAdder STOCK_RESOLUTIONS = new LongAdder();
+
+    private Recipe recipe;
+    private String[] ingredientNames;
+    private long[] fixedQuantities;
+    private Unit[] ingredientUnits;
+    private int ingredientSetHash;
+    private volatile StockIndices[] stockIndices = NO_STOCK_INDICES;  // Most recently used first
+
+    /**
+     * Compiles an immutable recipe version.
+     *
+     * @param recipe The recipe version to compile.
+     * @throws IllegalArgumentException if the recipe is a draft that can still change.
+     */
+    CompiledRecipe(Recipe recipe) {
+        if (!recipe.isFrozen()) {
+            throw new IllegalArgumentException("Only stored recipe versions can be compiled");
+        }
+        this.recipe = recipe;
+        this.ingredientNames = recipe.getIngredientNames();
+        this.fixedQuantities = recipe.getFixedIngredientQuantities();
+        this.ingredientUnits = recipe.getIngredientUnits();
+
+        int hash = 0;
+        for (int i = 0; i < ingredientNames.length; i++) {
+            hash += StringFuncs.customToLowerCase(ingredientNames[i]).hashCode();  // Sum ignores order
+        }
+        this.ingredientSetHash = hash;
+    }
+
+    /**
+     * @return The recipe version this data was compiled from.
+     */
+    public Recipe getRecipe() {
+        return recipe;
+    }
+
+    /**
+     * @return The ingredient names, shared and not to be modified.
+     */
+    public String[] getIngredientNames() {
+        return ingredientNames;
+    }
+
+    /**
+     * @return The fixed-point quantity per bottle of each ingredient, shared and not to be modified.
+     */
+    public long[] getFixedQuantities() {
+        return fixedQuantities;
+    }
+
+    /**
+     * @return The base unit of each ingredient, shared and not to be modified.
+     */
+    public Unit[] getIngredientUnits() {
+        return ingredientUnits;
+    }
+
+    /**
+     * @return A hash of the ingredient names that ignores their order and case.
+     */
+    public int getIngredientSetHash() {
+        return ingredientSetHash;
+    }
+
+    /**
+     * Returns the position of each ingredient line in an inventory's stock arrays, or -1 where
+     * the ingredient is not stocked in a unit of the same dimension. The positions are cached
+     * per inventory, for up to MAX_STOCK_INVENTORIES inventories, and keyed by the inventory's
+     * ingredient count: since stock positions and units never change, a cached entry stays valid
+     * until the inventory gains ingredients, and then only the lines without a position are
+     * looked up again. Several inventories checked against the same catalog in turn therefore
+     * keep their own positions instead of replacing each other's. The returned array is shared
+     * and must not be modified.
+     *
+     * @param inventory The inventory whose stock the positions refer to.
+     * @return The stock position of each ingredient line.
+     */
+    public int[] getStockIndices(Inventory inventory) {
+        StockIndices[] entries = stockIndices;
+        int ingredientCount = inventory.getIngredientCount();
+        StockIndices cached = null;
+        for (StockIndices entry : entries) {
+            if (entry.inventory == inventory) {
+                if (entry.ingredientCount == ingredientCount) {
+                    return entry.indices;
+                }
+                cached = entry;
+                break;
+            }
+        }
+
+        STOCK_RESOLUTIONS.increment();
+        int[] indices = new int[ingredientNames.length];
+        for (int i = 0; i < ingredientNames.length; i++) {
+            if (cached != null && cached.indices[i] >= 0) {
+                indices[i] = cached.indices[i];  // Already found, and positions never change
+                continue;
+            }
+            int index = inventory.getIngredientIndex(ingredientNames[i]);
+            indices[i] = index >= 0 && ingredientUnits[i].isCompatibleWith(inventory.getIngredientUnitAt(index))
+                    ? index : -1;
+        }
+        remember(new StockIndices(inventory, ingredientCount, indices));
+        return indices;
+    }
+
+    /**
+     * Returns how many times stock positions were resolved against an inventory instead of
+     * read from a cached entry, across all compiled recipes. Benchmarks use it to report how
+     * often the cache missed.
+     *
+     * @return The number of resolutions since the program started.
+     */
+    public static long getStockIndexResolutions() {
+        return STOCK_RESOLUTIONS.sum();
+    }
+
+    /**
+     * Puts an entry first, replacing the entry of the same inventory, or the least recently
+     * used one once MAX_STOCK_INVENTORIES are kept. The entries are copied on write, so readers
+     * never lock; a concurrent update may be lost, which only costs a later resolution.
+     *
+     * @param entry The stock positions to keep.
+     */
+    private void remember(StockIndices entry) {
+        StockIndices[] entries = stockIndices;
+        StockIndices[] updated = new StockIndices[Math.min(entries.length + 1, MAX_STOCK_INVENTORIES)];
+        updated[0] = entry;
+        int size = 1;
+        for (int i = 0; i < entries.length && size < updated.length; i++) {
+            if (entries[i].inventory != entry.inventory) {
+                updated[size++] = entries[i];
+            }
+        }
+        stockIndices = size == updated.length ? updated : Arrays.copyOf(updated, size);
+    }
+
+    /**
+     * The stock positions of the ingredient lines in one inventory, as of one ingredient count.
+     */
+    private static class StockIndices {
+        private final Inventory inventory;
+        private final int ingredientCount;
+        private final int[] indices;
+
+        StockIndices(Inventory inventory, int ingredientCount, int[] indices) {
+            this.inventory = inventory;
+            this.ingredientCount = ingredientCount;
+            this.indices = indices;
+        }
+    }
+}
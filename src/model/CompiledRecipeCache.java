@@ -0,0 +1,212 @@
+package model;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of compiled recipe versions, shared by the RecipeCatalog implementations.
+ * It has its own lock, so compiling recipes never blocks adding or looking them up in the catalog.
+ * A catalog that always returns the same instance of a version keys the cache by that instance.
+ * A catalog that may decode a version again, such as TieredRecipeLibrary, keys it by the
+ * lowercase name and version number instead, so a new instance of a version finds the data
+ * compiled from an earlier one.
+ * <p>
+ * Whole-catalog scans do not go through the LRU, which would be flushed by every scan of a
+ * catalog larger than its capacity. A bulk lookup takes the versions the LRU holds, and keeps
+ * everything else it compiled in a separate scan set that replaces the previous one, so the
+ * next scan of the same catalog compiles only the versions added since. The scan set holds at
+ * most one compiled entry per version the last scan asked for. A single lookup that finds its
+ * version in the scan set moves it into the LRU.
+ */
+class CompiledRecipeCache {
+    private boolean byNameAndVersion;
+    private Map<Object, CompiledRecipe> cache;  // In access order
+    private Map<Object, CompiledRecipe> scanSet;  // Versions compiled by the last bulk lookup and not in the LRU
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs an empty cache keyed by version identity.
+     *
+     * @param capacity The largest number of compiled recipe versions to keep.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    CompiledRecipeCache(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity         The largest number of compiled recipe versions to keep.
+     * @param byNameAndVersion Whether to key versions by lowercase name and version number
+     *                         rather than by identity.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    CompiledRecipeCache(int capacity, boolean byNameAndVersion) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.byNameAndVersion = byNameAndVersion;
+        this.cache = new LinkedHashMap<Object, CompiledRecipe>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CompiledRecipe> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.scanSet = newScanSet(16);
+    }
+
+    /**
+     * Returns the compiled data of a version, compiling and caching it on a miss.
+     *
+     * @param recipe A stored recipe version.
+     * @return The compiled data of the version.
+     * @throws IllegalArgumentException if the recipe is a draft that can still change.
+     */
+    synchronized CompiledRecipe get(Recipe recipe) {
+        return compile(recipe);
+    }
+
+    /**
+     * Returns the compiled data of many versions with one acquisition of the lock, without
+     * adding any to the LRU. Versions the LRU or the previous scan set do not hold are compiled
+     * into a new scan set, which replaces the previous one.
+     *
+     * @param recipes Stored recipe versions, usually the latest version of every recipe.
+     * @return The compiled data of each version, in the same order.
+     * @throws IllegalArgumentException if a recipe is a draft that can still change.
+     */
+    synchronized CompiledRecipe[] getAll(Recipe[] recipes) {
+        CompiledRecipe[] compiled = new CompiledRecipe[recipes.length];
+        Map<Object, CompiledRecipe> nextScanSet = newScanSet(recipes.length);
+        for (int i = 0; i < recipes.length; i++) {
+            Recipe recipe = recipes[i];
+            Object key = keyOf(recipe);
+            compiled[i] = cache.get(key);
+            if (compiled[i] != null) {
+                hits++;
+                continue;
+            }
+            compiled[i] = scanSet.get(key);
+            if (compiled[i] != null) {
+                hits++;
+            } else {
+                misses++;
+                compiled[i] = new CompiledRecipe(recipe);
+            }
+            nextScanSet.put(key, compiled[i]);
+        }
+        scanSet = nextScanSet;
+        return compiled;
+    }
+
+    /**
+     * Returns the instance a version was compiled from, if the cache or the scan set holds it,
+     * without counting a lookup. Lets a catalog keyed by name and version hand out that
+     * instance instead of decoding the version again.
+     *
+     * @param name    The name of the recipe.
+     * @param version The version number.
+     * @return The recipe version the compiled data was built from, or null if not held.
+     */
+    synchronized Recipe findCompiledVersion(String name, int version) {
+        Object key = new VersionKey(name, version);
+        CompiledRecipe compiled = cache.get(key);
+        if (compiled == null) {
+            compiled = scanSet.get(key);
+        }
+        return compiled == null ? null : compiled.getRecipe();
+    }
+
+    /**
+     * @return The number of lookups that found the version already compiled.
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups that had to compile the version.
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Looks a version up, compiling and caching it on a miss. The caller holds the lock.
+     *
+     * @param recipe A stored recipe version.
+     * @return The compiled data of the version.
+     */
+    private CompiledRecipe compile(Recipe recipe) {
+        Object key = keyOf(recipe);
+        CompiledRecipe compiled = cache.get(key);
+        if (compiled != null) {
+            hits++;
+            return compiled;
+        }
+        compiled = scanSet.remove(key);  // Promoted: the same instance keeps its stock positions
+        if (compiled != null) {
+            hits++;
+        } else {
+            misses++;
+            compiled = new CompiledRecipe(recipe);
+        }
+        cache.put(key, compiled);
+        return compiled;
+    }
+
+    /**
+     * @param recipe A stored recipe version.
+     * @return The key of the version in this cache.
+     * @throws IllegalArgumentException if the recipe is a draft that can still change.
+     */
+    private Object keyOf(Recipe recipe) {
+        if (!byNameAndVersion) {
+            return recipe;
+        }
+        if (!recipe.isFrozen()) {
+            throw new IllegalArgumentException("Only stored recipe versions can be compiled");
+        }
+        return new VersionKey(recipe.getName(), recipe.getVersion());
+    }
+
+    /**
+     * @param expected The number of versions the set will hold.
+     * @return An empty scan set that compares keys the way this cache does.
+     */
+    private Map<Object, CompiledRecipe> newScanSet(int expected) {
+        int capacity = expected * 4 / 3 + 1;
+        return byNameAndVersion ? new HashMap<>(capacity) : new IdentityHashMap<>(capacity);
+    }
+
+    /**
+     * A recipe version identified by its name, ignoring case, and its version number.
+     */
+    private static class VersionKey {
+        private final String name;
+        private final int version;
+
+        VersionKey(String name, int version) {
+            this.name = StringFuncs.customToLowerCase(name);
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof VersionKey)) {
+                return false;
+            }
+            VersionKey key = (VersionKey) other;
+            return version == key.version && name.equals(key.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + version;
+        }
+    }
+}
@@ -2,35 +2,81 @@ package model;
 
 /**
  * Represents a container used in the brewing process.
- * Each container has a unique ID and can either be clean or dirty.
+ * Each container has a unique ID, a capacity in bottles, and can either be clean or dirty.
+ * Every change between clean and dirty is recorded with its time in the container's telemetry.
  */
 public class Container {
+    /**
+     * The capacity in bottles of a container created without an explicit capacity.
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
     private String id;  // Unique ID for the container
-    private boolean isDirty;  // Whether the container is dirty or clean
+    private int capacity;  // Number of bottles the container holds
+    private volatile boolean isDirty;  // Whether the container is dirty or clean, changed under the telemetry lock
+    private ContainerTelemetry telemetry;  // Recent state changes
 
     /**
-     * Constructs a Container with the given ID.
+     * Constructs a Container with the given ID and the default capacity.
      * By default, the container is clean.
      *
      * @param id The unique ID for the container.
      */
     public Container(String id) {
+        this(id, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a Container with the given ID and capacity.
+     * By default, the container is clean.
+     *
+     * @param id The unique ID for the container.
+     * @param capacity The number of bottles the container holds.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public Container(String id, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
         this.id = id;
+        this.capacity = capacity;
         this.isDirty = false;  // Default to clean
+        this.telemetry = new ContainerTelemetry();
     }
 
     /**
-     * Marks the container as dirty.
+     * Marks the container as dirty, recording the change if it was clean.
+     * The state is checked and the change recorded under the telemetry lock, so concurrent
+     * calls record a single change and recorded changes always alternate.
+     *
+     * @return true if the container was clean and is now dirty, false if it was already dirty.
      */
-    public void markAsDirty() {
-        this.isDirty = true;
+    public boolean markAsDirty() {
+        synchronized (telemetry) {
+            if (isDirty) {
+                return false;
+            }
+            this.isDirty = true;
+            telemetry.record(true, System.nanoTime());
+            return true;
+        }
     }
 
     /**
-     * Marks the container as clean.
+     * Marks the container as clean, recording the change if it was dirty.
+     * The state is checked and the change recorded under the telemetry lock.
+     *
+     * @return true if the container was dirty and is now clean, false if it was already clean.
      */
-    public void markAsClean() {
-        this.isDirty = false;
+    public boolean markAsClean() {
+        synchronized (telemetry) {
+            if (!isDirty) {
+                return false;
+            }
+            this.isDirty = false;
+            telemetry.record(false, System.nanoTime());
+            return true;
+        }
     }
 
     /**
@@ -51,14 +97,32 @@ public class Container {
         return id;
     }
 
+    /**
+     * Returns the number of bottles the container holds.
+     *
+     * @return The capacity of the container in bottles.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the telemetry recording the container's state changes.
+     *
+     * @return The telemetry of the container.
+     */
+    public ContainerTelemetry getTelemetry() {
+        return telemetry;
+    }
+
     /**
      * Returns a string representation of the container,
-     * showing its ID and whether it is clean or dirty.
+     * showing its ID, capacity and whether it is clean or dirty.
      *
      * @return A string representation of the container.
      */
     @Override
     public String toString() {
-        return "Container " + id + " is " + (isDirty ? "dirty" : "clean");
+        return "Container " + id + " (" + capacity + " bottles) is " + (isDirty ? "dirty" : "clean");
     }
 }
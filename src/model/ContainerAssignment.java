@@ -0,0 +1,62 @@
+package model;
+
+/**
+ * Represents part of a container plan: a number of bottles of one recipe brewed in one container.
+ */
+public class ContainerAssignment {
+    private Container container;
+    private String recipeName;
+    private int bottles;
+
+    /**
+     * Constructs a ContainerAssignment.
+     *
+     * @param container  The container to brew in.
+     * @param recipeName The name of the recipe to brew.
+     * @param bottles    The number of bottles brewed in the container.
+     */
+    public ContainerAssignment(Container container, String recipeName, int bottles) {
+        this.container = container;
+        this.recipeName = recipeName;
+        this.bottles = bottles;
+    }
+
+    /**
+     * @return The container to brew in.
+     */
+    public Container getContainer() {
+        return container;
+    }
+
+    /**
+     * @return The name of the recipe to brew.
+     */
+    public String getRecipeName() {
+        return recipeName;
+    }
+
+    /**
+     * @return The number of bottles brewed in the container.
+     */
+    public int getBottles() {
+        return bottles;
+    }
+
+    /**
+     * @return The share of the container's capacity used, between 0 and 1.
+     */
+    public double getFillRate() {
+        return (double) bottles / container.getCapacity();
+    }
+
+    /**
+     * Returns a string representation of the assignment.
+     *
+     * @return A string representation of the assignment.
+     */
+    @Override
+    public String toString() {
+        return recipeName + ": " + bottles + " bottles in container " + container.getId()
+                + " (" + bottles + "/" + container.getCapacity() + ")";
+    }
+}
@@ -0,0 +1,64 @@
+package model;
+
+/**
+ * Represents how a set of production orders is laid out across containers.
+ * Recipes that could not be fully placed are listed separately and have no assignments.
+ */
+public class ContainerPlan {
+    private ContainerAssignment[] assignments;
+    private String[] unplannedRecipes;
+
+    /**
+     * Constructs a ContainerPlan.
+     *
+     * @param assignments      The container assignments of the plan.
+     * @param unplannedRecipes The names of recipes that did not fit in the available containers.
+     */
+    public ContainerPlan(ContainerAssignment[] assignments, String[] unplannedRecipes) {
+        this.assignments = assignments;
+        this.unplannedRecipes = unplannedRecipes;
+    }
+
+    /**
+     * @return The container assignments of the plan.
+     */
+    public ContainerAssignment[] getAssignments() {
+        return assignments;
+    }
+
+    /**
+     * @return The names of recipes that did not fit in the available containers.
+     */
+    public String[] getUnplannedRecipes() {
+        return unplannedRecipes;
+    }
+
+    /**
+     * @return true if every order was placed in a container.
+     */
+    public boolean isComplete() {
+        return unplannedRecipes.length == 0;
+    }
+
+    /**
+     * @return The number of containers used, which is also the number of cleaning cycles the plan causes.
+     */
+    public int getContainerCount() {
+        return assignments.length;
+    }
+
+    /**
+     * Returns the share of the used containers' total capacity that is filled.
+     *
+     * @return The fill rate between 0 and 1, or 0 if no containers are used.
+     */
+    public double getFillRate() {
+        long bottles = 0;
+        long capacity = 0;
+        for (ContainerAssignment assignment : assignments) {
+            bottles += assignment.getBottles();
+            capacity += assignment.getContainer().getCapacity();
+        }
+        return capacity == 0 ? 0.0 : (double) bottles / capacity;
+    }
+}
@@ -0,0 +1,97 @@
+package model;
+
+/**
+ * Rolling statistics of one container, filled by ContainerTelemetry.computeStats.
+ * A container is in use while dirty: from the batch that claims it until it is cleaned.
+ * One object can be reused for every container, so reporting does not allocate.
+ */
+public class ContainerStats {
+    long windowNanos;
+    long dirtyNanos;
+    long cleanNanos;
+    int cycles;
+    long averageTurnaroundNanos;
+    long maxTurnaroundNanos;
+    long averageIdleNanos;
+    long currentPeriodNanos;
+    boolean dirty;
+    long totalChanges;
+
+    /**
+     * @return The length of the window the statistics cover, in nanoseconds.
+     */
+    public long getWindowNanos() {
+        return windowNanos;
+    }
+
+    /**
+     * @return The time the container was dirty within the window, in nanoseconds.
+     */
+    public long getDirtyNanos() {
+        return dirtyNanos;
+    }
+
+    /**
+     * @return The time the container was clean and idle within the window, in nanoseconds.
+     */
+    public long getCleanNanos() {
+        return cleanNanos;
+    }
+
+    /**
+     * @return The fraction of the window the container was dirty, from 0 to 1.
+     */
+    public double getUtilization() {
+        return windowNanos == 0 ? 0.0 : (double) dirtyNanos / windowNanos;
+    }
+
+    /**
+     * @return The number of completed dirty-to-clean cycles within the window.
+     */
+    public int getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return The average time from being claimed to being cleaned, over completed cycles, in nanoseconds.
+     */
+    public long getAverageTurnaroundNanos() {
+        return averageTurnaroundNanos;
+    }
+
+    /**
+     * @return The longest time from being claimed to being cleaned within the window, in nanoseconds.
+     */
+    public long getMaxTurnaroundNanos() {
+        return maxTurnaroundNanos;
+    }
+
+    /**
+     * @return The average time the container sat clean before being claimed, over completed
+     *         idle periods, in nanoseconds.
+     */
+    public long getAverageIdleNanos() {
+        return averageIdleNanos;
+    }
+
+    /**
+     * @return How long the container has been in its current state, in nanoseconds.
+     */
+    public long getCurrentPeriodNanos() {
+        return currentPeriodNanos;
+    }
+
+    /**
+     * @return true if the container is dirty.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * @return The number of state changes since the container was created.
+     */
+    public long getTotalChanges() {
+        return totalChanges;
+    }
+}
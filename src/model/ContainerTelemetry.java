@@ -0,0 +1,177 @@
+package model;
+
+/**
+ * Records the state changes of one container in a fixed-size ring buffer and computes
+ * rolling utilization, idle-time and turnaround statistics over the changes it holds.
+ * A container starts clean, so the changes alternate between dirty and clean.
+ * Times are taken from System.nanoTime; getChangeMillis converts them to wall-clock time.
+ * The buffer is allocated on the first change, so containers that never change cost only a
+ * few fields. After that, recording a change and computing statistics do not allocate, so both
+ * are safe on hot paths. Callers that check a state before recording a change should do both
+ * while holding this object's lock, as Container does, so the changes keep alternating.
+ */
+public class ContainerTelemetry {
+    /** The default number of state changes kept per container. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    // Pairs a System.nanoTime reading with the wall clock, to convert recorded times
+    private static final long ORIGIN_NANOS = System.nanoTime();
+    private static final long ORIGIN_MILLIS = System.currentTimeMillis();
+
+    private int capacity;
+    private long[] changeNanos;  // Time of each recorded change, oldest overwritten first; null until the first
+    private boolean[] dirtyAfter;  // Whether the container was dirty after each change; null until the first
+    private int next;  // Slot the next change is written to
+    private int count;  // Number of changes held, up to the capacity
+    private long totalChanges;
+    private long createdNanos;
+
+    /**
+     * Constructs a ContainerTelemetry that keeps the default number of changes.
+     */
+    public ContainerTelemetry() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a ContainerTelemetry.
+     *
+     * @param capacity The number of state changes kept.
+     * @throws IllegalArgumentException if the capacity is less than 2.
+     */
+    public ContainerTelemetry(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Telemetry must keep at least 2 changes");
+        }
+        this.capacity = capacity;
+        this.createdNanos = System.nanoTime();
+    }
+
+    /**
+     * Records a state change, overwriting the oldest change once the buffer is full.
+     *
+     * @param dirty Whether the container is dirty after the change.
+     * @param nanos The time of the change, from System.nanoTime.
+     */
+    public synchronized void record(boolean dirty, long nanos) {
+        if (changeNanos == null) {
+            changeNanos = new long[capacity];
+            dirtyAfter = new boolean[capacity];
+        }
+        changeNanos[next] = nanos;
+        dirtyAfter[next] = dirty;
+        next = (next + 1) % capacity;
+        if (count < capacity) {
+            count++;
+        }
+        totalChanges++;
+    }
+
+    /**
+     * @return The number of state changes since the container was created, including those
+     *         no longer held.
+     */
+    public synchronized long getTotalChanges() {
+        return totalChanges;
+    }
+
+    /**
+     * @return The number of state changes held in the buffer.
+     */
+    public synchronized int getRecordedCount() {
+        return count;
+    }
+
+    /**
+     * Returns the wall-clock time of a recorded change.
+     *
+     * @param age 0 for the most recent change, 1 for the one before, and so on.
+     * @return The time of the change, in milliseconds since the epoch.
+     * @throws IllegalArgumentException if no change of that age is held.
+     */
+    public synchronized long getChangeMillis(int age) {
+        return ORIGIN_MILLIS + (changeNanos[slot(age)] - ORIGIN_NANOS) / 1_000_000;
+    }
+
+    /**
+     * Returns whether a recorded change left the container dirty.
+     *
+     * @param age 0 for the most recent change, 1 for the one before, and so on.
+     * @return true if the container was dirty after the change.
+     * @throws IllegalArgumentException if no change of that age is held.
+     */
+    public synchronized boolean isDirtyAfter(int age) {
+        return dirtyAfter[slot(age)];
+    }
+
+    /**
+     * Computes statistics over the window the buffer covers: from the container's creation
+     * until the buffer first fills, then from the oldest change held. Only completed periods
+     * count toward the turnaround and idle averages; the current period counts toward the
+     * dirty and clean totals up to now.
+     *
+     * @param now   The end of the window, from System.nanoTime.
+     * @param stats The object to fill, which can be reused between calls.
+     * @return The filled stats object.
+     */
+    public synchronized ContainerStats computeStats(long now, ContainerStats stats) {
+        boolean wrapped = count == capacity;
+        int first = wrapped ? next : 0;  // Slot of the oldest change held
+        long periodStart = wrapped ? changeNanos[first] : createdNanos;
+        boolean dirty = wrapped && dirtyAfter[first];
+        int skip = wrapped ? 1 : 0;  // When wrapped, the oldest change only opens the window
+
+        long dirtyNanos = 0;
+        long cleanNanos = 0;
+        int turnarounds = 0;
+        long turnaroundNanos = 0;
+        long maxTurnaroundNanos = 0;
+        int idlePeriods = 0;
+        long idleNanos = 0;
+        for (int i = skip; i < count; i++) {
+            int s = (first + i) % capacity;
+            long duration = changeNanos[s] - periodStart;
+            if (dirty) {
+                dirtyNanos += duration;
+                turnarounds++;
+                turnaroundNanos += duration;
+                maxTurnaroundNanos = Math.max(maxTurnaroundNanos, duration);
+            } else {
+                cleanNanos += duration;
+                idlePeriods++;
+                idleNanos += duration;
+            }
+            periodStart = changeNanos[s];
+            dirty = dirtyAfter[s];
+        }
+        long current = Math.max(0, now - periodStart);
+        if (dirty) {
+            dirtyNanos += current;
+        } else {
+            cleanNanos += current;
+        }
+
+        stats.windowNanos = dirtyNanos + cleanNanos;
+        stats.dirtyNanos = dirtyNanos;
+        stats.cleanNanos = cleanNanos;
+        stats.cycles = turnarounds;
+        stats.averageTurnaroundNanos = turnarounds == 0 ? 0 : turnaroundNanos / turnarounds;
+        stats.maxTurnaroundNanos = maxTurnaroundNanos;
+        stats.averageIdleNanos = idlePeriods == 0 ? 0 : idleNanos / idlePeriods;
+        stats.currentPeriodNanos = current;
+        stats.dirty = dirty;
+        stats.totalChanges = totalChanges;
+        return stats;
+    }
+
+    /**
+     * @param age 0 for the most recent change, 1 for the one before, and so on.
+     * @return The buffer slot of the change.
+     */
+    private int slot(int age) {
+        if (age < 0 || age >= count) {
+            throw new IllegalArgumentException("No recorded change of age " + age);
+        }
+        return (next - 1 - age + capacity) % capacity;
+    }
+}
@@ -0,0 +1,293 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Forecasts ingredient demand from the inventory's change feed.
+ * Each ingredient keeps its current stock and an exponentially decayed usage rate,
+ * updated incrementally from every deduction, so memory per ingredient is constant and
+ * forecasts never replay history. The rate decays with a configurable time window, which
+ * handles irregular gaps between batches.
+ * If the bus detaches the forecaster for falling too far behind, the next drain subscribes
+ * again and reseeds the stock levels from the inventory; usage rates are kept. Seeding takes the
+ * inventory's own lock, so it is safe while other threads change the stock.
+ */
+public class DemandForecaster implements InventoryEventListener {
+    private static final double MILLIS_PER_DAY = 24.0 * 60 * 60 * 1000;
+
+    private double windowMillis;  // Time constant of the exponential smoothing
+    private String[] names;
+    private long[] stock;  // Fixed-point stock as last seen on the feed
+    private Unit[] units;
+    private double[] rates;  // Smoothed fixed-point usage per millisecond at lastUse
+    private long[] lastUse;  // Time of the last deduction, or 0 if never used
+    private int count;
+    private Map<String, Integer> index;  // Lowercase name to array index
+
+    private Inventory inventory;
+    private InventoryEventBus bus;
+    private InventoryEventBus.Subscription subscription;  // null while stopped
+    private Thread worker;
+    private volatile boolean running;
+
+    /**
+     * Constructs a DemandForecaster seeded with the current stock of the inventory and
+     * subscribed to the event bus for every change after that.
+     *
+     * @param inventory  The inventory whose stock to seed from.
+     * @param bus        The event bus the inventory publishes to.
+     * @param windowDays The smoothing window in days; usage older than this fades out.
+     * @throws IllegalArgumentException if the window is not positive.
+     */
+    public DemandForecaster(Inventory inventory, InventoryEventBus bus, double windowDays) {
+        if (windowDays <= 0) {
+            throw new IllegalArgumentException("Smoothing window must be positive");
+        }
+        this.windowMillis = windowDays * MILLIS_PER_DAY;
+        this.names = new String[10];
+        this.stock = new long[10];
+        this.units = new Unit[10];
+        this.rates = new double[10];
+        this.lastUse = new long[10];
+        this.count = 0;
+        this.index = new HashMap<>();
+        this.inventory = inventory;
+        this.bus = bus;
+        seedAndSubscribe();
+    }
+
+    /**
+     * Subscribes to the bus and sets the stock of every ingredient from the inventory in one
+     * step under the inventory's lock, so no change is missed or applied twice.
+     */
+    private void seedAndSubscribe() {
+        StockSnapshot snapshot = inventory.subscribe(bus);
+        for (int i = 0; i < snapshot.size(); i++) {
+            stock[indexOf(snapshot.getName(i), snapshot.getUnit(i))] = snapshot.getQuantity(i);
+        }
+        this.subscription = snapshot.getSubscription();
+    }
+
+    /**
+     * Starts a background thread that keeps the forecaster up to date with the event bus.
+     * A stopped forecaster subscribes again and reseeds its stock levels first.
+     */
+    public void start() {
+        synchronized (this) {
+            if (subscription == null) {
+                seedAndSubscribe();
+            }
+        }
+        running = true;
+        worker = new Thread(this::drainLoop, "demand-forecaster");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stops the background thread, waits for it to finish, applies the remaining events and
+     * unsubscribes from the bus, so a stopped forecaster never holds back publishers.
+     */
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+        synchronized (this) {
+            if (subscription != null) {
+                drain();
+                bus.unsubscribe(subscription);
+                subscription = null;
+            }
+        }
+    }
+
+    /**
+     * Applies every event waiting on the subscription, first resubscribing and reseeding the
+     * stock if the bus detached the subscription. Does nothing once the forecaster is stopped.
+     *
+     * @return The number of events applied.
+     */
+    public synchronized int drain() {
+        if (subscription == null) {
+            return 0;
+        }
+        if (subscription.isDetached()) {
+            seedAndSubscribe();
+        }
+        int total = 0;
+        int drained;
+        while ((drained = subscription.poll(this, 1024)) > 0) {
+            total += drained;
+        }
+        return total;
+    }
+
+    /**
+     * Updates the stock and usage rate of an ingredient from one event.
+     *
+     * @param event The event to apply.
+     */
+    @Override
+    public synchronized void onEvent(InventoryEvent event) {
+        switch (event.getType()) {
+        case INGREDIENT_ADDED:
+            stock[indexOf(event.getSubject(), event.getUnit())] += event.getAmount();
+            break;
+        case INGREDIENT_REMOVED:
+            stock[indexOf(event.getSubject(), event.getUnit())] -= event.getAmount();
+            break;
+        case INGREDIENT_USED:
+            int i = indexOf(event.getSubject(), event.getUnit());
+            stock[i] -= event.getAmount();
+            recordUsage(i, event.getAmount(), event.getTimestamp());
+            break;
+        default:
+            break;  // Batches and containers do not affect demand
+        }
+    }
+
+    /**
+     * Predicts when an ingredient will run out at its current smoothed usage rate.
+     *
+     * @param name The name of the ingredient.
+     * @param now  The time to forecast from in milliseconds since the epoch.
+     * @return The predicted stock-out time, or Long.MAX_VALUE if the ingredient is unknown or unused.
+     */
+    public synchronized long getPredictedStockOut(String name, long now) {
+        Integer i = index.get(StringFuncs.customToLowerCase(name));
+        return i == null ? Long.MAX_VALUE : predictStockOut(i, now);
+    }
+
+    /**
+     * Forecasts the stock-out of every known ingredient, soonest first.
+     *
+     * @param now The time to forecast from in milliseconds since the epoch.
+     * @return The forecasts for all ingredients.
+     */
+    public synchronized StockOutForecast[] getForecasts(long now) {
+        StockOutForecast[] forecasts = new StockOutForecast[count];
+        for (int i = 0; i < count; i++) {
+            forecasts[i] = new StockOutForecast(names[i], FixedPoint.toDouble(stock[i]), units[i],
+                    currentRate(i, now) / FixedPoint.SCALE * MILLIS_PER_DAY, predictStockOut(i, now), now);
+        }
+        Arrays.sort(forecasts, (a, b) -> Long.compare(a.getStockOutTime(), b.getStockOutTime()));
+        return forecasts;
+    }
+
+    /**
+     * Folds one deduction into an ingredient's decayed usage rate.
+     *
+     * @param i      The index of the ingredient.
+     * @param amount The fixed-point quantity used.
+     * @param time   The time of the deduction in milliseconds since the epoch.
+     */
+    private void recordUsage(int i, long amount, long time) {
+        rates[i] = currentRate(i, time) + amount / windowMillis;
+        lastUse[i] = Math.max(lastUse[i], time);
+    }
+
+    /**
+     * Returns an ingredient's usage rate decayed to the given time.
+     *
+     * @param i    The index of the ingredient.
+     * @param time The time in milliseconds since the epoch.
+     * @return The fixed-point usage per millisecond.
+     */
+    private double currentRate(int i, long time) {
+        if (lastUse[i] == 0) {
+            return 0.0;
+        }
+        long elapsed = Math.max(0, time - lastUse[i]);
+        return rates[i] * Math.exp(-elapsed / windowMillis);
+    }
+
+    /**
+     * Predicts an ingredient's stock-out time at its current usage rate.
+     *
+     * @param i   The index of the ingredient.
+     * @param now The time to forecast from in milliseconds since the epoch.
+     * @return The predicted stock-out time, or Long.MAX_VALUE if unused.
+     */
+    private long predictStockOut(int i, long now) {
+        double rate = currentRate(i, now);
+        if (stock[i] <= 0) {
+            return now;
+        }
+        if (rate <= 0) {
+            return Long.MAX_VALUE;
+        }
+        double millis = stock[i] / rate;
+        return millis >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + (long) millis;
+    }
+
+    /**
+     * Finds the index of an ingredient, adding it if it is not known yet.
+     *
+     * @param name The name of the ingredient.
+     * @param unit The base unit of the ingredient.
+     * @return The index of the ingredient.
+     */
+    private int indexOf(String name, Unit unit) {
+        String key = StringFuncs.customToLowerCase(name);
+        Integer i = index.get(key);
+        if (i != null) {
+            return i;
+        }
+
+        if (count == names.length) {
+            resizeArrays();
+        }
+        names[count] = name;
+        units[count] = unit;
+        index.put(key, count);
+        return count++;
+    }
+
+    /**
+     * Resizes the per-ingredient arrays when the current capacity is exceeded.
+     */
+    private void resizeArrays() {
+        int capacity = names.length * 2;
+        String[] newNames = new String[capacity];
+        long[] newStock = new long[capacity];
+        Unit[] newUnits = new Unit[capacity];
+        double[] newRates = new double[capacity];
+        long[] newLastUse = new long[capacity];
+        for (int i = 0; i < count; i++) {
+            newNames[i] = names[i];
+            newStock[i] = stock[i];
+            newUnits[i] = units[i];
+            newRates[i] = rates[i];
+            newLastUse[i] = lastUse[i];
+        }
+        names = newNames;
+        stock = newStock;
+        units = newUnits;
+        rates = newRates;
+        lastUse = newLastUse;
+    }
+
+    /**
+     * Drains the subscription until stopped.
+     */
+    private void drainLoop() {
+        while (running) {
+            if (drain() == 0) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package model;
+
+/**
+ * Utility class for fixed-point ingredient quantities.
+ * A quantity is stored as a long counting thousandths of the base unit of its
+ * dimension (for example milligrams for mass), so repeated deductions are exact.
+ */
+public class FixedPoint {
+
+    /**
+     * The number of fixed-point steps in one base unit.
+     */
+    public static final long SCALE = 1000L;
+
+    /**
+     * Converts a quantity in base units to its fixed-point value, rounding to the
+     * nearest thousandth.
+     *
+     * @param quantity The quantity in base units.
+     * @return The fixed-point value of the quantity.
+     * @throws ArithmeticException if the quantity does not fit in the fixed-point range.
+     */
+    public static long toFixed(double quantity) {
+        double scaled = Math.rint(quantity * SCALE);
+        if (Double.isNaN(scaled) || scaled >= Long.MAX_VALUE || scaled <= Long.MIN_VALUE) {
+            throw new ArithmeticException("Quantity out of range: " + quantity);
+        }
+        return (long) scaled;
+    }
+
+    /**
+     * Converts a fixed-point value back to a quantity in base units.
+     *
+     * @param fixed The fixed-point value.
+     * @return The quantity in base units.
+     */
+    public static double toDouble(long fixed) {
+        return (double) fixed / SCALE;
+    }
+
+    /**
+     * Multiplies a per-bottle fixed-point quantity by a batch size. A result too
+     * large for a long saturates at Long.MAX_VALUE, which no stock level can cover.
+     *
+     * @param perBottle The fixed-point quantity needed per bottle.
+     * @param batchSize The number of bottles.
+     * @return The total fixed-point quantity needed.
+     */
+    public static long multiplySaturated(long perBottle, int batchSize) {
+        if (perBottle == (int) perBottle) {
+            return perBottle * batchSize;  // Both fit in an int, so the product fits in a long
+        }
+        long high = Math.multiplyHigh(perBottle, batchSize);
+        long low = perBottle * batchSize;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            return low;
+        }
+        return high < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+}
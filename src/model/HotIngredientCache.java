@@ -0,0 +1,304 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admits deductions of a few hot ingredients (such as base malt, water and yeast) that almost
+ * every recipe uses, so concurrent production threads do not all serialize on them.
+ * <p>
+ * The inventory stays the authoritative stock. For each ingredient the cache keeps the stock
+ * seen at the last reconciliation and a striped LongAdder of what has been deducted (less what
+ * was given back) since the cache was created. While the approximate stock stays well above a
+ * safety margin, a deduction is a lock-free check and add. Once the stock nears the margin, the
+ * ingredient switches to exact mode, where deductions are checked and applied under the
+ * ingredient's own lock. reconcile applies the counted deductions to the inventory and refreshes
+ * the stock seen, picking up any restocking done directly on the inventory.
+ * <p>
+ * Deductions racing past the approximate check can never overdraw the stock: the fast path only
+ * admits deductions of at most margin / consumers, so the deductions of the other concurrent
+ * consumers that one check can miss add up to less than the margin it keeps. A fast-path
+ * deduction marks itself in flight on a per-thread stripe before it checks, and a locked
+ * deduction switches the ingredient to exact mode and waits for those in flight to land before
+ * it checks, so the margin a fast-path check relied on is never handed out under the lock
+ * underneath it. Any larger deduction takes the entry lock, so a margin sized too small silently turns the cache into a
+ * lock per ingredient. Size it with marginFor from the largest deduction expected, such as the
+ * largest batch times the largest per-bottle quantity, and the number of consumers. The cost
+ * is that the last 2 * margin of stock is always deducted under the lock. getLockedDeductions
+ * shows how many deductions missed the fast path.
+ */
+public class HotIngredientCache {
+    private static final int STRIPE_PADDING = 16;  // Ints per stripe, so stripes do not share a cache line
+
+    private Entry[] entries;
+    private int count;
+    private Map<String, Integer> index;  // Lowercase name to entry index
+    private long margin;
+    private long fastPathLimit;  // Largest deduction admitted without the entry lock
+    private int stripes;  // Power of two number of in-flight stripes per entry
+
+    /**
+     * Constructs an empty HotIngredientCache.
+     *
+     * @param margin    The fixed-point safety margin below which deductions are checked exactly.
+     * @param consumers The largest number of threads that deduct concurrently.
+     * @throws IllegalArgumentException if the margin is negative or there are no consumers.
+     */
+    public HotIngredientCache(long margin, int consumers) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("Margin cannot be negative");
+        }
+        if (consumers <= 0) {
+            throw new IllegalArgumentException("Number of consumers must be positive");
+        }
+        this.entries = new Entry[4];
+        this.count = 0;
+        this.index = new HashMap<>();
+        this.margin = margin;
+        this.fastPathLimit = margin / consumers;
+        this.stripes = Integer.highestOneBit(consumers * 2 - 1);
+    }
+
+    /**
+     * Returns the smallest margin with which deductions of up to the given size take the fast
+     * path when the given number of threads deduct concurrently.
+     *
+     * @param largestDeduction The fixed-point size of the largest deduction expected.
+     * @param consumers        The largest number of threads that deduct concurrently.
+     * @return The fixed-point margin, saturated at Long.MAX_VALUE.
+     * @throws IllegalArgumentException if the deduction is negative or there are no consumers.
+     */
+    public static long marginFor(long largestDeduction, int consumers) {
+        if (largestDeduction < 0) {
+            throw new IllegalArgumentException("Largest deduction cannot be negative");
+        }
+        if (consumers <= 0) {
+            throw new IllegalArgumentException("Number of consumers must be positive");
+        }
+        return FixedPoint.multiplySaturated(largestDeduction, consumers);
+    }
+
+    /**
+     * Creates a cache for the given ingredients of an inventory, seeded with their current stock.
+     * Ingredients the inventory does not stock are skipped. The stock stays in the inventory.
+     * Callers must hold whatever lock guards the inventory.
+     *
+     * @param inventory The inventory whose ingredients to track.
+     * @param names     The names of the hot ingredients.
+     * @param margin    The fixed-point safety margin below which deductions are checked exactly.
+     * @param consumers The largest number of threads that deduct concurrently.
+     * @return The new cache.
+     */
+    public static HotIngredientCache track(Inventory inventory, String[] names, long margin, int consumers) {
+        HotIngredientCache cache = new HotIngredientCache(margin, consumers);
+        for (String name : names) {
+            Unit unit = inventory.getIngredientUnit(name);
+            if (unit != null && cache.indexOf(name) < 0) {
+                cache.register(name, inventory.getIngredientFixedQuantity(name), unit);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Adds a hot ingredient to the cache. Not safe to call while other threads use the cache.
+     *
+     * @param name  The name of the ingredient.
+     * @param stock The fixed-point stock of the ingredient in the inventory.
+     * @param unit  The base unit of the ingredient.
+     * @return The index of the ingredient in the cache.
+     */
+    public int register(String name, long stock, Unit unit) {
+        if (count == entries.length) {
+            Entry[] newEntries = new Entry[entries.length * 2];
+            for (int i = 0; i < count; i++) {
+                newEntries[i] = entries[i];
+            }
+            entries = newEntries;
+        }
+        entries[count] = new Entry(name, unit, stock, stripes);
+        entries[count].exact = stock < 2 * margin;
+        index.put(StringFuncs.customToLowerCase(name), count);
+        return count++;
+    }
+
+    /**
+     * Finds the index of a hot ingredient by name, ignoring case.
+     *
+     * @param name The name of the ingredient.
+     * @return The index of the ingredient, or -1 if it is not in the cache.
+     */
+    public int indexOf(String name) {
+        Integer i = index.get(StringFuncs.customToLowerCase(name));
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Deducts a quantity of a hot ingredient if enough is available. The deduction reaches the
+     * inventory at the next reconcile.
+     *
+     * @param i      The index of the ingredient.
+     * @param amount The fixed-point quantity to deduct.
+     * @return true if the quantity was deducted, false if not enough was available.
+     */
+    public boolean tryConsume(int i, long amount) {
+        Entry entry = entries[i];
+        if (!entry.exact && amount <= fastPathLimit) {
+            int stripe = (int) Thread.currentThread().getId() & (stripes - 1);
+            entry.inFlight.incrementAndGet(stripe * STRIPE_PADDING);
+            try {
+                // Fast path: far from the threshold, no lock. exact is read again after marking
+                // the deduction in flight, so a locked deduction either sees it or turns it away.
+                if (!entry.exact && entry.base - entry.used.sum() - amount >= margin) {
+                    entry.used.add(amount);
+                    return true;
+                }
+            } finally {
+                entry.inFlight.decrementAndGet(stripe * STRIPE_PADDING);
+            }
+        }
+
+        synchronized (entry) {
+            entry.lockedDeductions++;
+            entry.exact = true;
+            awaitFastPath(entry);
+            if (entry.base - entry.used.sum() < amount) {
+                entry.exact = entry.base - entry.used.sum() < 2 * margin;
+                return false;
+            }
+            entry.used.add(amount);
+            entry.exact = entry.base - entry.used.sum() < 2 * margin;
+            return true;
+        }
+    }
+
+    /**
+     * Waits for the fast-path deductions that passed their check before the entry switched to
+     * exact mode to add to the usage counter. Each stripe counts the deductions of its threads
+     * in flight, so it is never negative and a zero sum means none are.
+     *
+     * @param entry The entry, in exact mode, whose lock the caller holds.
+     */
+    private void awaitFastPath(Entry entry) {
+        for (int s = 0; s < stripes; s++) {
+            while (entry.inFlight.get(s * STRIPE_PADDING) != 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Gives back a quantity deducted by tryConsume, for example when the batch is cancelled.
+     * The stock reaches the inventory at the next reconcile.
+     *
+     * @param i      The index of the ingredient.
+     * @param amount The fixed-point quantity to give back.
+     */
+    public void release(int i, long amount) {
+        entries[i].used.add(-amount);
+    }
+
+    /**
+     * Applies the deductions counted since the last reconciliation to the inventory, as usage,
+     * and refreshes the stock seen from the inventory. Callers must hold whatever lock guards
+     * the inventory. If stock was removed from the inventory directly in the meantime and the
+     * counted deductions no longer fit, the cache admitted more than there was: nothing is applied
+     * for that ingredient and the error is reported instead of hidden.
+     *
+     * @param inventory The inventory the cache tracks.
+     * @throws IllegalStateException if the inventory holds less of an ingredient than was deducted from it.
+     */
+    public void reconcile(Inventory inventory) {
+        for (int i = 0; i < count; i++) {
+            Entry entry = entries[i];
+            synchronized (entry) {
+                long used = entry.used.sum();
+                long delta = used - entry.reconciled;
+                if (delta > 0 && !inventory.useIngredientFixedQuantity(entry.name, delta, entry.unit)) {
+                    throw new IllegalStateException("Hot ingredient " + entry.name + " was overdrawn: "
+                            + FixedPoint.toDouble(delta) + " deducted, "
+                            + FixedPoint.toDouble(inventory.getIngredientFixedQuantity(entry.name)) + " in stock");
+                } else if (delta < 0) {
+                    inventory.addIngredientFixedQuantity(entry.name, -delta, entry.unit);
+                }
+                entry.reconciled = used;
+                entry.base = inventory.getIngredientFixedQuantity(entry.name) + used;
+                entry.exact = entry.base - entry.used.sum() < 2 * margin;
+            }
+        }
+    }
+
+    /**
+     * Returns the stock of a hot ingredient without locking: the inventory's stock at the last
+     * reconciliation less the deductions since. The value may miss deductions that are in progress.
+     *
+     * @param i The index of the ingredient.
+     * @return The approximate fixed-point stock.
+     */
+    public long getApproximateQuantity(int i) {
+        Entry entry = entries[i];
+        return entry.base - entry.used.sum();
+    }
+
+    /**
+     * Returns how many deductions took the entry lock instead of the fast path, because the
+     * ingredient was near the margin or the deduction was larger than margin / consumers.
+     *
+     * @return The number of locked deductions across all hot ingredients.
+     */
+    public long getLockedDeductions() {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            synchronized (entries[i]) {
+                total += entries[i].lockedDeductions;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param i The index of the ingredient.
+     * @return The name of the ingredient.
+     */
+    public String getName(int i) {
+        return entries[i].name;
+    }
+
+    /**
+     * @param i The index of the ingredient.
+     * @return The base unit of the ingredient.
+     */
+    public Unit getUnit(int i) {
+        return entries[i].unit;
+    }
+
+    /**
+     * @return The number of hot ingredients in the cache.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * The usage counter of one hot ingredient.
+     */
+    private static class Entry {
+        private final String name;
+        private final Unit unit;
+        private volatile long base;  // Inventory stock at the last reconcile plus the usage counted then
+        private final LongAdder used = new LongAdder();  // Deducted less given back since the cache was created
+        private long reconciled;  // The part of used already applied to the inventory, under the entry lock
+        private volatile boolean exact;  // Whether deductions must take the entry lock
+        private long lockedDeductions;  // Deductions that took the entry lock, under the entry lock
+        private final AtomicIntegerArray inFlight;  // Fast-path deductions between check and add, per stripe
+
+        Entry(String name, Unit unit, long stock, int stripes) {
+            this.name = name;
+            this.unit = unit;
+            this.base = stock;
+            this.inFlight = new AtomicIntegerArray(stripes * STRIPE_PADDING);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the result of each request by its idempotency key, so a retried request gets
+ * the original result instead of running again. Each key is stored with a fingerprint of the
+ * request (its operation and arguments), and reusing a key for a different request is rejected.
+ * Entries expire a fixed time after the request first ran, and the oldest are evicted once the
+ * cache holds more than its capacity. Requests that fail, by throwing or by a result the caller
+ * marks as not to be remembered, are forgotten so a retry runs them again.
+ * A duplicate that arrives while the original is still running waits for its result.
+ * Looking up a key is one concurrent hash map read; eviction runs on one thread at a time
+ * after new requests and never blocks a lookup.
+ *
+ * @param <V> The type of the request results.
+ */
+public class IdempotencyCache<V> {
+    /** The default number of request results kept. */
+    public static final int DEFAULT_CAPACITY = 10000;
+    /** The default time a request result is kept, in milliseconds. */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private int capacity;
+    private long ttlNanos;
+    private ConcurrentHashMap<String, Entry<V>> entries;
+    private ConcurrentLinkedQueue<Entry<V>> order;  // Entries in the order their requests first ran
+    private ReentrantLock evictionLock;
+
+    /**
+     * Constructs an IdempotencyCache with the default capacity and time to live.
+     */
+    public IdempotencyCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Constructs an IdempotencyCache.
+     *
+     * @param capacity  The number of request results kept.
+     * @param ttlMillis The time a request result is kept, in milliseconds.
+     */
+    public IdempotencyCache(int capacity, long ttlMillis) {
+        if (capacity <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Capacity and time to live must be positive");
+        }
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new ConcurrentHashMap<>();
+        this.order = new ConcurrentLinkedQueue<>();
+        this.evictionLock = new ReentrantLock();
+    }
+
+    /**
+     * Builds the fingerprint of a request from its operation and arguments. Each part is
+     * length-prefixed, so different arguments can never produce the same fingerprint.
+     *
+     * @param operation The name of the operation.
+     * @param arguments The arguments that determine the request's effect.
+     * @return The fingerprint.
+     */
+    public static String fingerprint(String operation, Object... arguments) {
+        StringBuilder builder = new StringBuilder(operation);
+        for (Object argument : arguments) {
+            String text = String.valueOf(argument);
+            builder.append('|').append(text.length()).append(':').append(text);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Runs a request once per idempotency key, remembering every result.
+     *
+     * @param key         The idempotency key of the request.
+     * @param fingerprint The fingerprint of the request, see fingerprint.
+     * @param action      The request to run.
+     * @return The result of the original request with this key.
+     * @throws IllegalArgumentException if the key was used for a request with another fingerprint.
+     */
+    public V execute(String key, String fingerprint, Supplier<V> action) {
+        return execute(key, fingerprint, action, result -> true);
+    }
+
+    /**
+     * Runs a request once per idempotency key. If the key was seen within the time to live for
+     * the same request, the original result is returned and the action is not run. If the action
+     * throws, or its result fails the remember test, nothing is remembered, so a retry runs it again.
+     *
+     * @param key         The idempotency key of the request.
+     * @param fingerprint The fingerprint of the request, see fingerprint.
+     * @param action      The request to run.
+     * @param remember    Whether a result is a success to remember.
+     * @return The result of the original request with this key.
+     * @throws IllegalArgumentException if the key was used for a request with another fingerprint.
+     */
+    public V execute(String key, String fingerprint, Supplier<V> action, Predicate<? super V> remember) {
+        if (key == null || fingerprint == null) {
+            throw new IllegalArgumentException("Idempotency key and fingerprint cannot be null");
+        }
+        long now = System.nanoTime();
+        Entry<V> existing = entries.get(key);
+        if (existing != null && !existing.isExpired(now, ttlNanos)) {
+            return existing.await(fingerprint);
+        }
+
+        Entry<V> created = new Entry<>(key, fingerprint, now);
+        while ((existing = entries.putIfAbsent(key, created)) != null) {
+            if (!existing.isExpired(now, ttlNanos)) {
+                return existing.await(fingerprint);
+            }
+            entries.remove(key, existing);
+        }
+
+        V result;
+        try {
+            result = action.get();
+        } catch (RuntimeException | Error e) {
+            entries.remove(key, created);
+            created.result.completeExceptionally(e);
+            throw e;
+        }
+        if (!remember.test(result)) {
+            entries.remove(key, created);  // Duplicates already waiting still get this result
+            created.result.complete(result);
+            return result;
+        }
+        created.result.complete(result);
+        order.add(created);
+        evict(now);
+        return result;
+    }
+
+    /**
+     * Checks whether a request with the given key has completed within the time to live.
+     *
+     * @param key The idempotency key.
+     * @return true if a result is remembered for the key.
+     */
+    public boolean contains(String key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null && entry.result.isDone() && !entry.isExpired(System.nanoTime(), ttlNanos);
+    }
+
+    /**
+     * @return The number of requests currently remembered or running.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes expired entries and, while over capacity, the oldest entries. Skipped if another
+     * thread is already evicting.
+     *
+     * @param now The current time from System.nanoTime.
+     */
+    private void evict(long now) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            Entry<V> oldest;
+            while ((oldest = order.peek()) != null
+                    && (oldest.isExpired(now, ttlNanos) || entries.size() > capacity)) {
+                order.poll();
+                entries.remove(oldest.key, oldest);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * One remembered request: its key and fingerprint, when it first ran and its result.
+     */
+    private static class Entry<V> {
+        private final String key;
+        private final String fingerprint;
+        private final long createdNanos;
+        private final CompletableFuture<V> result;
+
+        Entry(String key, String fingerprint, long createdNanos) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.createdNanos = createdNanos;
+            this.result = new CompletableFuture<>();
+        }
+
+        /**
+         * @param now      The current time from System.nanoTime.
+         * @param ttlNanos The time to live.
+         * @return true if the request has completed and its time to live has passed.
+         */
+        boolean isExpired(long now, long ttlNanos) {
+            return result.isDone() && now - createdNanos > ttlNanos;
+        }
+
+        /**
+         * Waits for the request to complete and returns its result, rethrowing its failure.
+         *
+         * @param fingerprint The fingerprint of the duplicate request.
+         * @return The result of the request.
+         * @throws IllegalArgumentException if the duplicate is a different request.
+         */
+        V await(String fingerprint) {
+            if (!this.fingerprint.equals(fingerprint)) {
+                throw new IllegalArgumentException("Idempotency key " + key + " was already used for a different request");
+            }
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
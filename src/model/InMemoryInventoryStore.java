@@ -0,0 +1,152 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An in-memory InventoryStore.
+ * Names, fixed-point amounts and units are kept in parallel arrays so stock
+ * changes are plain long arithmetic with no objects created per change, and a
+ * hash index on the lowercase name replaces linear name scans.
+ * All arithmetic is overflow checked.
+ */
+public class InMemoryInventoryStore implements InventoryStore {
+    private String[] names;
+    private long[] amounts;  // Fixed-point amounts, see FixedPoint
+    private Unit[] units;  // Base unit of each ingredient
+    private int count;
+    private Map<String, Integer> index;  // Lowercase name to array index
+    private NameDictionary dictionary;  // Shared names, or null
+
+    private BeverageBatch[] batches;
+    private int batchCount;
+
+    /**
+     * Constructs an empty InMemoryInventoryStore with an initial capacity of 10 ingredients
+     * and 10 batches.
+     */
+    public InMemoryInventoryStore() {
+        this(null);
+    }
+
+    /**
+     * Constructs an empty InMemoryInventoryStore whose ingredient names are shared
+     * through a dictionary.
+     *
+     * @param dictionary The dictionary to share names through, or null to keep names as given.
+     */
+    public InMemoryInventoryStore(NameDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.names = new String[10];
+        this.amounts = new long[10];
+        this.units = new Unit[10];
+        this.count = 0;
+        this.index = new HashMap<>();
+        this.batches = new BeverageBatch[10];
+        this.batchCount = 0;
+    }
+
+    @Override
+    public int indexOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer i = index.get(StringFuncs.customToLowerCase(name));
+        return i == null ? -1 : i;  // -1 if ingredient not found
+    }
+
+    @Override
+    public int add(String name, long amount, Unit unit) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        if (count == names.length) {
+            resizeArrays();
+        }
+        String key = StringFuncs.customToLowerCase(name);
+        if (dictionary != null) {
+            name = dictionary.intern(name);
+            key = dictionary.intern(key);
+        }
+        names[count] = name;
+        amounts[count] = amount;
+        units[count] = unit;
+        index.putIfAbsent(key, count);
+        return count++;
+    }
+
+    @Override
+    public void addAmount(int index, long delta) {
+        long result = Math.addExact(amounts[index], delta);
+        if (result < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        amounts[index] = result;
+    }
+
+    @Override
+    public long getAmount(int index) {
+        return amounts[index];
+    }
+
+    @Override
+    public String getName(int index) {
+        return names[index];
+    }
+
+    @Override
+    public Unit getUnit(int index) {
+        return units[index];
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void addBatch(BeverageBatch batch) {
+        if (batchCount == batches.length) {
+            resizeBatchArray();
+        }
+        batches[batchCount++] = batch;
+    }
+
+    @Override
+    public BeverageBatch getBatch(int index) {
+        return batches[index];
+    }
+
+    @Override
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Resizes the ingredient arrays when the current capacity is exceeded.
+     */
+    private void resizeArrays() {
+        String[] newNames = new String[names.length * 2];
+        long[] newAmounts = new long[names.length * 2];
+        Unit[] newUnits = new Unit[names.length * 2];
+        for (int i = 0; i < count; i++) {
+            newNames[i] = names[i];
+            newAmounts[i] = amounts[i];
+            newUnits[i] = units[i];
+        }
+        names = newNames;
+        amounts = newAmounts;
+        units = newUnits;
+    }
+
+    /**
+     * Resizes the batch array when the current capacity is exceeded.
+     */
+    private void resizeBatchArray() {
+        BeverageBatch[] newBatches = new BeverageBatch[batches.length * 2];
+        for (int i = 0; i < batchCount; i++) {
+            newBatches[i] = batches[i];
+        }
+        batches = newBatches;
+    }
+}
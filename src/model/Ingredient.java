@@ -2,20 +2,37 @@ package model;
 
 /**
  * Represents an ingredient used in the brewing process.
- * Each ingredient has a name and a quantity available.
+ * Each ingredient has a name, a quantity available and the unit the quantity is measured in.
  */
 public class Ingredient {
     private String name;
     private double quantity;
+    private Unit unit;
 
     /**
-     * Constructs an Ingredient with a specified name and quantity.
+     * Constructs an Ingredient with a specified name and quantity, counted in plain units.
      *
      * @param name The name of the ingredient.
      * @param quantity The initial quantity of the ingredient.
      */
     public Ingredient(String name, double quantity) {
+        this(name, quantity, Unit.UNIT);
+    }
+
+    /**
+     * Constructs an Ingredient with a specified name, quantity and unit of measure.
+     *
+     * @param name The name of the ingredient.
+     * @param quantity The initial quantity of the ingredient.
+     * @param unit The unit the quantity is measured in.
+     * @throws IllegalArgumentException if the unit is null.
+     */
+    public Ingredient(String name, double quantity, Unit unit) {
+        if (unit == null) {
+            throw new IllegalArgumentException("Unit cannot be null");
+        }
         this.name = name;
+        this.unit = unit;
         setQuantity(quantity); // Use setter to apply validation
     }
 
@@ -37,6 +54,15 @@ public class Ingredient {
         return quantity;
     }
 
+    /**
+     * Returns the unit the quantity of the ingredient is measured in.
+     *
+     * @return The unit of the ingredient.
+     */
+    public Unit getUnit() {
+        return unit;
+    }
+
     /**
      * Sets the quantity of the ingredient, ensuring it is non-negative.
      *
@@ -85,12 +111,12 @@ public class Ingredient {
 
     /**
      * Returns a string representation of the ingredient,
-     * showing its name and current quantity.
+     * showing its name, current quantity and unit.
      *
      * @return A string representation of the ingredient.
      */
     @Override
     public String toString() {
-        return name + ": " + quantity;
+        return name + ": " + quantity + " " + unit;
     }
 }
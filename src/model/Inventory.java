@@ -3,132 +3,430 @@ package model;
 /**
  * The Inventory class manages the stock of ingredients, containers, and finished beverage batches.
  * It allows adding ingredients, tracking container availability, and retrieving finished batches.
+ * Stock and finished batches are kept in an InventoryStore, so the storage backend can be swapped
+ * without changing the rules applied here.
+ * Every stock change and its event are made under this inventory's monitor, so subscribe can
+ * take a snapshot that lines up exactly with the events that follow it. Reads of the store take
+ * the same monitor, since stores are not required to be thread-safe.
  */
 public class Inventory {
 
-    private Ingredient[] ingredients;
-    private int ingredientCount;
+    private InventoryStore stock;  // Ingredient stock as fixed-point amounts, and finished batches
 
-    private BeverageBatch[] finishedBatches;
-    private int batchCount;
+    /**
+     * The number of containers of an inventory created without an explicit count.
+     */
+    public static final int DEFAULT_CONTAINER_COUNT = 3;
+
+    private Container[] containers;  // Fixed size array, C1 to Cn
 
-    private Container[] containers;  // Fixed size array for three containers
+    private InventoryEventBus eventBus;  // Optional change feed, null when not attached
+
+    private IdempotencyCache<Boolean> stockRequests;  // Results of keyed stock mutations
 
     /**
-     * Constructs a new Inventory object with initialized arrays for ingredients, finished batches, and containers.
-     * The system starts with a default size of 10 ingredients, 10 beverage batches, and exactly 3 containers.
+     * Constructs a new Inventory object with an empty in-memory store and the default
+     * containers: DEFAULT_CONTAINER_COUNT containers of Container.DEFAULT_CAPACITY bottles.
      */
     public Inventory() {
-        this.ingredients = new Ingredient[10];  // Initial capacity for ingredients
-        this.ingredientCount = 0;
+        this(new InMemoryInventoryStore());
+    }
 
-        this.finishedBatches = new BeverageBatch[10];  // Initial capacity for finished batches
-        this.batchCount = 0;
+    /**
+     * Constructs a new Inventory object on the given store, with the default containers.
+     * Any stock and batches already in the store are kept.
+     *
+     * @param store The store holding ingredient stock and finished batches.
+     */
+    public Inventory(InventoryStore store) {
+        this(store, DEFAULT_CONTAINER_COUNT, Container.DEFAULT_CAPACITY);
+    }
 
-        this.containers = new Container[3];  // Exactly 3 containers
-        initializeContainers();
+    /**
+     * Constructs a new Inventory object on the given store, with containers C1 to Cn of equal
+     * capacity. Capacity is counted in bottles, not volume: orders, container plans and finished
+     * batches are all sized in bottles, and recipes give quantities per bottle, so a bottle count
+     * is what the planner can compare without knowing the bottle size.
+     * Any stock and batches already in the store are kept.
+     *
+     * @param store             The store holding ingredient stock and finished batches.
+     * @param containerCount    The number of containers.
+     * @param containerCapacity The number of bottles each container holds.
+     * @throws IllegalArgumentException if the container count or capacity is not positive.
+     */
+    public Inventory(InventoryStore store, int containerCount, int containerCapacity) {
+        if (containerCount <= 0) {
+            throw new IllegalArgumentException("Container count must be positive");
+        }
+        this.stock = store;
+
+        this.containers = new Container[containerCount];
+        initializeContainers(containerCapacity);
+        this.stockRequests = new IdempotencyCache<>();
     }
 
     /**
-     * Initializes the inventory with exactly 3 containers.
+     * Initializes the containers, numbered from C1.
+     *
+     * @param capacity The number of bottles each container holds.
      */
-    private void initializeContainers() {
-        containers[0] = new Container("C1");
-        containers[1] = new Container("C2");
-        containers[2] = new Container("C3");
+    private void initializeContainers(int capacity) {
+        for (int i = 0; i < containers.length; i++) {
+            containers[i] = new Container("C" + (i + 1), capacity);
+        }
     }
 
     /**
-     * Adds an ingredient to the inventory or updates the quantity if it already exists.
-     * If the ingredient array is full, it will be resized to accommodate more ingredients.
+     * Attaches an event bus that receives a change event from every mutation of this inventory.
+     *
+     * @param eventBus The event bus to publish to, or null to stop publishing.
+     */
+    public void setEventBus(InventoryEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Publishes a change event if an event bus is attached.
+     *
+     * @param type    The kind of change.
+     * @param subject The ingredient name, recipe name or container ID the change applies to.
+     * @param amount  The fixed-point quantity, bottle count, or 0.
+     * @param unit    The base unit for ingredient events, or null.
+     */
+    private void publish(InventoryEvent.Type type, String subject, long amount, Unit unit) {
+        if (eventBus != null) {
+            eventBus.publish(type, subject, amount, unit);
+        }
+    }
+
+    /**
+     * Adds an ingredient to the inventory or updates the quantity if it already exists,
+     * counted in plain units.
      *
      * @param name     The name of the ingredient.
      * @param quantity The quantity to add or update.
      */
     public void addIngredient(String name, double quantity) {
+        addIngredient(name, quantity, Unit.UNIT);
+    }
+
+    /**
+     * Checks that the inventory's store can hold an ingredient or batch name, so a name can be
+     * rejected when it is entered rather than after stock has changed.
+     *
+     * @param name The ingredient or recipe name.
+     * @throws IllegalArgumentException if the store cannot hold the name.
+     */
+    public void checkName(String name) {
+        stock.checkName(name);
+    }
+
+    /**
+     * Adds an ingredient to the inventory or updates the quantity if it already exists.
+     * Stock is held as fixed-point amounts in the base unit of the ingredient's dimension,
+     * so the quantity is converted from the given unit before it is stored.
+     *
+     * @param name     The name of the ingredient.
+     * @param quantity The quantity to add or update.
+     * @param unit     The unit the quantity is measured in.
+     * @throws IllegalArgumentException if the ingredient is already stocked in a unit of another
+     *                                  dimension, or the resulting quantity would be negative.
+     * @throws ArithmeticException      if the resulting quantity overflows.
+     */
+    public synchronized void addIngredient(String name, double quantity, Unit unit) {
+        long amount = FixedPoint.toFixed(unit.toBase(quantity));
+
         // Check if ingredient already exists
-        for (int i = 0; i < ingredientCount; i++) {
-            if (StringFuncs.customStringEquals(ingredients[i].getName(),name)) {
-                ingredients[i].setQuantity(ingredients[i].getQuantity() + quantity);  // Update quantity
-                return;
+        int index = stock.indexOf(name);
+        if (index >= 0) {
+            if (!stock.getUnit(index).isCompatibleWith(unit)) {
+                throw new IllegalArgumentException("Ingredient " + name + " is measured in "
+                        + stock.getUnit(index) + ", not " + unit);
             }
+            stock.addAmount(index, amount);  // Update quantity
+            publish(InventoryEvent.Type.INGREDIENT_ADDED, stock.getName(index), amount, stock.getUnit(index));
+            return;
         }
 
         // Add new ingredient if it doesn't exist
-        if (ingredientCount == ingredients.length) {
-            resizeIngredientArray();
+        stock.add(name, amount, unit.getBaseUnit());
+        publish(InventoryEvent.Type.INGREDIENT_ADDED, name, amount, unit.getBaseUnit());
+    }
+
+    /**
+     * Adds an ingredient like addIngredient(name, quantity, unit), once per idempotency key:
+     * a retried request with the same key is ignored.
+     *
+     * @param requestKey The idempotency key of the request.
+     * @param name       The name of the ingredient.
+     * @param quantity   The quantity to add.
+     * @param unit       The unit the quantity is measured in.
+     * @throws IllegalArgumentException if the key was already used for a different request.
+     */
+    public void addIngredientOnce(String requestKey, String name, double quantity, Unit unit) {
+        String fingerprint = IdempotencyCache.fingerprint("addIngredient", StringFuncs.customToLowerCase(name),
+                FixedPoint.toFixed(unit.toBase(quantity)), unit.getBaseUnit().getSymbol());
+        stockRequests.execute(requestKey, fingerprint, () -> {
+            addIngredient(name, quantity, unit);
+            return Boolean.TRUE;
+        });
+    }
+
+    /**
+     * Adds an exact fixed-point quantity of an ingredient, such as stock moved in from another site.
+     *
+     * @param name   The name of the ingredient.
+     * @param amount The fixed-point quantity to add.
+     * @param unit   The base unit the amount is measured in.
+     * @throws IllegalArgumentException if the ingredient is already stocked in a unit of another dimension.
+     */
+    public synchronized void addIngredientFixedQuantity(String name, long amount, Unit unit) {
+        int index = stock.indexOf(name);
+        if (index >= 0) {
+            if (!stock.getUnit(index).isCompatibleWith(unit)) {
+                throw new IllegalArgumentException("Ingredient " + name + " is measured in "
+                        + stock.getUnit(index) + ", not " + unit);
+            }
+            stock.addAmount(index, amount);
+            publish(InventoryEvent.Type.INGREDIENT_ADDED, stock.getName(index), amount, stock.getUnit(index));
+            return;
         }
-        ingredients[ingredientCount] = new Ingredient(name, quantity);
-        ingredientCount++;
+        stock.add(name, amount, unit.getBaseUnit());
+        publish(InventoryEvent.Type.INGREDIENT_ADDED, name, amount, unit.getBaseUnit());
     }
 
     /**
-     * Retrieves the available quantity of an ingredient by its name.
+     * Removes an exact fixed-point quantity of an ingredient if enough is stocked in a
+     * compatible unit, such as stock reserved for another site.
+     *
+     * @param name   The name of the ingredient.
+     * @param amount The fixed-point quantity to remove.
+     * @param unit   The unit the requester measures the ingredient in.
+     * @return true if the quantity was removed, false if not enough was available.
+     */
+    public synchronized boolean removeIngredientFixedQuantity(String name, long amount, Unit unit) {
+        int index = stock.indexOf(name);
+        if (index < 0 || !stock.getUnit(index).isCompatibleWith(unit) || stock.getAmount(index) < amount) {
+            return false;
+        }
+        stock.addAmount(index, -amount);
+        publish(InventoryEvent.Type.INGREDIENT_REMOVED, stock.getName(index), amount, stock.getUnit(index));
+        return true;
+    }
+
+    /**
+     * Deducts an exact fixed-point quantity of an ingredient used in production, if enough is
+     * stocked in a compatible unit. Used by HotIngredientCache to apply the deductions it counted.
+     *
+     * @param name   The name of the ingredient.
+     * @param amount The fixed-point quantity used.
+     * @param unit   The unit the requester measures the ingredient in.
+     * @return true if the quantity was deducted, false if not enough was available.
+     */
+    synchronized boolean useIngredientFixedQuantity(String name, long amount, Unit unit) {
+        int index = stock.indexOf(name);
+        if (index < 0 || !stock.getUnit(index).isCompatibleWith(unit) || stock.getAmount(index) < amount) {
+            return false;
+        }
+        if (amount > 0) {
+            stock.addAmount(index, -amount);
+            publish(InventoryEvent.Type.INGREDIENT_USED, stock.getName(index), amount, stock.getUnit(index));
+        }
+        return true;
+    }
+
+    /**
+     * Removes stock like removeIngredientFixedQuantity(name, amount, unit), once per idempotency
+     * key: a retried request with the same key returns true without removing again. A request
+     * that found too little stock is not remembered, so a retry after restocking removes it.
+     *
+     * @param requestKey The idempotency key of the request.
+     * @param name       The name of the ingredient.
+     * @param amount     The fixed-point quantity to remove.
+     * @param unit       The unit the requester measures the ingredient in.
+     * @return true if the quantity was removed by this or the original request, false if not enough was available.
+     * @throws IllegalArgumentException if the key was already used for a different request.
+     */
+    public boolean removeIngredientFixedQuantityOnce(String requestKey, String name, long amount, Unit unit) {
+        String fingerprint = IdempotencyCache.fingerprint("removeIngredient", StringFuncs.customToLowerCase(name),
+                amount, unit.getBaseUnit().getSymbol());
+        return stockRequests.execute(requestKey, fingerprint, () -> removeIngredientFixedQuantity(name, amount, unit),
+                removed -> removed);
+    }
+
+    /**
+     * Retrieves the available quantity of an ingredient by its name, in the base unit
+     * of the ingredient's dimension.
      *
      * @param name The name of the ingredient.
      * @return The quantity of the ingredient, or 0.0 if the ingredient is not found.
      */
     public double getIngredientQuantity(String name) {
-        for (int i = 0; i < ingredientCount; i++) {
-            if (StringFuncs.customStringEquals(ingredients[i].getName(),name)) {
-                return ingredients[i].getQuantity();
-            }
-        }
-        return 0.0;  // Ingredient not found
+        return FixedPoint.toDouble(getIngredientFixedQuantity(name));
+    }
+
+    /**
+     * Retrieves the exact fixed-point quantity of an ingredient by its name.
+     *
+     * @param name The name of the ingredient.
+     * @return The fixed-point quantity of the ingredient, or 0 if the ingredient is not found.
+     */
+    public synchronized long getIngredientFixedQuantity(String name) {
+        int index = stock.indexOf(name);
+        return index >= 0 ? stock.getAmount(index) : 0L;
+    }
+
+    /**
+     * Retrieves the position of an ingredient in the arrays returned by getIngredients and
+     * getIngredientFixedQuantities. Positions never change, since ingredients are never removed.
+     *
+     * @param name The name of the ingredient.
+     * @return The position of the ingredient, or -1 if the ingredient is not found.
+     */
+    public synchronized int getIngredientIndex(String name) {
+        return stock.indexOf(name);
+    }
+
+    /**
+     * Retrieves the unit the stock of an ingredient is held in, by its position.
+     *
+     * @param index The position of the ingredient, as returned by getIngredientIndex.
+     * @return The base unit of the ingredient.
+     */
+    public synchronized Unit getIngredientUnitAt(int index) {
+        return stock.getUnit(index);
+    }
+
+    /**
+     * Returns the number of distinct ingredients ever stocked. Ingredients are never removed,
+     * so the set of ingredient names has changed exactly when this count has.
+     *
+     * @return The number of ingredients.
+     */
+    public synchronized int getIngredientCount() {
+        return stock.size();
+    }
+
+    /**
+     * Retrieves the unit the stock of an ingredient is held in.
+     *
+     * @param name The name of the ingredient.
+     * @return The base unit of the ingredient, or null if the ingredient is not found.
+     */
+    public synchronized Unit getIngredientUnit(String name) {
+        int index = stock.indexOf(name);
+        return index >= 0 ? stock.getUnit(index) : null;
     }
 
     /**
      * Uses the ingredients for a batch of a given recipe and batch size.
      * Checks if sufficient quantities of all ingredients are available.
      * If all ingredients are available, deducts the required quantities.
+     * Recipe quantities are already normalized to fixed-point base units, so the check and the
+     * deduction are exact long arithmetic, and an ingredient is only treated as available when
+     * its stock is held in a unit of the same dimension.
      *
      * @param recipe   The recipe containing ingredient names and quantities.
      * @param batchSize The size of the batch to produce.
      * @return true if ingredients were successfully used, false if there were insufficient quantities.
+     * @throws IllegalArgumentException if the store cannot record batches under the recipe's name.
      */
     public boolean useIngredients(Recipe recipe, int batchSize) {
+        return useIngredients(recipe, batchSize, null);
+    }
+
+    /**
+     * Uses the ingredients for a batch of a given recipe and batch size, leaving out the
+     * ingredient lines the caller takes care of elsewhere, such as hot ingredients held in a
+     * HotIngredientCache. Behaves like useIngredients(recipe, batchSize) for the other lines.
+     *
+     * @param recipe    The recipe containing ingredient names and quantities.
+     * @param batchSize The size of the batch to produce.
+     * @param skipLines Which ingredient lines to leave out, by line index, or null to use all lines.
+     * @return true if ingredients were successfully used, false if there were insufficient quantities.
+     * @throws IllegalArgumentException if the store cannot record batches under the recipe's name;
+     *         nothing is used in that case.
+     */
+    public synchronized boolean useIngredients(Recipe recipe, int batchSize, boolean[] skipLines) {
+        stock.checkName(recipe.getName());  // Fail before deducting, not when the batch is recorded
         String[] ingredientNames = recipe.getIngredientNames();
-        double[] ingredientQuantities = recipe.getIngredientQuantities();
+        long[] ingredientQuantities = recipe.getFixedIngredientQuantities();
+        Unit[] ingredientUnits = recipe.getIngredientUnits();
+        int[] stockIndexes = new int[ingredientNames.length];
 
         // First, check if all ingredients have sufficient quantities
         for (int i = 0; i < ingredientNames.length; i++) {
-            String ingredient = ingredientNames[i];
-            double totalQuantityNeeded = ingredientQuantities[i] * batchSize;
-            double availableQuantity = getIngredientQuantity(ingredient);
+            long totalQuantityNeeded = FixedPoint.multiplySaturated(ingredientQuantities[i], batchSize);
+            if (totalQuantityNeeded <= 0 || (skipLines != null && skipLines[i])) {
+                stockIndexes[i] = -1;
+                continue;  // Nothing to deduct for this ingredient
+            }
 
-            if (availableQuantity < totalQuantityNeeded) {
+            int index = stock.indexOf(ingredientNames[i]);
+            stockIndexes[i] = index;
+
+            if (index < 0 || !ingredientUnits[i].isCompatibleWith(stock.getUnit(index))) {
+                return false;  // Ingredient is not stocked, or stocked in a different dimension
+            }
+            if (stock.getAmount(index) < totalQuantityNeeded) {
                 return false;  // Not enough quantity available for this ingredient
             }
         }
 
         // If all ingredients are available, deduct the required quantities
         for (int i = 0; i < ingredientNames.length; i++) {
-            String ingredient = ingredientNames[i];
-            double totalQuantityNeeded = ingredientQuantities[i] * batchSize;
-
-            // Deduct the quantity from the inventory
-            for (int j = 0; j < ingredientCount; j++) {
-                if (StringFuncs.customStringEquals(ingredients[j].getName(),ingredient)) {
-                    ingredients[j].setQuantity(ingredients[j].getQuantity() - totalQuantityNeeded);
-                }
+            long totalQuantityNeeded = FixedPoint.multiplySaturated(ingredientQuantities[i], batchSize);
+            if (stockIndexes[i] >= 0) {
+                stock.addAmount(stockIndexes[i], -totalQuantityNeeded);
+                publish(InventoryEvent.Type.INGREDIENT_USED, stock.getName(stockIndexes[i]), totalQuantityNeeded,
+                        stock.getUnit(stockIndexes[i]));
             }
         }
         return true;  // All ingredients were successfully used
     }
 
     /**
-     * Adds a finished beverage batch to the inventory.
-     * If the batch array is full, it is resized to accommodate more batches.
+     * Returns the ingredients of a batch to stock, undoing a successful call to useIngredients
+     * with the same recipe and batch size, for example when the batch cannot be brewed after all.
+     *
+     * @param recipe    The recipe whose ingredients were used.
+     * @param batchSize The size of the batch the ingredients were used for.
+     */
+    public void returnIngredients(Recipe recipe, int batchSize) {
+        returnIngredients(recipe, batchSize, null);
+    }
+
+    /**
+     * Returns the ingredients of a batch to stock, undoing a successful call to
+     * useIngredients(recipe, batchSize, skipLines) with the same arguments.
+     *
+     * @param recipe    The recipe whose ingredients were used.
+     * @param batchSize The size of the batch the ingredients were used for.
+     * @param skipLines Which ingredient lines were left out, by line index, or null if none were.
+     */
+    public synchronized void returnIngredients(Recipe recipe, int batchSize, boolean[] skipLines) {
+        String[] ingredientNames = recipe.getIngredientNames();
+        long[] ingredientQuantities = recipe.getFixedIngredientQuantities();
+        Unit[] ingredientUnits = recipe.getIngredientUnits();
+        for (int i = 0; i < ingredientNames.length; i++) {
+            long totalQuantity = FixedPoint.multiplySaturated(ingredientQuantities[i], batchSize);
+            if (totalQuantity > 0 && (skipLines == null || !skipLines[i])) {
+                addIngredientFixedQuantity(ingredientNames[i], totalQuantity, ingredientUnits[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds a finished beverage batch to the inventory, stamping it with the current time
+     * unless it already carries a completion time.
      *
      * @param newBatch The new beverage batch to add.
      * @return true if the batch was successfully added.
      */
-    public boolean addFinishedBatch(BeverageBatch newBatch) {
-        if (batchCount == finishedBatches.length) {
-            resizeBatchArray();
-        }
-        finishedBatches[batchCount] = newBatch;
-        batchCount++;
+    public synchronized boolean addFinishedBatch(BeverageBatch newBatch) {
+        newBatch.markCompleted(System.currentTimeMillis());
+        stock.addBatch(newBatch);
+        publish(InventoryEvent.Type.BATCH_FINISHED, newBatch.getName(), newBatch.getSize(), null);
         return true;  // Batch successfully added
     }
 
@@ -148,62 +446,81 @@ public class Inventory {
 
     /**
      * Marks a container as dirty by its container ID after it has been used for a batch.
+     * A CONTAINER_DIRTY event is published only if the container was clean.
      *
      * @param containerId The ID of the container to mark as dirty.
      */
-    public void markContainerAsDirty(String containerId) {
+    public synchronized void markContainerAsDirty(String containerId) {
         for (int i = 0; i < containers.length; i++) {
             if (StringFuncs.customStringEquals(containers[i].getId(),containerId)) {
-                containers[i].markAsDirty();
+                if (containers[i].markAsDirty()) {
+                    publish(InventoryEvent.Type.CONTAINER_DIRTY, containers[i].getId(), 0, null);
+                }
                 return;
             }
         }
     }
 
     /**
-     * Marks the first container in the inventory as clean after it has been cleaned.
+     * Marks every dirty container in the inventory as clean after it has been cleaned.
+     * A CONTAINER_CLEANED event is published for each container that was dirty.
      */
-    public void markContainerAsClean() {
+    public synchronized void markContainerAsClean() {
         for (int i = 0; i < containers.length; i++) {
-            containers[i].markAsClean();
+            if (containers[i].markAsClean()) {
+                publish(InventoryEvent.Type.CONTAINER_CLEANED, containers[i].getId(), 0, null);
+            }
         }
     }
 
     /**
-     * Resizes the ingredient array when the current capacity is exceeded.
-     * This allows for more ingredients to be added to the inventory.
+     * Returns a snapshot of all ingredients currently in the inventory.
+     * Changing the returned ingredients does not change the stock.
+     *
+     * @return An array of Ingredient objects representing the current inventory.
      */
-    private void resizeIngredientArray() {
-        Ingredient[] newIngredients = new Ingredient[ingredients.length * 2];
-        for (int i = 0; i < ingredientCount; i++) {
-            newIngredients[i] = ingredients[i];
+    public synchronized Ingredient[] getIngredients() {
+        Ingredient[] result = new Ingredient[stock.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new Ingredient(stock.getName(i), FixedPoint.toDouble(stock.getAmount(i)), stock.getUnit(i));
         }
-        ingredients = newIngredients;
+        return result;
     }
 
     /**
-     * Resizes the finished batch array when the current capacity is exceeded.
-     * This allows for more beverage batches to be added to the inventory.
+     * Returns the exact fixed-point quantity of every ingredient, in the same order
+     * as getIngredients.
+     *
+     * @return An array of fixed-point ingredient quantities.
      */
-    private void resizeBatchArray() {
-        BeverageBatch[] newFinishedBatches = new BeverageBatch[finishedBatches.length * 2];
-        for (int i = 0; i < batchCount; i++) {
-            newFinishedBatches[i] = finishedBatches[i];
+    public synchronized long[] getIngredientFixedQuantities() {
+        long[] result = new long[stock.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = stock.getAmount(i);
         }
-        finishedBatches = newFinishedBatches;
+        return result;
     }
 
     /**
-     * Returns all ingredients currently in the inventory.
+     * Subscribes to an event bus and takes a snapshot of the stock in one step, under the lock
+     * every stock change is made under, so the subscription receives exactly the changes made
+     * after the snapshot. Safe to call from any thread.
      *
-     * @return An array of Ingredient objects representing the current inventory.
+     * @param bus The event bus this inventory publishes to.
+     * @return The stock of every ingredient together with the new subscription.
      */
-    public Ingredient[] getIngredients() {
-        Ingredient[] result = new Ingredient[ingredientCount];
-        for (int i = 0; i < ingredientCount; i++) {
-            result[i] = ingredients[i];
+    public synchronized StockSnapshot subscribe(InventoryEventBus bus) {
+        InventoryEventBus.Subscription subscription = bus.subscribe();
+        int size = stock.size();
+        String[] names = new String[size];
+        long[] quantities = new long[size];
+        Unit[] units = new Unit[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = stock.getName(i);
+            quantities[i] = stock.getAmount(i);
+            units[i] = stock.getUnit(i);
         }
-        return result;
+        return new StockSnapshot(subscription, names, quantities, units);
     }
 
     /**
@@ -211,10 +528,10 @@ public class Inventory {
      *
      * @return An array of BeverageBatch objects representing the finished batches.
      */
-    public BeverageBatch[] getFinishedBatches() {
-        BeverageBatch[] batches = new BeverageBatch[batchCount];
-        for (int i = 0; i < batchCount; i++) {
-            batches[i] = finishedBatches[i];
+    public synchronized BeverageBatch[] getFinishedBatches() {
+        BeverageBatch[] batches = new BeverageBatch[stock.getBatchCount()];
+        for (int i = 0; i < batches.length; i++) {
+            batches[i] = stock.getBatch(i);
         }
         return batches;
     }
@@ -248,4 +565,17 @@ public class Inventory {
 
         return cleanContainers;
     }
+
+    /**
+     * Returns all containers in the inventory, clean or dirty.
+     *
+     * @return An array of all Container objects.
+     */
+    public Container[] getContainers() {
+        Container[] result = new Container[containers.length];
+        for (int i = 0; i < containers.length; i++) {
+            result[i] = containers[i];
+        }
+        return result;
+    }
 }
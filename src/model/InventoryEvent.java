@@ -0,0 +1,128 @@
+package model;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Represents one change to the inventory, published on an InventoryEventBus.
+ * Event objects are preallocated slots in the bus's ring buffer and are reused once
+ * every subscriber has read them, so listeners must copy any values they keep.
+ * The sequence is written last, so a reader that sees the same sequence before and after
+ * copying a slot knows the copy was not torn by a publisher overwriting it.
+ */
+public class InventoryEvent {
+
+    /**
+     * The kind of change an event describes.
+     */
+    public enum Type {
+        INGREDIENT_ADDED, INGREDIENT_USED, INGREDIENT_REMOVED, BATCH_FINISHED, CONTAINER_DIRTY, CONTAINER_CLEANED
+    }
+
+    private volatile long sequence;  // -1 while the slot is being overwritten
+    private long timestamp;
+    private Type type;
+    private String subject;
+    private long amount;
+    private Unit unit;
+
+    /**
+     * Overwrites this slot with a new event. Only the event bus calls this.
+     *
+     * @param sequence  The sequence number of the event on the bus.
+     * @param timestamp The time of the change in milliseconds since the epoch.
+     * @param type      The kind of change.
+     * @param subject   The ingredient name, recipe name or container ID the change applies to.
+     * @param amount    The fixed-point quantity for ingredient events, the bottle count for batch events, or 0.
+     * @param unit      The base unit for ingredient events, or null.
+     */
+    void set(long sequence, long timestamp, Type type, String subject, long amount, Unit unit) {
+        this.sequence = -1;
+        VarHandle.storeStoreFence();  // Readers must see the slot as changing before any field changes
+        this.timestamp = timestamp;
+        this.type = type;
+        this.subject = subject;
+        this.amount = amount;
+        this.unit = unit;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Copies a slot into this event if the slot holds the expected sequence and is not
+     * overwritten while it is copied. Only the event bus calls this.
+     *
+     * @param slot     The ring slot to copy.
+     * @param expected The sequence the slot should hold.
+     * @return true if the copy holds the expected event, false if the slot was overwritten.
+     */
+    boolean copyFrom(InventoryEvent slot, long expected) {
+        if (slot.sequence != expected) {
+            return false;
+        }
+        this.timestamp = slot.timestamp;
+        this.type = slot.type;
+        this.subject = slot.subject;
+        this.amount = slot.amount;
+        this.unit = slot.unit;
+        VarHandle.loadLoadFence();  // Read the fields before checking the sequence again
+        if (slot.sequence != expected) {
+            return false;
+        }
+        this.sequence = expected;
+        return true;
+    }
+
+    /**
+     * @return The sequence number of the event on the bus.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The time of the change in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The kind of change.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The ingredient name, recipe name or container ID the change applies to.
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return The fixed-point quantity for ingredient events, the bottle count for batch events, or 0.
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return The base unit for ingredient events, or null for other events.
+     */
+    public Unit getUnit() {
+        return unit;
+    }
+
+    /**
+     * Returns a single-line representation of the event as comma-separated fields:
+     * sequence, timestamp, type, subject, amount and unit.
+     *
+     * @return A string representation of the event.
+     */
+    @Override
+    public String toString() {
+        String shownAmount = unit == null ? Long.toString(amount) : Double.toString(FixedPoint.toDouble(amount));
+        return sequence + "," + timestamp + "," + type + "," + subject + "," + shownAmount + ","
+                + (unit == null ? "" : unit.getSymbol());
+    }
+}
@@ -0,0 +1,244 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An in-process event bus for inventory and production changes, built on a ring buffer
+ * of preallocated events in the style of the LMAX Disruptor.
+ * Publishing overwrites the next slot instead of creating an event object. Each subscriber
+ * reads at its own pace through its own cursor. When the slowest subscriber is a full ring
+ * behind, publishers wait until it catches up, so a subscriber that keeps up never misses an event.
+ * The wait is bounded: a subscriber still a full ring behind after the maximum wait is treated as
+ * stalled or dead and detached from the bus, so it can never block inventory changes for good.
+ * A detached subscription reads nothing more; its owner can check isDetached and subscribe again.
+ */
+public class InventoryEventBus {
+    /** The default longest time a publisher waits for a lagging subscriber, in milliseconds. */
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 1000;
+
+    private final InventoryEvent[] ring;
+    private final int mask;
+    private volatile long published;  // Sequence of the latest published event
+    private volatile Subscription[] subscriptions;
+    private final Object subscriptionLock = new Object();  // Guards changes to subscriptions
+    private final long maxWaitNanos;
+    private volatile long detachedCount;
+
+    /**
+     * Constructs an InventoryEventBus whose ring holds the given number of events, with the
+     * default maximum wait for lagging subscribers.
+     *
+     * @param capacity The ring size, rounded up to a power of two.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public InventoryEventBus(int capacity) {
+        this(capacity, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * Constructs an InventoryEventBus whose ring holds the given number of events.
+     *
+     * @param capacity      The ring size, rounded up to a power of two.
+     * @param maxWaitMillis The longest time a publisher waits for a subscriber a full ring behind
+     *                      before detaching it.
+     * @throws IllegalArgumentException if the capacity or the wait is not positive.
+     */
+    public InventoryEventBus(int capacity, long maxWaitMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (maxWaitMillis <= 0) {
+            throw new IllegalArgumentException("Maximum wait must be positive");
+        }
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.ring = new InventoryEvent[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new InventoryEvent();
+        }
+        this.mask = size - 1;
+        this.published = -1;
+        this.subscriptions = new Subscription[0];
+    }
+
+    /**
+     * Publishes an event, waiting while the slowest subscriber is a full ring behind. If the
+     * wait reaches the maximum, every subscriber still a full ring behind is detached.
+     *
+     * @param type    The kind of change.
+     * @param subject The ingredient name, recipe name or container ID the change applies to.
+     * @param amount  The fixed-point quantity for ingredient events, the bottle count for batch events, or 0.
+     * @param unit    The base unit for ingredient events, or null.
+     */
+    public synchronized void publish(InventoryEvent.Type type, String subject, long amount, Unit unit) {
+        long next = published + 1;
+        if (next - minimumCursor(next) >= ring.length) {
+            long deadline = System.nanoTime() + maxWaitNanos;
+            while (next - minimumCursor(next) >= ring.length) {
+                if (System.nanoTime() - deadline >= 0) {
+                    detachLagging(next);
+                    break;
+                }
+                LockSupport.parkNanos(1000L);  // Backpressure: wait for the slowest subscriber
+            }
+        }
+        ring[(int) next & mask].set(next, System.currentTimeMillis(), type, subject, amount, unit);
+        published = next;
+    }
+
+    /**
+     * Creates a subscription that receives every event published from now on.
+     *
+     * @return The new Subscription.
+     */
+    public Subscription subscribe() {
+        synchronized (subscriptionLock) {
+            Subscription subscription = new Subscription(published + 1);
+            Subscription[] current = subscriptions;
+            Subscription[] updated = new Subscription[current.length + 1];
+            for (int i = 0; i < current.length; i++) {
+                updated[i] = current[i];
+            }
+            updated[current.length] = subscription;
+            subscriptions = updated;
+            return subscription;
+        }
+    }
+
+    /**
+     * Removes a subscription so it no longer holds back publishers.
+     *
+     * @param subscription The subscription to remove.
+     */
+    public void unsubscribe(Subscription subscription) {
+        synchronized (subscriptionLock) {
+            Subscription[] current = subscriptions;
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == subscription) {
+                    index = i;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+            Subscription[] updated = new Subscription[current.length - 1];
+            for (int i = 0, j = 0; i < current.length; i++) {
+                if (i != index) {
+                    updated[j++] = current[i];
+                }
+            }
+            subscriptions = updated;
+        }
+    }
+
+    /**
+     * @return The number of subscriptions detached because they lagged a full ring behind for too long.
+     */
+    public long getDetachedCount() {
+        return detachedCount;
+    }
+
+    /**
+     * @return The sequence of the latest published event, or -1 if none was published.
+     */
+    public long getPublishedSequence() {
+        return published;
+    }
+
+    /**
+     * Detaches every subscription that is a full ring behind the event about to be published.
+     *
+     * @param next The sequence about to be published.
+     */
+    private void detachLagging(long next) {
+        synchronized (subscriptionLock) {
+            Subscription[] current = subscriptions;
+            int kept = 0;
+            Subscription[] updated = new Subscription[current.length];
+            for (int i = 0; i < current.length; i++) {
+                if (next - current[i].cursor >= ring.length) {
+                    current[i].detached = true;
+                    detachedCount++;
+                } else {
+                    updated[kept++] = current[i];
+                }
+            }
+            subscriptions = Arrays.copyOf(updated, kept);
+        }
+    }
+
+    /**
+     * Returns the lowest cursor among all subscribers.
+     *
+     * @param next The sequence about to be published, returned when there are no subscribers.
+     * @return The sequence of the oldest event still unread by some subscriber.
+     */
+    private long minimumCursor(long next) {
+        Subscription[] current = subscriptions;
+        long minimum = next;
+        for (int i = 0; i < current.length; i++) {
+            long cursor = current[i].cursor;
+            if (cursor < minimum) {
+                minimum = cursor;
+            }
+        }
+        return minimum;
+    }
+
+    /**
+     * A subscriber's position on the bus. Each subscription must be drained by one thread at a time.
+     */
+    public class Subscription {
+        private volatile long cursor;  // Sequence of the next event to read
+        private volatile boolean detached;  // Set when the bus dropped this subscription for lagging
+        private final InventoryEvent current = new InventoryEvent();  // Copy of the event being delivered
+
+        private Subscription(long cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * Passes up to the given number of unread events to the listener, oldest first.
+         * Each event is copied out of the ring and its sequence checked again after the copy,
+         * so an event overwritten after the bus detached this subscription is never delivered.
+         * A detached subscription passes nothing more.
+         *
+         * @param listener  The listener to receive the events.
+         * @param maxEvents The largest number of events to pass in this call.
+         * @return The number of events passed to the listener.
+         */
+        public int poll(InventoryEventListener listener, int maxEvents) {
+            long available = published;
+            int count = 0;
+            while (cursor <= available && count < maxEvents && !detached) {
+                if (!current.copyFrom(ring[(int) cursor & mask], cursor)) {
+                    break;  // Overwritten: the bus has detached this subscription
+                }
+                listener.onEvent(current);
+                cursor = cursor + 1;  // Frees the slot for publishers
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * @return true if the bus detached this subscription for lagging a full ring behind too long.
+         */
+        public boolean isDetached() {
+            return detached;
+        }
+
+        /**
+         * @return The number of events published but not yet read by this subscription.
+         */
+        public long getBacklog() {
+            return published + 1 - cursor;
+        }
+    }
+}
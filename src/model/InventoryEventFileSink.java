@@ -0,0 +1,152 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Appends every event from an InventoryEventBus to a UTF-8 text file, one comma-separated line
+ * per event, on a background thread. Downstream systems can tail the file to consume
+ * changes incrementally. If the bus detaches the sink for falling too far behind, the sink
+ * writes a line starting with "# gap" and subscribes again.
+ * If the file cannot be written, the sink stops: it unsubscribes so it never holds back
+ * publishers, keeps the error for getFailure, and close rethrows it.
+ */
+public class InventoryEventFileSink implements InventoryEventListener {
+    private InventoryEventBus bus;
+    private volatile InventoryEventBus.Subscription subscription;  // Replaced if the bus detaches it
+    private BufferedWriter writer;
+    private Thread worker;
+    private volatile boolean running;
+    private volatile IOException failure;  // The write error that stopped the sink, or null
+
+    /**
+     * Constructs a file sink that subscribes to the bus and appends to the given file.
+     *
+     * @param bus      The event bus to drain.
+     * @param fileName The file to append events to.
+     * @throws IOException if the file cannot be opened.
+     */
+    public InventoryEventFileSink(InventoryEventBus bus, String fileName) throws IOException {
+        this.bus = bus;
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName, true),
+                StandardCharsets.UTF_8));
+        this.subscription = bus.subscribe();
+    }
+
+    /**
+     * Starts the background thread that drains the bus into the file.
+     */
+    public void start() {
+        running = true;
+        worker = new Thread(this::drainLoop, "inventory-event-file-sink");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Writes any remaining events, stops the background thread and closes the file.
+     *
+     * @throws IOException if the file cannot be written or closed, including a write error
+     *                     that stopped the sink earlier.
+     */
+    public void close() throws IOException {
+        running = false;
+        if (worker != null) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure == null) {
+            try {
+                while (subscription.poll(this, 1024) > 0) {
+                    // Drain what was published after the worker stopped
+                }
+            } catch (UncheckedIOException e) {
+                failure = e.getCause();
+            }
+            bus.unsubscribe(subscription);
+        }
+        writer.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return The write error that stopped the sink, or null if it is still writing.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Writes one event to the file.
+     *
+     * @param event The event to write.
+     * @throws UncheckedIOException if the file cannot be written.
+     */
+    @Override
+    public void onEvent(InventoryEvent event) {
+        try {
+            writer.write(event.toString());
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write inventory event", e);
+        }
+    }
+
+    /**
+     * Marks in the file that events were lost because the bus detached the sink.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    private void writeGap() throws IOException {
+        writer.write("# gap: events were dropped while the sink lagged behind");
+        writer.newLine();
+    }
+
+    /**
+     * Drains the subscription until the sink is closed, flushing after each drained run.
+     * A write error stops the sink instead of killing the thread unnoticed.
+     */
+    private void drainLoop() {
+        try {
+            while (running) {
+                if (subscription.isDetached()) {
+                    writeGap();
+                    subscription = bus.subscribe();
+                }
+                if (subscription.poll(this, 1024) > 0) {
+                    writer.flush();
+                } else {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            stopOnFailure(e);
+        } catch (UncheckedIOException e) {
+            stopOnFailure(e.getCause());
+        }
+    }
+
+    /**
+     * Stops the sink after a write error, unsubscribing so publishers are not held back.
+     *
+     * @param e The write error.
+     */
+    private void stopOnFailure(IOException e) {
+        failure = e;
+        running = false;
+        bus.unsubscribe(subscription);
+    }
+}
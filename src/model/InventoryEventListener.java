@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * Receives inventory events drained from an InventoryEventBus subscription.
+ */
+public interface InventoryEventListener {
+
+    /**
+     * Handles one event. The event object is reused by the bus after this call returns.
+     *
+     * @param event The event to handle.
+     */
+    void onEvent(InventoryEvent event);
+}
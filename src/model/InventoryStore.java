@@ -0,0 +1,103 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The storage interface behind Inventory.
+ * A store holds ingredient stock as fixed-point amounts addressed by a stable index, and the
+ * list of finished batches. Business rules such as sufficiency checks and container handling
+ * stay in Inventory, so stores only need to provide fast, overflow-checked storage.
+ * Stores need not be thread-safe: Inventory calls them only under its own monitor.
+ */
+public interface InventoryStore extends Closeable {
+
+    /**
+     * Finds the index of an ingredient by name, ignoring case.
+     *
+     * @param name The name of the ingredient.
+     * @return The index of the ingredient, or -1 if it is not stocked.
+     */
+    int indexOf(String name);
+
+    /**
+     * Checks that the store can hold a name, so callers can reject it before changing anything.
+     * The default accepts any name.
+     *
+     * @param name The ingredient or batch name.
+     * @throws IllegalArgumentException if the store cannot hold the name.
+     */
+    default void checkName(String name) {
+    }
+
+    /**
+     * Adds a new ingredient to the store.
+     *
+     * @param name   The name of the ingredient.
+     * @param amount The initial fixed-point amount.
+     * @param unit   The base unit the amount is measured in.
+     * @return The index of the new ingredient.
+     * @throws IllegalArgumentException if the amount is negative or the store cannot hold the name.
+     */
+    int add(String name, long amount, Unit unit);
+
+    /**
+     * Adds to the amount of the ingredient at the given index. A negative delta removes stock.
+     *
+     * @param index The index of the ingredient.
+     * @param delta The fixed-point amount to add.
+     * @throws IllegalArgumentException if the resulting amount would be negative.
+     * @throws ArithmeticException if the resulting amount overflows.
+     */
+    void addAmount(int index, long delta);
+
+    /**
+     * @param index The index of the ingredient.
+     * @return The fixed-point amount of the ingredient.
+     */
+    long getAmount(int index);
+
+    /**
+     * @param index The index of the ingredient.
+     * @return The name of the ingredient.
+     */
+    String getName(int index);
+
+    /**
+     * @param index The index of the ingredient.
+     * @return The base unit of the ingredient.
+     */
+    Unit getUnit(int index);
+
+    /**
+     * @return The number of ingredients in the store.
+     */
+    int size();
+
+    /**
+     * Appends a finished batch to the store.
+     *
+     * @param batch The batch to append.
+     */
+    void addBatch(BeverageBatch batch);
+
+    /**
+     * @param index The index of the batch, in the order batches were added.
+     * @return The finished batch.
+     */
+    BeverageBatch getBatch(int index);
+
+    /**
+     * @return The number of finished batches in the store.
+     */
+    int getBatchCount();
+
+    /**
+     * Releases any resources held by the store. The default does nothing.
+     *
+     * @throws IOException if the store cannot be closed.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,174 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Collects the latency and allocation of each operation of a load run and reports
+ * throughput, latency percentiles, bytes allocated per operation and how many operations failed.
+ * A run where many operations fail mostly measures the failure path, so the report shows the count.
+ * Allocation is measured on the thread that runs the operations; work an operation hands
+ * to other threads (such as parallel streams) is not counted.
+ */
+public class LoadReport {
+    private String name;
+    private long[] latencies;  // Nanoseconds per operation
+    private int count;
+    private int failedCount;
+    private long allocatedBytes;
+    private boolean allocationTracked;
+    private long startNanos;
+    private long stopNanos;
+
+    /**
+     * Constructs an empty LoadReport.
+     *
+     * @param name The name of the run, shown in the report.
+     */
+    public LoadReport(String name) {
+        this.name = name;
+        this.latencies = new long[1024];
+        this.count = 0;
+        this.allocationTracked = threadAllocatedBytes() >= 0;
+    }
+
+    /**
+     * Returns the number of bytes the current thread has allocated so far.
+     *
+     * @return The allocated bytes, or -1 if the JVM cannot measure them.
+     */
+    public static long threadAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+            if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+                return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Marks the start of the measured run.
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of the measured run.
+     */
+    public void stop() {
+        stopNanos = System.nanoTime();
+    }
+
+    /**
+     * Records one successful operation.
+     *
+     * @param latencyNanos   The time the operation took, in nanoseconds.
+     * @param allocatedBytes The bytes the operation allocated, or a negative value if unknown.
+     */
+    public void record(long latencyNanos, long allocatedBytes) {
+        record(latencyNanos, allocatedBytes, true);
+    }
+
+    /**
+     * Records one operation, successful or not.
+     *
+     * @param latencyNanos   The time the operation took, in nanoseconds.
+     * @param allocatedBytes The bytes the operation allocated, or a negative value if unknown.
+     * @param succeeded      Whether the operation did its work, rather than being rejected or failing.
+     */
+    public void record(long latencyNanos, long allocatedBytes, boolean succeeded) {
+        if (!succeeded) {
+            failedCount++;
+        }
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        }
+        latencies[count++] = latencyNanos;
+        if (allocatedBytes >= 0) {
+            this.allocatedBytes += allocatedBytes;
+        } else {
+            allocationTracked = false;
+        }
+    }
+
+    /**
+     * @return The number of operations recorded.
+     */
+    public int getOperationCount() {
+        return count;
+    }
+
+    /**
+     * @return The number of recorded operations that failed.
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * @return The operations per second over the measured run.
+     */
+    public double getThroughput() {
+        long elapsed = stopNanos - startNanos;
+        return elapsed <= 0 ? 0.0 : count * 1e9 / elapsed;
+    }
+
+    /**
+     * Returns a latency percentile, by the nearest-rank method.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The latency in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getLatencyPercentile(double percentile) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return percentile(sorted, percentile);
+    }
+
+    /**
+     * Picks a percentile from sorted latencies by the nearest-rank method.
+     *
+     * @param sorted     The latencies in ascending order.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The latency in nanoseconds, or 0 if there are none.
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * @return The average bytes allocated per operation, or -1 if allocation was not measured.
+     */
+    public long getAllocatedBytesPerOperation() {
+        return !allocationTracked || count == 0 ? -1 : allocatedBytes / count;
+    }
+
+    /**
+     * Returns the report as text: throughput, failed operations, latency percentiles in
+     * microseconds and allocation per operation.
+     *
+     * @return A string representation of the report.
+     */
+    @Override
+    public String toString() {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        long allocation = getAllocatedBytesPerOperation();
+        return String.format("%s: %d ops in %.1f ms, %.0f ops/s, %d failed (%.1f%%)%n"
+                + "  latency us: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n"
+                + "  allocation: %s",
+                name, count, (stopNanos - startNanos) / 1e6, getThroughput(), failedCount,
+                count == 0 ? 0.0 : failedCount * 100.0 / count,
+                percentile(sorted, 50) / 1e3, percentile(sorted, 90) / 1e3, percentile(sorted, 99) / 1e3,
+                percentile(sorted, 99.9) / 1e3, percentile(sorted, 100) / 1e3,
+                allocation < 0 ? "not measured" : allocation + " bytes/op");
+    }
+}
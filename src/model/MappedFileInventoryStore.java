@@ -0,0 +1,288 @@
+package model;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An InventoryStore backed by two memory-mapped files, so stock and finished batches survive
+ * restarts. Ingredients and batches are fixed-size records after a small header, and a stock
+ * change is a single long write into the mapping. A hash index of ingredient names is rebuilt
+ * in memory when an existing store is opened. Names are limited to MAX_NAME_LENGTH characters,
+ * which checkName reports before anything is changed. Units are written as stable codes that do
+ * not depend on the order of the Unit enum.
+ */
+public class MappedFileInventoryStore implements InventoryStore {
+    /**
+     * The longest ingredient or batch name the store can hold.
+     */
+    public static final int MAX_NAME_LENGTH = 64;
+
+    private static final int MAGIC = 0x42524557;  // "BREW"
+    private static final int BATCH_MAGIC = 0x42524232;  // "BRB2", batch records with a completion time
+    private static final int HEADER_SIZE = 8;  // Magic number and record count
+    private static final int NAME_SIZE = 2 + MAX_NAME_LENGTH * 2;  // Length and UTF-16 characters
+    private static final int INGREDIENT_RECORD_SIZE = NAME_SIZE + 4 + 8;  // Name, unit, amount
+    private static final int BATCH_RECORD_SIZE = NAME_SIZE + 4 + 4 + 8;  // Name, size, recipe version, completion time
+    private static final int INITIAL_RECORDS = 64;
+    // The unit code written to the file is the position in this table; only ever append to it
+    private static final Unit[] UNIT_CODES = { Unit.UNIT, Unit.GRAM, Unit.KILOGRAM, Unit.MILLILITRE, Unit.LITRE };
+
+    private FileChannel ingredientChannel;
+    private FileChannel batchChannel;
+    private MappedByteBuffer ingredientBuffer;
+    private MappedByteBuffer batchBuffer;
+    private int count;
+    private int batchCount;
+    private Map<String, Integer> index;  // Lowercase name to record index
+
+    /**
+     * Opens or creates a store in the files {@code <baseName>.ingredients} and {@code <baseName>.batches}.
+     *
+     * @param baseName The path and base file name of the store.
+     * @throws IOException if the files cannot be opened or are not inventory store files.
+     */
+    public MappedFileInventoryStore(String baseName) throws IOException {
+        this.ingredientChannel = open(Paths.get(baseName + ".ingredients"));
+        this.batchChannel = open(Paths.get(baseName + ".batches"));
+        this.ingredientBuffer = map(ingredientChannel, INGREDIENT_RECORD_SIZE, INITIAL_RECORDS);
+        this.batchBuffer = map(batchChannel, BATCH_RECORD_SIZE, INITIAL_RECORDS);
+        this.count = readHeader(ingredientBuffer, MAGIC);
+        this.batchCount = readHeader(batchBuffer, BATCH_MAGIC);
+
+        this.index = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            index.putIfAbsent(StringFuncs.customToLowerCase(getName(i)), i);
+        }
+    }
+
+    @Override
+    public int indexOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer i = index.get(StringFuncs.customToLowerCase(name));
+        return i == null ? -1 : i;  // -1 if ingredient not found
+    }
+
+    @Override
+    public void checkName(String name) {
+        if (StringFuncs.getLength(name) > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Name is longer than " + MAX_NAME_LENGTH + " characters: " + name);
+        }
+    }
+
+    @Override
+    public int add(String name, long amount, Unit unit) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        checkName(name);
+        ingredientBuffer = ensureCapacity(ingredientChannel, ingredientBuffer, INGREDIENT_RECORD_SIZE, count + 1);
+
+        int offset = HEADER_SIZE + count * INGREDIENT_RECORD_SIZE;
+        writeName(ingredientBuffer, offset, name);
+        ingredientBuffer.putInt(offset + NAME_SIZE, unitCode(unit));
+        ingredientBuffer.putLong(offset + NAME_SIZE + 4, amount);
+        index.putIfAbsent(StringFuncs.customToLowerCase(name), count);
+        ingredientBuffer.putInt(4, ++count);  // Publish the record after it is written
+        return count - 1;
+    }
+
+    @Override
+    public void addAmount(int index, long delta) {
+        int position = HEADER_SIZE + index * INGREDIENT_RECORD_SIZE + NAME_SIZE + 4;
+        long result = Math.addExact(ingredientBuffer.getLong(position), delta);
+        if (result < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        ingredientBuffer.putLong(position, result);
+    }
+
+    @Override
+    public long getAmount(int index) {
+        return ingredientBuffer.getLong(HEADER_SIZE + index * INGREDIENT_RECORD_SIZE + NAME_SIZE + 4);
+    }
+
+    @Override
+    public String getName(int index) {
+        return readName(ingredientBuffer, HEADER_SIZE + index * INGREDIENT_RECORD_SIZE);
+    }
+
+    @Override
+    public Unit getUnit(int index) {
+        int code = ingredientBuffer.getInt(HEADER_SIZE + index * INGREDIENT_RECORD_SIZE + NAME_SIZE);
+        if (code < 0 || code >= UNIT_CODES.length) {
+            throw new IllegalStateException("Unknown unit code " + code + " in inventory store");
+        }
+        return UNIT_CODES[code];
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void addBatch(BeverageBatch batch) {
+        checkName(batch.getName());
+        batchBuffer = ensureCapacity(batchChannel, batchBuffer, BATCH_RECORD_SIZE, batchCount + 1);
+
+        int offset = HEADER_SIZE + batchCount * BATCH_RECORD_SIZE;
+        writeName(batchBuffer, offset, batch.getName());
+        batchBuffer.putInt(offset + NAME_SIZE, batch.getSize());
+        batchBuffer.putInt(offset + NAME_SIZE + 4, batch.getRecipeVersion());
+        batchBuffer.putLong(offset + NAME_SIZE + 8, batch.getCompletedAtMillis());
+        batchBuffer.putInt(4, ++batchCount);  // Publish the record after it is written
+    }
+
+    @Override
+    public BeverageBatch getBatch(int index) {
+        int offset = HEADER_SIZE + index * BATCH_RECORD_SIZE;
+        return new BeverageBatch(readName(batchBuffer, offset), batchBuffer.getInt(offset + NAME_SIZE),
+                batchBuffer.getInt(offset + NAME_SIZE + 4), batchBuffer.getLong(offset + NAME_SIZE + 8));
+    }
+
+    @Override
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Writes all changes to disk and closes the files.
+     *
+     * @throws IOException if the files cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        ingredientBuffer.force();
+        batchBuffer.force();
+        ingredientChannel.close();
+        batchChannel.close();
+    }
+
+    /**
+     * Opens a store file for reading and writing, creating it if needed.
+     *
+     * @param path The file to open.
+     * @return The open channel.
+     * @throws IOException if the file cannot be opened.
+     */
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Maps a store file, large enough for its current contents or the given number of records.
+     *
+     * @param channel    The open file.
+     * @param recordSize The size of one record in bytes.
+     * @param records    The minimum number of records to map.
+     * @return The mapped buffer.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private static MappedByteBuffer map(FileChannel channel, int recordSize, int records) throws IOException {
+        long size = Math.max(channel.size(), HEADER_SIZE + (long) recordSize * records);
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Reads the record count from a header, writing a fresh header into a new file.
+     *
+     * @param buffer   The mapped file.
+     * @param expected The magic number of the file's record layout.
+     * @return The number of records in the file.
+     * @throws IOException if the file is not an inventory store file of the current layout.
+     */
+    private static int readHeader(MappedByteBuffer buffer, int expected) throws IOException {
+        int magic = buffer.getInt(0);
+        if (magic == 0) {
+            buffer.putInt(0, expected);
+            buffer.putInt(4, 0);
+            return 0;
+        }
+        if (magic == MAGIC && expected == BATCH_MAGIC) {
+            throw new IOException("Batch file was written without completion times and cannot be read");
+        }
+        if (magic != expected) {
+            throw new IOException("Not an inventory store file");
+        }
+        return buffer.getInt(4);
+    }
+
+    /**
+     * Returns a mapping that holds at least the given number of records, doubling the file if needed.
+     *
+     * @param channel    The open file.
+     * @param buffer     The current mapping.
+     * @param recordSize The size of one record in bytes.
+     * @param records    The number of records needed.
+     * @return The current mapping or a larger one.
+     */
+    private static MappedByteBuffer ensureCapacity(FileChannel channel, MappedByteBuffer buffer,
+            int recordSize, int records) {
+        long needed = HEADER_SIZE + (long) recordSize * records;
+        if (needed <= buffer.capacity()) {
+            return buffer;
+        }
+        long size = Math.max(needed, (long) buffer.capacity() * 2);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Inventory store file is full");
+        }
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not grow inventory store file", e);
+        }
+    }
+
+    /**
+     * Returns the stable code a unit is written as.
+     *
+     * @param unit The unit.
+     * @return The position of the unit in UNIT_CODES.
+     */
+    private static int unitCode(Unit unit) {
+        for (int code = 0; code < UNIT_CODES.length; code++) {
+            if (UNIT_CODES[code] == unit) {
+                return code;
+            }
+        }
+        throw new IllegalArgumentException("Unit has no inventory store code: " + unit);
+    }
+
+    /**
+     * Writes a name as its length followed by its UTF-16 characters. The name must have passed checkName.
+     *
+     * @param buffer The mapped file.
+     * @param offset The offset of the name field.
+     * @param name   The name to write.
+     */
+    private static void writeName(MappedByteBuffer buffer, int offset, String name) {
+        char[] chars = name.toCharArray();
+        buffer.putShort(offset, (short) chars.length);
+        for (int i = 0; i < chars.length; i++) {
+            buffer.putChar(offset + 2 + i * 2, chars[i]);
+        }
+    }
+
+    /**
+     * Reads a name written by writeName.
+     *
+     * @param buffer The mapped file.
+     * @param offset The offset of the name field.
+     * @return The name.
+     */
+    private static String readName(MappedByteBuffer buffer, int offset) {
+        char[] chars = new char[buffer.getShort(offset)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = buffer.getChar(offset + 2 + i * 2);
+        }
+        return new String(chars);
+    }
+}
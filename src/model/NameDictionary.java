@@ -0,0 +1,40 @@
+package model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe dictionary of recipe and ingredient names shared by many inventories and
+ * recipe libraries. Every equal name is stored as a single String instance, so thousands of
+ * brewery contexts that use the same names keep only one copy of each.
+ */
+public class NameDictionary {
+    private ConcurrentHashMap<String, String> names;
+
+    /**
+     * Constructs an empty NameDictionary.
+     */
+    public NameDictionary() {
+        this.names = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the shared instance of a name, adding the name if it is new.
+     *
+     * @param name The name.
+     * @return The shared String equal to the name, or null if the name is null.
+     */
+    public String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        String existing = names.putIfAbsent(name, name);
+        return existing == null ? name : existing;
+    }
+
+    /**
+     * @return The number of distinct names in the dictionary.
+     */
+    public int size() {
+        return names.size();
+    }
+}
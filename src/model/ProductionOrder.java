@@ -0,0 +1,38 @@
+package model;
+
+/**
+ * Represents an order to produce a number of bottles of a recipe.
+ */
+public class ProductionOrder {
+    private String recipeName;
+    private int batchSize;
+
+    /**
+     * Constructs a ProductionOrder.
+     *
+     * @param recipeName The name of the recipe to produce.
+     * @param batchSize  The number of bottles to produce.
+     * @throws IllegalArgumentException if the batch size is not positive.
+     */
+    public ProductionOrder(String recipeName, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.recipeName = recipeName;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return The name of the recipe to produce.
+     */
+    public String getRecipeName() {
+        return recipeName;
+    }
+
+    /**
+     * @return The number of bottles to produce.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
@@ -0,0 +1,406 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A parsed analytics query. The text syntax is a small subset of SQL:
+ *
+ * <pre>
+ * SELECT item [, item]* FROM table
+ *     [WHERE column op value [AND column op value]*]
+ *     [GROUP BY column [, column]*]
+ *     [ORDER BY item [ASC | DESC]]
+ *     [LIMIT n]
+ * </pre>
+ *
+ * An item is *, a column, or one of COUNT(*), COUNT(column), SUM, AVG, MIN and MAX of a
+ * numeric column. The operators are =, !=, &lt;&gt;, &lt;, &lt;=, &gt; and &gt;=; text
+ * values are quoted with single quotes and compared ignoring case. Keywords, tables and
+ * columns are case-insensitive.
+ */
+public class Query {
+    /**
+     * The aggregate functions a select item can apply.
+     */
+    public enum Aggregate {
+        COUNT, SUM, AVG, MIN, MAX
+    }
+
+    private String tableName;
+    private SelectItem[] items;
+    private Condition[] conditions;
+    private String[] groupBy;
+    private String orderBy;  // The label of the select item to sort on, or null
+    private boolean descending;
+    private int limit;  // The maximum number of rows, or -1 for no limit
+
+    private String[] tokens;  // Only used while parsing
+    private int position;
+
+    /**
+     * Parses a query from its text form.
+     *
+     * @param text The query text.
+     * @return The parsed query.
+     * @throws IllegalArgumentException if the text is not a valid query.
+     */
+    public static Query parse(String text) {
+        Query query = new Query();
+        query.tokens = tokenize(text);
+        query.position = 0;
+        query.parseQuery();
+        query.tokens = null;
+        return query;
+    }
+
+    /**
+     * @return The name of the table the query reads.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The select items, or an empty array for SELECT *.
+     */
+    SelectItem[] getItems() {
+        return items;
+    }
+
+    /**
+     * @return The WHERE conditions, all of which must hold.
+     */
+    Condition[] getConditions() {
+        return conditions;
+    }
+
+    /**
+     * @return The GROUP BY columns, or an empty array if the query is not grouped.
+     */
+    String[] getGroupBy() {
+        return groupBy;
+    }
+
+    /**
+     * @return The label of the select item to sort on, or null if the query is not sorted.
+     */
+    String getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * @return true if the rows are sorted in descending order.
+     */
+    boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * @return The maximum number of rows to return, or -1 for no limit.
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return true if any select item is an aggregate or the query has a GROUP BY.
+     */
+    boolean isAggregating() {
+        if (groupBy.length > 0) {
+            return true;
+        }
+        for (SelectItem item : items) {
+            if (item.aggregate != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the whole query from the token stream.
+     */
+    private void parseQuery() {
+        expectKeyword("SELECT");
+        if (peekIs("*")) {
+            position++;
+            items = new SelectItem[0];
+        } else {
+            items = new SelectItem[4];
+            int count = 0;
+            do {
+                if (count == items.length) {
+                    items = Arrays.copyOf(items, items.length * 2);
+                }
+                items[count++] = parseItem();
+            } while (acceptSymbol(","));
+            items = Arrays.copyOf(items, count);
+        }
+
+        expectKeyword("FROM");
+        tableName = next("a table name");
+
+        conditions = new Condition[0];
+        if (acceptKeyword("WHERE")) {
+            do {
+                conditions = Arrays.copyOf(conditions, conditions.length + 1);
+                conditions[conditions.length - 1] = parseCondition();
+            } while (acceptKeyword("AND"));
+        }
+
+        groupBy = new String[0];
+        if (acceptKeyword("GROUP")) {
+            expectKeyword("BY");
+            do {
+                groupBy = Arrays.copyOf(groupBy, groupBy.length + 1);
+                groupBy[groupBy.length - 1] = next("a column name");
+            } while (acceptSymbol(","));
+        }
+
+        if (acceptKeyword("ORDER")) {
+            expectKeyword("BY");
+            orderBy = parseItem().getLabel();
+            if (acceptKeyword("DESC")) {
+                descending = true;
+            } else {
+                acceptKeyword("ASC");
+            }
+        }
+
+        limit = -1;
+        if (acceptKeyword("LIMIT")) {
+            String value = next("a row limit");
+            try {
+                limit = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid LIMIT: " + value);
+            }
+            if (limit < 0) {
+                throw new IllegalArgumentException("LIMIT must not be negative.");
+            }
+        }
+
+        if (position < tokens.length) {
+            throw new IllegalArgumentException("Unexpected '" + tokens[position] + "'.");
+        }
+    }
+
+    /**
+     * Parses a select item: a column or an aggregate function call.
+     *
+     * @return The parsed item.
+     */
+    private SelectItem parseItem() {
+        String name = next("a column or aggregate");
+        if (!acceptSymbol("(")) {
+            return new SelectItem(null, name);
+        }
+
+        Aggregate aggregate = null;
+        for (Aggregate candidate : Aggregate.values()) {
+            if (StringFuncs.customStringEquals(candidate.name(), name)) {
+                aggregate = candidate;
+            }
+        }
+        if (aggregate == null) {
+            throw new IllegalArgumentException("Unknown function: " + name);
+        }
+
+        String column = next("a column name");
+        if (column.equals("*") && aggregate != Aggregate.COUNT) {
+            throw new IllegalArgumentException(aggregate + "(*) is not supported.");
+        }
+        expectSymbol(")");
+        return new SelectItem(aggregate, column.equals("*") ? null : column);
+    }
+
+    /**
+     * Parses one WHERE condition.
+     *
+     * @return The parsed condition.
+     */
+    private Condition parseCondition() {
+        String column = next("a column name");
+        String operator = next("a comparison operator");
+        if (!operator.equals("=") && !operator.equals("!=") && !operator.equals("<>") && !operator.equals("<")
+                && !operator.equals("<=") && !operator.equals(">") && !operator.equals(">=")) {
+            throw new IllegalArgumentException("Unknown operator: " + operator);
+        }
+        if (operator.equals("<>")) {
+            operator = "!=";
+        }
+
+        String value = next("a value");
+        if (value.startsWith("'")) {
+            return new Condition(column, operator, value.substring(1), 0.0);
+        }
+        try {
+            return new Condition(column, operator, null, Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value: " + value + " (quote text with single quotes)");
+        }
+    }
+
+    /**
+     * Returns the next token and advances past it.
+     *
+     * @param expected A description of the expected token, used in the error message.
+     * @return The next token.
+     */
+    private String next(String expected) {
+        if (position >= tokens.length) {
+            throw new IllegalArgumentException("Expected " + expected + " at the end of the query.");
+        }
+        return tokens[position++];
+    }
+
+    /**
+     * @param symbol A symbol or keyword.
+     * @return true if the next token is the given symbol or keyword, ignoring case.
+     */
+    private boolean peekIs(String symbol) {
+        return position < tokens.length && StringFuncs.customStringEquals(tokens[position], symbol);
+    }
+
+    /**
+     * Advances past the next token if it is the given keyword.
+     *
+     * @param keyword The keyword.
+     * @return true if the keyword was present.
+     */
+    private boolean acceptKeyword(String keyword) {
+        if (peekIs(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Advances past the next token if it is the given symbol.
+     *
+     * @param symbol The symbol.
+     * @return true if the symbol was present.
+     */
+    private boolean acceptSymbol(String symbol) {
+        return acceptKeyword(symbol);
+    }
+
+    /**
+     * Advances past the given keyword, failing if it is not next.
+     *
+     * @param keyword The keyword.
+     */
+    private void expectKeyword(String keyword) {
+        if (!acceptKeyword(keyword)) {
+            throw new IllegalArgumentException("Expected " + keyword + (position < tokens.length
+                    ? " but found '" + tokens[position] + "'." : " at the end of the query."));
+        }
+    }
+
+    /**
+     * Advances past the given symbol, failing if it is not next.
+     *
+     * @param symbol The symbol.
+     */
+    private void expectSymbol(String symbol) {
+        expectKeyword(symbol);
+    }
+
+    /**
+     * Splits query text into tokens. A quoted text value becomes one token starting with a
+     * single quote and without the closing quote.
+     *
+     * @param text The query text.
+     * @return The tokens.
+     */
+    private static String[] tokenize(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("The query is empty.");
+        }
+        String[] tokens = new String[16];
+        int count = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int start = i;
+            String token;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            } else if (c == '\'') {
+                int end = text.indexOf('\'', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated text value.");
+                }
+                token = text.substring(i, end);
+                i = end + 1;
+            } else if (Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-') {
+                while (i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_'
+                        || text.charAt(i) == '.' || (text.charAt(i) == '-' && i == start))) {
+                    i++;
+                }
+                token = text.substring(start, i);
+            } else if ((c == '<' || c == '>' || c == '!') && i + 1 < text.length()
+                    && (text.charAt(i + 1) == '=' || (c == '<' && text.charAt(i + 1) == '>'))) {
+                token = text.substring(i, i + 2);
+                i += 2;
+            } else if ("*,()=<>".indexOf(c) >= 0) {
+                token = String.valueOf(c);
+                i++;
+            } else {
+                throw new IllegalArgumentException("Unexpected character '" + c + "'.");
+            }
+
+            if (count == tokens.length) {
+                tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            }
+            tokens[count++] = token;
+        }
+        if (count == 0) {
+            throw new IllegalArgumentException("The query is empty.");
+        }
+        return Arrays.copyOf(tokens, count);
+    }
+
+    /**
+     * One item of the SELECT list: a plain column, or an aggregate over a column.
+     */
+    static class SelectItem {
+        final Aggregate aggregate;  // null for a plain column
+        final String column;  // null for COUNT(*)
+
+        SelectItem(Aggregate aggregate, String column) {
+            this.aggregate = aggregate;
+            this.column = column;
+        }
+
+        /**
+         * @return The label of the item, used as its result column header, such as sum(size).
+         */
+        String getLabel() {
+            if (aggregate == null) {
+                return StringFuncs.customToLowerCase(column);
+            }
+            return StringFuncs.customToLowerCase(aggregate.name()) + "("
+                    + (column == null ? "*" : StringFuncs.customToLowerCase(column)) + ")";
+        }
+    }
+
+    /**
+     * One WHERE condition comparing a column with a constant.
+     */
+    static class Condition {
+        final String column;
+        final String operator;  // One of =, !=, <, <=, >, >=
+        final String text;  // The text value, or null for a numeric comparison
+        final double number;
+
+        Condition(String column, String operator, String text, double number) {
+            this.column = column;
+            this.operator = operator;
+            this.text = text;
+            this.number = number;
+        }
+    }
+}
@@ -0,0 +1,623 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs analytics queries (see Query for the syntax) over column snapshots of the inventory
+ * and recipe library. The tables are ingredients, batches, recipes and containers.
+ *
+ * Rows are processed in chunks, in parallel. Within a chunk each WHERE condition is
+ * applied column-at-a-time to a selection vector of row numbers, and grouped queries
+ * aggregate each chunk into its own partial groups, which are merged at the end.
+ */
+public class QueryEngine {
+    private static final int CHUNK_SIZE = 4096;  // Rows per unit of parallel work
+
+    private Inventory inventory;
+    private RecipeCatalog recipeLibrary;
+    private DemandForecaster demandForecaster;
+
+    /**
+     * Constructs a QueryEngine over the given inventory and recipe library.
+     *
+     * @param inventory     The inventory to query ingredients and batches from.
+     * @param recipeLibrary The library to query recipes from.
+     */
+    public QueryEngine(Inventory inventory, RecipeCatalog recipeLibrary) {
+        this.inventory = inventory;
+        this.recipeLibrary = recipeLibrary;
+    }
+
+    /**
+     * Sets the forecaster used to fill the days_left column of the ingredients table.
+     *
+     * @param demandForecaster The forecaster, or null to leave days_left infinite.
+     */
+    public void setDemandForecaster(DemandForecaster demandForecaster) {
+        this.demandForecaster = demandForecaster;
+    }
+
+    /**
+     * Parses and runs a query.
+     *
+     * @param text The query text.
+     * @return The rows the query returned.
+     * @throws IllegalArgumentException if the query is invalid.
+     */
+    public QueryResult execute(String text) {
+        Query query = Query.parse(text);
+        return execute(query, snapshot(query.getTableName()));
+    }
+
+    /**
+     * Takes a column snapshot of one table.
+     *
+     * @param tableName The name of the table: ingredients, batches, recipes or containers.
+     * @return The snapshot.
+     * @throws IllegalArgumentException if there is no such table.
+     */
+    public QueryTable snapshot(String tableName) {
+        if (StringFuncs.customStringEquals(tableName, "ingredients")) {
+            StockOutForecast[] forecasts = null;
+            if (demandForecaster != null) {
+                demandForecaster.drain();
+                forecasts = demandForecaster.getForecasts(System.currentTimeMillis());
+            }
+            return QueryTable.fromIngredients(inventory, forecasts);
+        } else if (StringFuncs.customStringEquals(tableName, "batches")) {
+            return QueryTable.fromBatches(inventory);
+        } else if (StringFuncs.customStringEquals(tableName, "recipes")) {
+            return QueryTable.fromRecipes(recipeLibrary);
+        } else if (StringFuncs.customStringEquals(tableName, "containers")) {
+            return QueryTable.fromContainers(inventory);
+        }
+        throw new IllegalArgumentException("Unknown table: " + tableName
+                + " (use ingredients, batches, recipes or containers)");
+    }
+
+    /**
+     * Runs a parsed query over a table.
+     *
+     * @param query The query.
+     * @param table The table to read.
+     * @return The rows the query returned.
+     * @throws IllegalArgumentException if the query names unknown columns or misuses them.
+     */
+    public static QueryResult execute(Query query, QueryTable table) {
+        Query.Condition[] conditions = query.getConditions();
+        int[] conditionColumns = new int[conditions.length];
+        for (int i = 0; i < conditions.length; i++) {
+            conditionColumns[i] = resolve(table, conditions[i].column);
+            if (table.isNumeric(conditionColumns[i]) != (conditions[i].text == null)) {
+                throw new IllegalArgumentException("Column " + conditions[i].column + " holds "
+                        + (table.isNumeric(conditionColumns[i]) ? "numbers" : "text (quote the value)") + ".");
+            }
+        }
+
+        int chunkCount = (table.getRowCount() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        QueryResult result = query.isAggregating()
+                ? aggregate(query, table, conditionColumns, chunkCount)
+                : project(query, table, conditionColumns, chunkCount);
+        return sortAndLimit(query, result);
+    }
+
+    /**
+     * Runs a query without aggregates, returning the selected columns of every matching row.
+     *
+     * @param query            The query.
+     * @param table            The table to read.
+     * @param conditionColumns The column index of each WHERE condition.
+     * @param chunkCount       The number of chunks to split the rows into.
+     * @return The matching rows in table order.
+     */
+    private static QueryResult project(Query query, QueryTable table, int[] conditionColumns, int chunkCount) {
+        Query.SelectItem[] items = query.getItems();
+        int[] columns;
+        String[] headers;
+        if (items.length == 0) {  // SELECT *
+            columns = new int[table.getColumnCount()];
+            headers = new String[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = c;
+                headers[c] = table.getColumnName(c);
+            }
+        } else {
+            columns = new int[items.length];
+            headers = new String[items.length];
+            for (int c = 0; c < items.length; c++) {
+                columns[c] = resolve(table, items[c].column);
+                headers[c] = items[c].getLabel();
+            }
+        }
+
+        int[][] selections = new int[chunkCount][];
+        IntStream.range(0, chunkCount).parallel().forEach(chunk -> selections[chunk] =
+                select(query.getConditions(), table, conditionColumns, chunk));
+
+        int rowCount = 0;
+        for (int[] selection : selections) {
+            rowCount += selection.length;
+        }
+        Object[][] rows = new Object[rowCount][];
+        int next = 0;
+        for (int[] selection : selections) {
+            for (int row : selection) {
+                Object[] values = new Object[columns.length];
+                for (int c = 0; c < columns.length; c++) {
+                    values[c] = table.getValue(columns[c], row);
+                }
+                rows[next++] = values;
+            }
+        }
+        return new QueryResult(headers, rows);
+    }
+
+    /**
+     * Runs a grouped or aggregating query. Each chunk builds its own partial groups, which
+     * are then merged. A query with aggregates but no GROUP BY returns exactly one row.
+     *
+     * @param query            The query.
+     * @param table            The table to read.
+     * @param conditionColumns The column index of each WHERE condition.
+     * @param chunkCount       The number of chunks to split the rows into.
+     * @return One row per group.
+     */
+    private static QueryResult aggregate(Query query, QueryTable table, int[] conditionColumns, int chunkCount) {
+        Query.SelectItem[] items = query.getItems();
+        if (items.length == 0) {
+            throw new IllegalArgumentException("SELECT * cannot be used with GROUP BY.");
+        }
+
+        String[] groupBy = query.getGroupBy();
+        int[] groupColumns = new int[groupBy.length];
+        for (int g = 0; g < groupBy.length; g++) {
+            groupColumns[g] = resolve(table, groupBy[g]);
+        }
+
+        int[] itemColumns = new int[items.length];  // The column read by each item, or -1 for COUNT(*)
+        int[] itemGroups = new int[items.length];  // The group key position of each plain column item
+        String[] headers = new String[items.length];
+        for (int i = 0; i < items.length; i++) {
+            headers[i] = items[i].getLabel();
+            itemColumns[i] = items[i].column == null ? -1 : resolve(table, items[i].column);
+            itemGroups[i] = -1;
+            if (items[i].aggregate == null) {
+                for (int g = 0; g < groupColumns.length; g++) {
+                    if (groupColumns[g] == itemColumns[i]) {
+                        itemGroups[i] = g;
+                    }
+                }
+                if (itemGroups[i] < 0) {
+                    throw new IllegalArgumentException("Column " + items[i].column
+                            + " must be aggregated or listed in GROUP BY.");
+                }
+            } else if (items[i].aggregate != Query.Aggregate.COUNT && !table.isNumeric(itemColumns[i])) {
+                throw new IllegalArgumentException(items[i].aggregate + " needs a numeric column, but "
+                        + items[i].column + " holds text.");
+            }
+        }
+
+        int[][] groupCodes = new int[groupColumns.length][];
+        long[] radixes = new long[groupColumns.length];  // Multiplier of each column's id in a packed key
+        long combinations = 1;
+        for (int g = 0; g < groupColumns.length; g++) {
+            groupCodes[g] = encode(table, groupColumns[g]);
+            radixes[g] = combinations;
+            int distinct = 0;
+            for (int code : groupCodes[g]) {
+                distinct = Math.max(distinct, code + 1);
+            }
+            combinations = combinations < 0 || distinct == 0 || combinations > Long.MAX_VALUE / distinct ? -1
+                    : combinations * distinct;
+        }
+        boolean packed = combinations >= 0;  // Every key fits one long
+
+        List<Map<Object, Group>> partials = IntStream.range(0, chunkCount).parallel()
+                .mapToObj(chunk -> accumulate(table, select(query.getConditions(), table, conditionColumns, chunk),
+                        groupColumns, groupCodes, packed ? radixes : null, items, itemColumns))
+                .collect(Collectors.toList());  // In chunk order, so groups keep their first-seen order
+
+        Map<Object, Group> groups = new LinkedHashMap<>();
+        for (Map<Object, Group> partial : partials) {
+            for (Map.Entry<Object, Group> entry : partial.entrySet()) {
+                Group existing = groups.get(entry.getKey());
+                if (existing == null) {
+                    groups.put(entry.getKey(), entry.getValue());
+                } else {
+                    existing.merge(entry.getValue());
+                }
+            }
+        }
+        if (groupColumns.length == 0 && groups.isEmpty()) {
+            groups.put("", new Group(new Object[0], items.length));  // Aggregates over no rows
+        }
+
+        Object[][] rows = new Object[groups.size()][];
+        int next = 0;
+        for (Group group : groups.values()) {
+            Object[] values = new Object[items.length];
+            for (int i = 0; i < items.length; i++) {
+                values[i] = items[i].aggregate == null ? group.keyValues[itemGroups[i]]
+                        : (Object) group.result(i, items[i].aggregate);
+            }
+            rows[next++] = values;
+        }
+        return new QueryResult(headers, rows);
+    }
+
+    /**
+     * Aggregates the selected rows of one chunk into groups, in the order each group is first seen.
+     *
+     * @param table        The table to read.
+     * @param selection    The selected row numbers.
+     * @param groupColumns The GROUP BY column indexes.
+     * @param groupCodes   The dictionary id of every row in each GROUP BY column.
+     * @param radixes      The multiplier of each column's id when a key is packed into a long,
+     *                     or null if the keys do not fit a long.
+     * @param items        The select items.
+     * @param itemColumns  The column read by each item, or -1 for COUNT(*).
+     * @return The groups of the chunk, keyed by the ids of their GROUP BY values.
+     */
+    private static Map<Object, Group> accumulate(QueryTable table, int[] selection, int[] groupColumns,
+            int[][] groupCodes, long[] radixes, Query.SelectItem[] items, int[] itemColumns) {
+        Map<Object, Group> groups = new LinkedHashMap<>();
+        Group[] rowGroups = new Group[selection.length];
+        for (int k = 0; k < selection.length; k++) {
+            Object key = groupKey(groupCodes, radixes, selection[k]);
+            Group group = groups.get(key);
+            if (group == null) {
+                Object[] values = new Object[groupColumns.length];
+                for (int g = 0; g < groupColumns.length; g++) {
+                    values[g] = table.getValue(groupColumns[g], selection[k]);
+                }
+                group = new Group(values, items.length);
+                groups.put(key, group);
+            }
+            rowGroups[k] = group;
+        }
+
+        // Fold in one item at a time so each pass reads a single column
+        for (int i = 0; i < items.length; i++) {
+            if (items[i].aggregate == null) {
+                continue;
+            }
+            if (itemColumns[i] < 0 || !table.isNumeric(itemColumns[i])) {
+                for (int k = 0; k < selection.length; k++) {
+                    rowGroups[k].counts[i]++;
+                }
+            } else {
+                double[] values = table.getNumericColumn(itemColumns[i]);
+                for (int k = 0; k < selection.length; k++) {
+                    rowGroups[k].add(i, values[selection[k]]);
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Builds the group key of one row from its dictionary ids.
+     *
+     * @param groupCodes The dictionary id of every row in each GROUP BY column.
+     * @param radixes    The multiplier of each column's id in a packed key, or null to list the ids.
+     * @param row        The row number.
+     * @return A Long packing the ids, or a list of the ids when they do not fit a long.
+     */
+    private static Object groupKey(int[][] groupCodes, long[] radixes, int row) {
+        if (radixes == null) {
+            Integer[] ids = new Integer[groupCodes.length];
+            for (int g = 0; g < groupCodes.length; g++) {
+                ids[g] = groupCodes[g][row];
+            }
+            return Arrays.asList(ids);
+        }
+        long key = 0;
+        for (int g = 0; g < groupCodes.length; g++) {
+            key += groupCodes[g][row] * radixes[g];
+        }
+        return key;
+    }
+
+    /**
+     * Encodes a GROUP BY column as dictionary ids, one per row. Text is grouped ignoring case
+     * and is lowercased once per distinct string, not once per row; numbers are grouped by value.
+     *
+     * @param table  The table to read.
+     * @param column The column index.
+     * @return The id of every row, counting up from 0 in order of first appearance.
+     */
+    private static int[] encode(QueryTable table, int column) {
+        int[] codes = new int[table.getRowCount()];
+        if (table.isNumeric(column)) {
+            double[] values = table.getNumericColumn(column);
+            Map<Double, Integer> ids = new HashMap<>();
+            for (int row = 0; row < codes.length; row++) {
+                Integer id = ids.get(values[row]);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(values[row], id);
+                }
+                codes[row] = id;
+            }
+            return codes;
+        }
+
+        String[] values = table.getTextColumn(column);
+        Map<String, Integer> exact = new HashMap<>();  // As written, to skip lowercasing repeats
+        Map<String, Integer> ids = new HashMap<>();  // Lowercase
+        for (int row = 0; row < codes.length; row++) {
+            Integer id = exact.get(values[row]);
+            if (id == null) {
+                String lower = values[row] == null ? null : StringFuncs.customToLowerCase(values[row]);
+                id = ids.get(lower);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(lower, id);
+                }
+                exact.put(values[row], id);
+            }
+            codes[row] = id;
+        }
+        return codes;
+    }
+
+    /**
+     * Applies the WHERE conditions to one chunk, one column at a time, narrowing a selection
+     * vector of row numbers.
+     *
+     * @param conditions       The WHERE conditions.
+     * @param table            The table to read.
+     * @param conditionColumns The column index of each condition.
+     * @param chunk            The index of the chunk.
+     * @return The row numbers in the chunk that satisfy every condition.
+     */
+    private static int[] select(Query.Condition[] conditions, QueryTable table, int[] conditionColumns, int chunk) {
+        int from = chunk * CHUNK_SIZE;
+        int to = Math.min(from + CHUNK_SIZE, table.getRowCount());
+        int[] selection = new int[to - from];
+        int count = 0;
+        for (int row = from; row < to; row++) {
+            selection[count++] = row;
+        }
+
+        for (int i = 0; i < conditions.length && count > 0; i++) {
+            Query.Condition condition = conditions[i];
+            if (condition.text == null) {
+                count = selectNumeric(table.getNumericColumn(conditionColumns[i]), condition.operator,
+                        condition.number, selection, count);
+            } else {
+                count = selectText(table.getTextColumn(conditionColumns[i]), condition.operator, condition.text,
+                        selection, count);
+            }
+        }
+        return Arrays.copyOf(selection, count);
+    }
+
+    /**
+     * Keeps the selected rows whose numeric value satisfies a comparison. Each operator has its
+     * own loop so the comparison is not re-dispatched per row.
+     *
+     * @param values    The column values.
+     * @param operator  The comparison operator.
+     * @param operand   The constant to compare with.
+     * @param selection The selected row numbers, compacted in place.
+     * @param count     The number of selected rows.
+     * @return The number of rows still selected.
+     */
+    private static int selectNumeric(double[] values, String operator, double operand, int[] selection, int count) {
+        int kept = 0;
+        switch (operator) {
+        case "=":
+            for (int k = 0; k < count; k++) {
+                if (values[selection[k]] == operand) {
+                    selection[kept++] = selection[k];
+                }
+            }
+            break;
+        case "!=":
+            for (int k = 0; k < count; k++) {
+                if (values[selection[k]] != operand) {
+                    selection[kept++] = selection[k];
+                }
+            }
+            break;
+        case "<":
+            for (int k = 0; k < count; k++) {
+                if (values[selection[k]] < operand) {
+                    selection[kept++] = selection[k];
+                }
+            }
+            break;
+        case "<=":
+            for (int k = 0; k < count; k++) {
+                if (values[selection[k]] <= operand) {
+                    selection[kept++] = selection[k];
+                }
+            }
+            break;
+        case ">":
+            for (int k = 0; k < count; k++) {
+                if (values[selection[k]] > operand) {
+                    selection[kept++] = selection[k];
+                }
+            }
+            break;
+        default:  // >=
+            for (int k = 0; k < count; k++) {
+                if (values[selection[k]] >= operand) {
+                    selection[kept++] = selection[k];
+                }
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Keeps the selected rows whose text value satisfies a comparison, ignoring case.
+     *
+     * @param values    The column values.
+     * @param operator  The comparison operator.
+     * @param operand   The text to compare with.
+     * @param selection The selected row numbers, compacted in place.
+     * @param count     The number of selected rows.
+     * @return The number of rows still selected.
+     */
+    private static int selectText(String[] values, String operator, String operand, int[] selection, int count) {
+        int kept = 0;
+        for (int k = 0; k < count; k++) {
+            String value = values[selection[k]];
+            boolean matches;
+            if (operator.equals("=")) {
+                matches = StringFuncs.customStringEquals(value, operand);
+            } else if (operator.equals("!=")) {
+                matches = !StringFuncs.customStringEquals(value, operand);
+            } else {
+                int comparison = value.compareToIgnoreCase(operand);
+                matches = operator.equals("<") ? comparison < 0 : operator.equals("<=") ? comparison <= 0
+                        : operator.equals(">") ? comparison > 0 : comparison >= 0;
+            }
+            if (matches) {
+                selection[kept++] = selection[k];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Applies ORDER BY and LIMIT to a result.
+     *
+     * @param query  The query.
+     * @param result The unsorted result.
+     * @return The sorted and truncated result.
+     */
+    private static QueryResult sortAndLimit(Query query, QueryResult result) {
+        String[] headers = result.getHeaders();
+        Object[][] rows = new Object[result.getRowCount()][];
+        for (int r = 0; r < rows.length; r++) {
+            rows[r] = new Object[headers.length];
+            for (int c = 0; c < headers.length; c++) {
+                rows[r][c] = result.getValue(r, c);
+            }
+        }
+
+        if (query.getOrderBy() != null) {
+            int sortColumn = -1;
+            for (int c = 0; c < headers.length; c++) {
+                if (StringFuncs.customStringEquals(headers[c], query.getOrderBy())) {
+                    sortColumn = c;
+                }
+            }
+            if (sortColumn < 0) {
+                throw new IllegalArgumentException("ORDER BY " + query.getOrderBy() + " must be one of the selected "
+                        + "columns.");
+            }
+            int column = sortColumn;
+            Comparator<Object[]> comparator = (a, b) -> a[column] instanceof Double
+                    ? Double.compare((Double) a[column], (Double) b[column])
+                    : ((String) a[column]).compareToIgnoreCase((String) b[column]);
+            Arrays.sort(rows, query.isDescending() ? comparator.reversed() : comparator);
+        }
+
+        if (query.getLimit() >= 0 && query.getLimit() < rows.length) {
+            rows = Arrays.copyOf(rows, query.getLimit());
+        }
+        return new QueryResult(headers, rows);
+    }
+
+    /**
+     * Finds a column of a table, failing with the available columns if there is none.
+     *
+     * @param table      The table.
+     * @param columnName The name of the column.
+     * @return The index of the column.
+     */
+    private static int resolve(QueryTable table, String columnName) {
+        int column = table.indexOf(columnName);
+        if (column < 0) {
+            StringBuilder available = new StringBuilder();
+            for (int c = 0; c < table.getColumnCount(); c++) {
+                available.append(c == 0 ? "" : ", ").append(table.getColumnName(c));
+            }
+            throw new IllegalArgumentException("Unknown column " + columnName + " in " + table.getName()
+                    + " (columns: " + available + ")");
+        }
+        return column;
+    }
+
+    /**
+     * The running aggregates of one group, one slot per select item.
+     */
+    private static class Group {
+        private Object[] keyValues;
+        private long[] counts;
+        private double[] sums;
+        private double[] mins;
+        private double[] maxes;
+
+        Group(Object[] keyValues, int itemCount) {
+            this.keyValues = keyValues;
+            this.counts = new long[itemCount];
+            this.sums = new double[itemCount];
+            this.mins = new double[itemCount];
+            this.maxes = new double[itemCount];
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxes, Double.NEGATIVE_INFINITY);
+        }
+
+        /**
+         * Folds one value into an item's aggregates.
+         *
+         * @param item  The index of the select item.
+         * @param value The value.
+         */
+        void add(int item, double value) {
+            counts[item]++;
+            sums[item] += value;
+            mins[item] = Math.min(mins[item], value);
+            maxes[item] = Math.max(maxes[item], value);
+        }
+
+        /**
+         * Folds another chunk's aggregates for the same group into this one.
+         *
+         * @param other The other group.
+         */
+        void merge(Group other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+                sums[i] += other.sums[i];
+                mins[i] = Math.min(mins[i], other.mins[i]);
+                maxes[i] = Math.max(maxes[i], other.maxes[i]);
+            }
+        }
+
+        /**
+         * Returns the final value of an item's aggregate.
+         *
+         * @param item      The index of the select item.
+         * @param aggregate The aggregate function.
+         * @return The value, NaN for AVG, MIN and MAX of no rows.
+         */
+        double result(int item, Query.Aggregate aggregate) {
+            switch (aggregate) {
+            case COUNT:
+                return counts[item];
+            case SUM:
+                return sums[item];
+            case AVG:
+                return counts[item] == 0 ? Double.NaN : sums[item] / counts[item];
+            case MIN:
+                return counts[item] == 0 ? Double.NaN : mins[item];
+            default:
+                return counts[item] == 0 ? Double.NaN : maxes[item];
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package model;
+
+/**
+ * The rows a query returned, with a header for each column. Values are Doubles or Strings.
+ */
+public class QueryResult {
+    private String[] headers;
+    private Object[][] rows;
+
+    /**
+     * Constructs a QueryResult.
+     *
+     * @param headers The header of each column.
+     * @param rows    The rows, each with one value per column.
+     */
+    public QueryResult(String[] headers, Object[][] rows) {
+        this.headers = headers;
+        this.rows = rows;
+    }
+
+    /**
+     * @return The header of each column.
+     */
+    public String[] getHeaders() {
+        return headers.clone();
+    }
+
+    /**
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    /**
+     * Returns one value of the result.
+     *
+     * @param row    The index of the row.
+     * @param column The index of the column.
+     * @return The value, a Double or a String.
+     */
+    public Object getValue(int row, int column) {
+        return rows[row][column];
+    }
+
+    /**
+     * Formats a value for display, printing whole numbers without a fraction.
+     *
+     * @param value A Double or a String.
+     * @return The formatted value.
+     */
+    static String format(Object value) {
+        if (value instanceof Double) {
+            double number = (Double) value;
+            if (number == Math.rint(number) && !Double.isInfinite(number) && Math.abs(number) < 1e15) {
+                return String.valueOf((long) number);
+            }
+            return Double.isNaN(number) || Double.isInfinite(number) ? String.valueOf(number)
+                    : String.format("%.3f", number);
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Returns the result as an aligned text table, one line per row after the header.
+     *
+     * @return A string representation of the result.
+     */
+    @Override
+    public String toString() {
+        String[][] cells = new String[rows.length][headers.length];
+        int[] widths = new int[headers.length];
+        for (int c = 0; c < headers.length; c++) {
+            widths[c] = headers[c].length();
+        }
+        for (int r = 0; r < rows.length; r++) {
+            for (int c = 0; c < headers.length; c++) {
+                cells[r][c] = format(rows[r][c]);
+                widths[c] = Math.max(widths[c], cells[r][c].length());
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        appendLine(builder, headers, widths);
+        for (String[] line : cells) {
+            builder.append('\n');
+            appendLine(builder, line, widths);
+        }
+        builder.append('\n').append(rows.length).append(rows.length == 1 ? " row" : " rows");
+        return builder.toString();
+    }
+
+    /**
+     * Appends one line of cells, each padded to its column's width.
+     *
+     * @param builder The builder to append to.
+     * @param cells   The cells of the line.
+     * @param widths  The width of each column.
+     */
+    private static void appendLine(StringBuilder builder, String[] cells, int[] widths) {
+        for (int c = 0; c < cells.length; c++) {
+            if (c > 0) {
+                builder.append("  ");
+            }
+            builder.append(cells[c]);
+            for (int pad = cells[c].length(); pad < widths[c] && c + 1 < cells.length; pad++) {
+                builder.append(' ');
+            }
+        }
+    }
+}
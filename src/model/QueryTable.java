@@ -0,0 +1,274 @@
+package model;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-only, column-oriented snapshot of brewery data that the QueryEngine scans.
+ * Each column is either numeric (a double[]) or text (a String[]), and all columns
+ * have the same number of rows. Text values are never null, so the QueryEngine can compare
+ * them without checks.
+ */
+public class QueryTable {
+    private String name;
+    private String[] columnNames;
+    private Object[] columns;  // Each entry is a double[] or a String[]
+    private int rowCount;
+
+    /**
+     * Constructs a QueryTable from prepared columns.
+     *
+     * @param name        The name the table is queried by.
+     * @param columnNames The name of each column.
+     * @param columns     The values of each column, a double[] or a String[] of rowCount entries.
+     * @param rowCount    The number of rows.
+     * @throws IllegalArgumentException if a column has the wrong type or length, or a text column holds null.
+     */
+    public QueryTable(String name, String[] columnNames, Object[] columns, int rowCount) {
+        if (columnNames.length != columns.length) {
+            throw new IllegalArgumentException("Expected " + columnNames.length + " columns, got " + columns.length);
+        }
+        for (Object column : columns) {
+            int length = column instanceof double[] ? ((double[]) column).length
+                    : column instanceof String[] ? ((String[]) column).length : -1;
+            if (length != rowCount) {
+                throw new IllegalArgumentException("Every column must be a double[] or String[] of " + rowCount
+                        + " rows.");
+            }
+            if (column instanceof String[]) {
+                for (String value : (String[]) column) {
+                    if (value == null) {
+                        throw new IllegalArgumentException("Text columns cannot hold null values.");
+                    }
+                }
+            }
+        }
+        this.name = name;
+        this.columnNames = columnNames.clone();
+        this.columns = columns.clone();
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Snapshots the ingredients in stock. The days_left column is filled from the
+     * given forecasts, and is infinite for ingredients without a forecast.
+     *
+     * @param inventory The inventory to snapshot.
+     * @param forecasts The stock-out forecasts, or null if forecasting is not enabled.
+     * @return A table with the columns name, quantity, unit and days_left.
+     */
+    public static QueryTable fromIngredients(Inventory inventory, StockOutForecast[] forecasts) {
+        Ingredient[] ingredients = inventory.getIngredients();
+        String[] names = new String[ingredients.length];
+        double[] quantities = new double[ingredients.length];
+        String[] units = new String[ingredients.length];
+        double[] daysLeft = new double[ingredients.length];
+
+        Map<String, Double> forecastDays = new HashMap<>();
+        if (forecasts != null) {
+            for (StockOutForecast forecast : forecasts) {
+                forecastDays.put(StringFuncs.customToLowerCase(forecast.getIngredientName()),
+                        forecast.getDaysRemaining());
+            }
+        }
+
+        for (int i = 0; i < ingredients.length; i++) {
+            names[i] = ingredients[i].getName();
+            quantities[i] = ingredients[i].getQuantity();
+            units[i] = ingredients[i].getUnit().getSymbol();
+            Double days = forecastDays.get(StringFuncs.customToLowerCase(names[i]));
+            daysLeft[i] = days == null ? Double.POSITIVE_INFINITY : days;
+        }
+        return new QueryTable("ingredients", new String[] { "name", "quantity", "unit", "days_left" },
+                new Object[] { names, quantities, units, daysLeft }, ingredients.length);
+    }
+
+    /**
+     * Snapshots the finished batches. The month column is the month the batch was recorded in,
+     * in the system time zone, formatted as yyyy-MM, or "unknown" for a batch without a time.
+     *
+     * @param inventory The inventory to snapshot.
+     * @return A table with the columns recipe, version, size, completed_ms (the epoch
+     *         milliseconds the batch was recorded at) and month.
+     */
+    public static QueryTable fromBatches(Inventory inventory) {
+        BeverageBatch[] batches = inventory.getFinishedBatches();
+        String[] recipes = new String[batches.length];
+        double[] versions = new double[batches.length];
+        double[] sizes = new double[batches.length];
+        double[] completed = new double[batches.length];
+        String[] months = new String[batches.length];
+
+        ZoneId zone = ZoneId.systemDefault();
+        long monthStart = 0;  // Batches are recorded in time order, so the last month is usually the next one's
+        long monthEnd = 0;
+        String month = "unknown";
+        for (int i = 0; i < batches.length; i++) {
+            recipes[i] = batches[i].getName();
+            versions[i] = batches[i].getRecipeVersion();
+            sizes[i] = batches[i].getSize();
+            long millis = batches[i].getCompletedAtMillis();
+            completed[i] = millis;
+            if (millis == 0) {
+                months[i] = "unknown";
+                continue;
+            }
+            if (millis < monthStart || millis >= monthEnd) {
+                YearMonth yearMonth = YearMonth.from(Instant.ofEpochMilli(millis).atZone(zone));
+                monthStart = yearMonth.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                monthEnd = yearMonth.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                month = yearMonth.toString();
+            }
+            months[i] = month;
+        }
+        return new QueryTable("batches", new String[] { "recipe", "version", "size", "completed_ms", "month" },
+                new Object[] { recipes, versions, sizes, completed, months }, batches.length);
+    }
+
+    /**
+     * Snapshots the latest version of every recipe.
+     *
+     * @param recipeLibrary The library to snapshot.
+     * @return A table with the columns name, version and ingredients (the number of ingredient lines).
+     */
+    public static QueryTable fromRecipes(RecipeCatalog recipeLibrary) {
+        Recipe[] recipes = recipeLibrary.getAllRecipes();
+        String[] names = new String[recipes.length];
+        double[] versions = new double[recipes.length];
+        double[] ingredientCounts = new double[recipes.length];
+
+        for (int i = 0; i < recipes.length; i++) {
+            names[i] = recipes[i].getName();
+            versions[i] = recipes[i].getVersion();
+            ingredientCounts[i] = recipes[i].getIngredientNames().length;
+        }
+        return new QueryTable("recipes", new String[] { "name", "version", "ingredients" },
+                new Object[] { names, versions, ingredientCounts }, recipes.length);
+    }
+
+    /**
+     * Snapshots the containers and their rolling telemetry statistics. Times are in seconds.
+     *
+     * @param inventory The inventory to snapshot.
+     * @return A table with the columns id, capacity, state, utilization (the fraction of the
+     *         telemetry window spent dirty), cycles, turnaround_s, max_turnaround_s, idle_s and changes.
+     */
+    public static QueryTable fromContainers(Inventory inventory) {
+        Container[] containers = inventory.getContainers();
+        int n = containers.length;
+        String[] ids = new String[n];
+        double[] capacities = new double[n];
+        String[] states = new String[n];
+        double[] utilizations = new double[n];
+        double[] cycles = new double[n];
+        double[] turnarounds = new double[n];
+        double[] maxTurnarounds = new double[n];
+        double[] idleTimes = new double[n];
+        double[] changes = new double[n];
+
+        ContainerStats stats = new ContainerStats();
+        long now = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            containers[i].getTelemetry().computeStats(now, stats);
+            ids[i] = containers[i].getId();
+            capacities[i] = containers[i].getCapacity();
+            states[i] = stats.isDirty() ? "dirty" : "clean";
+            utilizations[i] = stats.getUtilization();
+            cycles[i] = stats.getCycles();
+            turnarounds[i] = stats.getAverageTurnaroundNanos() / 1e9;
+            maxTurnarounds[i] = stats.getMaxTurnaroundNanos() / 1e9;
+            idleTimes[i] = stats.getAverageIdleNanos() / 1e9;
+            changes[i] = stats.getTotalChanges();
+        }
+        return new QueryTable("containers", new String[] { "id", "capacity", "state", "utilization", "cycles",
+                "turnaround_s", "max_turnaround_s", "idle_s", "changes" },
+                new Object[] { ids, capacities, states, utilizations, cycles, turnarounds, maxTurnarounds, idleTimes,
+                        changes }, n);
+    }
+
+    /**
+     * @return The name the table is queried by.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return The number of columns.
+     */
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return The name of the column.
+     */
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    /**
+     * Finds a column by name, ignoring case.
+     *
+     * @param columnName The name of the column.
+     * @return The index of the column, or -1 if there is none.
+     */
+    public int indexOf(String columnName) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (StringFuncs.customStringEquals(columnNames[i], columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return true if the column is numeric, false if it holds text.
+     */
+    public boolean isNumeric(int column) {
+        return columns[column] instanceof double[];
+    }
+
+    /**
+     * Returns the values of a numeric column. The array is shared, not copied.
+     *
+     * @param column The index of a numeric column.
+     * @return The values of the column.
+     */
+    double[] getNumericColumn(int column) {
+        return (double[]) columns[column];
+    }
+
+    /**
+     * Returns the values of a text column. The array is shared, not copied.
+     *
+     * @param column The index of a text column.
+     * @return The values of the column.
+     */
+    String[] getTextColumn(int column) {
+        return (String[]) columns[column];
+    }
+
+    /**
+     * Returns one value of a column.
+     *
+     * @param column The index of the column.
+     * @param row    The index of the row.
+     * @return The value, a Double or a String.
+     */
+    public Object getValue(int column, int row) {
+        return isNumeric(column) ? (Object) getNumericColumn(column)[row] : getTextColumn(column)[row];
+    }
+}
@@ -3,12 +3,21 @@ package model;
 /**
  * Represents a recipe for producing a beverage.
  * A recipe consists of a name, a list of ingredients, and a specified number of bottles.
+ * Ingredient quantities are kept as entered and also normalized to the base unit of
+ * their dimension when added, so production arithmetic never converts units.
+ * A recipe is a draft until it is added to a RecipeLibrary, which stores an immutable,
+ * numbered version of it.
  */
 public class Recipe {
     private String name;
     private Ingredient[] ingredients;
+    private double[] baseQuantities;  // Quantities per bottle in the base unit
+    private long[] fixedQuantities;  // Base quantities per bottle as fixed-point values
+    private Unit[] baseUnits;  // Base unit of each ingredient line
     private int ingredientCount;
     private int numberOfBottles;
+    private int version;  // 0 for a draft, otherwise the library version number
+    private boolean frozen;  // Whether ingredients can no longer be added
 
     /**
      * Constructs a Recipe with the specified name and number of bottles.
@@ -19,21 +28,121 @@ public class Recipe {
     public Recipe(String name, int numberOfBottles) {
         this.name = name;
         this.ingredients = new Ingredient[10]; // Initial capacity for ingredients
+        this.baseQuantities = new double[10];
+        this.fixedQuantities = new long[10];
+        this.baseUnits = new Unit[10];
         this.ingredientCount = 0;
         this.numberOfBottles = numberOfBottles;
+        this.version = 0;
+        this.frozen = false;
     }
 
     /**
-     * Adds an ingredient to the recipe. Resizes the ingredient array if necessary.
+     * Constructs an immutable copy of a recipe with the given version number.
+     *
+     * @param source  The recipe to copy.
+     * @param version The version number of the copy.
+     * @param names   The dictionary to share the recipe and ingredient names through, or null.
+     */
+    private Recipe(Recipe source, int version, NameDictionary names) {
+        this.name = names == null ? source.name : names.intern(source.name);
+        this.ingredientCount = source.ingredientCount;
+        this.numberOfBottles = source.numberOfBottles;
+        this.ingredients = new Ingredient[ingredientCount];
+        this.baseQuantities = new double[ingredientCount];
+        this.fixedQuantities = new long[ingredientCount];
+        this.baseUnits = new Unit[ingredientCount];
+        for (int i = 0; i < ingredientCount; i++) {
+            Ingredient line = source.ingredients[i];
+            String lineName = names == null ? line.getName() : names.intern(line.getName());
+            this.ingredients[i] = new Ingredient(lineName, line.getQuantity(), line.getUnit());
+            this.baseQuantities[i] = source.baseQuantities[i];
+            this.fixedQuantities[i] = source.fixedQuantities[i];
+            this.baseUnits[i] = source.baseUnits[i];
+        }
+        this.version = version;
+        this.frozen = true;
+    }
+
+    /**
+     * Creates an immutable copy of this recipe with the given version number.
+     * Used by RecipeLibrary when a recipe is added. A version that is already immutable, with
+     * the same number and no dictionary to share names through, is returned itself, so one
+     * stored version can be replicated to several libraries as the same instance.
+     *
+     * @param version The version number of the copy.
+     * @param names   The dictionary to share the recipe and ingredient names through, or null.
+     * @return The immutable copy, or this recipe if it is already that version.
+     */
+    Recipe freeze(int version, NameDictionary names) {
+        if (frozen && this.version == version && names == null) {
+            return this;
+        }
+        return new Recipe(this, version, names);
+    }
+
+    /**
+     * Adds an ingredient to the recipe, counted in plain units.
+     * Resizes the ingredient array if necessary.
      *
      * @param ingredientName The name of the ingredient.
      * @param quantity The quantity of the ingredient.
+     * @throws IllegalStateException if the recipe is a stored, immutable version.
      */
     public void addIngredient(String ingredientName, double quantity) {
+        addIngredient(ingredientName, quantity, Unit.UNIT);
+    }
+
+    /**
+     * Adds an ingredient to the recipe with the unit its quantity is measured in.
+     * The quantity is normalized to the base unit of its dimension once, here.
+     * Resizes the ingredient array if necessary.
+     *
+     * @param ingredientName The name of the ingredient.
+     * @param quantity The quantity of the ingredient per bottle.
+     * @param unit The unit the quantity is measured in.
+     * @throws IllegalStateException if the recipe is a stored, immutable version.
+     */
+    public void addIngredient(String ingredientName, double quantity, Unit unit) {
+        double baseQuantity = unit.toBase(quantity);
+        appendIngredient(new Ingredient(ingredientName, quantity, unit), baseQuantity, FixedPoint.toFixed(baseQuantity));
+    }
+
+    /**
+     * Adds an ingredient line from its exact fixed-point quantity in the base unit, keeping
+     * the unit it was entered in for display. Used by BreweryCodec so a decoded recipe has
+     * exactly the fixed-point quantities of the recipe that was encoded.
+     *
+     * @param ingredientName The name of the ingredient.
+     * @param fixedQuantity  The fixed-point quantity per bottle in the base unit.
+     * @param unit           The unit the quantity was entered in.
+     * @throws IllegalStateException if the recipe is a stored, immutable version.
+     */
+    void addIngredientFixed(String ingredientName, long fixedQuantity, Unit unit) {
+        double baseQuantity = FixedPoint.toDouble(fixedQuantity);
+        appendIngredient(new Ingredient(ingredientName, baseQuantity / unit.getFactorToBase(), unit), baseQuantity,
+                fixedQuantity);
+    }
+
+    /**
+     * Appends an ingredient line with its precomputed base quantities.
+     *
+     * @param line          The line as entered.
+     * @param baseQuantity  The quantity per bottle in the base unit.
+     * @param fixedQuantity The fixed-point quantity per bottle in the base unit.
+     * @throws IllegalStateException if the recipe is a stored, immutable version.
+     */
+    private void appendIngredient(Ingredient line, double baseQuantity, long fixedQuantity) {
+        if (frozen) {
+            throw new IllegalStateException("Recipe " + name + " version " + version + " cannot be changed");
+        }
         if (ingredientCount == ingredients.length) {
             resizeIngredientArray();
         }
-        ingredients[ingredientCount] = new Ingredient(ingredientName, quantity); // Use Ingredient class
+        ingredients[ingredientCount] = line;
+        baseQuantities[ingredientCount] = baseQuantity;
+        fixedQuantities[ingredientCount] = fixedQuantity;
+        baseUnits[ingredientCount] = line.getUnit().getBaseUnit();
         ingredientCount++;
     }
 
@@ -46,6 +155,24 @@ public class Recipe {
         return name;
     }
 
+    /**
+     * Returns the version number of the recipe in its library.
+     *
+     * @return The version number, or 0 if the recipe is a draft not yet added to a library.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks if the recipe is a stored version that can no longer be changed.
+     *
+     * @return true if the recipe is immutable, false if it is a draft.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     /**
      * Returns the number of bottles this recipe produces.
      *
@@ -57,13 +184,15 @@ public class Recipe {
 
     /**
      * Returns a copy of all ingredients in the recipe.
+     * Changing the returned ingredients does not change the recipe.
      *
      * @return An array of ingredients used in the recipe.
      */
     public Ingredient[] getIngredients() {
         Ingredient[] ingredientCopy = new Ingredient[ingredientCount];
         for (int i = 0; i < ingredientCount; i++) {
-            ingredientCopy[i] = ingredients[i];
+            Ingredient line = ingredients[i];
+            ingredientCopy[i] = new Ingredient(line.getName(), line.getQuantity(), line.getUnit());
         }
         return ingredientCopy;
     }
@@ -82,26 +211,64 @@ public class Recipe {
     }
 
     /**
-     * Returns the quantities of all ingredients in the recipe.
+     * Returns the quantities of all ingredients in the recipe, normalized to the
+     * base unit of each ingredient's dimension.
      *
-     * @return An array of ingredient quantities.
+     * @return An array of ingredient quantities in base units.
      */
     public double[] getIngredientQuantities() {
         double[] ingredientQuantities = new double[ingredientCount];
         for (int i = 0; i < ingredientCount; i++) {
-            ingredientQuantities[i] = ingredients[i].getQuantity();
+            ingredientQuantities[i] = baseQuantities[i];
+        }
+        return ingredientQuantities;
+    }
+
+    /**
+     * Returns the quantities of all ingredients in the recipe as exact fixed-point
+     * values in base units, as used by the inventory arithmetic.
+     *
+     * @return An array of fixed-point ingredient quantities.
+     */
+    public long[] getFixedIngredientQuantities() {
+        long[] ingredientQuantities = new long[ingredientCount];
+        for (int i = 0; i < ingredientCount; i++) {
+            ingredientQuantities[i] = fixedQuantities[i];
         }
         return ingredientQuantities;
     }
 
+    /**
+     * Returns the base unit of every ingredient in the recipe, matching the
+     * quantities returned by getIngredientQuantities.
+     *
+     * @return An array of base units.
+     */
+    public Unit[] getIngredientUnits() {
+        Unit[] ingredientUnits = new Unit[ingredientCount];
+        for (int i = 0; i < ingredientCount; i++) {
+            ingredientUnits[i] = baseUnits[i];
+        }
+        return ingredientUnits;
+    }
+
     /**
      * Resizes the ingredient array when the current capacity is exceeded.
      */
     private void resizeIngredientArray() {
         Ingredient[] newIngredients = new Ingredient[ingredients.length * 2];
+        double[] newBaseQuantities = new double[ingredients.length * 2];
+        long[] newFixedQuantities = new long[ingredients.length * 2];
+        Unit[] newBaseUnits = new Unit[ingredients.length * 2];
         for (int i = 0; i < ingredients.length; i++) {
             newIngredients[i] = ingredients[i];
+            newBaseQuantities[i] = baseQuantities[i];
+            newFixedQuantities[i] = fixedQuantities[i];
+            newBaseUnits[i] = baseUnits[i];
         }
         ingredients = newIngredients;
+        baseQuantities = newBaseQuantities;
+        fixedQuantities = newFixedQuantities;
+        baseUnits = newBaseUnits;
     }
 }
@@ -0,0 +1,88 @@
+package model;
+
+/**
+ * The recipe storage interface used by production, queries and the controller.
+ * A catalog stores every added recipe as an immutable, numbered version of its name, finds
+ * names ignoring case, and keeps compiled data for recently used versions. RecipeLibrary keeps
+ * every version on the heap; TieredRecipeLibrary keeps them on disk with a bounded working set.
+ */
+public interface RecipeCatalog {
+
+    /**
+     * Adds a recipe as the next version of its name. The catalog stores an immutable copy,
+     * so later changes to the given recipe do not affect the stored version.
+     *
+     * @param recipe The recipe to add.
+     * @return The stored, immutable version of the recipe.
+     */
+    Recipe addRecipe(Recipe recipe);
+
+    /**
+     * Retrieves the latest version of a recipe by its name.
+     *
+     * @param name The name of the recipe to retrieve.
+     * @return The latest Recipe version with the given name, or null if not found.
+     */
+    Recipe getRecipe(String name);
+
+    /**
+     * Retrieves a specific version of a recipe.
+     *
+     * @param name    The name of the recipe to retrieve.
+     * @param version The version number to retrieve.
+     * @return The Recipe version, or null if not found.
+     */
+    Recipe getRecipe(String name, int version);
+
+    /**
+     * Returns every stored version of a recipe, oldest first.
+     *
+     * @param name The name of the recipe.
+     * @return An array of all versions of the recipe, empty if not found.
+     */
+    Recipe[] getRecipeHistory(String name);
+
+    /**
+     * Returns the latest version of every recipe, in the order names were first added.
+     *
+     * @return An array of the latest Recipe version of each name.
+     */
+    Recipe[] getAllRecipes();
+
+    /**
+     * Returns the precomputed data of a stored recipe version, compiling it on first use.
+     * Only the most recently used versions are kept.
+     *
+     * @param recipe A recipe version stored in this catalog.
+     * @return The compiled data of the recipe version.
+     * @throws IllegalArgumentException if the recipe is a draft that can still change.
+     */
+    CompiledRecipe getCompiledRecipe(Recipe recipe);
+
+    /**
+     * Returns the precomputed data of many stored recipe versions at once, so a whole-catalog
+     * scan does not contend on the cache once per recipe. The scan does not displace the
+     * recently used versions: what it compiles is kept apart until the next scan replaces it.
+     *
+     * @param recipes Recipe versions stored in this catalog.
+     * @return The compiled data of each version, in the same order.
+     * @throws IllegalArgumentException if a recipe is a draft that can still change.
+     */
+    CompiledRecipe[] getCompiledRecipes(Recipe[] recipes);
+
+    /**
+     * Returns how many compiled-data lookups found the version already compiled, so callers
+     * can tell whether the cache holds their working set.
+     *
+     * @return The number of cache hits since the catalog was created.
+     */
+    long getCompiledCacheHits();
+
+    /**
+     * Returns how many compiled-data lookups had to compile the version, including versions
+     * compiled again after being evicted.
+     *
+     * @return The number of cache misses since the catalog was created.
+     */
+    long getCompiledCacheMisses();
+}
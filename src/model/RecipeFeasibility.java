@@ -0,0 +1,92 @@
+package model;
+
+/**
+ * Represents how much of a recipe can be produced from a snapshot of the inventory.
+ * Holds the largest producible batch size and the ingredient that limits it.
+ * A recipe that uses no ingredients is not limited by the stock at all; it reports a batch
+ * size of 0 and isLimitedByIngredients returns false.
+ */
+public class RecipeFeasibility {
+    private String recipeName;
+    private int maxBatchSize;
+    private String limitingIngredient;
+    private boolean limitedByIngredients;
+
+    /**
+     * Constructs a RecipeFeasibility result for a recipe.
+     *
+     * @param recipeName         The name of the recipe.
+     * @param maxBatchSize       The largest batch size that can be produced right now.
+     * @param limitingIngredient The ingredient that limits the batch size, or null if none.
+     */
+    public RecipeFeasibility(String recipeName, int maxBatchSize, String limitingIngredient) {
+        this.recipeName = recipeName;
+        this.maxBatchSize = maxBatchSize;
+        this.limitingIngredient = limitingIngredient;
+        this.limitedByIngredients = true;
+    }
+
+    /**
+     * Constructs a RecipeFeasibility result for a recipe that uses no ingredients, so the
+     * stock does not limit how much of it can be produced.
+     *
+     * @param recipeName The name of the recipe.
+     */
+    public RecipeFeasibility(String recipeName) {
+        this(recipeName, 0, null);
+        this.limitedByIngredients = false;
+    }
+
+    /**
+     * @return The name of the recipe.
+     */
+    public String getRecipeName() {
+        return recipeName;
+    }
+
+    /**
+     * @return The largest batch size that can be produced right now, or 0 if the recipe is not
+     *         limited by ingredients.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return false if the recipe uses no ingredients, so the stock does not limit it.
+     */
+    public boolean isLimitedByIngredients() {
+        return limitedByIngredients;
+    }
+
+    /**
+     * @return The ingredient that limits the batch size, or null if the recipe is not limited by ingredients.
+     */
+    public String getLimitingIngredient() {
+        return limitingIngredient;
+    }
+
+    /**
+     * @return true if at least one bottle of the recipe can be produced.
+     */
+    public boolean isFeasible() {
+        return !limitedByIngredients || maxBatchSize > 0;
+    }
+
+    /**
+     * Returns a string representation of the result, showing the recipe name,
+     * the largest batch size and the limiting ingredient.
+     *
+     * @return A string representation of the feasibility result.
+     */
+    @Override
+    public String toString() {
+        if (!limitedByIngredients) {
+            return recipeName + ": not limited by ingredients";
+        }
+        if (limitingIngredient == null) {
+            return recipeName + ": up to " + maxBatchSize + " bottles";
+        }
+        return recipeName + ": up to " + maxBatchSize + " bottles (limited by " + limitingIngredient + ")";
+    }
+}
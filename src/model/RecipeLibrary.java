@@ -1,70 +1,166 @@
 package model;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * Represents a collection of recipes in the recipe library.
+ * Represents a collection of recipes in the recipe library, kept on the heap.
  * This library allows adding new recipes and retrieving existing ones by name.
+ * Adding a recipe stores an immutable copy as the next version of that name, and every
+ * earlier version is kept, so batches in progress keep the version they started with.
+ * Names are found through a lowercase-keyed index, so lookups do not scan the library.
+ * Precomputed data for recently used versions is kept in a bounded LRU cache with its own
+ * lock, so compiling recipes never blocks adding or looking them up.
  */
-public class RecipeLibrary {
-    private Recipe[] recipes;
+public class RecipeLibrary implements RecipeCatalog {
+    /** The default largest number of compiled recipe versions to keep. */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private Recipe[] recipes;  // Latest version of each name, in the order names were first added
+    private Recipe[][] versions;  // Every stored version of each name, indexed by version - 1
     private int recipeCount;
+    private Map<String, Integer> index;  // Lowercase name to its position in recipes
+    private NameDictionary names;  // Shared names of stored versions, or null
+    private CompiledRecipeCache compiledCache;
 
     /**
      * Constructs an empty RecipeLibrary with an initial capacity of 10 recipes.
      */
     public RecipeLibrary() {
-        this.recipes = new Recipe[10];
-        this.recipeCount = 0;
+        this(null);
     }
 
     /**
-     * Adds a new recipe to the library. If the library is full, resizes the recipe array.
+     * Constructs an empty RecipeLibrary whose stored versions share their recipe and
+     * ingredient names through a dictionary.
      *
-     * @param recipe The Recipe object to add to the library.
+     * @param names The dictionary to share names through, or null to keep names as given.
      */
-    public void addRecipe(Recipe recipe) {
-        if (recipeCount == recipes.length) {
-            resizeRecipeArray();
-        }
-        recipes[recipeCount++] = recipe;
+    public RecipeLibrary(NameDictionary names) {
+        this(DEFAULT_CACHE_SIZE, names);
     }
 
     /**
-     * Retrieves a recipe from the library by its name.
+     * Constructs an empty RecipeLibrary with a compiled recipe cache of the given size.
+     * The cache holds the recently used versions; whole-catalog scans keep their compiled data
+     * apart from it, so it need not be as large as the catalog.
      *
-     * @param name The name of the recipe to retrieve.
-     * @return The Recipe object with the given name, or null if not found.
+     * @param cacheSize The largest number of compiled recipe versions to keep.
+     * @param names     The dictionary to share names through, or null to keep names as given.
+     * @throws IllegalArgumentException if the cache size is not positive.
      */
-    public Recipe getRecipe(String name) {
-        for (int i = 0; i < recipeCount; i++) {
-            if (StringFuncs.customStringEquals(recipes[i].getName(), name)) {
-                return recipes[i];
+    public RecipeLibrary(int cacheSize, NameDictionary names) {
+        this.compiledCache = new CompiledRecipeCache(cacheSize);
+        this.names = names;
+        this.recipes = new Recipe[10];
+        this.versions = new Recipe[10][];
+        this.recipeCount = 0;
+        this.index = new HashMap<>();
+    }
+
+    @Override
+    public synchronized Recipe addRecipe(Recipe recipe) {
+        int position = indexOf(recipe.getName());
+        Recipe stored = recipe.freeze(position < 0 ? 1 : recipes[position].getVersion() + 1, names);
+
+        if (position < 0) {
+            if (recipeCount == recipes.length) {
+                resizeRecipeArrays();
             }
+            position = recipeCount++;
+            versions[position] = new Recipe[1];
+            index.put(StringFuncs.customToLowerCase(stored.getName()), position);
+        } else if (stored.getVersion() > versions[position].length) {
+            Recipe[] grown = new Recipe[versions[position].length * 2];
+            System.arraycopy(versions[position], 0, grown, 0, versions[position].length);
+            versions[position] = grown;
+        }
+        versions[position][stored.getVersion() - 1] = stored;
+        recipes[position] = stored;  // The latest version of the name
+        return stored;
+    }
+
+    @Override
+    public synchronized Recipe getRecipe(String name) {
+        int position = indexOf(name);
+        return position >= 0 ? recipes[position] : null;
+    }
+
+    @Override
+    public synchronized Recipe getRecipe(String name, int version) {
+        int position = indexOf(name);
+        if (position < 0 || version < 1 || version > recipes[position].getVersion()) {
+            return null;
         }
-        return null;  
+        return versions[position][version - 1];
+    }
+
+    @Override
+    public synchronized Recipe[] getRecipeHistory(String name) {
+        int position = indexOf(name);
+        if (position < 0) {
+            return new Recipe[0];
+        }
+        Recipe[] history = new Recipe[recipes[position].getVersion()];
+        System.arraycopy(versions[position], 0, history, 0, history.length);
+        return history;
+    }
+
+    @Override
+    public synchronized Recipe[] getAllRecipes() {
+        return copyRecipeArray();
+    }
+
+    @Override
+    public CompiledRecipe getCompiledRecipe(Recipe recipe) {
+        return compiledCache.get(recipe);
+    }
+
+    @Override
+    public CompiledRecipe[] getCompiledRecipes(Recipe[] recipes) {
+        return compiledCache.getAll(recipes);
+    }
+
+    @Override
+    public long getCompiledCacheHits() {
+        return compiledCache.getHits();
+    }
+
+    @Override
+    public long getCompiledCacheMisses() {
+        return compiledCache.getMisses();
     }
 
     /**
-     * Returns all recipes in the library.
+     * Finds the position of a recipe name in the recipes array.
      *
-     * @return An array of all Recipe objects in the library.
+     * @param name The name of the recipe.
+     * @return The index into the recipes array, or -1 if not found.
      */
-    public Recipe[] getAllRecipes() {
-        return copyRecipeArray();
+    private int indexOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        Integer position = index.get(StringFuncs.customToLowerCase(name));
+        return position == null ? -1 : position;
     }
 
     /**
-     * Resizes the recipe array when the current capacity is exceeded.
+     * Doubles the capacity of the recipes and versions arrays.
      */
-    private void resizeRecipeArray() {
+    private void resizeRecipeArrays() {
         Recipe[] newRecipes = new Recipe[recipes.length * 2];
-        for (int i = 0; i < recipes.length; i++) {
+        Recipe[][] newVersions = new Recipe[recipes.length * 2][];
+        for (int i = 0; i < recipeCount; i++) {
             newRecipes[i] = recipes[i];
+            newVersions[i] = versions[i];
         }
         recipes = newRecipes;
+        versions = newVersions;
     }
 
     /**
-     * Creates and returns a copy of the recipe array.
+     * Creates and returns a copy of the array of latest recipe versions.
      *
      * @return A copy of the array of recipes.
      */
@@ -0,0 +1,96 @@
+package model;
+
+/**
+ * Represents the predicted stock-out of one ingredient, based on its smoothed usage rate.
+ */
+public class StockOutForecast {
+    private static final double MILLIS_PER_DAY = 24.0 * 60 * 60 * 1000;
+
+    private String ingredientName;
+    private double quantity;
+    private Unit unit;
+    private double dailyUsage;
+    private long stockOutTime;
+    private long forecastTime;
+
+    /**
+     * Constructs a StockOutForecast.
+     *
+     * @param ingredientName The name of the ingredient.
+     * @param quantity       The current stock in base units.
+     * @param unit           The base unit of the ingredient.
+     * @param dailyUsage     The smoothed usage per day in base units.
+     * @param stockOutTime   The predicted stock-out time in milliseconds since the epoch,
+     *                       or Long.MAX_VALUE if the ingredient is not being used.
+     * @param forecastTime   The time the forecast was made in milliseconds since the epoch.
+     */
+    public StockOutForecast(String ingredientName, double quantity, Unit unit, double dailyUsage,
+            long stockOutTime, long forecastTime) {
+        this.ingredientName = ingredientName;
+        this.quantity = quantity;
+        this.unit = unit;
+        this.dailyUsage = dailyUsage;
+        this.stockOutTime = stockOutTime;
+        this.forecastTime = forecastTime;
+    }
+
+    /**
+     * @return The name of the ingredient.
+     */
+    public String getIngredientName() {
+        return ingredientName;
+    }
+
+    /**
+     * @return The current stock in base units.
+     */
+    public double getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * @return The base unit of the ingredient.
+     */
+    public Unit getUnit() {
+        return unit;
+    }
+
+    /**
+     * @return The smoothed usage per day in base units.
+     */
+    public double getDailyUsage() {
+        return dailyUsage;
+    }
+
+    /**
+     * @return The predicted stock-out time in milliseconds since the epoch, or Long.MAX_VALUE if none.
+     */
+    public long getStockOutTime() {
+        return stockOutTime;
+    }
+
+    /**
+     * @return The number of days until the predicted stock-out, or infinity if none.
+     */
+    public double getDaysRemaining() {
+        if (stockOutTime == Long.MAX_VALUE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (stockOutTime - forecastTime) / MILLIS_PER_DAY;
+    }
+
+    /**
+     * Returns a string representation of the forecast, showing the stock, daily usage
+     * and days until stock-out.
+     *
+     * @return A string representation of the forecast.
+     */
+    @Override
+    public String toString() {
+        String remaining = stockOutTime == Long.MAX_VALUE
+                ? "no recent usage"
+                : String.format("stock-out in %.1f days", getDaysRemaining());
+        return ingredientName + ": " + quantity + " " + unit + ", using "
+                + String.format("%.3f", dailyUsage) + " " + unit + "/day, " + remaining;
+    }
+}
@@ -0,0 +1,67 @@
+package model;
+
+/**
+ * Represents the stock of every ingredient at the moment a subscription to the inventory's
+ * event bus started, so a subscriber can apply the subscription's events on top of it
+ * without missing or repeating a change.
+ */
+public class StockSnapshot {
+    private InventoryEventBus.Subscription subscription;
+    private String[] names;
+    private long[] quantities;
+    private Unit[] units;
+
+    /**
+     * Constructs a StockSnapshot.
+     *
+     * @param subscription The subscription that receives every change after the snapshot.
+     * @param names        The names of the ingredients.
+     * @param quantities   The fixed-point stock of each ingredient.
+     * @param units        The base unit of each ingredient.
+     */
+    public StockSnapshot(InventoryEventBus.Subscription subscription, String[] names, long[] quantities,
+            Unit[] units) {
+        this.subscription = subscription;
+        this.names = names;
+        this.quantities = quantities;
+        this.units = units;
+    }
+
+    /**
+     * @return The subscription that receives every change after the snapshot.
+     */
+    public InventoryEventBus.Subscription getSubscription() {
+        return subscription;
+    }
+
+    /**
+     * @return The number of ingredients in the snapshot.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param i The index of the ingredient.
+     * @return The name of the ingredient.
+     */
+    public String getName(int i) {
+        return names[i];
+    }
+
+    /**
+     * @param i The index of the ingredient.
+     * @return The fixed-point stock of the ingredient.
+     */
+    public long getQuantity(int i) {
+        return quantities[i];
+    }
+
+    /**
+     * @param i The index of the ingredient.
+     * @return The base unit of the ingredient.
+     */
+    public Unit getUnit(int i) {
+        return units[i];
+    }
+}
@@ -73,4 +73,26 @@ public class StringFuncs {
 
         return true; // All characters match, so the strings are equal.
     }
+
+    /**
+     * Converts the ASCII uppercase letters of a string to lowercase by adjusting
+     * their values manually, matching the case rules of customStringEquals.
+     * Useful as a lookup key for strings that are compared with customStringEquals.
+     *
+     * @param str The string to convert.
+     * @return The lowercase form of the string, or null if the string is null.
+     */
+    public static String customToLowerCase(String str) {
+        if (str == null) {
+            return null;
+        }
+
+        char[] chars = str.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] = (char) (chars[i] + 32);
+            }
+        }
+        return new String(chars);
+    }
 }
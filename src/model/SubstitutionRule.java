@@ -0,0 +1,88 @@
+package model;
+
+/**
+ * A rule allowing one ingredient to replace another when the original is short, such as
+ * one hop variety for another. The ratio converts a quantity of the original, in its base
+ * unit, into the quantity of the substitute needed, in the substitute's base unit.
+ * A rule can apply to every recipe or to a single recipe.
+ */
+public class SubstitutionRule {
+    private String original;
+    private String substitute;
+    private double ratio;
+    private String recipeName;  // null if the rule applies to every recipe
+
+    /**
+     * Constructs a SubstitutionRule that applies to every recipe.
+     *
+     * @param original   The name of the ingredient that may be replaced.
+     * @param substitute The name of the ingredient that replaces it.
+     * @param ratio      The base quantity of the substitute per base quantity of the original.
+     */
+    public SubstitutionRule(String original, String substitute, double ratio) {
+        this(original, substitute, ratio, null);
+    }
+
+    /**
+     * Constructs a SubstitutionRule.
+     *
+     * @param original   The name of the ingredient that may be replaced.
+     * @param substitute The name of the ingredient that replaces it.
+     * @param ratio      The base quantity of the substitute per base quantity of the original.
+     * @param recipeName The recipe the rule is limited to, or null for every recipe.
+     * @throws IllegalArgumentException if a name is blank, the names are equal or the ratio is not positive.
+     */
+    public SubstitutionRule(String original, String substitute, double ratio, String recipeName) {
+        if (original == null || original.isBlank() || substitute == null || substitute.isBlank()) {
+            throw new IllegalArgumentException("Ingredient names cannot be blank");
+        }
+        if (StringFuncs.customStringEquals(original, substitute)) {
+            throw new IllegalArgumentException("An ingredient cannot substitute for itself");
+        }
+        if (!(ratio > 0) || Double.isInfinite(ratio)) {
+            throw new IllegalArgumentException("Conversion ratio must be a positive number");
+        }
+        this.original = original;
+        this.substitute = substitute;
+        this.ratio = ratio;
+        this.recipeName = recipeName == null || recipeName.isBlank() ? null : recipeName;
+    }
+
+    /**
+     * @return The name of the ingredient that may be replaced.
+     */
+    public String getOriginal() {
+        return original;
+    }
+
+    /**
+     * @return The name of the ingredient that replaces it.
+     */
+    public String getSubstitute() {
+        return substitute;
+    }
+
+    /**
+     * @return The base quantity of the substitute per base quantity of the original.
+     */
+    public double getRatio() {
+        return ratio;
+    }
+
+    /**
+     * @return The recipe the rule is limited to, or null if it applies to every recipe.
+     */
+    public String getRecipeName() {
+        return recipeName;
+    }
+
+    /**
+     * Returns a string representation of the rule.
+     *
+     * @return A string representation of the rule.
+     */
+    @Override
+    public String toString() {
+        return original + " -> " + substitute + " x" + ratio + (recipeName == null ? "" : " (" + recipeName + " only)");
+    }
+}
@@ -0,0 +1,352 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The configured ingredient substitution rules and a resolver that finds substitutes for
+ * the short ingredients of a batch.
+ * The rules form a graph from each ingredient to the ingredients that may replace it. Chains
+ * of rules (A for B, B for C) are followed up to MAX_CHAIN_LENGTH rules, multiplying their
+ * ratios; the resulting candidate lists are precomputed when the rules change, so resolving
+ * a batch is a small search over those lists. Candidates are tried shortest chain first, then
+ * in the order the rules were added.
+ */
+public class SubstitutionRules {
+    private static final int MAX_CHAIN_LENGTH = 3;
+    private static final int MAX_SEARCH_STEPS = 10000;  // Claims tried per resolve before giving up
+
+    private SubstitutionRule[] rules;
+    private int ruleCount;
+    private Map<String, Candidate[]> candidates;  // Lowercase original name to its substitutes, or null if stale
+
+    /**
+     * Constructs an empty set of substitution rules.
+     */
+    public SubstitutionRules() {
+        this.rules = new SubstitutionRule[10];
+        this.ruleCount = 0;
+        this.candidates = new HashMap<>();
+    }
+
+    /**
+     * Adds a rule. Rules added earlier are preferred over later rules with chains of the same length.
+     *
+     * @param rule The rule to add.
+     */
+    public synchronized void addRule(SubstitutionRule rule) {
+        if (ruleCount == rules.length) {
+            rules = Arrays.copyOf(rules, rules.length * 2);
+        }
+        rules[ruleCount++] = rule;
+        candidates = null;  // Rebuilt on the next resolve
+    }
+
+    /**
+     * @return A copy of the rules, in the order they were added.
+     */
+    public synchronized SubstitutionRule[] getRules() {
+        return Arrays.copyOf(rules, ruleCount);
+    }
+
+    /**
+     * @return true if no rules have been added.
+     */
+    public synchronized boolean isEmpty() {
+        return ruleCount == 0;
+    }
+
+    /**
+     * Finds a way to brew a batch from current stock. Each line is either kept as written or
+     * replaced by one of its substitute candidates, and no stock is claimed by two lines. The
+     * choices are searched depth-first with backtracking, in line order, trying each line as
+     * written before its candidates, so the first set found keeps as many leading lines as
+     * written as possible and otherwise prefers shorter chains and earlier rules. Because the
+     * candidate lists are precomputed and bounded by MAX_CHAIN_LENGTH, the search is small;
+     * it gives up after MAX_SEARCH_STEPS claims so a pathological rule set cannot stall a batch.
+     *
+     * @param recipe    The recipe to brew.
+     * @param batchSize The number of bottles.
+     * @param inventory The inventory to check stock against. It is not changed.
+     * @return The recipe itself if no substitution is needed, an immutable copy with the same name
+     *         and version and substitute lines if one is found, or null if the batch cannot be covered.
+     */
+    public synchronized Recipe resolve(Recipe recipe, int batchSize, Inventory inventory) {
+        String[] names = recipe.getIngredientNames();
+        long[] fixedQuantities = recipe.getFixedIngredientQuantities();
+        Unit[] units = recipe.getIngredientUnits();
+
+        // Most batches are covered as written, which needs no candidate lists
+        Map<String, Long> claimed = new HashMap<>();  // Lowercase name to stock already claimed
+        boolean allCovered = true;
+        for (int i = 0; i < names.length && allCovered; i++) {
+            long required = FixedPoint.multiplySaturated(fixedQuantities[i], batchSize);
+            allCovered = required == 0 || claim(inventory, names[i], units[i], required, claimed);
+        }
+        if (allCovered) {
+            return recipe;
+        }
+
+        if (candidates == null) {
+            buildCandidates();
+        }
+        Search search = new Search(recipe, batchSize, inventory);
+        if (!search.prune() || !search.fill(0)) {
+            return null;
+        }
+
+        Ingredient[] lines = recipe.getIngredients();
+        Recipe substituted = new Recipe(recipe.getName(), recipe.getNumberOfBottles());
+        for (int i = 0; i < names.length; i++) {
+            Candidate choice = search.chosen[i];
+            if (choice == null) {  // Unchanged, keep the line as entered
+                substituted.addIngredient(names[i], lines[i].getQuantity(), lines[i].getUnit());
+            } else {
+                Unit stockUnit = inventory.getIngredientUnit(choice.substitute);
+                substituted.addIngredient(choice.substitute, search.baseQuantities[i] * choice.ratio,
+                        stockUnit.getBaseUnit());
+            }
+        }
+        return substituted.freeze(recipe.getVersion(), null);
+    }
+
+    /**
+     * Claims stock of an ingredient if enough of it is left unclaimed in a compatible unit.
+     *
+     * @param inventory The inventory to check.
+     * @param name      The name of the ingredient.
+     * @param unit      The base unit the quantity is in.
+     * @param required  The fixed-point quantity needed.
+     * @param claimed   The stock already claimed, by lowercase name; updated on success.
+     * @return true if the stock was claimed.
+     */
+    private static boolean claim(Inventory inventory, String name, Unit unit, long required,
+            Map<String, Long> claimed) {
+        Unit stockUnit = inventory.getIngredientUnit(name);
+        if (stockUnit == null || !stockUnit.isCompatibleWith(unit)) {
+            return false;
+        }
+        String key = StringFuncs.customToLowerCase(name);
+        long alreadyClaimed = claimed.getOrDefault(key, 0L);
+        if (inventory.getIngredientFixedQuantity(name) - alreadyClaimed < required) {
+            return false;
+        }
+        claimed.put(key, alreadyClaimed + required);
+        return true;
+    }
+
+    /**
+     * Releases stock claimed by claim, when the search backs out of a choice.
+     *
+     * @param name     The name of the ingredient.
+     * @param amount   The fixed-point quantity that was claimed.
+     * @param claimed  The stock already claimed, by lowercase name; updated.
+     */
+    private static void release(String name, long amount, Map<String, Long> claimed) {
+        String key = StringFuncs.customToLowerCase(name);
+        claimed.put(key, claimed.get(key) - amount);
+    }
+
+    /**
+     * Precomputes, for every ingredient that has rules, the substitutes reachable through
+     * chains of up to MAX_CHAIN_LENGTH rules, by breadth-first search. A chain of rules limited
+     * to different recipes can never apply and is dropped.
+     */
+    private void buildCandidates() {
+        Map<String, SubstitutionRule[]> edges = new HashMap<>();
+        for (int r = 0; r < ruleCount; r++) {
+            String key = StringFuncs.customToLowerCase(rules[r].getOriginal());
+            SubstitutionRule[] existing = edges.getOrDefault(key, new SubstitutionRule[0]);
+            SubstitutionRule[] extended = Arrays.copyOf(existing, existing.length + 1);
+            extended[existing.length] = rules[r];
+            edges.put(key, extended);
+        }
+
+        candidates = new HashMap<>();
+        for (String origin : edges.keySet()) {
+            Candidate[] found = new Candidate[0];
+            ArrayDeque<Candidate> queue = new ArrayDeque<>();
+            queue.add(new Candidate(origin, 1.0, null, 0));
+            while (!queue.isEmpty()) {
+                Candidate current = queue.poll();
+                if (current.length == MAX_CHAIN_LENGTH) {
+                    continue;
+                }
+                for (SubstitutionRule rule : edges.getOrDefault(StringFuncs.customToLowerCase(current.substitute),
+                        new SubstitutionRule[0])) {
+                    String restriction = current.recipeName;
+                    if (rule.getRecipeName() != null) {
+                        if (restriction != null && !StringFuncs.customStringEquals(restriction, rule.getRecipeName())) {
+                            continue;  // Limited to two different recipes
+                        }
+                        restriction = rule.getRecipeName();
+                    }
+                    if (StringFuncs.customStringEquals(rule.getSubstitute(), origin)
+                            || contains(found, rule.getSubstitute(), restriction)) {
+                        continue;  // A cycle, or already reachable by a shorter or preferred chain
+                    }
+                    Candidate next = new Candidate(rule.getSubstitute(), current.ratio * rule.getRatio(), restriction,
+                            current.length + 1);
+                    found = Arrays.copyOf(found, found.length + 1);
+                    found[found.length - 1] = next;
+                    queue.add(next);
+                }
+            }
+            candidates.put(origin, found);
+        }
+    }
+
+    /**
+     * @param found       The candidates found so far.
+     * @param substitute  The name of a substitute.
+     * @param recipeName  The recipe restriction of the chain, or null.
+     * @return true if the substitute is already a candidate with the same restriction.
+     */
+    private static boolean contains(Candidate[] found, String substitute, String recipeName) {
+        for (Candidate candidate : found) {
+            if (StringFuncs.customStringEquals(candidate.substitute, substitute)
+                    && (candidate.recipeName == null ? recipeName == null
+                            : StringFuncs.customStringEquals(candidate.recipeName, recipeName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The state of one backtracking search for a substitution set: the options of every line,
+     * the stock claimed by the choices made so far, and the choice made for each line.
+     */
+    private class Search {
+        private final String[] names;
+        private final long[] fixedQuantities;
+        private final Unit[] units;
+        private final double[] baseQuantities;
+        private final int batchSize;
+        private final Inventory inventory;
+        private final Candidate[][] options;  // Candidates that apply to the recipe, per line
+        private final long[][] required;  // Fixed-point quantity each candidate needs, per line
+        private final Unit[][] stockUnits;  // Stock unit of each candidate, per line
+        private final Map<String, Long> claimed;
+        private final Candidate[] chosen;  // Substitute chosen for each line, or null if kept as written
+        private int steps;
+
+        Search(Recipe recipe, int batchSize, Inventory inventory) {
+            this.names = recipe.getIngredientNames();
+            this.fixedQuantities = recipe.getFixedIngredientQuantities();
+            this.units = recipe.getIngredientUnits();
+            this.baseQuantities = recipe.getIngredientQuantities();
+            this.batchSize = batchSize;
+            this.inventory = inventory;
+            this.options = new Candidate[names.length][];
+            this.required = new long[names.length][];
+            this.stockUnits = new Unit[names.length][];
+            this.claimed = new HashMap<>();
+            this.chosen = new Candidate[names.length];
+
+            for (int i = 0; i < names.length; i++) {
+                Candidate[] all = candidates.getOrDefault(StringFuncs.customToLowerCase(names[i]), new Candidate[0]);
+                Candidate[] usable = new Candidate[all.length];
+                long[] quantities = new long[all.length];
+                Unit[] stocked = new Unit[all.length];
+                int count = 0;
+                for (Candidate option : all) {
+                    if (option.recipeName != null && !StringFuncs.customStringEquals(option.recipeName, recipe.getName())) {
+                        continue;  // Limited to another recipe
+                    }
+                    Unit stockUnit = inventory.getIngredientUnit(option.substitute);
+                    if (stockUnit == null) {
+                        continue;  // Never stocked
+                    }
+                    usable[count] = option;
+                    quantities[count] = FixedPoint.multiplySaturated(
+                            FixedPoint.toFixed(baseQuantities[i] * option.ratio), batchSize);
+                    stocked[count] = stockUnit;
+                    count++;
+                }
+                options[i] = Arrays.copyOf(usable, count);
+                required[i] = Arrays.copyOf(quantities, count);
+                stockUnits[i] = Arrays.copyOf(stocked, count);
+            }
+        }
+
+        /**
+         * Checks that every line could be covered on its own, ignoring the other lines, so a
+         * batch with a hopeless line is rejected without searching.
+         *
+         * @return false if some line cannot be covered even with all stock to itself.
+         */
+        boolean prune() {
+            for (int i = 0; i < names.length; i++) {
+                long asWritten = FixedPoint.multiplySaturated(fixedQuantities[i], batchSize);
+                boolean possible = asWritten == 0 || claim(inventory, names[i], units[i], asWritten, new HashMap<>());
+                for (int c = 0; c < options[i].length && !possible; c++) {
+                    possible = claim(inventory, options[i][c].substitute, stockUnits[i][c], required[i][c],
+                            new HashMap<>());
+                }
+                if (!possible) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Chooses how to cover each line from the given one on, backing out of a choice when
+         * the lines after it cannot be covered with the stock left.
+         *
+         * @param line The first line without a choice.
+         * @return true if every line from the given one on is covered; the choices are in chosen.
+         */
+        boolean fill(int line) {
+            if (line == names.length) {
+                return true;
+            }
+            long asWritten = FixedPoint.multiplySaturated(fixedQuantities[line], batchSize);
+            if (asWritten == 0) {
+                return fill(line + 1);
+            }
+            if (++steps > MAX_SEARCH_STEPS) {
+                return false;
+            }
+            if (claim(inventory, names[line], units[line], asWritten, claimed)) {
+                if (fill(line + 1)) {
+                    return true;
+                }
+                release(names[line], asWritten, claimed);
+            }
+            for (int c = 0; c < options[line].length && steps <= MAX_SEARCH_STEPS; c++) {
+                Candidate option = options[line][c];
+                steps++;
+                if (claim(inventory, option.substitute, stockUnits[line][c], required[line][c], claimed)) {
+                    chosen[line] = option;
+                    if (fill(line + 1)) {
+                        return true;
+                    }
+                    chosen[line] = null;
+                    release(option.substitute, required[line][c], claimed);
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A substitute reachable from an ingredient through a chain of rules.
+     */
+    private static class Candidate {
+        private final String substitute;
+        private final double ratio;  // Product of the ratios along the chain
+        private final String recipeName;  // The recipe the chain is limited to, or null
+        private final int length;  // Number of rules in the chain
+
+        Candidate(String substitute, double ratio, String recipeName, int length) {
+            this.substitute = substitute;
+            this.ratio = ratio;
+            this.recipeName = recipeName;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package model;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A RecipeCatalog that keeps every recipe version on disk and only a bounded working set of
+ * recently used versions on the heap, so heap use stays flat as the catalog grows.
+ * <p>
+ * Versions are appended to {@code <baseName>.recipes} in the BreweryCodec format, and an
+ * append-only index {@code <baseName>.recipes.index} records the name, version, offset and
+ * length of each. Only the index (a name and two small arrays per recipe) is held in memory.
+ * A version not in the working set is read from disk the first time it is asked for.
+ * The working set is an LRU cache bounded by the estimated heap size of the versions it holds,
+ * so a few recipes with many ingredient lines count as much as many small ones.
+ * Each version is decoded and compared before it is written, so a version loaded from disk
+ * always has exactly the quantities of the version that was added.
+ * Whole-catalog reads (getAllRecipes, getRecipeHistory) are served from the working set where
+ * possible, and a version they read from disk only joins the working set if it fits without
+ * evicting anything, so a catalog within the budget is read from disk once while a scan of a
+ * larger one never pushes out the recently used versions. A version outside the working set
+ * whose compiled data is still held (after a feasibility scan, for example) is returned as the
+ * instance it was compiled from rather than read from disk again, and the compiled data is
+ * keyed by name and version, so repeated scans of a catalog larger than the working set neither
+ * re-read nor recompile it. The price is that, between scans, the compiled cache's scan set
+ * keeps the latest version of every recipe on the heap.
+ * Disk reads happen outside the lock that guards the index and working set, so a lookup that
+ * hits the working set never waits for another thread's disk read. Appends are serialized by
+ * a separate write lock.
+ */
+public class TieredRecipeLibrary implements RecipeCatalog, Closeable {
+    /** The default estimated heap size of the working set, in bytes. */
+    public static final long DEFAULT_MAX_RESIDENT_BYTES = 1L << 20;
+
+    private static final int RECIPE_OVERHEAD_BYTES = 160;  // Recipe object and its arrays
+    private static final int LINE_BYTES = 80;  // Ingredient object and one slot in each array
+
+    private FileChannel data;
+    private DataOutputStream index;
+    private Map<String, IndexEntry> entries;  // Lowercase name to its versions, in the order names were added
+    private LinkedHashMap<String, Recipe> workingSet;  // "lowercase name#version" to recipe, in access order
+    private long maxResidentBytes;
+    private long residentBytes;
+    private long diskReads;
+    private CompiledRecipeCache compiledCache;
+    private final Object writeLock = new Object();  // Serializes appends to the files and closing them
+
+    /**
+     * Opens or creates a tiered library in the files {@code <baseName>.recipes} and
+     * {@code <baseName>.recipes.index}.
+     *
+     * @param baseName         The path and base file name of the library.
+     * @param maxResidentBytes The estimated heap size the working set may use.
+     * @throws IOException if the files cannot be opened or the index is corrupt.
+     */
+    public TieredRecipeLibrary(String baseName, long maxResidentBytes) throws IOException {
+        if (maxResidentBytes <= 0) {
+            throw new IllegalArgumentException("Working set size must be positive");
+        }
+        this.maxResidentBytes = maxResidentBytes;
+        this.entries = new LinkedHashMap<>();
+        this.workingSet = new LinkedHashMap<>(16, 0.75f, true);
+        this.compiledCache = new CompiledRecipeCache(RecipeLibrary.DEFAULT_CACHE_SIZE, true);
+
+        Path indexPath = Paths.get(baseName + ".recipes.index");
+        if (Files.exists(indexPath)) {
+            readIndex(indexPath);
+        }
+        this.data = FileChannel.open(Paths.get(baseName + ".recipes"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = new DataOutputStream(new FileOutputStream(indexPath.toFile(), true));
+    }
+
+    /**
+     * Loads the on-disk index into memory.
+     *
+     * @param indexPath The path of the index file.
+     * @throws IOException if the index cannot be read.
+     */
+    private void readIndex(Path indexPath) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(indexPath))) {
+            while (true) {
+                String name;
+                try {
+                    name = in.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                int version = in.readInt();
+                long offset = in.readLong();
+                int length = in.readInt();
+                IndexEntry entry = entries.computeIfAbsent(StringFuncs.customToLowerCase(name), key -> new IndexEntry(name));
+                if (version != entry.versionCount + 1) {
+                    throw new IOException("Corrupt recipe index: " + name + " version " + version);
+                }
+                entry.add(offset, length);
+            }
+        }
+    }
+
+    @Override
+    public Recipe addRecipe(Recipe recipe) {
+        synchronized (writeLock) {  // Only appends change version counts, so the count read below stays valid
+            IndexEntry entry;
+            synchronized (this) {
+                entry = entries.get(StringFuncs.customToLowerCase(recipe.getName()));
+            }
+            Recipe stored = recipe.freeze(entry == null ? 1 : entry.versionCount + 1, null);
+
+            BreweryCodec.Writer writer = new BreweryCodec.Writer();
+            writer.writeRecipe(stored);
+            byte[] bytes = writer.toByteArray();
+            verifyRoundTrip(stored, bytes);
+            long offset;
+            try {
+                offset = data.size();
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    data.write(buffer, offset + buffer.position());
+                }
+                index.writeUTF(stored.getName());
+                index.writeInt(stored.getVersion());
+                index.writeLong(offset);
+                index.writeInt(bytes.length);
+                index.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not store recipe " + recipe.getName(), e);
+            }
+
+            synchronized (this) {
+                if (entry == null) {
+                    entry = new IndexEntry(stored.getName());
+                    entries.put(StringFuncs.customToLowerCase(stored.getName()), entry);
+                }
+                entry.add(offset, bytes.length);
+                cache(key(stored.getName(), stored.getVersion()), stored, true);
+            }
+            return stored;
+        }
+    }
+
+    @Override
+    public Recipe getRecipe(String name) {
+        IndexEntry entry;
+        int version;
+        synchronized (this) {
+            entry = name == null ? null : entries.get(StringFuncs.customToLowerCase(name));
+            if (entry == null) {
+                return null;
+            }
+            version = entry.versionCount;
+        }
+        return load(entry, version, true);
+    }
+
+    @Override
+    public Recipe getRecipe(String name, int version) {
+        IndexEntry entry;
+        synchronized (this) {
+            entry = name == null ? null : entries.get(StringFuncs.customToLowerCase(name));
+            if (entry == null || version < 1 || version > entry.versionCount) {
+                return null;
+            }
+        }
+        return load(entry, version, true);
+    }
+
+    @Override
+    public Recipe[] getRecipeHistory(String name) {
+        IndexEntry entry;
+        int versionCount;
+        synchronized (this) {
+            entry = name == null ? null : entries.get(StringFuncs.customToLowerCase(name));
+            if (entry == null) {
+                return new Recipe[0];
+            }
+            versionCount = entry.versionCount;
+        }
+        Recipe[] versions = new Recipe[versionCount];
+        for (int v = 1; v <= versionCount; v++) {
+            versions[v - 1] = load(entry, v, false);
+        }
+        return versions;
+    }
+
+    @Override
+    public Recipe[] getAllRecipes() {
+        IndexEntry[] snapshot;
+        int[] latest;
+        synchronized (this) {
+            snapshot = entries.values().toArray(new IndexEntry[0]);
+            latest = new int[snapshot.length];
+            for (int i = 0; i < snapshot.length; i++) {
+                latest[i] = snapshot[i].versionCount;
+            }
+        }
+        Recipe[] recipes = new Recipe[snapshot.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            recipes[i] = load(snapshot[i], latest[i], false);
+        }
+        return recipes;
+    }
+
+    @Override
+    public CompiledRecipe getCompiledRecipe(Recipe recipe) {
+        return compiledCache.get(recipe);
+    }
+
+    @Override
+    public CompiledRecipe[] getCompiledRecipes(Recipe[] recipes) {
+        return compiledCache.getAll(recipes);
+    }
+
+    @Override
+    public long getCompiledCacheHits() {
+        return compiledCache.getHits();
+    }
+
+    @Override
+    public long getCompiledCacheMisses() {
+        return compiledCache.getMisses();
+    }
+
+    /**
+     * @return The number of recipe versions read from disk so far.
+     */
+    public synchronized long getDiskReads() {
+        return diskReads;
+    }
+
+    /**
+     * @return The estimated heap size of the versions in the working set, in bytes.
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * @return The number of versions in the working set.
+     */
+    public synchronized int getResidentCount() {
+        return workingSet.size();
+    }
+
+    /**
+     * Closes the library files.
+     *
+     * @throws IOException if a file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            index.close();
+            data.close();
+        }
+    }
+
+    /**
+     * Returns a version from the working set, or reads it from disk without holding the lock.
+     *
+     * @param entry   The index entry of the recipe.
+     * @param version The version number.
+     * @param evict   Whether a version read from disk may evict others to join the working set;
+     *                if false it only joins when it fits the budget as it is.
+     * @return The recipe version.
+     */
+    private Recipe load(IndexEntry entry, int version, boolean evict) {
+        String key = key(entry.name, version);
+        long offset;
+        int length;
+        synchronized (this) {
+            Recipe resident = workingSet.get(key);
+            if (resident != null) {
+                return resident;
+            }
+            offset = entry.offsets[version - 1];
+            length = entry.lengths[version - 1];
+        }
+        Recipe compiled = compiledCache.findCompiledVersion(entry.name, version);
+        if (compiled != null) {
+            return compiled;  // Already decoded for the compiled data; no need to read it again
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (data.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Recipe file is truncated");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load recipe " + entry.name + " version " + version, e);
+        }
+        buffer.flip();
+        Recipe recipe = new BreweryCodec.Reader(buffer).readRecipe();
+
+        synchronized (this) {
+            diskReads++;
+            Recipe resident = workingSet.get(key);
+            if (resident != null) {
+                return resident;  // Another thread loaded it meanwhile; keep one instance
+            }
+            cache(key, recipe, evict);
+        }
+        return recipe;
+    }
+
+    /**
+     * Decodes an encoded version and checks that it matches the version being stored, so a
+     * version read back from disk after eviction or a restart is identical to the one added.
+     *
+     * @param stored The version being stored.
+     * @param bytes  Its encoding.
+     * @throws IllegalStateException if the decoded version differs.
+     */
+    private static void verifyRoundTrip(Recipe stored, byte[] bytes) {
+        Recipe decoded = new BreweryCodec.Reader(ByteBuffer.wrap(bytes)).readRecipe();
+        if (!decoded.getName().equals(stored.getName())
+                || decoded.getVersion() != stored.getVersion()
+                || decoded.getNumberOfBottles() != stored.getNumberOfBottles()
+                || !Arrays.equals(decoded.getIngredientNames(), stored.getIngredientNames())
+                || !Arrays.equals(decoded.getIngredientUnits(), stored.getIngredientUnits())
+                || !Arrays.equals(decoded.getFixedIngredientQuantities(), stored.getFixedIngredientQuantities())) {
+            throw new IllegalStateException("Recipe " + stored.getName() + " version " + stored.getVersion()
+                    + " does not survive encoding");
+        }
+    }
+
+    /**
+     * Adds a version to the working set, evicting the least recently used versions while the
+     * working set is over its size budget. The version just added is never evicted.
+     * The caller holds the lock.
+     *
+     * @param key    The working set key of the version.
+     * @param recipe The recipe version.
+     * @param evict  Whether to evict others to make room; if false the version is only added
+     *               when it fits the budget as it is.
+     */
+    private void cache(String key, Recipe recipe, boolean evict) {
+        if (!evict && residentBytes + estimateBytes(recipe) > maxResidentBytes) {
+            return;
+        }
+        Recipe previous = workingSet.put(key, recipe);
+        if (previous != null) {
+            residentBytes -= estimateBytes(previous);
+        }
+        residentBytes += estimateBytes(recipe);
+
+        Iterator<Map.Entry<String, Recipe>> eldest = workingSet.entrySet().iterator();
+        while (residentBytes > maxResidentBytes && workingSet.size() > 1) {
+            Map.Entry<String, Recipe> victim = eldest.next();
+            residentBytes -= estimateBytes(victim.getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Estimates the heap size of a recipe version from its name lengths and line count.
+     *
+     * @param recipe The recipe version.
+     * @return The estimated size in bytes.
+     */
+    private static long estimateBytes(Recipe recipe) {
+        long bytes = RECIPE_OVERHEAD_BYTES + 2L * recipe.getName().length();
+        for (String name : recipe.getIngredientNames()) {
+            bytes += LINE_BYTES + 2L * name.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * @param name    The name of a recipe.
+     * @param version The version number.
+     * @return The working set key of the version.
+     */
+    private static String key(String name, int version) {
+        return StringFuncs.customToLowerCase(name) + "#" + version;
+    }
+
+    /**
+     * The on-disk location of every version of one recipe name.
+     */
+    private static class IndexEntry {
+        private final String name;
+        private long[] offsets = new long[1];
+        private int[] lengths = new int[1];
+        private int versionCount;
+
+        IndexEntry(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records the location of the next version.
+         *
+         * @param offset The offset of the version in the recipe file.
+         * @param length The length of the encoded version.
+         */
+        void add(long offset, int length) {
+            if (versionCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, versionCount * 2);
+                lengths = Arrays.copyOf(lengths, versionCount * 2);
+            }
+            offsets[versionCount] = offset;
+            lengths[versionCount] = length;
+            versionCount++;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package model;
+
+/**
+ * Represents a unit of measure for ingredient quantities.
+ * Each unit belongs to a dimension (count, mass or volume) and has a fixed factor
+ * that converts a quantity in this unit to the base unit of its dimension.
+ */
+public enum Unit {
+    UNIT("unit", Dimension.COUNT, 1.0),
+    GRAM("g", Dimension.MASS, 1.0),
+    KILOGRAM("kg", Dimension.MASS, 1000.0),
+    MILLILITRE("ml", Dimension.VOLUME, 1.0),
+    LITRE("l", Dimension.VOLUME, 1000.0);
+
+    /**
+     * The physical dimension a unit measures. Quantities can only be converted
+     * between units of the same dimension.
+     */
+    public enum Dimension {
+        COUNT, MASS, VOLUME
+    }
+
+    private final String symbol;
+    private final Dimension dimension;
+    private final double factorToBase;
+
+    Unit(String symbol, Dimension dimension, double factorToBase) {
+        this.symbol = symbol;
+        this.dimension = dimension;
+        this.factorToBase = factorToBase;
+    }
+
+    /**
+     * @return The short symbol of the unit, such as "kg".
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return The dimension this unit measures.
+     */
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return The factor that converts a quantity in this unit to the base unit.
+     */
+    public double getFactorToBase() {
+        return factorToBase;
+    }
+
+    /**
+     * Returns the base unit of this unit's dimension (unit, g or ml).
+     *
+     * @return The base unit of the dimension.
+     */
+    public Unit getBaseUnit() {
+        switch (dimension) {
+        case MASS:
+            return GRAM;
+        case VOLUME:
+            return MILLILITRE;
+        default:
+            return UNIT;
+        }
+    }
+
+    /**
+     * Checks whether quantities in this unit can be converted to the other unit.
+     *
+     * @param other The unit to compare with.
+     * @return true if both units measure the same dimension, false otherwise.
+     */
+    public boolean isCompatibleWith(Unit other) {
+        return other != null && dimension == other.dimension;
+    }
+
+    /**
+     * Converts a quantity in this unit to the base unit of its dimension.
+     *
+     * @param quantity The quantity in this unit.
+     * @return The quantity in the base unit.
+     */
+    public double toBase(double quantity) {
+        return quantity * factorToBase;
+    }
+
+    /**
+     * Looks up a unit by its symbol or name, ignoring case.
+     * A blank symbol is treated as a plain count.
+     *
+     * @param symbol The symbol to look up, such as "kg" or "litre".
+     * @return The matching Unit, or null if no unit matches.
+     */
+    public static Unit fromSymbol(String symbol) {
+        if (symbol == null || StringFuncs.getLength(symbol.trim()) == 0) {
+            return UNIT;
+        }
+        String trimmed = symbol.trim();
+        for (Unit unit : values()) {
+            if (StringFuncs.customStringEquals(unit.symbol, trimmed)
+                    || StringFuncs.customStringEquals(unit.name(), trimmed)) {
+                return unit;
+            }
+        }
+        return null;  // Unknown unit
+    }
+
+    /**
+     * @return The symbol of the unit.
+     */
+    @Override
+    public String toString() {
+        return symbol;
+    }
+}
@@ -1,6 +1,7 @@
 package view;
 
 import java.util.Scanner;
+import model.Ingredient;
 import model.Recipe;
 
 /**
@@ -31,6 +32,11 @@ public class BreweryView {
         System.out.println("6. Clean all Containers");
         System.out.println("7. viewCleanContainers");
         System.out.println("8. Exit");
+        System.out.println("9. Check Recipe Feasibility");
+        System.out.println("10. View Stock-Out Forecast");
+        System.out.println("11. Run Query");
+        System.out.println("12. Add Substitution Rule");
+        System.out.println("13. View Container Utilization");
         System.out.print("Select an option: ");
         int option = scanner.nextInt();
         scanner.nextLine();  // Consume the newline character left after nextInt()
@@ -69,13 +75,12 @@ public class BreweryView {
         } else {
             System.out.println("Available Recipes:");
             for (Recipe recipe : recipes) {
-                System.out.println("Recipe Name: " + recipe.getName());
+                System.out.println("Recipe Name: " + recipe.getName() + " (version " + recipe.getVersion() + ")");
                 System.out.println("Number of Bottles: " + recipe.getNumberOfBottles());
                 System.out.println("Ingredients:");
-                String[] ingredientNames = recipe.getIngredientNames();
-                double[] ingredientQuantities = recipe.getIngredientQuantities();
-                for (int i = 0; i < ingredientNames.length; i++) {
-                    System.out.println(" - " + ingredientNames[i] + ": " + ingredientQuantities[i] + " per bottle");
+                for (Ingredient ingredient : recipe.getIngredients()) {
+                    System.out.println(" - " + ingredient.getName() + ": " + ingredient.getQuantity() + " "
+                            + ingredient.getUnit() + " per bottle");
                 }
                 System.out.println();
             }
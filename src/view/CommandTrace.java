@@ -0,0 +1,126 @@
+package view;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A recorded sequence of user inputs: every menu choice and every answer to a prompt,
+ * with the time it was entered relative to the start of the session.
+ * On disk each input is one line: the offset in milliseconds, a tab, M for a menu choice or
+ * I for a prompt answer, a tab, and the text entered.
+ */
+public class CommandTrace {
+    /** The kind of an input that chose a main menu option. */
+    public static final char MENU = 'M';
+    /** The kind of an input that answered a prompt. */
+    public static final char INPUT = 'I';
+
+    private long[] offsets;  // Milliseconds since the start of the session
+    private char[] kinds;
+    private String[] values;
+    private int count;
+
+    /**
+     * Constructs an empty CommandTrace.
+     */
+    public CommandTrace() {
+        this.offsets = new long[64];
+        this.kinds = new char[64];
+        this.values = new String[64];
+        this.count = 0;
+    }
+
+    /**
+     * Reads a trace written by a TraceRecordingView.
+     *
+     * @param path The path of the trace file.
+     * @return The trace.
+     * @throws IOException if the file cannot be read or a line is malformed.
+     */
+    public static CommandTrace load(String path) throws IOException {
+        CommandTrace trace = new CommandTrace();
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int first = line.indexOf('\t');
+                int second = first < 0 ? -1 : line.indexOf('\t', first + 1);
+                if (second != first + 2 || (line.charAt(first + 1) != MENU && line.charAt(first + 1) != INPUT)) {
+                    throw new IOException("Malformed trace line " + lineNumber + ": " + line);
+                }
+                try {
+                    trace.add(Long.parseLong(line.substring(0, first)), line.charAt(first + 1),
+                            line.substring(second + 1));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed trace line " + lineNumber + ": " + line);
+                }
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Formats one input as a trace line, without the line separator.
+     *
+     * @param offset The time the input was entered, in milliseconds since the start of the session.
+     * @param kind   MENU or INPUT.
+     * @param value  The text entered.
+     * @return The trace line.
+     */
+    static String formatLine(long offset, char kind, String value) {
+        return offset + "\t" + kind + "\t" + value;
+    }
+
+    /**
+     * Appends one input to the trace.
+     *
+     * @param offset The time the input was entered, in milliseconds since the start of the session.
+     * @param kind   MENU or INPUT.
+     * @param value  The text entered.
+     */
+    public void add(long offset, char kind, String value) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            kinds = Arrays.copyOf(kinds, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+        }
+        offsets[count] = offset;
+        kinds[count] = kind;
+        values[count] = value;
+        count++;
+    }
+
+    /**
+     * @return The number of inputs in the trace.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param index The index of the input.
+     * @return The time the input was entered, in milliseconds since the start of the session.
+     */
+    public long getOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * @param index The index of the input.
+     * @return MENU or INPUT.
+     */
+    public char getKind(int index) {
+        return kinds[index];
+    }
+
+    /**
+     * @param index The index of the input.
+     * @return The text entered.
+     */
+    public String getValue(int index) {
+        return values[index];
+    }
+}
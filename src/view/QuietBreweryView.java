@@ -0,0 +1,29 @@
+package view;
+
+import model.Recipe;
+
+/**
+ * A BreweryView that discards everything it would display, for driving the production
+ * system from load tests and replays without console output. It counts the messages
+ * it discards.
+ */
+public class QuietBreweryView extends BreweryView {
+    private long messageCount;
+
+    @Override
+    public void displayMessage(String message) {
+        messageCount++;
+    }
+
+    @Override
+    public void displayRecipes(Recipe[] recipes) {
+        messageCount++;
+    }
+
+    /**
+     * @return The number of messages discarded so far.
+     */
+    public long getMessageCount() {
+        return messageCount;
+    }
+}
@@ -0,0 +1,61 @@
+package view;
+
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * A BreweryView that behaves like the console view and also appends every menu choice
+ * and prompt answer to a trace file, so the session can be replayed later with a
+ * TraceReplayView. Each input is flushed as it is entered, so a crashed session still
+ * leaves a complete trace up to the crash.
+ */
+public class TraceRecordingView extends BreweryView implements Closeable {
+    private PrintWriter writer;
+    private long startMillis;
+
+    /**
+     * Constructs a TraceRecordingView that writes a new trace file.
+     *
+     * @param path The path of the trace file, replaced if it exists.
+     * @throws IOException if the file cannot be created.
+     */
+    public TraceRecordingView(String path) throws IOException {
+        this.writer = new PrintWriter(new FileWriter(path));
+        this.startMillis = System.currentTimeMillis();
+    }
+
+    @Override
+    public int showMainMenu() {
+        int option = super.showMainMenu();
+        record(CommandTrace.MENU, String.valueOf(option));
+        return option;
+    }
+
+    @Override
+    public String getInput(String prompt) {
+        String input = super.getInput(prompt);
+        record(CommandTrace.INPUT, input);
+        return input;
+    }
+
+    /**
+     * Appends one input to the trace file.
+     *
+     * @param kind  CommandTrace.MENU or CommandTrace.INPUT.
+     * @param value The text entered.
+     */
+    private void record(char kind, String value) {
+        writer.println(CommandTrace.formatLine(System.currentTimeMillis() - startMillis, kind, value));
+        writer.flush();
+    }
+
+    /**
+     * Closes the trace file.
+     */
+    @Override
+    public void close() {
+        writer.close();
+    }
+}
@@ -0,0 +1,102 @@
+package view;
+
+import java.util.concurrent.locks.LockSupport;
+import model.LoadReport;
+
+/**
+ * A quiet BreweryView that replays a recorded CommandTrace instead of reading the console.
+ * Menu choices are paced by their recorded offsets divided by a speed factor, or sent as
+ * fast as possible with a speed of 0. Each command, from its menu choice to the next menu,
+ * is recorded in a LoadReport; pacing waits are not counted. When the trace runs out the
+ * view chooses Exit.
+ */
+public class TraceReplayView extends QuietBreweryView {
+    private static final int EXIT_OPTION = 8;
+
+    private CommandTrace trace;
+    private double speed;
+    private LoadReport report;
+    private int position;
+    private long replayStartNanos;
+    private long commandStartNanos;  // 0 while no command is running
+    private long commandStartAllocated;
+
+    /**
+     * Constructs a TraceReplayView.
+     *
+     * @param trace  The trace to replay.
+     * @param speed  The replay rate relative to the recording, such as 2.0 for twice as fast,
+     *               or 0 to replay without pauses.
+     * @param report The report each replayed command is recorded in.
+     */
+    public TraceReplayView(CommandTrace trace, double speed, LoadReport report) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Speed cannot be negative.");
+        }
+        this.trace = trace;
+        this.speed = speed;
+        this.report = report;
+        this.position = 0;
+    }
+
+    @Override
+    public int showMainMenu() {
+        long now = System.nanoTime();
+        if (commandStartNanos != 0) {
+            long allocated = LoadReport.threadAllocatedBytes();
+            report.record(now - commandStartNanos, allocated < 0 ? -1 : allocated - commandStartAllocated);
+        } else {
+            replayStartNanos = now;
+            report.start();
+        }
+
+        if (position >= trace.size()) {
+            report.stop();
+            return EXIT_OPTION;
+        }
+        if (trace.getKind(position) != CommandTrace.MENU) {
+            throw new IllegalStateException("Trace out of sync at input " + (position + 1)
+                    + ": expected a menu choice, found '" + trace.getValue(position) + "'.");
+        }
+        pace(trace.getOffset(position));
+
+        int option;
+        try {
+            option = Integer.parseInt(trace.getValue(position).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid menu choice in trace at input " + (position + 1) + ".");
+        }
+        position++;
+        if (option == EXIT_OPTION) {
+            report.stop();
+        }
+        commandStartAllocated = LoadReport.threadAllocatedBytes();
+        commandStartNanos = System.nanoTime();
+        return option;
+    }
+
+    @Override
+    public String getInput(String prompt) {
+        if (position >= trace.size() || trace.getKind(position) != CommandTrace.INPUT) {
+            throw new IllegalStateException("Trace out of sync at input " + (position + 1)
+                    + ": expected an answer to '" + prompt + "'.");
+        }
+        return trace.getValue(position++);
+    }
+
+    /**
+     * Waits until a recorded offset, scaled by the speed, has passed since the replay started.
+     *
+     * @param offsetMillis The recorded offset in milliseconds.
+     */
+    private void pace(long offsetMillis) {
+        if (speed == 0) {
+            return;
+        }
+        long due = replayStartNanos + (long) (offsetMillis * 1_000_000L / speed);
+        long wait;
+        while ((wait = due - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package controller;
+
+import model.BeverageBatch;
+import model.BrewerySite;
+import model.FixedPoint;
+import model.InMemoryInventoryStore;
+import model.Inventory;
+import model.Recipe;
+import model.Unit;
+import support.TestSupport;
+import view.QuietBreweryView;
+
+/**
+ * Checks MultiSiteProductionSystem with two or three sites in one process: brewing from local
+ * stock, moving a shortfall from other sites, releasing reservations when the network is short,
+ * returning moved stock when brewing fails, rejecting non-positive batches, replicating one
+ * frozen version of each recipe to every site, and conserving stock
+ * while every site brews concurrently. Plain Java with no test framework: run with
+ * {@code java -cp <classes> controller.MultiSiteProductionSystemTest}, which exits with status 1
+ * if any case fails.
+ */
+public class MultiSiteProductionSystemTest extends TestSupport {
+    private static final int CONCURRENT_ORDERS = 500;  // Orders per site in the concurrent case
+
+    public static void main(String[] args) throws InterruptedException {
+        MultiSiteProductionSystemTest test = new MultiSiteProductionSystemTest();
+        test.localSuccess();
+        test.crossSiteFallback();
+        test.rollbackWhenNetworkShort();
+        test.returnWhenBrewingFails();
+        test.nonPositiveBatch();
+        test.replicatedRecipes();
+        test.concurrentSites();
+        test.finish("All multi-site cases passed");
+    }
+
+    /**
+     * A site that stocks everything brews from its own stock and leaves the other sites alone.
+     */
+    private void localSuccess() {
+        MultiSiteProductionSystem system = network("A", "B");
+        stock(system, "A", "Malt", 1000);
+        stock(system, "A", "Hops", 100);
+        stock(system, "B", "Malt", 500);
+
+        check("local success", system.produceBatch("A", "Pale Ale", 10));
+        check("local success", grams(system, "A", "Malt") == 0 && grams(system, "A", "Hops") == 0);
+        check("local success", grams(system, "B", "Malt") == 500);
+        BeverageBatch[] batches = system.getSite("A").getInventory().getFinishedBatches();
+        check("local success", batches.length == 1 && batches[0].getSize() == 10);
+        check("local success", system.getSite("B").getInventory().getFinishedBatches().length == 0);
+        check("local success", system.getSite("A").getInventory().getCleanContainers().length == 2);
+    }
+
+    /**
+     * A site short of an ingredient gets the shortfall from the other sites, in the order the
+     * sites were added, and brews the batch itself.
+     */
+    private void crossSiteFallback() {
+        MultiSiteProductionSystem system = network("A", "B", "C");
+        stock(system, "A", "Malt", 300);
+        stock(system, "A", "Hops", 100);
+        stock(system, "B", "Malt", 400);
+        stock(system, "C", "Malt", 500);
+
+        check("cross-site fallback", system.produceBatch("A", "Pale Ale", 10));
+        check("cross-site fallback", grams(system, "A", "Malt") == 0 && grams(system, "A", "Hops") == 0);
+        check("cross-site fallback", grams(system, "B", "Malt") == 0 && grams(system, "C", "Malt") == 200);
+        check("cross-site fallback", system.getSite("A").getInventory().getFinishedBatches().length == 1);
+        check("cross-site fallback", system.getSite("C").getInventory().getFinishedBatches().length == 0);
+    }
+
+    /**
+     * When a donor runs short of one ingredient during the reservation, the stock already
+     * reserved for the other lines is released and no site changes.
+     */
+    private void rollbackWhenNetworkShort() {
+        MultiSiteProductionSystem system = network("A", "B");
+        stock(system, "A", "Malt", 300);
+        stock(system, "B", "Malt", 1000);
+        stock(system, "B", "Hops", 50);
+
+        check("rollback", !system.produceBatch("A", "Pale Ale", 10));
+        check("rollback", grams(system, "A", "Malt") == 300 && grams(system, "A", "Hops") == 0);
+        check("rollback", grams(system, "B", "Malt") == 1000 && grams(system, "B", "Hops") == 50);
+        check("rollback", system.getSite("A").getInventory().getFinishedBatches().length == 0);
+        check("rollback", system.getSite("A").getInventory().getCleanContainers().length == 3);
+    }
+
+    /**
+     * When the batch fails after the shortfall was moved, the moved stock goes back to its donors.
+     */
+    private void returnWhenBrewingFails() {
+        MultiSiteProductionSystem system = new MultiSiteProductionSystem(new QuietBreweryView());
+        // The local attempt checks the recipe name once; the second check, after the move, fails
+        system.addSite(new BrewerySite("A", new Inventory(new FailingStore(2))));
+        system.addSite("B");
+        system.addRecipe(paleAle());
+        stock(system, "A", "Malt", 200);
+        stock(system, "A", "Hops", 100);
+        stock(system, "B", "Malt", 1000);
+
+        boolean threw = false;
+        try {
+            system.produceBatch("A", "Pale Ale", 10);
+        } catch (IllegalArgumentException e) {
+            threw = true;
+        }
+        check("return on failure", threw);
+        check("return on failure", grams(system, "A", "Malt") == 200 && grams(system, "A", "Hops") == 100);
+        check("return on failure", grams(system, "B", "Malt") == 1000);
+        check("return on failure", system.getSite("A").getInventory().getFinishedBatches().length == 0);
+    }
+
+    /**
+     * Batches of zero or fewer bottles are rejected without changing any site.
+     */
+    private void nonPositiveBatch() {
+        MultiSiteProductionSystem system = network("A", "B");
+        stock(system, "A", "Hops", 100);
+        stock(system, "B", "Malt", 1000);
+
+        check("non-positive batch", !system.produceBatch("A", "Pale Ale", 0));
+        check("non-positive batch", !system.produceBatch("A", "Pale Ale", -5));
+        check("non-positive batch", grams(system, "A", "Hops") == 100 && grams(system, "A", "Malt") == 0);
+        check("non-positive batch", grams(system, "B", "Malt") == 1000);
+        check("non-positive batch", system.getSite("A").getInventory().getFinishedBatches().length == 0);
+    }
+
+    /**
+     * A recipe is frozen once and the same version reaches every site, including a site added
+     * later, even if the caller changes the draft after adding it.
+     */
+    private void replicatedRecipes() {
+        MultiSiteProductionSystem system = new MultiSiteProductionSystem(new QuietBreweryView());
+        system.addSite("A");
+        Recipe draft = paleAle();
+        Recipe stored = system.addRecipe(draft);
+        draft.addIngredient("Yeast", 1, Unit.GRAM);
+        system.addSite("B");
+
+        Recipe atA = system.getSite("A").getRecipeLibrary().getRecipe("Pale Ale");
+        Recipe atB = system.getSite("B").getRecipeLibrary().getRecipe("Pale Ale");
+        check("replicated recipes", stored.isFrozen() && atA == stored && atB == stored);
+        check("replicated recipes", atB.getVersion() == 1 && atB.getIngredientNames().length == 2);
+    }
+
+    /**
+     * Every site brews concurrently, each stocking only one of the ingredients, so every batch
+     * moves stock between sites. No stock is created or lost, and every batch that was reported
+     * as brewed used exactly its ingredients.
+     *
+     * @throws InterruptedException if interrupted while waiting for the sites.
+     */
+    private void concurrentSites() throws InterruptedException {
+        MultiSiteProductionSystem system = network("A", "B", "C");
+        Recipe recipe = new Recipe("Blend", 1);
+        recipe.addIngredient("Malt", 3, Unit.GRAM);
+        recipe.addIngredient("Hops", 2, Unit.GRAM);
+        recipe.addIngredient("Yeast", 1, Unit.GRAM);
+        system.addRecipe(recipe);
+        // Enough for about two thirds of the orders, so some are rejected as the network runs short
+        long orders = 3L * CONCURRENT_ORDERS;
+        stock(system, "A", "Malt", orders * 2);
+        stock(system, "B", "Hops", orders * 4 / 3);
+        stock(system, "C", "Yeast", orders * 2 / 3);
+
+        String[] siteNames = { "A", "B", "C" };
+        int[] brewed = new int[siteNames.length];
+        Thread[] threads = new Thread[siteNames.length];
+        for (int s = 0; s < siteNames.length; s++) {
+            int site = s;
+            threads[s] = new Thread(() -> {
+                for (int n = 0; n < CONCURRENT_ORDERS; n++) {
+                    system.getSite(siteNames[site]).getInventory().markContainerAsClean();
+                    if (system.produceBatch(siteNames[site], "Blend", 1)) {
+                        brewed[site]++;
+                    }
+                }
+            });
+            threads[s].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(60_000);
+            check("concurrent sites", !thread.isAlive());
+        }
+
+        long bottles = 0;
+        for (int s = 0; s < siteNames.length; s++) {
+            long recorded = 0;
+            for (BeverageBatch batch : system.getSite(siteNames[s]).getInventory().getFinishedBatches()) {
+                recorded += batch.getSize();
+            }
+            check("concurrent sites", recorded == brewed[s]);
+            bottles += recorded;
+        }
+        check("concurrent sites", bottles > 0);
+        check("concurrent sites", total(system, siteNames, "Malt") + 3 * bottles == orders * 2);
+        check("concurrent sites", total(system, siteNames, "Hops") + 2 * bottles == orders * 4 / 3);
+        check("concurrent sites", total(system, siteNames, "Yeast") + bottles == orders * 2 / 3);
+    }
+
+    /**
+     * Builds a network of sites with default containers and the Pale Ale recipe.
+     *
+     * @param siteNames The names of the sites, in the order they are added.
+     * @return The network.
+     */
+    private static MultiSiteProductionSystem network(String... siteNames) {
+        MultiSiteProductionSystem system = new MultiSiteProductionSystem(new QuietBreweryView());
+        for (String siteName : siteNames) {
+            system.addSite(siteName);
+        }
+        system.addRecipe(paleAle());
+        return system;
+    }
+
+    /**
+     * @return A recipe of 100 g of malt and 10 g of hops per bottle.
+     */
+    private static Recipe paleAle() {
+        Recipe recipe = new Recipe("Pale Ale", 1);
+        recipe.addIngredient("Malt", 100, Unit.GRAM);
+        recipe.addIngredient("Hops", 10, Unit.GRAM);
+        return recipe;
+    }
+
+    /**
+     * Adds stock of an ingredient in grams at a site.
+     *
+     * @param system   The network.
+     * @param siteName The site.
+     * @param name     The ingredient.
+     * @param grams    The grams to add.
+     */
+    private static void stock(MultiSiteProductionSystem system, String siteName, String name, double grams) {
+        system.getSite(siteName).getInventory().addIngredient(name, grams, Unit.GRAM);
+    }
+
+    /**
+     * @param system   The network.
+     * @param siteName The site.
+     * @param name     The ingredient.
+     * @return The whole grams of the ingredient stocked at the site, or -1 if not a whole number.
+     */
+    private static long grams(MultiSiteProductionSystem system, String siteName, String name) {
+        long amount = system.getSite(siteName).getInventory().getIngredientFixedQuantity(name);
+        return amount % FixedPoint.toFixed(1) == 0 ? amount / FixedPoint.toFixed(1) : -1;
+    }
+
+    /**
+     * @param system    The network.
+     * @param siteNames The sites to add up.
+     * @param name      The ingredient.
+     * @return The whole grams of the ingredient stocked across the sites.
+     */
+    private static long total(MultiSiteProductionSystem system, String[] siteNames, String name) {
+        long total = 0;
+        for (String siteName : siteNames) {
+            total += grams(system, siteName, name);
+        }
+        return total;
+    }
+
+    /**
+     * An in-memory store that rejects names from a given check on, so a batch can be made to
+     * fail after its shortfall has been moved in.
+     */
+    private static class FailingStore extends InMemoryInventoryStore {
+        private final int failingCheck;
+        private int checks;
+
+        /**
+         * @param failingCheck The number of the first name check that fails, counting from 1.
+         */
+        FailingStore(int failingCheck) {
+            this.failingCheck = failingCheck;
+        }
+
+        @Override
+        public void checkName(String name) {
+            if (++checks >= failingCheck) {
+                throw new IllegalArgumentException("Store rejects " + name);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package controller;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import model.BeverageBatch;
+import model.FixedPoint;
+import model.InMemoryInventoryStore;
+import model.Inventory;
+import model.ProductionOrder;
+import model.RecipeLibrary;
+import model.Unit;
+import support.TestSupport;
+
+/**
+ * Checks how ProductionPipeline fails: when a stage throws an Error partway through a run, every
+ * job still in the pipeline completes exceptionally, the ingredients reserved by those jobs are
+ * returned exactly once, with and without the hot ingredient cache, and later submissions are
+ * turned away. Also checks that closing the pipeline turns away new orders while the jobs already
+ * submitted run to completion. Plain Java with no test framework: run with
+ * {@code java -cp <classes> controller.ProductionPipelineTest}, which exits with status 1 if any
+ * case fails.
+ */
+public class ProductionPipelineTest extends TestSupport {
+    private static final int ORDERS = 400;
+    private static final int FAULTY_ORDER = 200;  // Index of the order whose batch cannot be recorded
+    private static final long MALT_GRAMS = 100_000;
+    private static final int GRAMS_PER_BOTTLE = 10;
+    private static final int[] STAGE_WORKERS = { 1, 4, 2, 2, 1 };
+    private static final long SETTLE_MILLIS = 10_000;  // Longest wait for abandoned jobs to leave the stages
+
+    public static void main(String[] args) throws InterruptedException {
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            if (!(e instanceof StageFault)) {
+                e.printStackTrace();  // The stage worker that throws StageFault dies with it, as intended
+            }
+        });
+        ProductionPipelineTest test = new ProductionPipelineTest();
+        for (int round = 0; round < 10; round++) {
+            test.failedStageReturnsStock("failed stage (round " + round + ")", false);
+            test.failedStageReturnsStock("failed stage, hot ingredients (round " + round + ")", true);
+        }
+        test.closedPipelineTurnsAwayOrders();
+        test.finish("All pipeline cases passed");
+    }
+
+    /**
+     * Recording one batch throws an Error while hundreds of orders are in flight. The pipeline
+     * fails: the faulty job and every job still in the pipeline complete exceptionally with that
+     * Error, jobs recorded before it complete normally, and the stock ends at what the recorded
+     * batches used, so every reservation of an abandoned job was returned exactly once.
+     *
+     * @param name The name of the case.
+     * @param hot  Whether malt goes through the hot ingredient cache.
+     * @throws InterruptedException if interrupted while waiting for the stock to settle.
+     */
+    private void failedStageReturnsStock(String name, boolean hot) throws InterruptedException {
+        FaultyInventory inventory = new FaultyInventory();
+        inventory.addIngredient("Malt", MALT_GRAMS, Unit.GRAM);
+        RecipeLibrary library = new RecipeLibrary();
+        library.addRecipe(recipe("Pale Ale", "Malt", GRAMS_PER_BOTTLE));
+        library.addRecipe(recipe("Faulty", "Malt", GRAMS_PER_BOTTLE));
+        ProductionPipeline pipeline = new ProductionPipeline(inventory, library, STAGE_WORKERS, 8, 1000);
+        if (hot) {
+            pipeline.enableHotIngredientCache(new String[] { "Malt" }, FixedPoint.toFixed(GRAMS_PER_BOTTLE));
+        }
+
+        CompletableFuture<?>[] completions = new CompletableFuture<?>[ORDERS];
+        for (int n = 0; n < ORDERS; n++) {
+            completions[n] = pipeline.submit(new ProductionOrder(n == FAULTY_ORDER ? "Faulty" : "Pale Ale", 1));
+        }
+        int recorded = 0;
+        int abandoned = 0;
+        for (CompletableFuture<?> completion : completions) {
+            try {
+                ProductionPipeline.Job job = (ProductionPipeline.Job) completion.join();
+                recorded += job.isSuccessful() ? 1 : 0;
+            } catch (CompletionException e) {
+                abandoned += e.getCause() instanceof StageFault ? 1 : 0;
+            }
+        }
+        check(name, recorded + abandoned == ORDERS && recorded > 0 && abandoned > 0);
+        check(name, completions[FAULTY_ORDER].isCompletedExceptionally());
+
+        long expectedGrams = MALT_GRAMS - (long) recorded * GRAMS_PER_BOTTLE;
+        check(name, settlesAt(inventory, expectedGrams));
+        BeverageBatch[] batches = inventory.getFinishedBatches();
+        check(name, batches.length == recorded);
+
+        CompletableFuture<ProductionPipeline.Job> late = pipeline.submit(new ProductionOrder("Pale Ale", 1));
+        check(name, late.isCompletedExceptionally() && settlesAt(inventory, expectedGrams));
+        pipeline.close();
+    }
+
+    /**
+     * Orders submitted before close are produced; an order submitted after it completes
+     * exceptionally without touching the stock.
+     */
+    private void closedPipelineTurnsAwayOrders() {
+        Inventory inventory = new Inventory(new InMemoryInventoryStore(), 4, 10);
+        inventory.addIngredient("Malt", 100, Unit.GRAM);
+        RecipeLibrary library = new RecipeLibrary();
+        library.addRecipe(recipe("Pale Ale", "Malt", GRAMS_PER_BOTTLE));
+        ProductionPipeline pipeline = new ProductionPipeline(inventory, library, 2, 4, 1000);
+
+        CompletableFuture<ProductionPipeline.Job> first = pipeline.submit(new ProductionOrder("Pale Ale", 5));
+        pipeline.close();
+        CompletableFuture<ProductionPipeline.Job> late = pipeline.submit(new ProductionOrder("Pale Ale", 5));
+
+        check("closed pipeline", first.join().isSuccessful());
+        check("closed pipeline", late.isCompletedExceptionally());
+        check("closed pipeline", inventory.getIngredientFixedQuantity("Malt") == FixedPoint.toFixed(50));
+    }
+
+    /**
+     * Waits for the jobs abandoned by a failure to leave the stages, which may still be running
+     * when the futures complete, and then checks the stock stays at the expected quantity.
+     *
+     * @param inventory     The inventory.
+     * @param expectedGrams The grams of malt the inventory should settle at.
+     * @return true if the stock reached the expected quantity and stayed there.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private static boolean settlesAt(Inventory inventory, long expectedGrams) throws InterruptedException {
+        long expected = FixedPoint.toFixed(expectedGrams);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS);
+        while (inventory.getIngredientFixedQuantity("Malt") != expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(50);  // A second return of the same reservation would show up after this
+        return inventory.getIngredientFixedQuantity("Malt") == expected;
+    }
+
+    /**
+     * The Error thrown while recording the faulty batch.
+     */
+    private static class StageFault extends Error {
+        private static final long serialVersionUID = 1L;
+
+        StageFault() {
+            super("Batch could not be recorded");
+        }
+    }
+
+    /**
+     * An inventory that throws StageFault instead of recording batches of the recipe "Faulty".
+     */
+    private static class FaultyInventory extends Inventory {
+
+        FaultyInventory() {
+            super(new InMemoryInventoryStore(), ORDERS, 10);
+        }
+
+        @Override
+        public synchronized boolean addFinishedBatch(BeverageBatch newBatch) {
+            if (newBatch.getName().equals("Faulty")) {
+                throw new StageFault();
+            }
+            return super.addFinishedBatch(newBatch);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package controller;
+
+import java.util.concurrent.CompletableFuture;
+import model.Recipe;
+import model.Unit;
+import support.TestSupport;
+import view.QuietBreweryView;
+
+/**
+ * Checks that the tenants of a TenantRegistry are isolated from each other while sharing names:
+ * stock, recipes and batches of one tenant are invisible to another, ids match ignoring case,
+ * equal names from different tenants are one shared instance, and tasks run against the tenant
+ * they were submitted for. Plain Java with no test framework: run with
+ * {@code java -cp <classes> controller.TenantRegistryTest}, which exits with status 1 if any
+ * case fails.
+ */
+public class TenantRegistryTest extends TestSupport {
+
+    public static void main(String[] args) {
+        TenantRegistryTest test = new TenantRegistryTest();
+        test.isolatedStockAndRecipes();
+        test.tenantIds();
+        test.sharedNames();
+        test.submittedTasks();
+        test.finish("All tenant cases passed");
+    }
+
+    /**
+     * Stock, recipes and batches added to one tenant do not appear in another.
+     */
+    private void isolatedStockAndRecipes() {
+        TenantRegistry registry = new TenantRegistry(new QuietBreweryView(), 1);
+        BreweryTenant acme = registry.getOrCreateTenant("acme");
+        BreweryTenant globex = registry.getOrCreateTenant("globex");
+        acme.getInventory().addIngredient("Malt", 1000, Unit.GRAM);
+        globex.getInventory().addIngredient("Malt", 50, Unit.GRAM);
+        acme.getRecipeLibrary().addRecipe(recipe("Pale Ale", "Malt", 100));
+
+        check("isolation", acme.getInventory().getIngredientQuantity("Malt") == 1000
+                && globex.getInventory().getIngredientQuantity("Malt") == 50);
+        check("isolation", globex.getRecipeLibrary().getRecipe("Pale Ale") == null
+                && globex.getRecipeLibrary().getAllRecipes().length == 0);
+        check("isolation", !globex.getProductionSystem().produceBatch("Pale Ale", 1));
+
+        check("isolation", acme.getProductionSystem().produceBatch("Pale Ale", 5));
+        check("isolation", acme.getInventory().getIngredientQuantity("Malt") == 500
+                && globex.getInventory().getIngredientQuantity("Malt") == 50);
+        check("isolation", acme.getInventory().getFinishedBatches().length == 1
+                && globex.getInventory().getFinishedBatches().length == 0);
+        check("isolation", globex.getInventory().getCleanContainers().length
+                == globex.getInventory().getContainers().length);
+
+        registry.removeTenant("ACME");
+        check("isolation", registry.getTenant("acme") == null && registry.getTenantCount() == 1);
+        BreweryTenant recreated = registry.getOrCreateTenant("acme");
+        check("isolation", recreated != acme && recreated.getInventory().getIngredientCount() == 0);
+        registry.close();
+    }
+
+    /**
+     * Tenant ids match ignoring case, and blank ids are rejected.
+     */
+    private void tenantIds() {
+        TenantRegistry registry = new TenantRegistry(new QuietBreweryView(), 1);
+        BreweryTenant tenant = registry.getOrCreateTenant("Acme");
+        check("tenant ids", registry.getOrCreateTenant("ACME") == tenant && registry.getTenant("acme") == tenant);
+        check("tenant ids", registry.getTenantCount() == 1 && "Acme".equals(tenant.getId()));
+        check("tenant ids", registry.getTenant("globex") == null && registry.getTenant(null) == null);
+        boolean rejected = false;
+        try {
+            registry.getOrCreateTenant(" ");
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        check("tenant ids", rejected);
+        registry.close();
+    }
+
+    /**
+     * Equal ingredient and recipe names entered separately in two tenants are stored as one
+     * instance from the shared dictionary, and the dictionary holds each name once.
+     */
+    private void sharedNames() {
+        TenantRegistry registry = new TenantRegistry(new QuietBreweryView(), 1);
+        BreweryTenant acme = registry.getOrCreateTenant("acme");
+        BreweryTenant globex = registry.getOrCreateTenant("globex");
+        acme.getInventory().addIngredient(new String("Pale Malt"), 10, Unit.GRAM);
+        acme.getRecipeLibrary().addRecipe(recipe(new String("Pale Ale"), new String("Pale Malt"), 1));
+        int namesAfterFirst = registry.getNameDictionary().size();
+        globex.getInventory().addIngredient(new String("Pale Malt"), 20, Unit.GRAM);
+        globex.getRecipeLibrary().addRecipe(recipe(new String("Pale Ale"), new String("Pale Malt"), 2));
+
+        check("shared names", acme.getInventory().getIngredients()[0].getName()
+                == globex.getInventory().getIngredients()[0].getName());
+        Recipe acmeRecipe = acme.getRecipeLibrary().getRecipe("Pale Ale");
+        Recipe globexRecipe = globex.getRecipeLibrary().getRecipe("Pale Ale");
+        check("shared names", acmeRecipe.getName() == globexRecipe.getName());
+        check("shared names", acmeRecipe.getIngredientNames()[0] == globexRecipe.getIngredientNames()[0]);
+        check("shared names", acmeRecipe.getIngredientNames()[0] == acme.getInventory().getIngredients()[0].getName());
+        check("shared names", registry.getNameDictionary().size() == namesAfterFirst);
+        check("shared names", acmeRecipe.getFixedIngredientQuantities()[0]
+                != globexRecipe.getFixedIngredientQuantities()[0]);  // Only the names are shared
+        registry.close();
+    }
+
+    /**
+     * A submitted task runs against the tenant it names, creating the tenant if it is new.
+     */
+    private void submittedTasks() {
+        TenantRegistry registry = new TenantRegistry(new QuietBreweryView(), 2);
+        CompletableFuture<?>[] stocked = new CompletableFuture<?>[20];
+        for (int n = 0; n < stocked.length; n++) {
+            String id = n % 2 == 0 ? "acme" : "globex";
+            stocked[n] = registry.submit(id, tenant -> {
+                tenant.getInventory().addIngredient("Hops", 1, Unit.GRAM);
+                return null;
+            });
+        }
+        CompletableFuture.allOf(stocked).join();
+        double acmeHops = registry.submit("acme", tenant -> tenant.getInventory().getIngredientQuantity("Hops")).join();
+        check("submitted tasks", acmeHops == 10);
+        check("submitted tasks", registry.getTenant("globex").getInventory().getIngredientQuantity("Hops") == 10);
+        registry.close();
+    }
+}
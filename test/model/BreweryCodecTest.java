@@ -0,0 +1,197 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import support.TestSupport;
+
+/**
+ * Checks BreweryCodec: a message of every record type decodes to what was written, and truncated,
+ * corrupted or random input only ever fails with an IllegalArgumentException, from heap and direct
+ * buffers alike, as the codec documents. Corrupted input is generated from a fixed seed, so a
+ * failure reproduces. Plain Java with no test framework: run with
+ * {@code java -cp <classes> model.BreweryCodecTest}, which exits with status 1 if any case fails.
+ */
+public class BreweryCodecTest extends TestSupport {
+    private static final long SEED = 20261019L;
+    private static final int MUTANTS = 50_000;
+
+    public static void main(String[] args) {
+        BreweryCodecTest test = new BreweryCodecTest();
+        byte[] message = sampleMessage();
+        test.roundTrip(message);
+        test.truncatedInput(message);
+        test.corruptedInput(message);
+        test.randomInput();
+        test.finish("All codec cases passed");
+    }
+
+    /**
+     * Every record of the sample message decodes to the values that were written.
+     *
+     * @param message The sample message.
+     */
+    private void roundTrip(byte[] message) {
+        BreweryCodec.Reader reader = new BreweryCodec.Reader(ByteBuffer.wrap(message));
+        Recipe draft = reader.readRecipe();
+        check("round trip", draft.getName().equals("Pale Ale") && draft.getVersion() == 0
+                && draft.getNumberOfBottles() == 12 && draft.getIngredients().length == 2);
+        check("round trip", Arrays.equals(draft.getFixedIngredientQuantities(),
+                new long[] { FixedPoint.toFixed(4500), FixedPoint.toFixed(35) }));
+        Recipe stored = reader.readRecipe();
+        check("round trip", stored.getName().equals("Stout") && stored.getVersion() == 3);
+        Ingredient water = reader.readIngredient();
+        check("round trip", water.getName().equals("Water") && water.getUnit() == Unit.LITRE
+                && water.getQuantity() == 20.5);
+        BeverageBatch batch = reader.readBatch();
+        check("round trip", batch.getName().equals("Stout") && batch.getSize() == 24
+                && batch.getRecipeVersion() == 3 && batch.getCompletedAtMillis() == 1_760_000_000_000L);
+        Container container = reader.readContainer();
+        check("round trip", container.getId().equals("C7") && container.getCapacity() == 40 && container.isDirty());
+        check("round trip", !reader.hasNext());
+    }
+
+    /**
+     * Every prefix of the sample message, and the message with a byte appended, either decodes
+     * or fails with an IllegalArgumentException.
+     *
+     * @param message The sample message.
+     */
+    private void truncatedInput(byte[] message) {
+        Outcomes outcomes = new Outcomes();
+        for (int length = 0; length < message.length; length++) {
+            outcomes.decode(Arrays.copyOf(message, length));
+        }
+        byte[] extended = Arrays.copyOf(message, message.length + 1);
+        for (int b = 0; b < 256; b++) {
+            extended[message.length] = (byte) b;
+            outcomes.decode(extended);
+        }
+        check("truncated input" + outcomes.firstUnexpected(), outcomes.unexpected == 0);
+        check("truncated input", outcomes.rejected > 0);
+    }
+
+    /**
+     * Copies of the sample message with one to four bytes overwritten at random either decode
+     * or fail with an IllegalArgumentException.
+     *
+     * @param message The sample message.
+     */
+    private void corruptedInput(byte[] message) {
+        Random random = new Random(SEED);
+        Outcomes outcomes = new Outcomes();
+        for (int n = 0; n < MUTANTS; n++) {
+            byte[] mutant = message.clone();
+            int changes = 1 + random.nextInt(4);
+            for (int c = 0; c < changes; c++) {
+                int at = 5 + random.nextInt(mutant.length - 5);  // Keep the header, so the body is parsed
+                mutant[at] = random.nextInt(4) == 0 ? (byte) 0xFF : (byte) random.nextInt(256);
+            }
+            outcomes.decode(mutant);
+        }
+        check("corrupted input" + outcomes.firstUnexpected(), outcomes.unexpected == 0);
+        check("corrupted input", outcomes.rejected > 0 && outcomes.decoded > 0);
+    }
+
+    /**
+     * A valid header followed by random bytes either decodes or fails with an
+     * IllegalArgumentException.
+     */
+    private void randomInput() {
+        Random random = new Random(SEED + 1);
+        Outcomes outcomes = new Outcomes();
+        byte[] header = Arrays.copyOf(sampleMessage(), 5);
+        for (int n = 0; n < MUTANTS; n++) {
+            byte[] input = new byte[5 + random.nextInt(64)];
+            random.nextBytes(input);
+            System.arraycopy(header, 0, input, 0, header.length);
+            outcomes.decode(input);
+        }
+        check("random input" + outcomes.firstUnexpected(), outcomes.unexpected == 0);
+    }
+
+    /**
+     * Builds a message holding one record of each type: a draft recipe, a stored recipe version,
+     * an ingredient in litres, a batch with its completion time and a dirty container.
+     *
+     * @return The encoded message.
+     */
+    private static byte[] sampleMessage() {
+        Recipe draft = new Recipe("Pale Ale", 12);
+        draft.addIngredient("Malt", 4500, Unit.GRAM);
+        draft.addIngredient("Hops", 35, Unit.GRAM);
+        Recipe stout = recipe("Stout", "Roasted Barley", 600);
+        Container container = new Container("C7", 40);
+        container.markAsDirty();
+
+        BreweryCodec.Writer writer = new BreweryCodec.Writer();
+        writer.writeRecipe(draft);
+        writer.writeRecipe(stout.freeze(3, null));
+        writer.writeIngredient(new Ingredient("Water", 20.5, Unit.LITRE));
+        writer.writeBatch(new BeverageBatch("Stout", 24, 3, 1_760_000_000_000L));
+        writer.writeContainer(container);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Counts how decoding inputs ended, and keeps the first exception that was not an
+     * IllegalArgumentException.
+     */
+    private static class Outcomes {
+        private int decoded;
+        private int rejected;
+        private int unexpected;
+        private Throwable first;
+
+        /**
+         * Decodes every record of an input, from a heap buffer and from a direct buffer.
+         *
+         * @param input The bytes to decode.
+         */
+        void decode(byte[] input) {
+            ByteBuffer direct = ByteBuffer.allocateDirect(input.length);
+            direct.put(input).flip();
+            decode(ByteBuffer.wrap(input));
+            decode(direct);
+        }
+
+        private void decode(ByteBuffer buffer) {
+            try {
+                BreweryCodec.Reader reader = new BreweryCodec.Reader(buffer);
+                while (reader.hasNext()) {
+                    switch (reader.nextType()) {
+                        case RECIPE:
+                            reader.readRecipe();
+                            break;
+                        case INGREDIENT:
+                            reader.readIngredient();
+                            break;
+                        case BATCH:
+                            reader.readBatch();
+                            break;
+                        case CONTAINER:
+                            reader.readContainer();
+                            break;
+                        default:
+                            throw new AssertionError("Unknown record type");
+                    }
+                }
+                decoded++;
+            } catch (IllegalArgumentException e) {
+                rejected++;
+            } catch (RuntimeException | Error e) {
+                unexpected++;
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+
+        /**
+         * @return The first unexpected exception, for the case name, or an empty string if there was none.
+         */
+        String firstUnexpected() {
+            return first == null ? "" : " (" + unexpected + " unexpected, first " + first + ")";
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package model;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import support.TestSupport;
+
+/**
+ * Checks that HotIngredientCache never admits more than the inventory holds: many consumers
+ * drain an ingredient through the cache down to the margin and past it while another thread
+ * reconciles, and the stock seen never goes negative and the inventory ends up matching what
+ * the consumers were admitted. Also checks that deductions larger than margin / consumers take
+ * the lock and that given-back stock reaches the inventory. Plain Java with no test framework:
+ * run with {@code java -cp <classes> model.HotIngredientCacheTest}, which exits with status 1 if
+ * any case fails.
+ */
+public class HotIngredientCacheTest extends TestSupport {
+    private static final int CONSUMERS = 8;
+    private static final int ROUNDS = 20;
+    private static final long GRAM = FixedPoint.toFixed(1);
+    private static final int LARGEST_GRAMS = 20;  // Largest single deduction of the drain cases
+
+    public static void main(String[] args) throws InterruptedException {
+        HotIngredientCacheTest test = new HotIngredientCacheTest();
+        for (int round = 0; round < ROUNDS; round++) {
+            test.drainToZero(round);
+        }
+        test.largeDeductionsLocked();
+        test.releasedStockReconciled();
+        test.finish("All hot ingredient cases passed");
+    }
+
+    /**
+     * Consumers deduct random whole grams until the stock is exhausted, while a reconciler
+     * applies the counted deductions to the inventory. The approximate stock never goes
+     * negative, reconciling never finds the inventory overdrawn, every gram is admitted once,
+     * and the inventory ends at zero.
+     *
+     * @param round The round, which seeds the deduction sizes.
+     * @throws InterruptedException if interrupted while waiting for the threads.
+     */
+    private void drainToZero(int round) throws InterruptedException {
+        long stockGrams = 20_000;
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Malt", stockGrams, Unit.GRAM);
+        HotIngredientCache cache = HotIngredientCache.track(inventory, new String[] { "Malt" },
+                HotIngredientCache.marginFor(LARGEST_GRAMS * GRAM, CONSUMERS), CONSUMERS);
+        int malt = cache.indexOf("Malt");
+
+        AtomicLong admitted = new AtomicLong();
+        AtomicLong lowestSeen = new AtomicLong(Long.MAX_VALUE);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(CONSUMERS);
+        Thread[] consumers = new Thread[CONSUMERS];
+        for (int t = 0; t < CONSUMERS; t++) {
+            Random random = new Random(round * 31L + t);
+            consumers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    long grams = 1 + random.nextInt(LARGEST_GRAMS);
+                    while (true) {
+                        if (cache.tryConsume(malt, grams * GRAM)) {
+                            admitted.addAndGet(grams * GRAM);
+                            grams = 1 + random.nextInt(LARGEST_GRAMS);
+                        } else if (grams > 1) {
+                            grams = 1;  // Finish on single grams, so the stock drains to exactly zero
+                        } else {
+                            break;
+                        }
+                        lowestSeen.accumulateAndGet(cache.getApproximateQuantity(malt), Math::min);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            consumers[t].start();
+        }
+
+        boolean[] overdrawn = new boolean[1];
+        Thread reconciler = new Thread(() -> {
+            try {
+                while (done.getCount() > 0) {
+                    synchronized (inventory) {
+                        cache.reconcile(inventory);
+                    }
+                    lowestSeen.accumulateAndGet(inventory.getIngredientFixedQuantity("Malt"), Math::min);
+                    Thread.yield();
+                }
+            } catch (IllegalStateException e) {
+                overdrawn[0] = true;
+            }
+        });
+        reconciler.start();
+        start.countDown();
+        for (Thread consumer : consumers) {
+            consumer.join(60_000);
+        }
+        reconciler.join(60_000);
+        synchronized (inventory) {
+            cache.reconcile(inventory);
+        }
+
+        String name = "drain to zero (round " + round + ")";
+        check(name, !overdrawn[0] && lowestSeen.get() >= 0);
+        check(name, admitted.get() == stockGrams * GRAM);
+        check(name, inventory.getIngredientFixedQuantity("Malt") == 0);
+        check(name, cache.getApproximateQuantity(malt) == 0);
+    }
+
+    /**
+     * A deduction larger than margin / consumers takes the entry lock even far above the margin,
+     * and one within it does not.
+     */
+    private void largeDeductionsLocked() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Water", 1_000_000, Unit.MILLILITRE);
+        long margin = HotIngredientCache.marginFor(10 * GRAM, 4);
+        HotIngredientCache cache = HotIngredientCache.track(inventory, new String[] { "Water" }, margin, 4);
+        int water = cache.indexOf("Water");
+
+        check("large deductions", cache.tryConsume(water, 10 * GRAM) && cache.getLockedDeductions() == 0);
+        check("large deductions", cache.tryConsume(water, 11 * GRAM) && cache.getLockedDeductions() == 1);
+        check("large deductions", margin == 40 * GRAM);
+        check("large deductions", throwsOn(() -> HotIngredientCache.marginFor(-1, 4), IllegalArgumentException.class));
+        check("large deductions", throwsOn(() -> HotIngredientCache.marginFor(GRAM, 0), IllegalArgumentException.class));
+    }
+
+    /**
+     * Stock given back through release reaches the inventory at the next reconcile, and a
+     * reconcile picks up stock added to the inventory directly.
+     */
+    private void releasedStockReconciled() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Yeast", 100, Unit.GRAM);
+        HotIngredientCache cache = HotIngredientCache.track(inventory, new String[] { "Yeast" }, GRAM, 1);
+        int yeast = cache.indexOf("Yeast");
+
+        check("release", cache.tryConsume(yeast, 60 * GRAM) && !cache.tryConsume(yeast, 50 * GRAM));
+        cache.release(yeast, 20 * GRAM);
+        cache.reconcile(inventory);
+        check("release", inventory.getIngredientFixedQuantity("Yeast") == 60 * GRAM);
+        inventory.addIngredient("Yeast", 40, Unit.GRAM);
+        cache.reconcile(inventory);
+        check("release", cache.getApproximateQuantity(yeast) == 100 * GRAM && cache.tryConsume(yeast, 100 * GRAM));
+        check("release", !cache.tryConsume(yeast, 1));
+    }
+}
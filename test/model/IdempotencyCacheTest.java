@@ -0,0 +1,191 @@
+package model;
+
+import controller.ProductionSystem;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import support.TestSupport;
+import view.QuietBreweryView;
+
+/**
+ * Checks IdempotencyCache and the keyed requests built on it: duplicates get the original
+ * result, a key reused for another request is rejected, concurrent duplicates run the request
+ * once, results expire after the time to live and the oldest are evicted beyond capacity, and
+ * failed requests are forgotten. Also checks Inventory.addIngredientOnce,
+ * Inventory.removeIngredientFixedQuantityOnce and ProductionSystem.produceBatchOnce.
+ * Plain Java with no test framework: run with {@code java -cp <classes> model.IdempotencyCacheTest},
+ * which exits with status 1 if any case fails.
+ */
+public class IdempotencyCacheTest extends TestSupport {
+
+    public static void main(String[] args) throws InterruptedException {
+        IdempotencyCacheTest test = new IdempotencyCacheTest();
+        test.duplicateGetsOriginalResult();
+        test.concurrentDuplicatesRunOnce();
+        test.timeToLive();
+        test.oldestEvicted();
+        test.failuresForgotten();
+        test.keyedStockChanges();
+        test.keyedProduction();
+        test.finish("All idempotency cases passed");
+    }
+
+    /**
+     * A duplicate returns the original result without running, and a key reused for a request
+     * with another fingerprint is rejected.
+     */
+    private void duplicateGetsOriginalResult() {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>();
+        AtomicInteger runs = new AtomicInteger();
+        String fingerprint = IdempotencyCache.fingerprint("add", "Malt", 10);
+
+        int first = cache.execute("k1", fingerprint, runs::incrementAndGet);
+        int second = cache.execute("k1", fingerprint, runs::incrementAndGet);
+        check("duplicate", first == 1 && second == 1 && runs.get() == 1 && cache.contains("k1"));
+        check("duplicate", rejects(() -> cache.execute("k1", IdempotencyCache.fingerprint("add", "Malt", 11),
+                runs::incrementAndGet)));
+        check("duplicate", runs.get() == 1);
+        check("duplicate", !IdempotencyCache.fingerprint("add", "a|1:b").equals(IdempotencyCache.fingerprint("add", "a", "b")));
+    }
+
+    /**
+     * Duplicates that arrive while the original is running wait for it and get its result;
+     * the request runs once.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads.
+     */
+    private void concurrentDuplicatesRunOnce() throws InterruptedException {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int[] results = new int[8];
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t++) {
+            int slot = t;
+            threads[t] = new Thread(() -> results[slot] = cache.execute("k", "f", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return runs.incrementAndGet();
+            }));
+            threads[t].start();
+        }
+        started.await();
+        Thread.sleep(50);  // Let the duplicates reach the cache while the original runs
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+        boolean allOriginal = true;
+        for (int result : results) {
+            allOriginal &= result == 1;
+        }
+        check("concurrent duplicates", runs.get() == 1 && allOriginal);
+    }
+
+    /**
+     * A result is forgotten once its time to live has passed, so the key runs again.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void timeToLive() throws InterruptedException {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>(100, 20);
+        AtomicInteger runs = new AtomicInteger();
+        cache.execute("k", "f", runs::incrementAndGet);
+        Thread.sleep(60);
+        check("time to live", !cache.contains("k"));
+        check("time to live", cache.execute("k", "f", runs::incrementAndGet) == 2 && runs.get() == 2);
+        check("time to live", cache.execute("k", "f", runs::incrementAndGet) == 2);
+    }
+
+    /**
+     * Beyond capacity the requests that ran first are evicted first.
+     */
+    private void oldestEvicted() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(3, IdempotencyCache.DEFAULT_TTL_MILLIS);
+        for (String key : new String[] { "a", "b", "c", "d", "e" }) {
+            cache.execute(key, "f", () -> key);
+        }
+        check("eviction", cache.size() == 3);
+        check("eviction", !cache.contains("a") && !cache.contains("b"));
+        check("eviction", cache.contains("c") && cache.contains("d") && cache.contains("e"));
+        AtomicInteger runs = new AtomicInteger();
+        cache.execute("a", "f", () -> "a" + runs.incrementAndGet());
+        check("eviction", runs.get() == 1 && !cache.contains("c") && cache.contains("a"));
+    }
+
+    /**
+     * A request that throws, or whose result is marked not to be remembered, runs again on retry.
+     */
+    private void failuresForgotten() {
+        IdempotencyCache<Boolean> cache = new IdempotencyCache<>();
+        AtomicInteger runs = new AtomicInteger();
+        check("failures", rejects(() -> cache.execute("k", "f", () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("brew failed");
+        })));
+        check("failures", !cache.contains("k") && cache.size() == 0);
+        check("failures", cache.execute("k", "f", () -> runs.incrementAndGet() > 0) && runs.get() == 2);
+
+        check("failures", !cache.execute("r", "f", () -> runs.incrementAndGet() < 0, ok -> ok));
+        check("failures", !cache.contains("r"));
+        check("failures", cache.execute("r", "f", () -> runs.incrementAndGet() > 0, ok -> ok) && runs.get() == 4);
+    }
+
+    /**
+     * Keyed stock changes apply once per key, and a removal that found too little stock runs
+     * again after restocking.
+     */
+    private void keyedStockChanges() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredientOnce("add-1", "Malt", 100, Unit.GRAM);
+        inventory.addIngredientOnce("add-1", "Malt", 100, Unit.GRAM);
+        check("keyed stock", inventory.getIngredientQuantity("Malt") == 100);
+        check("keyed stock", rejects(() -> inventory.addIngredientOnce("add-1", "Malt", 5, Unit.GRAM)));
+
+        long amount = FixedPoint.toFixed(150);
+        check("keyed stock", !inventory.removeIngredientFixedQuantityOnce("remove-1", "Malt", amount, Unit.GRAM));
+        inventory.addIngredientOnce("add-2", "malt", 100, Unit.GRAM);
+        check("keyed stock", inventory.removeIngredientFixedQuantityOnce("remove-1", "Malt", amount, Unit.GRAM));
+        check("keyed stock", inventory.removeIngredientFixedQuantityOnce("remove-1", "Malt", amount, Unit.GRAM));
+        check("keyed stock", inventory.getIngredientQuantity("Malt") == 50);
+    }
+
+    /**
+     * A retried production request returns the original batches without using stock again,
+     * and a request rejected for lack of stock runs again after restocking.
+     */
+    private void keyedProduction() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Malt", 100, Unit.GRAM);
+        RecipeLibrary library = new RecipeLibrary();
+        Recipe recipe = new Recipe("Pale Ale", 1);
+        recipe.addIngredient("Malt", 10, Unit.GRAM);
+        library.addRecipe(recipe);
+        ProductionSystem production = new ProductionSystem(inventory, library, new QuietBreweryView());
+
+        BeverageBatch[] first = production.produceBatchOnce("order-1", "Pale Ale", 5);
+        inventory.markContainerAsClean();
+        BeverageBatch[] retry = production.produceBatchOnce("order-1", "pale ale", 5);
+        check("keyed production", first.length == 1 && retry.length == 1 && retry[0] == first[0]);
+        check("keyed production", inventory.getIngredientQuantity("Malt") == 50);
+        check("keyed production", inventory.getFinishedBatches().length == 1);
+        check("keyed production", rejects(() -> production.produceBatchOnce("order-1", "Pale Ale", 6)));
+
+        check("keyed production", production.produceBatchOnce("order-2", "Pale Ale", 8).length == 0);
+        inventory.addIngredient("Malt", 100, Unit.GRAM);
+        check("keyed production", production.produceBatchOnce("order-2", "Pale Ale", 8).length == 1);
+        check("keyed production", inventory.getIngredientQuantity("Malt") == 70);
+    }
+
+    /**
+     * @param action The action to run.
+     * @return true if the action threw an IllegalArgumentException or IllegalStateException.
+     */
+    private static boolean rejects(Runnable action) {
+        return throwsOn(action, IllegalArgumentException.class, IllegalStateException.class);
+    }
+}
@@ -0,0 +1,261 @@
+package model;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import support.TestSupport;
+
+/**
+ * Checks InventoryEventBus under concurrent publishers and subscribers: subscribers that keep up
+ * get every event once, in order and never torn; a subscriber that lags while publishers overwrite
+ * its slots never gets an overwritten or torn event; and a subscriber that stops reading is detached
+ * after the maximum wait so publishers carry on. A writer and readers also hammer a single slot,
+ * so the sequence check around each copy is exercised directly. Every published event carries values derived from
+ * its sequence, so a listener can tell a torn or overwritten copy from a clean one. Plain Java with
+ * no test framework: run with {@code java -cp <classes> model.InventoryEventBusTest}, which exits
+ * with status 1 if any case fails.
+ */
+public class InventoryEventBusTest extends TestSupport {
+    private static final String[] SUBJECTS = { "Malt", "Hops", "Yeast", "Water", "Sugar" };
+    private static final InventoryEvent.Type[] TYPES = InventoryEvent.Type.values();
+    private static final int PUBLISHERS = 4;
+
+    public static void main(String[] args) throws InterruptedException {
+        InventoryEventBusTest test = new InventoryEventBusTest();
+        test.slotCopiesNeverTorn();
+        test.subscribersKeepingUp();
+        test.laggingSubscriberNeverTorn();
+        test.stalledSubscriberDetached();
+        test.finish("All event bus cases passed");
+    }
+
+    /**
+     * One thread overwrites a single slot as fast as it can while readers copy it. A copy that
+     * succeeds always holds the values of the sequence it claims; a copy the slot changed under
+     * is refused instead.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads.
+     */
+    private void slotCopiesNeverTorn() throws InterruptedException {
+        InventoryEvent slot = new InventoryEvent();
+        long writes = 20_000_000;
+        setFor(slot, 0);  // A fresh slot is never read by the bus, so readers start from a published one
+        Thread writer = new Thread(() -> {
+            for (long sequence = 1; sequence < writes; sequence++) {
+                setFor(slot, sequence);
+            }
+        });
+        Thread[] readers = new Thread[2];
+        long[] copied = new long[readers.length];
+        boolean[] clean = { true, true };
+        for (int r = 0; r < readers.length; r++) {
+            int reader = r;
+            readers[r] = new Thread(() -> {
+                InventoryEvent copy = new InventoryEvent();
+                while (writer.isAlive() || copied[reader] == 0) {
+                    long sequence = slot.getSequence();
+                    if (sequence >= 0 && copy.copyFrom(slot, sequence)) {
+                        Checker checker = new Checker(sequence);
+                        checker.onEvent(copy);
+                        clean[reader] &= checker.clean && copy.getTimestamp() == sequence;
+                        copied[reader]++;
+                    }
+                }
+            });
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        writer.start();
+        writer.join(60_000);
+        for (Thread reader : readers) {
+            reader.join(60_000);
+        }
+        for (int r = 0; r < readers.length; r++) {
+            check("slot copies (reader " + r + ")", clean[r] && copied[r] > 0);
+        }
+    }
+
+    /**
+     * Several publishers and two subscribers share a small ring with a long maximum wait. Both
+     * subscribers get every event exactly once, in sequence order and intact, and none is detached.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads.
+     */
+    private void subscribersKeepingUp() throws InterruptedException {
+        int perPublisher = 50_000;
+        long total = (long) PUBLISHERS * perPublisher;
+        InventoryEventBus bus = new InventoryEventBus(64, 60_000);
+        Checker[] checkers = { new Checker(0), new Checker(0) };
+        InventoryEventBus.Subscription[] subscriptions = { bus.subscribe(), bus.subscribe() };
+
+        Thread[] readers = new Thread[checkers.length];
+        for (int r = 0; r < readers.length; r++) {
+            Checker checker = checkers[r];
+            InventoryEventBus.Subscription subscription = subscriptions[r];
+            readers[r] = new Thread(() -> {
+                while (checker.received < total && !subscription.isDetached()) {
+                    if (subscription.poll(checker, 32) == 0) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        publishConcurrently(bus, perPublisher);
+        for (Thread reader : readers) {
+            reader.join(60_000);
+        }
+
+        for (int r = 0; r < checkers.length; r++) {
+            String name = "subscribers keeping up (subscriber " + r + ")";
+            check(name, checkers[r].received == total && checkers[r].clean);
+            check(name, !subscriptions[r].isDetached() && subscriptions[r].getBacklog() == 0);
+        }
+        check("subscribers keeping up", bus.getDetachedCount() == 0 && bus.getPublishedSequence() == total - 1);
+    }
+
+    /**
+     * A subscriber that pauses while publishers run on a tiny ring with a short maximum wait is
+     * detached, possibly while it is copying a slot a publisher is overwriting. Whatever it reads
+     * before the detach is intact and in order, and it reads nothing after.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads.
+     */
+    private void laggingSubscriberNeverTorn() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            InventoryEventBus bus = new InventoryEventBus(4, 1);
+            Checker checker = new Checker(0);
+            InventoryEventBus.Subscription subscription = bus.subscribe();
+            Thread reader = new Thread(() -> {
+                while (!subscription.isDetached()) {
+                    subscription.poll(checker, 2);
+                    LockSupport.parkNanos(5_000_000L);  // Lag longer than the maximum wait
+                }
+            });
+            reader.start();
+            publishConcurrently(bus, 2_000);
+            reader.join(60_000);
+
+            String name = "lagging subscriber (round " + round + ")";
+            check(name, checker.clean && subscription.isDetached() && bus.getDetachedCount() == 1);
+            check(name, subscription.poll(checker, Integer.MAX_VALUE) == 0);
+        }
+    }
+
+    /**
+     * A subscriber that never reads holds publishers back for at most the maximum wait and is
+     * then detached, while a subscriber that keeps reading stays attached and misses nothing.
+     * A fresh subscription after the detach gets the events published from then on.
+     *
+     * @throws InterruptedException if interrupted while waiting for the publisher.
+     */
+    private void stalledSubscriberDetached() throws InterruptedException {
+        InventoryEventBus bus = new InventoryEventBus(8, 50);
+        InventoryEventBus.Subscription stalled = bus.subscribe();
+        InventoryEventBus.Subscription reading = bus.subscribe();
+        Checker checker = new Checker(0);
+        int events = 100;
+        Thread publisher = new Thread(() -> {
+            for (long sequence = 0; sequence < events; sequence++) {
+                publishFor(bus, sequence);
+                reading.poll(checker, Integer.MAX_VALUE);
+            }
+        });
+        long start = System.nanoTime();
+        publisher.start();
+        publisher.join(10_000);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        check("stalled subscriber", !publisher.isAlive() && elapsedMillis < 5_000);
+        check("stalled subscriber", stalled.isDetached() && bus.getDetachedCount() == 1);
+        check("stalled subscriber", stalled.poll(checker, Integer.MAX_VALUE) == 0);
+        check("stalled subscriber", !reading.isDetached() && checker.received == events && checker.clean);
+
+        InventoryEventBus.Subscription again = bus.subscribe();
+        Checker fresh = new Checker(events);
+        publishFor(bus, events);
+        check("stalled subscriber", again.poll(fresh, Integer.MAX_VALUE) == 1 && fresh.clean);
+    }
+
+    /**
+     * Publishes from several threads at once. Publishing is serialized by the bus, so each
+     * thread takes the next sequence under the bus's lock and derives the event from it.
+     *
+     * @param bus          The bus to publish to.
+     * @param perPublisher The number of events each thread publishes.
+     * @throws InterruptedException if interrupted while waiting for the publishers.
+     */
+    private static void publishConcurrently(InventoryEventBus bus, int perPublisher) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] publishers = new Thread[PUBLISHERS];
+        for (int p = 0; p < PUBLISHERS; p++) {
+            publishers[p] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perPublisher; i++) {
+                        synchronized (bus) {
+                            publishFor(bus, bus.getPublishedSequence() + 1);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            publishers[p].start();
+        }
+        start.countDown();
+        for (Thread publisher : publishers) {
+            publisher.join(60_000);
+        }
+    }
+
+    /**
+     * Publishes the event derived from the given sequence, which must be the next one.
+     *
+     * @param bus      The bus to publish to.
+     * @param sequence The sequence the event will get.
+     */
+    private static void publishFor(InventoryEventBus bus, long sequence) {
+        int i = (int) (sequence % SUBJECTS.length);
+        bus.publish(TYPES[(int) (sequence % TYPES.length)], SUBJECTS[i], sequence * 7, i % 2 == 0 ? Unit.GRAM : null);
+    }
+
+    /**
+     * Overwrites a slot with the event derived from the given sequence, as the bus would.
+     *
+     * @param slot     The slot to overwrite.
+     * @param sequence The sequence of the event.
+     */
+    private static void setFor(InventoryEvent slot, long sequence) {
+        int i = (int) (sequence % SUBJECTS.length);
+        slot.set(sequence, sequence, TYPES[(int) (sequence % TYPES.length)], SUBJECTS[i], sequence * 7,
+                i % 2 == 0 ? Unit.GRAM : null);
+    }
+
+    /**
+     * A listener that checks each event is the next sequence and carries the values derived from it.
+     */
+    private static class Checker implements InventoryEventListener {
+        private long expected;
+        private long received;
+        private boolean clean = true;
+
+        Checker(long firstSequence) {
+            this.expected = firstSequence;
+        }
+
+        @Override
+        public void onEvent(InventoryEvent event) {
+            long sequence = event.getSequence();
+            int i = (int) (sequence % SUBJECTS.length);
+            if (sequence != expected || event.getAmount() != sequence * 7
+                    || event.getType() != TYPES[(int) (sequence % TYPES.length)]
+                    || !SUBJECTS[i].equals(event.getSubject())
+                    || event.getUnit() != (i % 2 == 0 ? Unit.GRAM : null)) {
+                clean = false;
+            }
+            expected = sequence + 1;
+            received++;
+        }
+    }
+}
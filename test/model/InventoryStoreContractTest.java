@@ -0,0 +1,271 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import support.TestSupport;
+
+/**
+ * Runs the same contract cases against every InventoryStore implementation, so the in-memory
+ * and memory-mapped stores cannot drift apart. Plain Java with no test framework: run with
+ * {@code java -cp <classes> model.InventoryStoreContractTest}, which exits with status 1 if any
+ * case fails.
+ */
+public class InventoryStoreContractTest extends TestSupport {
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("inventory-store-contract");
+        InventoryStoreContractTest test = new InventoryStoreContractTest();
+        test.run("InMemoryInventoryStore", new Fixture() {
+            @Override
+            public InventoryStore open() {
+                return new InMemoryInventoryStore();
+            }
+        });
+        test.run("MappedFileInventoryStore", new Fixture() {
+            private int opened;
+            private String baseName;
+
+            @Override
+            public InventoryStore open() throws IOException {
+                baseName = directory.resolve("store-" + opened++).toString();
+                return new MappedFileInventoryStore(baseName);
+            }
+
+            @Override
+            public InventoryStore reopen(InventoryStore store) throws IOException {
+                store.close();
+                return new MappedFileInventoryStore(baseName);
+            }
+        });
+        test.finish("All contract cases passed");
+    }
+
+    /**
+     * Runs every contract case against one store implementation, each on a fresh store.
+     *
+     * @param name    The name of the implementation, for the report.
+     * @param fixture Opens fresh stores of the implementation.
+     * @throws IOException if a store cannot be opened or closed.
+     */
+    private void run(String name, Fixture fixture) throws IOException {
+        System.out.println(name);
+        addAndLookUp(name, fixture);
+        negativeDelta(name, fixture);
+        longNames(name, fixture);
+        reopenKeepsContents(name, fixture);
+        unitCodes(name, fixture);
+        growth(name, fixture);
+    }
+
+    /**
+     * Added ingredients are found by name ignoring case, and their amounts change by the deltas given.
+     *
+     * @param name    The name of the implementation.
+     * @param fixture Opens fresh stores of the implementation.
+     * @throws IOException if a store cannot be opened or closed.
+     */
+    private void addAndLookUp(String name, Fixture fixture) throws IOException {
+        try (InventoryStore store = fixture.open()) {
+            int malt = store.add("Pale Malt", 5000, Unit.GRAM);
+            int water = store.add("Water", 0, Unit.MILLILITRE);
+            store.addAmount(malt, 1500);
+            store.addAmount(water, 250);
+            store.addBatch(new BeverageBatch("Pale Ale", 24, 3));
+
+            check(name, "add", store.size() == 2 && store.indexOf("pale MALT") == malt && store.indexOf("Water") == water);
+            check(name, "add", store.indexOf("Stout") == -1 && store.indexOf(null) == -1);
+            check(name, "add", store.getAmount(malt) == 6500 && store.getAmount(water) == 250);
+            check(name, "add", "Pale Malt".equals(store.getName(malt)) && store.getUnit(malt) == Unit.GRAM);
+            check(name, "add", store.getBatchCount() == 1 && "Pale Ale".equals(store.getBatch(0).getName())
+                    && store.getBatch(0).getSize() == 24 && store.getBatch(0).getRecipeVersion() == 3);
+        }
+    }
+
+    /**
+     * A delta that would make an amount negative, or overflow it, is rejected and changes nothing,
+     * and so is a negative initial amount.
+     *
+     * @param name    The name of the implementation.
+     * @param fixture Opens fresh stores of the implementation.
+     * @throws IOException if a store cannot be opened or closed.
+     */
+    private void negativeDelta(String name, Fixture fixture) throws IOException {
+        try (InventoryStore store = fixture.open()) {
+            int hops = store.add("Hops", 100, Unit.GRAM);
+            store.addAmount(hops, -100);
+            check(name, "negative delta", store.getAmount(hops) == 0);
+
+            store.addAmount(hops, 40);
+            check(name, "negative delta", throwsOn(() -> store.addAmount(hops, -41), IllegalArgumentException.class));
+            check(name, "negative delta", store.getAmount(hops) == 40);
+            check(name, "negative delta",
+                    throwsOn(() -> store.addAmount(hops, Long.MAX_VALUE), ArithmeticException.class));
+            check(name, "negative delta", store.getAmount(hops) == 40);
+            check(name, "negative delta", throwsOn(() -> store.add("Yeast", -1, Unit.GRAM), IllegalArgumentException.class));
+            check(name, "negative delta", store.size() == 1 && store.indexOf("Yeast") == -1);
+        }
+    }
+
+    /**
+     * checkName and add agree: a name checkName rejects is rejected by add and addBatch without
+     * changing the store, and a name it accepts can be added. Every store accepts names of
+     * MappedFileInventoryStore.MAX_NAME_LENGTH characters.
+     *
+     * @param name    The name of the implementation.
+     * @param fixture Opens fresh stores of the implementation.
+     * @throws IOException if a store cannot be opened or closed.
+     */
+    private void longNames(String name, Fixture fixture) throws IOException {
+        String longest = repeat('a', MappedFileInventoryStore.MAX_NAME_LENGTH);
+        String tooLong = repeat('b', MappedFileInventoryStore.MAX_NAME_LENGTH + 1);
+        try (InventoryStore store = fixture.open()) {
+            store.checkName(longest);
+            store.add(longest, 1, Unit.UNIT);
+            store.addBatch(new BeverageBatch(longest, 1, 1));
+            check(name, "name length", store.indexOf(longest) == 0 && longest.equals(store.getName(0)));
+
+            if (throwsOn(() -> store.checkName(tooLong), IllegalArgumentException.class)) {
+                check(name, "name length", throwsOn(() -> store.add(tooLong, 1, Unit.UNIT), IllegalArgumentException.class));
+                check(name, "name length",
+                        throwsOn(() -> store.addBatch(new BeverageBatch(tooLong, 1, 1)), IllegalArgumentException.class));
+                check(name, "name length", store.size() == 1 && store.getBatchCount() == 1);
+            } else {
+                store.add(tooLong, 1, Unit.UNIT);
+                check(name, "name length", tooLong.equals(store.getName(store.indexOf(tooLong))));
+            }
+        }
+    }
+
+    /**
+     * A persistent store reopened on the same files has the same ingredients, amounts, units and
+     * batches, and its name index is rebuilt.
+     *
+     * @param name    The name of the implementation.
+     * @param fixture Opens fresh stores of the implementation.
+     * @throws IOException if a store cannot be opened or closed.
+     */
+    private void reopenKeepsContents(String name, Fixture fixture) throws IOException {
+        InventoryStore store = fixture.open();
+        int malt = store.add("Pale Malt", 5000, Unit.KILOGRAM);
+        store.add("Water", 200, Unit.LITRE);
+        store.addAmount(malt, -1000);
+        store.addBatch(new BeverageBatch("Pale Ale", 24, 2, 1_760_000_000_000L));
+
+        InventoryStore reopened = fixture.reopen(store);
+        if (reopened == null) {
+            store.close();
+            return;  // Not persistent
+        }
+        try {
+            check(name, "reopen", reopened.size() == 2 && reopened.indexOf("pale malt") == malt);
+            check(name, "reopen", reopened.getAmount(malt) == 4000 && reopened.getUnit(malt) == Unit.KILOGRAM);
+            check(name, "reopen", "Water".equals(reopened.getName(1)) && reopened.getAmount(1) == 200);
+            check(name, "reopen", reopened.getBatchCount() == 1 && "Pale Ale".equals(reopened.getBatch(0).getName())
+                    && reopened.getBatch(0).getRecipeVersion() == 2
+                    && reopened.getBatch(0).getCompletedAtMillis() == 1_760_000_000_000L);
+
+            reopened.addAmount(malt, 1);  // The reopened store keeps working
+            check(name, "reopen", reopened.getAmount(malt) == 4001);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Every unit is stored and returned as given, also after reopening a persistent store.
+     *
+     * @param name    The name of the implementation.
+     * @param fixture Opens fresh stores of the implementation.
+     * @throws IOException if a store cannot be opened or closed.
+     */
+    private void unitCodes(String name, Fixture fixture) throws IOException {
+        Unit[] units = Unit.values();
+        InventoryStore store = fixture.open();
+        for (int i = 0; i < units.length; i++) {
+            store.add("Ingredient " + i, i, units[i]);
+        }
+        InventoryStore reopened = fixture.reopen(store);
+        try (InventoryStore checked = reopened == null ? store : reopened) {
+            for (int i = 0; i < units.length; i++) {
+                check(name, "unit " + units[i], checked.getUnit(i) == units[i] && checked.getAmount(i) == i);
+            }
+        }
+    }
+
+    /**
+     * Stores grow past their initial capacity (64 records for MappedFileInventoryStore) without
+     * losing records, also after reopening a persistent store.
+     *
+     * @param name    The name of the implementation.
+     * @param fixture Opens fresh stores of the implementation.
+     * @throws IOException if a store cannot be opened or closed.
+     */
+    private void growth(String name, Fixture fixture) throws IOException {
+        int records = 1000;
+        InventoryStore store = fixture.open();
+        for (int i = 0; i < records; i++) {
+            store.add("Ingredient " + i, i * 1000L, Unit.GRAM);
+            store.addBatch(new BeverageBatch("Batch " + i, i, 1));
+        }
+        InventoryStore reopened = fixture.reopen(store);
+        try (InventoryStore checked = reopened == null ? store : reopened) {
+            boolean intact = checked.size() == records && checked.getBatchCount() == records;
+            for (int i = 0; intact && i < records; i++) {
+                intact = checked.indexOf("INGREDIENT " + i) == i && checked.getAmount(i) == i * 1000L
+                        && ("Batch " + i).equals(checked.getBatch(i).getName()) && checked.getBatch(i).getSize() == i;
+            }
+            check(name, "growth", intact);
+        }
+    }
+
+    /**
+     * Records the outcome of one check.
+     *
+     * @param store     The name of the implementation.
+     * @param caseName  The name of the contract case.
+     * @param condition Whether the check passed.
+     */
+    private void check(String store, String caseName, boolean condition) {
+        check(caseName + " (" + store + ")", condition);
+    }
+
+    /**
+     * Builds a string of one character repeated.
+     *
+     * @param c     The character.
+     * @param count The length of the string.
+     * @return The string.
+     */
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Opens fresh stores of one implementation.
+     */
+    private abstract static class Fixture {
+
+        /**
+         * @return A new, empty store.
+         * @throws IOException if the store cannot be opened.
+         */
+        public abstract InventoryStore open() throws IOException;
+
+        /**
+         * Closes the store last opened and opens it again on the same storage.
+         *
+         * @param store The store last opened.
+         * @return The reopened store, or null if the implementation is not persistent, in which
+         *         case the store is left open.
+         * @throws IOException if the store cannot be closed or opened.
+         */
+        public InventoryStore reopen(InventoryStore store) throws IOException {
+            return null;
+        }
+    }
+}
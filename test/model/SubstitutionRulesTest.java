@@ -0,0 +1,145 @@
+package model;
+
+import support.TestSupport;
+
+/**
+ * Checks the substitution resolver of SubstitutionRules: ratio conversion, rules limited to one
+ * recipe, chains of rules, lines competing for the same substitute stock, and batches no
+ * substitution can cover. Plain Java with no test framework: run with
+ * {@code java -cp <classes> model.SubstitutionRulesTest}, which exits with status 1 if any
+ * case fails.
+ */
+public class SubstitutionRulesTest extends TestSupport {
+
+    public static void main(String[] args) {
+        SubstitutionRulesTest test = new SubstitutionRulesTest();
+        test.coveredAsWritten();
+        test.ratioSwap();
+        test.recipeLimitedRule();
+        test.chainedRule();
+        test.contendedSubstitute();
+        test.contendedWrittenLine();
+        test.infeasible();
+        test.finish("All substitution cases passed");
+    }
+
+    /**
+     * A batch the stock covers as written gets the recipe itself back.
+     */
+    private void coveredAsWritten() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Cascade", 100, Unit.GRAM);
+        SubstitutionRules rules = new SubstitutionRules();
+        rules.addRule(new SubstitutionRule("Cascade", "Citra", 1.5));
+        Recipe recipe = recipe("Pale Ale", "Cascade", 10);
+
+        check("covered as written", rules.resolve(recipe, 5, inventory) == recipe);
+    }
+
+    /**
+     * A short line is replaced by its substitute, with the quantity converted by the rule's ratio,
+     * and the inventory is not changed.
+     */
+    private void ratioSwap() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Cascade", 5, Unit.GRAM);
+        inventory.addIngredient("Citra", 100, Unit.GRAM);
+        SubstitutionRules rules = new SubstitutionRules();
+        rules.addRule(new SubstitutionRule("Cascade", "Citra", 1.5));
+
+        Recipe resolved = rules.resolve(recipe("Pale Ale", "Cascade", 10), 2, inventory);
+        check("ratio swap", resolved != null && resolved.isFrozen() && "Pale Ale".equals(resolved.getName()));
+        check("ratio swap", resolved != null && "Citra".equals(resolved.getIngredientNames()[0])
+                && resolved.getFixedIngredientQuantities()[0] == FixedPoint.toFixed(15));
+        check("ratio swap", inventory.getIngredientFixedQuantity("Citra") == FixedPoint.toFixed(100)
+                && inventory.getIngredientFixedQuantity("Cascade") == FixedPoint.toFixed(5));
+    }
+
+    /**
+     * A rule limited to one recipe applies to that recipe only.
+     */
+    private void recipeLimitedRule() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Crystal Malt", 10, Unit.GRAM);
+        inventory.addIngredient("Chocolate Malt", 1000, Unit.GRAM);
+        SubstitutionRules rules = new SubstitutionRules();
+        rules.addRule(new SubstitutionRule("Crystal Malt", "Chocolate Malt", 1.0, "Stout"));
+
+        check("recipe-limited rule", rules.resolve(recipe("Pale Ale", "Crystal Malt", 50), 1, inventory) == null);
+        Recipe resolved = rules.resolve(recipe("stout", "Crystal Malt", 50), 1, inventory);
+        check("recipe-limited rule", resolved != null && "Chocolate Malt".equals(resolved.getIngredientNames()[0]));
+    }
+
+    /**
+     * A chain of rules is followed when only the end of the chain is stocked, multiplying the ratios.
+     */
+    private void chainedRule() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Simcoe", 1000, Unit.GRAM);
+        SubstitutionRules rules = new SubstitutionRules();
+        rules.addRule(new SubstitutionRule("Cascade", "Citra", 2.0));
+        rules.addRule(new SubstitutionRule("Citra", "Simcoe", 1.5));
+
+        Recipe resolved = rules.resolve(recipe("Pale Ale", "Cascade", 10), 4, inventory);
+        check("chained rule", resolved != null && "Simcoe".equals(resolved.getIngredientNames()[0])
+                && resolved.getFixedIngredientQuantities()[0] == FixedPoint.toFixed(30));
+    }
+
+    /**
+     * Two short lines compete for one substitute: the first line's first candidate is the only
+     * candidate of the second line, so the first line must fall back to its second candidate.
+     */
+    private void contendedSubstitute() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Amarillo", 50, Unit.GRAM);
+        inventory.addIngredient("Mosaic", 50, Unit.GRAM);
+        SubstitutionRules rules = new SubstitutionRules();
+        rules.addRule(new SubstitutionRule("Cascade", "Amarillo", 1.0));
+        rules.addRule(new SubstitutionRule("Cascade", "Mosaic", 1.0));
+        rules.addRule(new SubstitutionRule("Centennial", "Amarillo", 1.0));
+        Recipe recipe = recipe("IPA", "Cascade", 10);
+        recipe.addIngredient("Centennial", 10, Unit.GRAM);
+
+        Recipe resolved = rules.resolve(recipe, 5, inventory);
+        check("contended substitute", resolved != null
+                && "Mosaic".equals(resolved.getIngredientNames()[0])
+                && "Amarillo".equals(resolved.getIngredientNames()[1]));
+    }
+
+    /**
+     * A line the stock covers as written holds the only stock a short line can use, and has a
+     * substitute of its own, so it must give up its stock and be substituted instead.
+     */
+    private void contendedWrittenLine() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Amarillo", 100, Unit.GRAM);
+        inventory.addIngredient("Galaxy", 50, Unit.GRAM);
+        SubstitutionRules rules = new SubstitutionRules();
+        rules.addRule(new SubstitutionRule("Amarillo", "Galaxy", 1.0));
+        rules.addRule(new SubstitutionRule("Cascade", "Amarillo", 2.0));  // The chain to Galaxy needs 100 g
+        Recipe recipe = recipe("IPA", "Amarillo", 10);
+        recipe.addIngredient("Cascade", 10, Unit.GRAM);
+
+        Recipe resolved = rules.resolve(recipe, 5, inventory);
+        check("contended written line", resolved != null
+                && "Galaxy".equals(resolved.getIngredientNames()[0])
+                && "Amarillo".equals(resolved.getIngredientNames()[1]));
+    }
+
+    /**
+     * A batch is rejected when no set of substitutes fits the stock: two short lines share the
+     * only substitute, which covers one of them but not both.
+     */
+    private void infeasible() {
+        Inventory inventory = new Inventory();
+        inventory.addIngredient("Amarillo", 50, Unit.GRAM);
+        SubstitutionRules rules = new SubstitutionRules();
+        rules.addRule(new SubstitutionRule("Cascade", "Amarillo", 1.0));
+        rules.addRule(new SubstitutionRule("Centennial", "Amarillo", 1.0));
+        Recipe recipe = recipe("IPA", "Cascade", 10);
+        recipe.addIngredient("Centennial", 10, Unit.GRAM);
+
+        check("infeasible", rules.resolve(recipe, 5, inventory) == null);
+        check("infeasible", rules.resolve(recipe("Stout", "Roasted Barley", 10), 1, inventory) == null);
+    }
+}
@@ -0,0 +1,76 @@
+package support;
+
+import model.Recipe;
+import model.Unit;
+
+/**
+ * The scaffold shared by the plain-Java tests under test/: each test extends this class, records
+ * its checks with check, and ends main with finish, which prints the failed cases and exits
+ * with status 1 if any failed. Also holds the small factories several tests build fixtures with.
+ */
+public abstract class TestSupport {
+    private int failures;
+
+    /**
+     * Records a failed case.
+     *
+     * @param caseName  The name of the case.
+     * @param condition The condition that must hold.
+     */
+    protected void check(String caseName, boolean condition) {
+        if (!condition) {
+            failures++;
+            System.out.println("  FAILED " + caseName);
+        }
+    }
+
+    /**
+     * Ends the run: exits with status 1 after printing the number of failures if any case
+     * failed, and prints the given message otherwise.
+     *
+     * @param passedMessage The message printed when every case passed.
+     */
+    protected void finish(String passedMessage) {
+        if (failures > 0) {
+            System.out.println(failures + " failure(s)");
+            System.exit(1);
+        }
+        System.out.println(passedMessage);
+    }
+
+    /**
+     * Runs an action and reports whether it threw an exception of one of the given types.
+     *
+     * @param action   The action to run.
+     * @param expected The expected exception types.
+     * @return true if the action threw an exception of one of the expected types.
+     */
+    @SafeVarargs
+    protected static boolean throwsOn(Runnable action, Class<? extends RuntimeException>... expected) {
+        try {
+            action.run();
+            return false;
+        } catch (RuntimeException e) {
+            for (Class<? extends RuntimeException> type : expected) {
+                if (type.isInstance(e)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Builds a recipe with one ingredient line in grams.
+     *
+     * @param name       The recipe name.
+     * @param ingredient The ingredient of the first line.
+     * @param grams      The grams of the ingredient per bottle.
+     * @return The recipe, which can still be extended.
+     */
+    protected static Recipe recipe(String name, String ingredient, double grams) {
+        Recipe recipe = new Recipe(name, 1);
+        recipe.addIngredient(ingredient, grams, Unit.GRAM);
+        return recipe;
+    }
+}